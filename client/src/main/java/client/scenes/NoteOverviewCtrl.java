@@ -3,15 +3,22 @@ package client.scenes;
 import client.utils.LanguageManager;
 import client.utils.ServerUtils;
 import client.utils.StompClient;
+import client.utils.TokenIndex;
 import client.utils.UpdateListener;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import commons.AlertMethods;
-import commons.FileData;
+import commons.FileSummary;
 import commons.Note;
+import commons.NoteChanges;
+import commons.NoteHtml;
+import commons.NoteTitle;
+import commons.SearchResult;
+import commons.TitleIndex;
 import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
 import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.beans.value.ObservableValue;
@@ -19,11 +26,14 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Side;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
 import javafx.stage.FileChooser;
@@ -31,6 +41,7 @@ import javafx.stage.Stage;
 import commons.Collection;
 import client.service.CollectionConfigService;
 import javafx.util.Duration;
+import javafx.util.StringConverter;
 import org.controlsfx.control.CheckComboBox;
 import org.springframework.stereotype.Component;
 
@@ -43,7 +54,10 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -96,7 +110,7 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
     private CheckBox searchByContentCheckBox;
 
     @FXML
-    private ListView<FileData> fileDataListView;
+    private ListView<FileSummary> fileDataListView;
 
     @FXML
     private Button clear;
@@ -121,11 +135,34 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
     @FXML
     private Button deleteFilesButton;
 
+    private static final int MAX_LINK_SUGGESTIONS = 10;
+    private static final Duration SEARCH_DELAY = Duration.millis(150);
+    private static final java.util.regex.Pattern LINK_PATTERN = java.util.regex.Pattern.compile("\\[\\[(.+?)]]");
+
     private List<Note> data;
+    private final TitleIndex<Note> titles = new TitleIndex<>();
+    private final TokenIndex titleWords = new TokenIndex();
+    private final TokenIndex contentWords = new TokenIndex();
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "note-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private PauseTransition searchDelay;
+    private Future<?> pendingSearch;
+    private long searchGeneration;
+    private Map<Long, SearchResult> snippets = Map.of();
+    private final ContextMenu linkSuggestions = new ContextMenu();
+    private long suggestionGeneration;
+    private String loadedCollection;
+    private String loadingCollection;
+    private boolean isLoadingCollection = false;
+    private long collectionGeneration;
+    private long syncedRevision = -1;
     private ObservableList<Note> visibleNotes;
     private ObservableList<Note> tagNotes;
 
-    private ObservableList<FileData> noteFiles;
+    private ObservableList<FileSummary> noteFiles;
 
     private final ServerUtils server;
 
@@ -140,6 +177,11 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
 
     private List<String> tags = new ArrayList<>();
 
+    /**
+     * The number of notes carrying each tag, as last read from the tag index of the server
+     */
+    private Map<String, Integer> tagCounts = Map.of();
+
     private CollectionConfigService collectionConfigService;
     private Collection selectedCollection; // collection used for filtering
 
@@ -265,9 +307,198 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
         if (isEditing) {
             return;
         }
+        loadNotes();
+    }
+
+    /**
+     * Fetches the notes of the selected collection from the server and updates the ListView,
+     * even while the user is editing. When all notes are selected, every note is fetched.
+     */
+    private void loadNotes() {
+        String serverUrl = getCurrentCollection().getServer();
+        String collection = getSelectedCollectionFilter();
+        // a collection still loading in the background would be older than these notes
+        collectionGeneration++;
+        isLoadingCollection = false;
+        long revision = server.getRevision(serverUrl);
+        showNotes(server.getNotes(collection, serverUrl));
+        loadedCollection = collection;
+        syncedRevision = revision;
+    }
+
+    /**
+     * Fetches the notes of a collection on a background thread, so switching collections does not block the UI,
+     * and shows them on the JavaFX thread. Until they arrive, the notes already loaded are filtered locally.
+     * A result is dropped when another collection was selected in the meantime. It is also dropped when the user
+     * edited the title or content meanwhile, like refresh() does while editing; the next refresh loads it then.
+     *
+     * @param collection The title of the collection, or null for all notes
+     */
+    private void loadCollectionInBackground(String collection) {
+        String serverUrl = getCurrentCollection().getServer();
+        long generation = ++collectionGeneration;
+        loadingCollection = collection;
+        isLoadingCollection = true;
+        String titleText = title.getText();
+        String contentText = content.getText();
+
+        CompletableFuture.supplyAsync(() -> {
+            long revision = server.getRevision(serverUrl);
+            return new LoadedNotes(revision, server.getNotes(collection, serverUrl));
+        }).thenAccept(loaded -> Platform.runLater(() -> {
+            if (generation != collectionGeneration) {
+                return;
+            }
+            isLoadingCollection = false;
+            boolean edited = !Objects.equals(titleText, title.getText())
+                    || !Objects.equals(contentText, content.getText());
+            if (edited || !Objects.equals(collection, getSelectedCollectionFilter())) {
+                return;
+            }
+            showNotes(loaded.notes());
+            loadedCollection = collection;
+            syncedRevision = loaded.revision();
+        })).exceptionally(e -> {
+            Platform.runLater(() -> {
+                if (generation == collectionGeneration) {
+                    isLoadingCollection = false;
+                }
+            });
+            System.err.println("Error loading notes: " + e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * The notes of a collection fetched from the server, with the revision they are up to date with
+     *
+     * @param revision The revision of the server before the notes were fetched
+     * @param notes    The notes of the collection
+     */
+    private record LoadedNotes(long revision, List<Note> notes) {
+    }
+
+    /**
+     * Getter for the collection whose notes should be loaded from the server
+     *
+     * @return The title of the collection selected in the menu, or null when all notes are shown
+     */
+    private String getSelectedCollectionFilter() {
+        String selected = collectionMenu.getValue();
+        if (selected == null || "All Notes".equals(selected)) {
+            return null;
+        }
+        return selected;
+    }
+
+    /**
+     * Asks the server on a background thread for the notes changed since the last sync,
+     * and applies them on the JavaFX thread. When nothing changed, nothing is downloaded
+     * and the list is left untouched.
+     */
+    private void syncInBackground() {
+        if (isEditing || data == null || syncedRevision < 0) {
+            return;
+        }
+
+        String serverUrl = getCurrentCollection().getServer();
+        long since = syncedRevision;
+        CompletableFuture.supplyAsync(() -> server.getNoteChanges(since, serverUrl))
+                .thenAccept(changes -> Platform.runLater(() -> applyChanges(since, changes)))
+                .exceptionally(e -> {
+                    System.err.println("Error syncing notes: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * Applies the changes received from the server to the local notes and updates the ListView.
+     * The changes are dropped if the user started editing or the notes were reloaded in the meantime;
+     * the next sync will then fetch them again.
+     *
+     * @param since   The revision the changes were requested from
+     * @param changes The changes made since that revision
+     */
+    private void applyChanges(long since, NoteChanges changes) {
+        if (isEditing || syncedRevision != since) {
+            return;
+        }
+        syncedRevision = changes.getRevision();
+        if (!changes.hasChanges()) {
+            return;
+        }
+
+        Set<Long> deleted = new HashSet<>(changes.getDeletedIds());
+        Map<Long, Note> changed = new LinkedHashMap<>();
+        for (Note note : changes.getNotes()) {
+            if (loadedCollection == null || loadedCollection.equals(note.getCollectionTitle())) {
+                changed.put(note.getId(), note);
+            } else {
+                // the note was moved out of the loaded collection, or never belonged to it
+                deleted.add(note.getId());
+            }
+        }
+
+        deleted.forEach(this::unindexNote);
+        changed.values().forEach(this::indexNote);
+
+        List<Note> updated = new ArrayList<>(data.size() + changed.size());
+        for (Note note : data) {
+            if (deleted.contains(note.getId())) {
+                continue;
+            }
+            Note replacement = changed.remove(note.getId());
+            updated.add(replacement != null ? replacement : note);
+        }
+        updated.addAll(changed.values());
+
+        data = updated;
+        refreshVisibleNotes();
+    }
+
+    /**
+     * Replaces the local notes with the given ones and updates the ListView.
+     *
+     * @param notes The notes fetched from the server
+     */
+    private void showNotes(List<Note> notes) {
+        data = notes;
+        titles.clear();
+        titleWords.clear();
+        contentWords.clear();
+        for (Note note : notes) {
+            indexNote(note);
+        }
+
+        refreshVisibleNotes();
+    }
 
-        data = server.getNotes(getCurrentCollection().getServer());
+    /**
+     * Adds a note to the title and search indexes, replacing its previous title and content
+     *
+     * @param note The note to index
+     */
+    private void indexNote(Note note) {
+        titles.put(note.getId(), note.getTitle(), note);
+        titleWords.put(note.getId(), note.getTitle());
+        contentWords.put(note.getId(), note.getContent());
+    }
+
+    /**
+     * Removes a note from the title and search indexes
+     *
+     * @param id The id of the note
+     */
+    private void unindexNote(long id) {
+        titles.remove(id);
+        titleWords.remove(id);
+        contentWords.remove(id);
+    }
 
+    /**
+     * Updates the ListView after the local notes changed, keeping the selected tags
+     */
+    private void refreshVisibleNotes() {
         if (hasSelectedTag) {
             tagUpdateList();
             return;
@@ -276,6 +507,135 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
         updateList();
     }
 
+    /**
+     * Is called when the search text changes. The search waits until the user stops typing
+     * for a moment, so that a burst of keystrokes runs a single search.
+     */
+    public void searchChanged() {
+        searchDelay.playFromStart();
+    }
+
+    /**
+     * Searches the notes for the text in the search box on a background thread, and shows
+     * the matches on the JavaFX thread. If no note matches exactly, the server is asked for
+     * notes matching with typos. A search started earlier is cancelled, and its results
+     * are dropped if it already finished, so only the latest search is ever shown.
+     */
+    private void searchInBackground() {
+        searchDelay.stop();
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+        }
+        long generation = ++searchGeneration;
+        String filter = searchBox.getText();
+        boolean byContent = searchByContentCheckBox.isSelected();
+        if (filter.isBlank() || !byContent) {
+            snippets = Map.of();
+        }
+        if (filter.isBlank()) {
+            pendingSearch = null;
+            updateList();
+            return;
+        }
+
+        String serverUrl = getCurrentCollection().getServer();
+        String collection = getSelectedCollectionFilter();
+        pendingSearch = searchExecutor.submit(() -> {
+            Set<Long> exact = findMatches(filter, byContent);
+            Set<Long> matches = exact.isEmpty()
+                    ? fetchFuzzyMatches(byContent ? filter.substring(1) : filter, collection, serverUrl)
+                    : exact;
+            Map<Long, SearchResult> found = byContent
+                    ? fetchSnippets(filter.substring(1), collection, serverUrl)
+                    : Map.of();
+            Platform.runLater(() -> {
+                if (generation == searchGeneration && filter.equals(searchBox.getText())) {
+                    if (byContent) {
+                        snippets = found;
+                    }
+                    showVisibleNotes(selectMatches(matches));
+                }
+            });
+        });
+    }
+
+    /**
+     * Asks the server for the notes matching a search with typos, for searches nothing matches exactly.
+     * Offline, nothing is found.
+     *
+     * @param query      the words searched for
+     * @param collection the title of the collection searched, or null for every collection
+     * @param serverUrl  the server to ask
+     * @return the ids of the notes found
+     */
+    private Set<Long> fetchFuzzyMatches(String query, String collection, String serverUrl) {
+        if (query.isBlank()) {
+            return Set.of();
+        }
+        try {
+            Set<Long> found = new HashSet<>();
+            for (SearchResult result : server.fuzzySearchNotes(query, collection, serverUrl)) {
+                found.add(result.getId());
+            }
+            return found;
+        } catch (ProcessingException | WebApplicationException e) {
+            return Set.of();
+        }
+    }
+
+    /**
+     * Asks the server for snippets of the contents matching a search, so the list can show
+     * where each note matches without the note being opened.
+     * The search still works offline, only without snippets.
+     *
+     * @param query      the words searched for
+     * @param collection the title of the collection searched, or null for every collection
+     * @param serverUrl  the server to ask
+     * @return the results with snippets, by note id
+     */
+    private Map<Long, SearchResult> fetchSnippets(String query, String collection, String serverUrl) {
+        if (query.isBlank()) {
+            return Map.of();
+        }
+        try {
+            Map<Long, SearchResult> found = new HashMap<>();
+            for (SearchResult result : server.searchNotes(query, collection, serverUrl)) {
+                if (result.getSnippet() != null) {
+                    found.put(result.getId(), result);
+                }
+            }
+            return found;
+        } catch (ProcessingException | WebApplicationException e) {
+            return Map.of();
+        }
+    }
+
+    /**
+     * Builds the contents of a list cell showing a note with the snippet of its content matching the search
+     *
+     * @param noteTitle the title of the note
+     * @param result    the search result holding the snippet and the positions of the matched words
+     * @return the title above the snippet, with the matched words in bold
+     */
+    private VBox snippetGraphic(String noteTitle, SearchResult result) {
+        String snippet = result.getSnippet();
+        int[] highlights = result.getHighlights() != null ? result.getHighlights() : new int[0];
+        TextFlow flow = new TextFlow();
+        int position = 0;
+        for (int i = 0; i + 1 < highlights.length; i += 2) {
+            flow.getChildren().add(new Text(snippet.substring(position, highlights[i])));
+            Text match = new Text(snippet.substring(highlights[i], highlights[i + 1]));
+            match.setStyle("-fx-font-weight: bold;");
+            flow.getChildren().add(match);
+            position = highlights[i + 1];
+        }
+        flow.getChildren().add(new Text(snippet.substring(position)));
+        flow.setStyle("-fx-font-size: 0.85em;");
+        // wrap the snippet at the width of the list instead of widening the cell
+        flow.prefWidthProperty().bind(listView.widthProperty().subtract(30));
+        return new VBox(new Label(noteTitle), flow);
+    }
+
     /**
      * Updates the list of notes based on the current filter string.
      * This method is called when the filter string changes or the data is
@@ -283,10 +643,19 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
      * It updates the ListView with the filtered notes.
      */
     public void updateList() {
-        visibleNotes = FXCollections.observableList(getVisibleNotes(searchBox.getText()));
+        showVisibleNotes(getVisibleNotes(searchBox.getText()));
+    }
+
+    /**
+     * Shows the notes matching the search in the ListView, and clears the selected tags
+     *
+     * @param notes The notes matching the search
+     */
+    private void showVisibleNotes(List<Note> notes) {
+        visibleNotes = FXCollections.observableList(notes);
         tagsMenu.getCheckModel().clearChecks();
         hasSelectedTag = false;
-        filterTagList();
+        updateTagMenu();
         listView.setItems(visibleNotes);
 
         if (lastSelectedNote == null || !visibleNotes.contains(lastSelectedNote))
@@ -322,18 +691,44 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
      * Updates the dropdown menu of available tags to filter by
      */
     public void filterTagList() {
-        List<Integer> indexes = tagsMenu.getCheckModel().getCheckedIndices();
-
         visibleNotes = FXCollections.observableList(getVisibleNotes(searchBox.getText()));
+        updateTagMenu();
+    }
 
-        tags = visibleNotes.stream().flatMap(note -> note.getTags().stream()).distinct().toList();
-        tagsMenu.getItems().setAll(tags);
+    /**
+     * Fills the dropdown menu of tags with the tags in use on the server and their note counts,
+     * keeping the checked ones
+     */
+    private void updateTagMenu() {
+        List<String> checked = List.copyOf(tagsMenu.getCheckModel().getCheckedItems());
 
+        tagCounts = fetchTagCounts();
+        tags = List.copyOf(tagCounts.keySet());
+        tagsMenu.getItems().setAll(tags);
 
-        for (Integer i: indexes) {
-            tagsMenu.getCheckModel().check(i);
+        for (String tag : checked) {
+            if (tagCounts.containsKey(tag)) {
+                tagsMenu.getCheckModel().check(tag);
+            }
         }
+    }
 
+    /**
+     * Reads the tags in use from the tag index of the server.
+     * Offline, the tags of the visible notes are counted instead.
+     *
+     * @return the tags in alphabetical order, with the number of notes carrying them
+     */
+    private Map<String, Integer> fetchTagCounts() {
+        try {
+            return server.getTagCounts(getCurrentCollection().getServer());
+        } catch (ProcessingException | WebApplicationException e) {
+            Map<String, Integer> counts = new TreeMap<>();
+            for (Note note : visibleNotes) {
+                note.getTags().forEach(tag -> counts.merge(tag, 1, Integer::sum));
+            }
+            return counts;
+        }
     }
 
     /**
@@ -358,20 +753,32 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
     public List<Note> getVisibleNotes(String filter) {
         if (filter.isBlank()) {
             return getNotesBySelectedCollection();
-        } else {
-            if (searchByContentCheckBox.isSelected()) {
-                // Filter based on content
-                final String contentFilter = filter.substring(1);
-                return getNotesBySelectedCollection().stream()
-                        .filter(note -> note.getContent().toLowerCase().contains(contentFilter.toLowerCase()))
-                        .toList();
-            } else {
-                // Filter based on title
-                return getNotesBySelectedCollection().stream()
-                        .filter(note -> (note.getTitle().toLowerCase().contains(filter.toLowerCase())))
-                        .toList();
-            }
         }
+        return selectMatches(findMatches(filter, searchByContentCheckBox.isSelected()));
+    }
+
+    /**
+     * Finds the notes whose title or content contains the filter string, ignoring case.
+     * Only reads the search indexes, so it may run on any thread.
+     *
+     * @param filter    the filter string, not blank
+     * @param byContent true to search the contents, in which case the first character of the filter is skipped
+     * @return the ids of the matching notes
+     */
+    private Set<Long> findMatches(String filter, boolean byContent) {
+        return byContent ? contentWords.find(filter.substring(1)) : titleWords.find(filter);
+    }
+
+    /**
+     * Getter for the notes of the selected collection found by a search, in list order
+     *
+     * @param matches the ids of the notes found
+     * @return the matching notes of the selected collection
+     */
+    private List<Note> selectMatches(Set<Long> matches) {
+        return getNotesBySelectedCollection().stream()
+                .filter(note -> matches.contains(note.getId()))
+                .toList();
     }
 
     /**
@@ -439,17 +846,23 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
 
         fileInitialisation();
 
-        noteFiles = FXCollections.observableArrayList(new ArrayList<FileData>());
+        noteFiles = FXCollections.observableArrayList(new ArrayList<FileSummary>());
         fileDataListView.setItems(noteFiles);
 
         listView.setCellFactory(_ -> new ListCell<>() {
             @Override
             protected void updateItem(Note item, boolean empty) {
                 super.updateItem(item, empty);
+                SearchResult result = empty || item == null ? null : snippets.get(item.getId());
                 if (empty || item == null) {
                     setText(null);
+                    setGraphic(null);
+                } else if (result != null) {
+                    setText(null);
+                    setGraphic(snippetGraphic(item.getTitle(), result));
                 } else {
                     setText(item.getTitle());
+                    setGraphic(null);
                 }
             }
         });
@@ -462,6 +875,17 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
             }
         });
 
+        tagsMenu.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(String tag) {
+                return tagCounts.containsKey(tag) ? tag + " (" + tagCounts.get(tag) + ")" : tag;
+            }
+
+            @Override
+            public String fromString(String label) {
+                return label;
+            }
+        });
         tagsMenu.getCheckModel().getCheckedItems().addListener((javafx.collections.ListChangeListener<String>) change -> {
             while (change.next()) {
                 if (change.wasAdded()) {
@@ -479,7 +903,9 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
             }
         });
 
-        searchByContentCheckBox.selectedProperty().addListener(_ -> updateList());
+        searchDelay = new PauseTransition(SEARCH_DELAY);
+        searchDelay.setOnFinished(_ -> searchInBackground());
+        searchByContentCheckBox.selectedProperty().addListener(_ -> searchInBackground());
 
         languageInitialise();
 
@@ -488,6 +914,7 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
             isEditing = true;
             done.disableProperty().set(false);
         });
+        content.caretPositionProperty().addListener(_ -> suggestLinks());
 
         title.textProperty().addListener((observable, oldValue, newValue) -> {
             tagsMenu.hide();
@@ -559,6 +986,11 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
      * Sets the current Collection upon selection
      */
     private void setCurrentCollection(){
+        String selected = getSelectedCollectionFilter();
+        if (data != null && !Objects.equals(selected, loadedCollection)
+                && !(isLoadingCollection && Objects.equals(selected, loadingCollection))) {
+            loadCollectionInBackground(selected);
+        }
         String currentCollection = collectionMenu.getSelectionModel().getSelectedItem();
         ObservableList<Note> filtered = FXCollections.observableArrayList(filterNotesByCollection(currentCollection));
         listView.setItems(filtered);
@@ -567,15 +999,17 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
 
     /**
      * Filters the notes that the user can see by the collection that is selected in the checkbox.
+     * The server already only sends the notes of the selected collection, so this only filters
+     * when the notes could not be reloaded yet, e.g. while the user is editing.
      * @param currentCollection String that has the current collection selected in the checkbox*
      * @return a List of notes related to that specific collection.
      */
     private List<Note> filterNotesByCollection(String currentCollection) {
-        if("All Notes".equals(currentCollection)){
+        if("All Notes".equals(currentCollection) || Objects.equals(currentCollection, loadedCollection)){
             return data;
         }
         return data.stream().
-                filter(note -> note.getCollectionTitle().equals(currentCollection)).
+                filter(note -> Objects.equals(note.getCollectionTitle(), currentCollection)).
                 toList();
 
     }
@@ -943,15 +1377,30 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
     }
 
     /**
-     * Filters notes based on the selected tag from the dropdown menu
+     * Filters notes based on the selected tag from the dropdown menu.
+     * The notes carrying the tags are looked up in the tag index of the server, so every note of the
+     * collection is found; offline, the tags of the visible notes are checked instead.
      * 
      * @param tags tags selected
-     * @return The filtered list of notes
+     * @return The visible notes carrying any of the tags
      */
     public List<Note> filterNotesByTag(List<String> tags) {
-        return visibleNotes.stream()
-                .filter(note -> note.getTags().stream().anyMatch(tags::contains))
-                .toList();
+        if (tags.isEmpty()) {
+            return List.of();
+        }
+        Set<String> selected = new HashSet<>(tags);
+        try {
+            Set<Long> tagged = new HashSet<>();
+            for (Note note : server.getNotesByTags(List.copyOf(selected), false, getSelectedCollectionFilter(),
+                    getCurrentCollection().getServer())) {
+                tagged.add(note.getId());
+            }
+            return visibleNotes.stream().filter(note -> tagged.contains(note.getId())).toList();
+        } catch (ProcessingException | WebApplicationException e) {
+            return visibleNotes.stream()
+                    .filter(note -> note.getTags().stream().anyMatch(selected::contains))
+                    .toList();
+        }
     }
 
 
@@ -966,14 +1415,14 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
         StringBuilder updatedHtml = new StringBuilder();
         int lastIndex = 0;
 
-        String regex = "\\[\\[(.+?)]]";
-        java.util.regex.Matcher matcher = java.util.regex.Pattern.compile(regex).matcher(htmlContent);
+        String collection = getCurrentCollection().getTitle();
+        java.util.regex.Matcher matcher = LINK_PATTERN.matcher(htmlContent);
 
         while (matcher.find()) {
             updatedHtml.append(htmlContent, lastIndex, matcher.start());
 
             String noteTitle = matcher.group(1);
-            Note linkedNote = findNoteByTitle(noteTitle);
+            Note linkedNote = findNoteByTitle(noteTitle, collection);
 
             updatedHtml.append("<a href=\"note://")
                     .append(noteTitle)
@@ -1001,12 +1450,98 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
      * @return The note with the given title, null if not found
      */
     public Note findNoteByTitle(String title) {
-        return getNotesBySelectedCollection().stream()
-                .filter(note -> note.getTitle().equalsIgnoreCase(title))
+        return findNoteByTitle(title, getCurrentCollection().getTitle());
+    }
+
+    /**
+     * Returns a note of the given collection matching the given title, ignoring case
+     *
+     * @param title      The title of the requested note
+     * @param collection The title of the collection of the note
+     * @return The note with the given title, null if not found
+     */
+    private Note findNoteByTitle(String title, String collection) {
+        return titles.find(title).stream()
+                .filter(note -> Objects.equals(note.getCollectionTitle(), collection))
                 .findFirst()
                 .orElse(null);
     }
 
+    /**
+     * Suggests the titles of the collection starting with the text typed after an unclosed [[,
+     * and completes the link when one of them is chosen.
+     * The titles are looked up in the title index of the server on the search thread, so notes that are
+     * not loaded are suggested too; offline, the titles of the loaded notes are suggested.
+     */
+    private void suggestLinks() {
+        long generation = ++suggestionGeneration;
+        int caret = content.getCaretPosition();
+        String before = content.getText(0, caret);
+        int open = before.lastIndexOf("[[");
+        if (open < 0 || before.indexOf("]]", open) >= 0 || before.indexOf('\n', open) >= 0) {
+            linkSuggestions.hide();
+            return;
+        }
+        String prefix = before.substring(open + 2);
+        String collection = getCurrentCollection().getTitle();
+        String serverUrl = getCurrentCollection().getServer();
+        searchExecutor.submit(() -> {
+            List<String> found = fetchLinkTitles(prefix, collection, serverUrl);
+            Platform.runLater(() -> {
+                if (generation != suggestionGeneration) {
+                    return;
+                }
+                List<String> matches = found != null ? found
+                        : titles.startingWith(prefix, MAX_LINK_SUGGESTIONS,
+                                note -> Objects.equals(note.getCollectionTitle(), collection))
+                        .stream().map(Note::getTitle).toList();
+                showLinkSuggestions(matches, open, caret);
+            });
+        });
+    }
+
+    /**
+     * Asks the server for the titles of a collection starting with the text typed after [[
+     *
+     * @param prefix     the text typed after [[
+     * @param collection the title of the collection
+     * @param serverUrl  the server to ask
+     * @return the titles in alphabetical order, or null if the server cannot be reached
+     */
+    private List<String> fetchLinkTitles(String prefix, String collection, String serverUrl) {
+        try {
+            return server.getTitlesStartingWith(prefix, collection, MAX_LINK_SUGGESTIONS, serverUrl).stream()
+                    .map(NoteTitle::getTitle)
+                    .toList();
+        } catch (ProcessingException | WebApplicationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Shows the suggested titles below the content, replacing the text between [[ and the caret
+     * with the chosen one
+     *
+     * @param matches the suggested titles
+     * @param open    the position of the [[
+     * @param caret   the position of the caret
+     */
+    private void showLinkSuggestions(List<String> matches, int open, int caret) {
+        if (matches.isEmpty()) {
+            linkSuggestions.hide();
+            return;
+        }
+        linkSuggestions.getItems().setAll(matches.stream().map(match -> {
+            MenuItem item = new MenuItem(match);
+            item.setMnemonicParsing(false);
+            item.setOnAction(_ -> content.replaceText(open + 2, caret, match + "]]"));
+            return item;
+        }).toList());
+        if (!linkSuggestions.isShowing()) {
+            linkSuggestions.show(content, Side.BOTTOM, 0, 0);
+        }
+    }
+
     /**
      * Updates the input fields when the selected note in the ListView changes.
      *
@@ -1092,21 +1627,48 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
         String displayTitle = title.getText();
         String displayContent = content.getText();
 
+        long expectedVersion = selectedNote.getVersion();
         if (!selectedNote.getTitle().equalsIgnoreCase(displayTitle)) {
-            updateNoteReferences(selectedNote.getTitle(), displayTitle);
+            expectedVersion = updateNoteReferences(selectedNote, displayTitle);
+        }
+
+        // only send what was edited, so the server does not render the markdown again for a title change
+        Map<String, Object> patch = new HashMap<>();
+        if (!displayTitle.equals(selectedNote.getTitle())) {
+            patch.put("title", displayTitle);
+        }
+        if (!displayContent.equals(selectedNote.getContent())) {
+            patch.put("content", displayContent);
         }
 
         try {
-            server.saveNote(selectedNote.getId(), getNote(), getCurrentCollection().getServer());
+            if (!patch.isEmpty()) {
+                server.patchNote(selectedNote.getId(), patch, expectedVersion, getCurrentCollection().getServer());
+            }
             lastSelectedNote = server.getNoteById(selectedNote.getId(), getCurrentCollection().getServer());
-        } catch (NullPointerException | WebApplicationException e) {
+        } catch (WebApplicationException e) {
+            if (e.getResponse().getStatus() == Response.Status.PRECONDITION_FAILED.getStatusCode()) {
+                // someone else saved the note first; saving again after this warning overwrites their version
+                lastSelectedNote = server.getNoteById(selectedNote.getId(), getCurrentCollection().getServer());
+                AlertMethods.createWarning(LanguageManager.getString("note_conflict"));
+            } else {
+                AlertMethods.createError(e.getMessage());
+            }
+            return;
+        } catch (NullPointerException e) {
             AlertMethods.createError(e.getMessage());
             return;
         }
 
-        selectedNote.setTitle(getNote().getTitle());
-        selectedNote.setContent(getNote().getContent());
-        selectedNote.renderRawText(selectedNote.getId());
+        selectedNote.setTitle(displayTitle);
+        selectedNote.setRawContent(displayContent);
+        indexNote(selectedNote);
+        if (lastSelectedNote != null && lastSelectedNote.getHTML() != null) {
+            selectedNote.setHtml(lastSelectedNote.getHTML());
+        } else {
+            // the server renders in the background, so the HTML may not be there yet
+            selectedNote.renderRawText(selectedNote.getId());
+        }
         selectedNote.extractTagsFromContent();
 
         try {
@@ -1137,27 +1699,23 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
     }
 
     /**
-     * Updates all note references when a title is changed
+     * Renames the note on the server, which also updates all references to it in the other notes
      *
-     * @param oldTitle The old note title
+     * @param note     The note being renamed
      * @param newTitle The new note title
+     * @return The version of the note after the rename, or its old version if it was not renamed.
+     *         If someone else updated the note, the save that follows reports the conflict.
      */
-    private void updateNoteReferences(String oldTitle, String newTitle) {
-        for (Note note : getNotesBySelectedCollection()) {
-            if (note.getTitle().equalsIgnoreCase(oldTitle))
-                continue;
-
-            String newContent = note.getContent().replaceAll("(?i)\\[\\[" + oldTitle + "]]",
-                    "\\[\\[" + newTitle + "]]");
-
-            if (!newContent.equals(note.getContent())) {
-                note.setContent(newContent);
-                try {
-                    server.saveNote(note.getId(), note, getCurrentCollection().getServer());
-                } catch (NullPointerException | WebApplicationException e) {
-                    AlertMethods.createError(e.getMessage());
-                }
+    private long updateNoteReferences(Note note, String newTitle) {
+        try {
+            return server.renameNote(note.getId(), newTitle, note.getVersion(), getCurrentCollection().getServer())
+                    .getFirst().getVersion();
+        } catch (ProcessingException | WebApplicationException e) {
+            if (!(e instanceof WebApplicationException webException)
+                    || webException.getResponse().getStatus() != Response.Status.PRECONDITION_FAILED.getStatusCode()) {
+                AlertMethods.createError(e.getMessage());
             }
+            return note.getVersion();
         }
     }
 
@@ -1281,11 +1839,12 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
     }
 
     /**
-     * Starts a periodic polling task to refresh the notes every 5 seconds.
+     * Starts a periodic polling task that syncs the notes every 5 seconds.
+     * Only the changes since the last sync are fetched, in the background.
      */
     private void startPolling() {
         scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> Platform.runLater(this::refresh), 0, 5, TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(() -> Platform.runLater(this::syncInBackground), 0, 5, TimeUnit.SECONDS);
     }
 
     /**
@@ -1337,10 +1896,10 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
     /**
      * Creates a ListCell for the fileDataListView with appropriate buttons and functionality.
      */
-    private ListCell<FileData> createFileCell() {
+    private ListCell<FileSummary> createFileCell() {
         return new ListCell<>() {
             @Override
-            protected void updateItem(FileData fileData, boolean empty) {
+            protected void updateItem(FileSummary fileData, boolean empty) {
                 super.updateItem(fileData, empty);
 
                 if (empty || fileData == null) {
@@ -1431,6 +1990,7 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
     public void setSelectedNote(Note newNote) {
         lastSelectedNote.setTitle(newNote.getTitle());
         lastSelectedNote.setContent(newNote.getContent());
+        indexNote(lastSelectedNote);
         lastSelectedNote.renderRawText(lastSelectedNote.getId());
         lastSelectedNote.extractTagsFromContent();
         updateWebView();
@@ -1475,6 +2035,7 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
      */
     public void addNoteToData(Note newNote){
         data.add(newNote);
+        indexNote(newNote);
     }
 
     /**
@@ -1492,6 +2053,7 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
                     if (note.getId() == updatedNote.getId()) {
                         note.setTitle(updatedNote.getTitle());
                         note.setContent(updatedNote.getContent());
+                        indexNote(note);
                         note.setTags(updatedNote.getTags());
                         note.renderRawText(updatedNote.getId());
                         if (getHasSelectedTag()) {
@@ -1526,6 +2088,7 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
         for (Note note : data) {
             if (note.getId() == deletedNoteID) {
                 data.remove(note);
+                unindexNote(deletedNoteID);
                 break;
             }
         }
@@ -1535,4 +2098,25 @@ public class NoteOverviewCtrl implements Initializable, UpdateListener {
         }
         updateList();
     }
+
+    /**
+     * Stores the HTML rendered by the server in the loaded note it belongs to.
+     * HTML older than the loaded note was rendered from content that changed since, and is ignored.
+     * @param noteHtml the rendered HTML, with the revision it was stored under
+     */
+    @Override
+    public void handleNoteHtml(NoteHtml noteHtml) {
+        if (data == null) {
+            return;
+        }
+        for (Note note : data) {
+            if (note.getId() == noteHtml.getNoteId()) {
+                if (note.getRevision() == null || note.getRevision() < noteHtml.getRevision()) {
+                    note.setHtml(noteHtml.getHtml());
+                    note.setRevision(noteHtml.getRevision());
+                }
+                return;
+            }
+        }
+    }
 }
@@ -0,0 +1,96 @@
+package client.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream over a download that reconnects when the connection breaks.
+ * It counts the bytes it has passed on, and when reading fails it asks for the rest of the download
+ * starting at that offset, so an interrupted download continues instead of starting over.
+ */
+public class ResumingInputStream extends InputStream {
+
+    /**
+     * The number of times in a row a download is reopened without reading anything before giving up
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Opens a download from an offset
+     */
+    @FunctionalInterface
+    public interface Opener {
+        /**
+         * Opens the download at an offset
+         *
+         * @param offset The number of bytes to skip
+         * @return A stream over the bytes from the offset on
+         * @throws IOException If the download cannot be opened
+         */
+        InputStream open(long offset) throws IOException;
+    }
+
+    private final Opener opener;
+    private InputStream current;
+    private long position;
+    private int failures;
+
+    /**
+     * Starts a download
+     *
+     * @param opener Opens the download at an offset
+     * @throws IOException If the download cannot be opened
+     */
+    public ResumingInputStream(Opener opener) throws IOException {
+        this.opener = opener;
+        this.current = opener.open(0);
+    }
+
+    /**
+     * Getter for the number of bytes read so far
+     *
+     * @return The offset of the next byte
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        while (true) {
+            try {
+                int read = current.read(buffer, offset, count);
+                if (read > 0) {
+                    position += read;
+                    failures = 0;
+                }
+                return read;
+            } catch (IOException e) {
+                if (++failures >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                closeCurrent();
+                current = opener.open(position);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        current.close();
+    }
+
+    private void closeCurrent() {
+        try {
+            current.close();
+        } catch (IOException e) {
+            // the connection is already broken
+        }
+    }
+}
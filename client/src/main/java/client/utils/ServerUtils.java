@@ -18,20 +18,41 @@ package client.utils;
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ConnectException;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
-import commons.FileData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import commons.FileSummary;
 import commons.Note;
+import commons.NoteChanges;
+import commons.NotePage;
+import commons.NoteTitle;
+import commons.SearchResult;
 import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Invocation;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
 
 import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.client.ClientBuilder;
 import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Form;
 import jakarta.ws.rs.core.GenericType;
 import org.glassfish.jersey.media.multipart.FormDataMultiPart;
 import org.glassfish.jersey.media.multipart.file.FileDataBodyPart;
@@ -42,6 +63,26 @@ public class ServerUtils {
 
     private static final String SERVER = "http://localhost:8080/";
 
+    private static final int PAGE_SIZE = 200;
+
+    /**
+     * How many of the notes read with {@link #getNoteById} are kept to be revalidated with their ETag
+     */
+    private static final int NOTE_CACHE_SIZE = 64;
+
+    private final ObjectMapper noteMapper = new ObjectMapper();
+
+    /**
+     * The notes last read with {@link #getNoteById} by server and id, least recently read first, so reading
+     * a note again that has not changed is answered with 304 Not Modified instead of the whole note
+     */
+    private final Map<String, CachedNote> noteCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedNote> eldest) {
+            return size() > NOTE_CACHE_SIZE;
+        }
+    };
+
     /**
      * Checks if the server is running by attempting to make a request to it.
      *
@@ -63,19 +104,196 @@ public class ServerUtils {
     }
 
     /**
-     * Retrieves a list of notes from the server.
+     * Retrieves all notes from the server by walking the paginated note listing.
      *
      * @param server The server targeted
      * @return a list of {@link Note} objects retrieved from the server
      */
     public List<Note> getNotes(String server) {
-        return ClientBuilder.newClient(new ClientConfig())
+        return getNotes(null, server);
+    }
+
+    /**
+     * Retrieves the notes of one collection from the server by walking the paginated note listing.
+     * The filtering happens on the server, so notes of other collections are never transferred.
+     *
+     * @param collection the title of the collection, or null for the notes of every collection
+     * @param server     The server targeted
+     * @return a list of {@link Note} objects of the collection
+     */
+    public List<Note> getNotes(String collection, String server) {
+        List<Note> notes = new ArrayList<>();
+        NotePage page = getNotePage(collection, null, server);
+        notes.addAll(page.getNotes());
+        while (page.hasNext()) {
+            page = getNotePage(collection, page.getNextCursor(), server);
+            notes.addAll(page.getNotes());
+        }
+        return notes;
+    }
+
+    /**
+     * Retrieves a single page of notes from the server.
+     *
+     * @param collection the title of the collection, or null for the notes of every collection
+     * @param after      the cursor returned by the previous page, or null for the first page
+     * @param server     The server targeted
+     * @return the requested {@link NotePage}
+     */
+    public NotePage getNotePage(String collection, Long after, String server) {
+        var target = ClientBuilder.newClient(new ClientConfig())
                 .target(server).path("api/notes")
-                .request(APPLICATION_JSON)
-                .get(new GenericType<List<Note>>() {
+                .queryParam("limit", PAGE_SIZE);
+        if (collection != null) {
+            target = target.queryParam("collection", collection);
+        }
+        if (after != null) {
+            target = target.queryParam("after", after);
+        }
+        return target.request(APPLICATION_JSON).get(NotePage.class);
+    }
+
+    /**
+     * Searches the titles and contents of the notes on the server
+     *
+     * @param query      the words to search for
+     * @param collection the title of the collection to search in, or null to search every collection
+     * @param server     The server targeted
+     * @return the ids and titles of the matching notes, best match first
+     */
+    public List<SearchResult> searchNotes(String query, String collection, String server) {
+        var target = ClientBuilder.newClient(new ClientConfig())
+                .target(server).path("api/notes/search")
+                .queryParam("q", query);
+        if (collection != null) {
+            target = target.queryParam("collection", collection);
+        }
+        return target.request(APPLICATION_JSON).get(new GenericType<List<SearchResult>>() {
+        });
+    }
+
+    /**
+     * Searches the titles and contents of the notes on the server, tolerating typos in the query
+     *
+     * @param query      the words to search for
+     * @param collection the title of the collection to search in, or null to search every collection
+     * @param server     The server targeted
+     * @return the ids and titles of the matching notes, best match first
+     */
+    public List<SearchResult> fuzzySearchNotes(String query, String collection, String server) {
+        var target = ClientBuilder.newClient(new ClientConfig())
+                .target(server).path("api/notes/search/fuzzy")
+                .queryParam("q", query);
+        if (collection != null) {
+            target = target.queryParam("collection", collection);
+        }
+        return target.request(APPLICATION_JSON).get(new GenericType<List<SearchResult>>() {
+        });
+    }
+
+    /**
+     * Retrieves the notes on the server whose title starts with the given prefix, ignoring case
+     *
+     * @param prefix     the start of the title
+     * @param collection the title of the collection to look in, or null to look in every collection
+     * @param limit      the maximum number of titles
+     * @param server     The server targeted
+     * @return the matching notes, in alphabetical order of title
+     */
+    public List<NoteTitle> getTitlesStartingWith(String prefix, String collection, int limit, String server) {
+        var target = ClientBuilder.newClient(new ClientConfig())
+                .target(server).path("api/notes/titles")
+                .queryParam("prefix", prefix)
+                .queryParam("limit", limit);
+        if (collection != null) {
+            target = target.queryParam("collection", collection);
+        }
+        return target.request(APPLICATION_JSON).get(new GenericType<List<NoteTitle>>() {
+        });
+    }
+
+    /**
+     * Retrieves every tag in use on the server, with the number of notes carrying it
+     *
+     * @param server The server targeted
+     * @return the tags in alphabetical order, with their note counts
+     */
+    public Map<String, Integer> getTagCounts(String server) {
+        return ClientBuilder.newClient(new ClientConfig())
+                .target(server).path("api/tags")
+                .request(APPLICATION_JSON).get(new GenericType<Map<String, Integer>>() {
                 });
     }
 
+    /**
+     * Retrieves all notes carrying the given tags from the server, one page at a time
+     *
+     * @param tags       the tags to filter on
+     * @param all        true for the notes carrying all of the tags, false for any of them
+     * @param collection the title of the collection, or null for the notes of every collection
+     * @param server     The server targeted
+     * @return the matching notes, ordered by id
+     */
+    public List<Note> getNotesByTags(List<String> tags, boolean all, String collection, String server) {
+        List<Note> notes = new ArrayList<>();
+        Long after = null;
+        do {
+            var target = ClientBuilder.newClient(new ClientConfig())
+                    .target(server).path("api/notes")
+                    .queryParam("tag", tags.toArray())
+                    .queryParam("mode", all ? "all" : "any")
+                    .queryParam("limit", PAGE_SIZE);
+            if (collection != null) {
+                target = target.queryParam("collection", collection);
+            }
+            if (after != null) {
+                target = target.queryParam("after", after);
+            }
+            NotePage page = target.request(APPLICATION_JSON).get(NotePage.class);
+            notes.addAll(page.getNotes());
+            after = page.getNextCursor();
+        } while (after != null);
+        return notes;
+    }
+
+    /**
+     * Retrieves the latest revision of the notes on the server
+     *
+     * @param server The server targeted
+     * @return the current revision
+     */
+    public long getRevision(String server) {
+        return ClientBuilder.newClient(new ClientConfig())
+                .target(server).path("api/notes/revision")
+                .request(APPLICATION_JSON)
+                .get(Long.class);
+    }
+
+    /**
+     * Retrieves all changes made to the notes since the given revision.
+     * Follows the change feed until it is exhausted, so the returned revision is the latest one.
+     *
+     * @param since  the revision the client is up to date with
+     * @param server The server targeted
+     * @return the created, updated and deleted notes, merged in revision order
+     */
+    public NoteChanges getNoteChanges(long since, String server) {
+        NoteChanges all = new NoteChanges();
+        all.setRevision(since);
+        NoteChanges page;
+        do {
+            page = ClientBuilder.newClient(new ClientConfig())
+                    .target(server).path("api/notes/changes")
+                    .queryParam("since", all.getRevision())
+                    .request(APPLICATION_JSON)
+                    .get(NoteChanges.class);
+            all.getNotes().addAll(page.getNotes());
+            all.getDeletedIds().addAll(page.getDeletedIds());
+            all.setRevision(page.getRevision());
+        } while (page.getHasMore());
+        return all;
+    }
+
     /**
      * Adds a new note to the server.
      *
@@ -100,13 +318,13 @@ public class ServerUtils {
      *
      * @param noteid The id of the note
      * @param server The server
-     * @return the names of the files related with noteid
+     * @return the names, sizes, content types, hashes and upload times of the files related with noteid
      */
-    public List<FileData> fetchFileNames(long noteid, String server) {
+    public List<FileSummary> fetchFileNames(long noteid, String server) {
         return ClientBuilder.newClient(new ClientConfig())
                 .target(server).path("api/files/" + noteid)
                 .request(APPLICATION_JSON)
-                .get(new GenericType<List<FileData>>() {
+                .get(new GenericType<List<FileSummary>>() {
                 });
     }
 
@@ -115,14 +333,63 @@ public class ServerUtils {
      * @param noteid the note id
      * @param filename the filename
      * @param server The server
-     * @return an input stream containing the binary data of the file to be downloaded
+     * @return an input stream containing the binary data of the file to be downloaded,
+     *         which resumes from where it stopped when the connection breaks
+     * @throws IOException if the download cannot be started
      */
-    public InputStream downloadFile(long noteid, String filename, String server){
+    public InputStream downloadFile(long noteid, String filename, String server) throws IOException {
         Client client = ClientBuilder.newClient(new ClientConfig());
-        Response response = client.target(server).path("api/files/" + noteid + "/" + filename + "/download")
-                .request(MediaType.APPLICATION_OCTET_STREAM)
-                .get();
-        return response.readEntity(InputStream.class);
+        AtomicReference<String> etag = new AtomicReference<>();
+        return new ResumingInputStream(offset -> openDownload(client, noteid, filename, server, offset, etag));
+    }
+
+    /**
+     * Requests the bytes of a file from an offset on
+     * @param client the client to send the request with
+     * @param noteid the note id
+     * @param filename the filename
+     * @param server The server
+     * @param offset the number of bytes already downloaded
+     * @param etag the ETag of the file when the download started, set by the first request, so the rest
+     *             is only taken from the same contents
+     * @return an input stream over the rest of the file
+     * @throws IOException if the server does not send the file, or the file changed during the download
+     */
+    private InputStream openDownload(Client client, long noteid, String filename, String server, long offset,
+            AtomicReference<String> etag) throws IOException {
+        Invocation.Builder request = client.target(server)
+                .path("api/files/" + noteid + "/" + filename + "/download")
+                .request(MediaType.APPLICATION_OCTET_STREAM);
+        if (offset > 0) {
+            request = request.header("Range", "bytes=" + offset + "-");
+            if (etag.get() != null) {
+                request = request.header("If-Range", etag.get());
+            }
+        }
+        Response response;
+        try {
+            response = request.get();
+        } catch (ProcessingException e) {
+            throw new IOException("Cannot reach " + server, e);
+        }
+        boolean partial = response.getStatus() == Response.Status.PARTIAL_CONTENT.getStatusCode();
+        if (partial || response.getStatus() == Response.Status.OK.getStatusCode()) {
+            if (offset == 0) {
+                etag.set(response.getHeaderString("ETag"));
+            } else if (etag.get() != null && !etag.get().equals(response.getHeaderString("ETag"))) {
+                // a range of other contents must not be appended, even if the server ignored If-Range
+                response.close();
+                throw new IOException(filename + " changed on the server during the download");
+            }
+            InputStream input = response.readEntity(InputStream.class);
+            if (!partial) {
+                // the server sent the whole file, so skip what was already downloaded
+                input.skipNBytes(offset);
+            }
+            return input;
+        }
+        response.close();
+        throw new IOException("Downloading " + filename + " failed with status " + response.getStatus());
     }
 
     /**
@@ -195,7 +462,8 @@ public class ServerUtils {
     }
 
     /**
-     *
+     * Attaches a file to a note. The server is first asked whether it already stores the contents,
+     * by their SHA-256 hash, in which case they are linked to the note without being sent again.
      * @param file the file to be uploaded
      * @param noteid the id of the note
      * @param server The server
@@ -204,6 +472,10 @@ public class ServerUtils {
     public boolean uploadFile(File file, long noteid, String server) {
         try{
             Client client = ClientBuilder.newClient(new ClientConfig());
+            if (linkStoredFile(client, file, noteid, server)) {
+                client.close();
+                return true;
+            }
 
             FormDataMultiPart form = new FormDataMultiPart();
             form.field("filename", file.getName());
@@ -230,6 +502,97 @@ public class ServerUtils {
     }
 
 
+    /**
+     * Links a file to a note if the server already stores its contents
+     * @param client the client to send the requests with
+     * @param file the file to be attached
+     * @param noteid the id of the note
+     * @param server The server
+     * @return true if the file was linked, false if it has to be uploaded
+     * @throws IOException if the file cannot be read
+     */
+    private boolean linkStoredFile(Client client, File file, long noteid, String server) throws IOException {
+        String hash = sha256(file);
+        Response head = client.target(server).path("api/files/blobs/" + hash).request().head();
+        head.close();
+        if (head.getStatus() != Response.Status.OK.getStatusCode()) {
+            return false;
+        }
+        Form form = new Form().param("filename", file.getName()).param("hash", hash);
+        Response response = client.target(server).path("api/files/" + noteid + "/link")
+                .request(MediaType.TEXT_PLAIN)
+                .post(Entity.form(form));
+        response.close();
+        // the contents may have been deleted since the check, in which case they are uploaded after all
+        return response.getStatus() == Response.Status.OK.getStatusCode();
+    }
+
+    /**
+     * Computes the hash the server stores the contents of a file under
+     * @param file the file
+     * @return the SHA-256 hash of the file, in hexadecimal
+     * @throws IOException if the file cannot be read
+     */
+    private static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream input = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Sends only the changed fields of a note to the server as a JSON merge patch.
+     * If the version does not match anymore, the server answers 412 Precondition Failed,
+     * which is thrown as a {@link jakarta.ws.rs.WebApplicationException}.
+     *
+     * @param id              id of the note to be patched
+     * @param patch           the new values of the changed fields (title, content, collectionTitle)
+     * @param expectedVersion the version of the note that was edited, or null to patch any version
+     * @param server          The server targeted
+     * @return the patched note
+     */
+    public Note patchNote(long id, Map<String, Object> patch, Long expectedVersion, String server) {
+        var request = ClientBuilder.newClient(new ClientConfig())
+                // HttpURLConnection does not know PATCH
+                .property(HttpUrlConnectorProvider.SET_METHOD_WORKAROUND, true)
+                .target(server).path("api/notes/" + id)
+                .request(APPLICATION_JSON);
+        if (expectedVersion != null) {
+            request = request.header("If-Match", "\"" + expectedVersion + "\"");
+        }
+        return request.method("PATCH", Entity.entity(patch, "application/merge-patch+json"), Note.class);
+    }
+
+    /**
+     * Renames a note on the server. The server also rewrites the [[links]] to the note
+     * in the other notes of its collection.
+     *
+     * If the version does not match anymore, the server answers 412 Precondition Failed,
+     * which is thrown as a {@link jakarta.ws.rs.WebApplicationException}.
+     *
+     * @param id              id of the note to be renamed
+     * @param title           the new title of the note
+     * @param expectedVersion the version of the note that was edited, or null to rename any version
+     * @param server          The server targeted
+     * @return the renamed note followed by the notes whose links were rewritten
+     */
+    public List<Note> renameNote(long id, String title, Long expectedVersion, String server) {
+        var request = ClientBuilder.newClient(new ClientConfig())
+                .target(server).path("api/notes/" + id + "/title")
+                .request(APPLICATION_JSON);
+        if (expectedVersion != null) {
+            request = request.header("If-Match", "\"" + expectedVersion + "\"");
+        }
+        return request.put(Entity.text(title), new GenericType<List<Note>>() {
+        });
+    }
+
     /**
      * Sends a note to the server to be updated.
      *
@@ -239,11 +602,29 @@ public class ServerUtils {
      * @return note updated in the database
      */
     public boolean saveNote(long id, Note note, String server) {
+        return saveNote(id, note, null, server);
+    }
+
+    /**
+     * Sends a note to the server to be updated, only if it was not updated by someone else
+     * since the given version. Otherwise the server answers 412 Precondition Failed,
+     * which is thrown as a {@link jakarta.ws.rs.WebApplicationException}.
+     *
+     * @param id              id of the note to be updated
+     * @param note            new version of the note to be updated in the database
+     * @param expectedVersion the version of the note that was edited, or null to overwrite any version
+     * @param server          The server targeted
+     * @return note updated in the database
+     */
+    public boolean saveNote(long id, Note note, Long expectedVersion, String server) {
         try {
-            ClientBuilder.newClient(new ClientConfig())
+            var request = ClientBuilder.newClient(new ClientConfig())
                     .target(server).path("api/notes/" + id)
-                    .request(APPLICATION_JSON)
-                    .put(Entity.entity(note, APPLICATION_JSON), Note.class);
+                    .request(APPLICATION_JSON);
+            if (expectedVersion != null) {
+                request = request.header("If-Match", "\"" + expectedVersion + "\"");
+            }
+            request.put(Entity.entity(note, APPLICATION_JSON), Note.class);
             return true;
         } catch (ProcessingException e) {
             if (e.getCause() instanceof ConnectException) {
@@ -277,22 +658,59 @@ public class ServerUtils {
 
     /**
      * Retrieves a note from the server by its ID.
+     * A note read before is asked for with its ETag, and read from the cache if the server answers it has not changed.
      *
      * @param id the ID of the note to be retrieved
      * @param server The server targeted
      * @return the {@link Note} object retrieved from the server, or null if not found
      */
     public Note getNoteById(long id, String server) {
+        String key = server + "#" + id;
+        CachedNote cached;
+        synchronized (noteCache) {
+            cached = noteCache.get(key);
+        }
         try {
-            return ClientBuilder.newClient(new ClientConfig())
+            Invocation.Builder request = ClientBuilder.newClient(new ClientConfig())
                     .target(server).path("api/notes/" + id)
-                    .request(APPLICATION_JSON)
-                    .get(Note.class);
+                    .request(APPLICATION_JSON);
+            if (cached != null) {
+                request = request.header("If-None-Match", cached.etag());
+            }
+            try (Response response = request.get()) {
+                if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode() && cached != null) {
+                    return noteMapper.readValue(cached.json(), Note.class);
+                }
+                if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+                    throw new WebApplicationException(response);
+                }
+                String json = response.readEntity(String.class);
+                String etag = response.getHeaderString("ETag");
+                synchronized (noteCache) {
+                    if (etag != null) {
+                        noteCache.put(key, new CachedNote(etag, json));
+                    } else {
+                        noteCache.remove(key);
+                    }
+                }
+                return noteMapper.readValue(json, Note.class);
+            }
         } catch (ProcessingException e) {
             if (e.getCause() instanceof ConnectException) {
                 return null;
             }
+        } catch (JsonProcessingException e) {
+            throw new ProcessingException(e);
         }
         return null;
     }
+
+    /**
+     * The body of a note last read with {@link #getNoteById} and the ETag of that version of the note
+     *
+     * @param etag the ETag the server sent with the note
+     * @param json the note as the server sent it, read again for every caller as they change the notes they get
+     */
+    private record CachedNote(String etag, String json) {
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package client.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import commons.Note;
+import commons.NoteHtml;
 import javafx.application.Platform;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
@@ -30,9 +31,10 @@ public class StompClient extends WebSocketClient {
     @Override
     public void onOpen(ServerHandshake handshake) {
         send("CONNECT\naccept-version:1.2\n\n\0");
-        // Subscribes to the deletion topic and update topic
+        // Subscribes to the deletion topic, update topic and rendered HTML topic
         send("SUBSCRIBE\ndestination:/topic/note-updates\nid:sub-1\n\n\0");
         send("SUBSCRIBE\ndestination:/topic/note-deletions\nid:sub-2\n\n\0");
+        send("SUBSCRIBE\ndestination:/topic/note-html\nid:sub-3\n\n\0");
     }
 
     /**
@@ -73,6 +75,11 @@ public class StompClient extends WebSocketClient {
                         Platform.runLater(() -> {
                             listener.handleNoteDeletion(deletedNote.getId());
                         });
+                    } else if (destination != null && destination.equals("/topic/note-html")) {
+                        NoteHtml noteHtml = objectMapper.readValue(body, NoteHtml.class);
+                        Platform.runLater(() -> {
+                            listener.handleNoteHtml(noteHtml);
+                        });
                     }
                 }
             } else {
@@ -0,0 +1,184 @@
+package client.utils;
+
+import commons.TitleIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An index from the words of texts to the notes containing them, for finding the notes
+ * whose text contains a string, ignoring case.
+ * Every word of the searched string must be part of a word of the text, so the notes are
+ * narrowed down by looking the words up among the distinct words of all notes, and only
+ * the remaining notes are checked for the whole string.
+ * <p>
+ * Notes are added and removed one by one as they change. The index is safe to query from
+ * any thread, but must only be modified from one thread at a time.
+ */
+public class TokenIndex {
+
+    private final Map<Long, String> texts = new HashMap<>();
+    private final Map<String, Set<Long>> notes = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds a note to the index, replacing the text it had before
+     *
+     * @param id   The id of the note
+     * @param text The text of the note
+     */
+    public void put(long id, String text) {
+        String folded = text == null ? "" : TitleIndex.fold(text);
+        lock.writeLock().lock();
+        try {
+            String old = texts.put(id, folded);
+            if (folded.equals(old)) {
+                return;
+            }
+            if (old != null) {
+                unlink(id, old);
+            }
+            for (String word : words(folded)) {
+                notes.computeIfAbsent(word, _ -> new HashSet<>()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a note from the index
+     *
+     * @param id The id of the note
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            String old = texts.remove(id);
+            if (old != null) {
+                unlink(id, old);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unlink(long id, String text) {
+        for (String word : words(text)) {
+            Set<Long> ids = notes.get(word);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                notes.remove(word);
+            }
+        }
+    }
+
+    /**
+     * Removes every note from the index
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            texts.clear();
+            notes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of notes in the index
+     *
+     * @return The number of notes
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return texts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the notes whose text contains the given string, ignoring case
+     *
+     * @param query The string to look for
+     * @return The ids of the matching notes
+     */
+    public Set<Long> find(String query) {
+        String folded = TitleIndex.fold(query);
+        List<String> queryWords = new ArrayList<>(words(folded));
+        // the longest words are part of the fewest words of the notes
+        queryWords.sort((a, b) -> b.length() - a.length());
+
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = null;
+            for (String queryWord : queryWords) {
+                Set<Long> matches = new HashSet<>();
+                for (Map.Entry<String, Set<Long>> entry : notes.entrySet()) {
+                    if (entry.getKey().contains(queryWord)) {
+                        addCandidates(matches, entry.getValue(), candidates);
+                    }
+                }
+                candidates = matches;
+                if (candidates.isEmpty()) {
+                    return candidates;
+                }
+            }
+
+            Set<Long> found = new HashSet<>();
+            for (long id : candidates != null ? candidates : texts.keySet()) {
+                if (texts.get(id).contains(folded)) {
+                    found.add(id);
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the ids to the matches, keeping only those matching the previous words, if any
+     */
+    private static void addCandidates(Set<Long> matches, Set<Long> ids, Set<Long> previous) {
+        if (previous == null) {
+            matches.addAll(ids);
+            return;
+        }
+        for (Long id : ids) {
+            if (previous.contains(id)) {
+                matches.add(id);
+            }
+        }
+    }
+
+    /**
+     * Splits a text into its distinct words, the runs of letters and digits in it
+     *
+     * @param text The text, already folded
+     * @return The words of the text
+     */
+    static Set<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
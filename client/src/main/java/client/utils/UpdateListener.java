@@ -1,6 +1,7 @@
 package client.utils;
 
 import commons.Note;
+import commons.NoteHtml;
 
 public interface UpdateListener {
     /**
@@ -14,4 +15,10 @@ public interface UpdateListener {
      * @param deletedNoteId the id of the deleted note
      */
     public void handleNoteDeletion(Long deletedNoteId);
-}
\ No newline at end of file
+
+    /**
+     * Handles the HTML of a note rendered by the server.
+     * @param noteHtml the rendered HTML, with the revision it was stored under
+     */
+    public void handleNoteHtml(NoteHtml noteHtml);
+}
@@ -0,0 +1,84 @@
+package client.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResumingInputStreamTest {
+
+    private static final byte[] DATA = "The quick brown fox jumps over the lazy dog".getBytes();
+
+    /**
+     * A download that breaks after the given number of bytes
+     */
+    private static InputStream breaking(long offset, int limit) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(DATA, (int) offset, DATA.length)) {
+            private int left = limit;
+
+            @Override
+            public synchronized int read(byte[] buffer, int off, int count) {
+                if (left == 0) {
+                    throw new UncheckedBreak();
+                }
+                int read = super.read(buffer, off, Math.min(count, left));
+                left -= Math.max(read, 0);
+                return read;
+            }
+        };
+    }
+
+    private static final class UncheckedBreak extends RuntimeException {
+    }
+
+    private static InputStream failingAfter(long offset, int limit) {
+        InputStream input = breaking(offset, limit);
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] buffer, int off, int count) throws IOException {
+                try {
+                    return input.read(buffer, off, count);
+                } catch (UncheckedBreak e) {
+                    throw new IOException("connection reset");
+                }
+            }
+        };
+    }
+
+    @Test
+    void read_resumesFromTheLastByteRead() throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        ResumingInputStream input = new ResumingInputStream(offset -> {
+            offsets.add(offset);
+            return failingAfter(offset, 10);
+        });
+
+        assertArrayEquals(DATA, input.readAllBytes());
+        assertEquals(List.of(0L, 10L, 20L, 30L, 40L), offsets);
+        assertEquals(DATA.length, input.getPosition());
+    }
+
+    @Test
+    void read_givesUpWhenNothingCanBeRead() throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        ResumingInputStream input = new ResumingInputStream(offset -> {
+            offsets.add(offset);
+            return failingAfter(offset, offset == 0 ? 5 : 0);
+        });
+
+        assertThrows(IOException.class, input::readAllBytes);
+        assertEquals(ResumingInputStream.MAX_ATTEMPTS, offsets.size());
+        assertEquals(5, input.getPosition());
+    }
+}
@@ -0,0 +1,58 @@
+package client.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenIndexTest {
+
+    private TokenIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TokenIndex();
+        index.put(1, "Milk, eggs and bread");
+        index.put(2, "Pancakes need milk");
+        index.put(3, "Order paper for the office");
+    }
+
+    @Test
+    void find_matchesSubstringsIgnoringCase() {
+        assertEquals(Set.of(1L, 2L), index.find("MILK"));
+        assertEquals(Set.of(2L), index.find("cakes ne"));
+        assertEquals(Set.of(1L), index.find("k, e"));
+        assertEquals(Set.of(), index.find("milk bread"));
+    }
+
+    @Test
+    void find_withoutWordsChecksEveryNote() {
+        assertEquals(Set.of(1L), index.find(", "));
+        assertEquals(Set.of(1L, 2L, 3L), index.find(" "));
+    }
+
+    @Test
+    void put_replacesPreviousText() {
+        index.put(1, "Apples");
+
+        assertEquals(Set.of(2L), index.find("milk"));
+        assertEquals(Set.of(1L), index.find("apple"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void remove_dropsNote() {
+        index.remove(2);
+
+        assertEquals(Set.of(1L), index.find("milk"));
+        assertEquals(Set.of(), index.find("pancakes"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void words_splitsOnNonAlphanumerics() {
+        assertEquals(Set.of("a1", "b", "c"), TokenIndex.words("a1-b, c b"));
+    }
+}
@@ -0,0 +1,85 @@
+package commons;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * The contents of attached files, stored once however many notes attach them.
+ * A blob is keyed by the SHA-256 hash of its bytes, and counts the {@link FileData} references to it;
+ * the bytes are deleted from the blob store when the last reference is removed.
+ */
+@Entity
+public class FileBlob {
+
+    @Id
+    private String hash;
+
+    @Column(name = "file_size")
+    private long size;
+
+    @Column
+    private String storagePath;
+
+    @Column
+    private long referenceCount;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    @SuppressWarnings("unused")
+    public FileBlob() {
+        // for object mappers
+    }
+
+    /**
+     * Constructs a blob
+     *
+     * @param hash           The SHA-256 hash of the bytes, in hexadecimal
+     * @param size           The number of bytes
+     * @param storagePath    The path of the bytes in the blob store
+     * @param referenceCount The number of files with these contents
+     */
+    public FileBlob(String hash, long size, String storagePath, long referenceCount) {
+        this.hash = hash;
+        this.size = size;
+        this.storagePath = storagePath;
+        this.referenceCount = referenceCount;
+    }
+
+    /**
+     * Getter for the hash of the bytes
+     *
+     * @return The SHA-256 hash, in hexadecimal
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Getter for the size of the blob
+     *
+     * @return The number of bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Getter for the path of the bytes
+     *
+     * @return The path in the blob store, relative to its directory
+     */
+    public String getStoragePath() {
+        return storagePath;
+    }
+
+    /**
+     * Getter for the number of references
+     *
+     * @return The number of files with these contents
+     */
+    public long getReferenceCount() {
+        return referenceCount;
+    }
+}
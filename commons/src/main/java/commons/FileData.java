@@ -1,11 +1,17 @@
 package commons;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.Column;
 import jakarta.persistence.EmbeddedId;
 import jakarta.persistence.Entity;
-import jakarta.persistence.Lob;
-import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 
+/**
+ * The metadata of a file attached to a note.
+ * The bytes of the file are not part of it; they are kept in a blob store on the server,
+ * under a path derived from their SHA-256 hash.
+ */
 @Entity
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class FileData {
@@ -13,8 +19,20 @@ public class FileData {
     @EmbeddedId
     private FileCompositeKey id;
 
-    @Lob
-    private byte[] data;
+    @Column
+    private String hash;
+
+    @Column(name = "file_size", columnDefinition = "bigint default 0 not null")
+    private long size;
+
+    @Column
+    private String contentType;
+
+    @Column
+    private String storagePath;
+
+    @Column
+    private Long uploadedAt;
 
     /**
      * Constructor for object mappers
@@ -25,13 +43,30 @@ public class FileData {
     /**
      * Constructor for a FileData object
      * @param filename The name of the file
-     * @param data the binary data of the file
      * @param relatedNoteId the id of the related note
+     * @param hash the SHA-256 hash of the contents, in hexadecimal
+     * @param size the size of the file in bytes
+     * @param contentType the media type of the file
+     * @param storagePath the path of the contents in the blob store
      */
-    @Autowired
-    public FileData(String filename, byte[] data, long relatedNoteId) {
-        this.data = data;
+    public FileData(String filename, long relatedNoteId, String hash, long size, String contentType,
+                    String storagePath) {
         id = new FileCompositeKey(filename, relatedNoteId);
+        this.hash = hash;
+        this.size = size;
+        this.contentType = contentType;
+        this.storagePath = storagePath;
+    }
+
+    /**
+     * Records the upload time of a file saved without one
+     */
+    @PrePersist
+    @PreUpdate
+    public void stampUpload() {
+        if (uploadedAt == null) {
+            uploadedAt = System.currentTimeMillis();
+        }
     }
 
     /**
@@ -68,9 +103,49 @@ public class FileData {
 
     /**
      *
-     * @return The binary data of the file
+     * @return The SHA-256 hash of the contents, in hexadecimal
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     *
+     * @return The size of the file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     *
+     * @return The media type of the file
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     *
+     * @return The path of the contents in the blob store, relative to its directory
+     */
+    public String getStoragePath() {
+        return storagePath;
+    }
+
+    /**
+     *
+     * @return The upload time in epoch milliseconds, or null for files uploaded before it was recorded
+     */
+    public Long getUploadedAt() {
+        return uploadedAt;
+    }
+
+    /**
+     * sets the upload time
+     * @param uploadedAt the upload time in epoch milliseconds
      */
-    public byte[] getData() {
-        return data;
+    public void setUploadedAt(Long uploadedAt) {
+        this.uploadedAt = uploadedAt;
     }
 }
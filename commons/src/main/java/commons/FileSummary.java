@@ -0,0 +1,147 @@
+package commons;
+
+import java.util.Objects;
+
+/**
+ * Lightweight view of a file attached to a note, used for listing the attachments of a note.
+ * It carries what the attachment list shows, but not where the contents are stored.
+ */
+public class FileSummary {
+    private long relatedNoteId;
+    private String fileName;
+    private long size;
+    private String contentType;
+    private String hash;
+    private Long uploadedAt;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    public FileSummary() {
+    }
+
+    /**
+     * Constructs a summary with the given values
+     *
+     * @param relatedNoteId The id of the note the file is attached to
+     * @param fileName      The name of the file
+     * @param size          The size of the file in bytes
+     * @param contentType   The media type of the file
+     * @param hash          The SHA-256 hash of the contents, in hexadecimal
+     * @param uploadedAt    The upload time in epoch milliseconds, or null if unknown
+     */
+    public FileSummary(long relatedNoteId, String fileName, long size, String contentType, String hash,
+                       Long uploadedAt) {
+        this.relatedNoteId = relatedNoteId;
+        this.fileName = fileName;
+        this.size = size;
+        this.contentType = contentType;
+        this.hash = hash;
+        this.uploadedAt = uploadedAt;
+    }
+
+    /**
+     * Getter for the id of the related note
+     *
+     * @return The id of the note the file is attached to
+     */
+    public long getRelatedNoteId() {
+        return relatedNoteId;
+    }
+
+    /**
+     * Getter for the name of the file
+     *
+     * @return The name of the file
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Setter for the name of the file
+     *
+     * @param fileName The new name of the file
+     */
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Getter for the size of the file
+     *
+     * @return The size of the file in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Getter for the media type of the file
+     *
+     * @return The media type of the file
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Getter for the hash of the contents
+     *
+     * @return The SHA-256 hash of the contents, in hexadecimal
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Getter for the upload time
+     *
+     * @return The upload time in epoch milliseconds, or null if unknown
+     */
+    public Long getUploadedAt() {
+        return uploadedAt;
+    }
+
+    /**
+     * Checks if this summary is equal to another object
+     *
+     * @param o The object to compare to
+     * @return True if the two objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        FileSummary that = (FileSummary) o;
+        return relatedNoteId == that.relatedNoteId && size == that.size
+                && Objects.equals(fileName, that.fileName)
+                && Objects.equals(contentType, that.contentType)
+                && Objects.equals(hash, that.hash)
+                && Objects.equals(uploadedAt, that.uploadedAt);
+    }
+
+    /**
+     * Generates a hash code for this summary
+     *
+     * @return The hash code of this summary
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(relatedNoteId, fileName, size, contentType, hash, uploadedAt);
+    }
+
+    /**
+     * Returns a string representation of the summary
+     *
+     * @return The name of the file
+     */
+    @Override
+    public String toString() {
+        return fileName;
+    }
+}
@@ -10,22 +10,42 @@ public class MarkDownMethods {
     private final static HtmlRenderer Htmlrenderer = HtmlRenderer.builder().build();
     private final static MarkdownRenderer MarkRenderer = MarkdownRenderer.builder().build();
     private static final String SERVER = "http://localhost:8080/";
+    private static final RenderCache CACHE = new RenderCache(512);
 
     /**
+     * Renders the content of a note into HTML.
+     * Results are cached by content and note id, so rendering unchanged content again is a lookup.
+     *
      * @param raw The String to parse into HTML
      * @param noteid the id of the note request a string to be parsed
      * @return Returns the parsed HTML
      */
     public static String renderRawTextToText(String raw, long noteid) {
+        return CACHE.get(raw, noteid, () -> render(raw, noteid));
+    }
+
+    /**
+     * Returns the cache used by renderRawTextToText, for its hit and miss statistics
+     *
+     * @return The render cache
+     */
+    public static RenderCache getRenderCache() {
+        return CACHE;
+    }
+
+    private static String render(String raw, long noteid) {
         String[] a1 = raw.split("(\\[\\[embedded]]\\()|(\\))");
         String convertedString = "";
         for(int i = 0; i < a1.length; i += 2){
             convertedString += a1[i];
             if(i < a1.length-1){
+                String url = "http://localhost:8080/api/files/" + noteid + "/" + a1[i+1];
                 if(a1[i+1].matches(".*\\.(png|jpg|jpeg)")){
-                    convertedString += "!";
+                    // images are shown as a thumbnail, linking to the full-size image
+                    convertedString += "[![" + a1[i+1] + "](" + url + "/thumb)](" + url + ")";
+                } else {
+                    convertedString += "[" + a1[i+1] + "](" + url + ")";
                 }
-                convertedString += "[" + a1[i+1] + "](http://localhost:8080/api/files/" + noteid + "/" + a1[i+1] + ")";
             }
         }
 
@@ -9,14 +9,25 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_note_revision", columnList = "revision"),
+        @Index(name = "idx_note_collection_title", columnList = "collection_Title, id")
+})
 public class Note {
 
+    /**
+     * The longest title a note can have, the length of the title column
+     */
+    public static final int MAX_TITLE_LENGTH = 255;
+
+    private static final Pattern LINK_PATTERN = Pattern.compile("\\[\\[(.+?)]]");
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     @Column
     private long id;
 
-    @Column
+    @Column(length = MAX_TITLE_LENGTH)
     private String title;
 
     @Column(columnDefinition = "TEXT")
@@ -33,6 +44,16 @@ public class Note {
     @Column(name = "collection_Title")
     private String collectionTitle;
 
+    @Column
+    private Long lastModified;
+
+    @Column
+    private Long revision;
+
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
+
     /**
      * Default constructor required for object mappers
      */
@@ -87,6 +108,23 @@ public class Note {
         }
     }
 
+    /**
+     * Extracts the titles of all notes linked from the content through [[Title]]
+     *
+     * @return The linked titles, as written in the content
+     */
+    public Set<String> extractLinkedTitles() {
+        Set<String> titles = new HashSet<>();
+        if (content == null) {
+            return titles;
+        }
+        Matcher matcher = LINK_PATTERN.matcher(content);
+        while (matcher.find()) {
+            titles.add(matcher.group(1));
+        }
+        return titles;
+    }
+
     /**
      * Renders the raw Text currently in content into HTML
      * @param noteid
@@ -96,6 +134,15 @@ public class Note {
         this.html = MarkDownMethods.renderRawTextToText(content, noteid);
     }
 
+    /**
+     * Stamps the note with the current time whenever it is inserted or updated
+     */
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        lastModified = System.currentTimeMillis();
+    }
+
     /**
      * Getter for the title of the note
      *
@@ -179,6 +226,16 @@ public class Note {
         renderRawText(id);
     }
 
+    /**
+     * Sets the content of the note without rendering it.
+     * Used when the HTML is rendered later, e.g. by the server after the note is saved.
+     *
+     * @param content String containing the raw content
+     */
+    public void setRawContent(String content) {
+        this.content = content;
+    }
+
     /**
      * Sets the html independently of content
      *
@@ -197,6 +254,61 @@ public class Note {
         this.id = id;
     }
 
+    /**
+     * Returns when the note was last saved on the server
+     *
+     * @return The last modification time in epoch milliseconds, or null if the note was never saved
+     */
+    public Long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Sets when the note was last saved on the server
+     *
+     * @param lastModified The last modification time in epoch milliseconds
+     */
+    public void setLastModified(Long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns the revision at which the note was last saved on the server
+     *
+     * @return The revision, or null if the note was not saved since revisions were introduced
+     */
+    public Long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Sets the revision at which the note was last saved on the server
+     *
+     * @param revision The revision
+     */
+    public void setRevision(Long revision) {
+        this.revision = revision;
+    }
+
+    /**
+     * Returns the version of the note, which the server increments on every update.
+     * Used to detect concurrent updates and to build the ETag of the note.
+     *
+     * @return The version of the note
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the note
+     *
+     * @param version The version of the note
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /**
      * Sets the collection that the note belongs to
      *
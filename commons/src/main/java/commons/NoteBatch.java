@@ -0,0 +1,129 @@
+package commons;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of note writes that the server applies in a single transaction.
+ * Either all of them succeed or none of them do.
+ */
+public class NoteBatch {
+    @JsonDeserialize(contentUsing = RawContentDeserializer.class)
+    private List<Note> creates;
+    @JsonDeserialize(contentUsing = RawContentDeserializer.class)
+    private List<Note> updates;
+    private List<Long> deletes;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    public NoteBatch() {
+        creates = new ArrayList<>();
+        updates = new ArrayList<>();
+        deletes = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a batch with the given writes
+     *
+     * @param creates The notes to create
+     * @param updates The notes to update, identified by their id
+     * @param deletes The ids of the notes to delete
+     */
+    public NoteBatch(List<Note> creates, List<Note> updates, List<Long> deletes) {
+        this.creates = creates;
+        this.updates = updates;
+        this.deletes = deletes;
+    }
+
+    /**
+     * Getter for the notes to create
+     *
+     * @return The notes to create
+     */
+    public List<Note> getCreates() {
+        return creates;
+    }
+
+    /**
+     * Setter for the notes to create
+     *
+     * @param creates The notes to create
+     */
+    public void setCreates(List<Note> creates) {
+        this.creates = creates;
+    }
+
+    /**
+     * Getter for the notes to update
+     *
+     * @return The notes to update, identified by their id
+     */
+    public List<Note> getUpdates() {
+        return updates;
+    }
+
+    /**
+     * Setter for the notes to update
+     *
+     * @param updates The notes to update, identified by their id
+     */
+    public void setUpdates(List<Note> updates) {
+        this.updates = updates;
+    }
+
+    /**
+     * Getter for the ids of the notes to delete
+     *
+     * @return The ids of the notes to delete
+     */
+    public List<Long> getDeletes() {
+        return deletes;
+    }
+
+    /**
+     * Setter for the ids of the notes to delete
+     *
+     * @param deletes The ids of the notes to delete
+     */
+    public void setDeletes(List<Long> deletes) {
+        this.deletes = deletes;
+    }
+
+    /**
+     * Returns the number of writes in this batch
+     *
+     * @return The number of creates, updates and deletes together
+     */
+    public int size() {
+        return creates.size() + updates.size() + deletes.size();
+    }
+
+    /**
+     * Reads the notes of a batch without rendering their content.
+     * A note read by an object mapper renders its content through {@link Note#setContent(String)},
+     * which the server would do once per note on the request thread, only to render the saved notes again.
+     */
+    static final class RawContentDeserializer extends StdDeserializer<Note> {
+        private static final ObjectMapper MAPPER = new ObjectMapper()
+                .addMixIn(Note.class, RawNoteContent.class)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        RawContentDeserializer() {
+            super(Note.class);
+        }
+
+        @Override
+        public Note deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return MAPPER.readValue(parser, Note.class);
+        }
+    }
+}
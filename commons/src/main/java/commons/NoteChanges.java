@@ -0,0 +1,119 @@
+package commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes made to the notes on the server since a given revision.
+ * Clients keep the returned revision and pass it back on their next sync.
+ */
+public class NoteChanges {
+    private long revision;
+    private List<Note> notes;
+    private List<Long> deletedIds;
+    private boolean hasMore;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    public NoteChanges() {
+        notes = new ArrayList<>();
+        deletedIds = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a set of changes
+     *
+     * @param revision   The revision the client is up to date with after applying these changes
+     * @param notes      The notes that were created or updated
+     * @param deletedIds The ids of the notes that were deleted
+     * @param hasMore    True if there are more changes after this revision
+     */
+    public NoteChanges(long revision, List<Note> notes, List<Long> deletedIds, boolean hasMore) {
+        this.revision = revision;
+        this.notes = notes;
+        this.deletedIds = deletedIds;
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Getter for the revision
+     *
+     * @return The revision the client is up to date with after applying these changes
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Setter for the revision
+     *
+     * @param revision The revision the client is up to date with after applying these changes
+     */
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    /**
+     * Getter for the created or updated notes
+     *
+     * @return The notes that were created or updated, ordered by revision
+     */
+    public List<Note> getNotes() {
+        return notes;
+    }
+
+    /**
+     * Setter for the created or updated notes
+     *
+     * @param notes The notes that were created or updated
+     */
+    public void setNotes(List<Note> notes) {
+        this.notes = notes;
+    }
+
+    /**
+     * Getter for the deleted note ids
+     *
+     * @return The ids of the notes that were deleted
+     */
+    public List<Long> getDeletedIds() {
+        return deletedIds;
+    }
+
+    /**
+     * Setter for the deleted note ids
+     *
+     * @param deletedIds The ids of the notes that were deleted
+     */
+    public void setDeletedIds(List<Long> deletedIds) {
+        this.deletedIds = deletedIds;
+    }
+
+    /**
+     * Getter for hasMore
+     *
+     * @return True if there are more changes after this revision
+     */
+    public boolean getHasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Setter for hasMore
+     *
+     * @param hasMore True if there are more changes after this revision
+     */
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    /**
+     * Checks whether anything changed
+     *
+     * @return True if a note was created, updated or deleted
+     */
+    public boolean hasChanges() {
+        return !notes.isEmpty() || !deletedIds.isEmpty();
+    }
+}
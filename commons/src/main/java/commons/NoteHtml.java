@@ -0,0 +1,58 @@
+package commons;
+
+/**
+ * The HTML of a note, published by the server once the markdown of a saved note has been rendered.
+ */
+public class NoteHtml {
+    private long noteId;
+    private long revision;
+    private String html;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    @SuppressWarnings("unused")
+    public NoteHtml() {
+        // for object mappers
+    }
+
+    /**
+     * Constructs the rendered HTML of a note
+     *
+     * @param noteId   The id of the note
+     * @param revision The revision of the note the HTML was rendered from
+     * @param html     The rendered HTML
+     */
+    public NoteHtml(long noteId, long revision, String html) {
+        this.noteId = noteId;
+        this.revision = revision;
+        this.html = html;
+    }
+
+    /**
+     * Getter for the id of the note
+     *
+     * @return The id of the note
+     */
+    public long getNoteId() {
+        return noteId;
+    }
+
+    /**
+     * Getter for the revision the HTML was rendered from
+     *
+     * @return The revision of the note
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Getter for the rendered HTML
+     *
+     * @return The HTML of the note
+     */
+    public String getHtml() {
+        return html;
+    }
+}
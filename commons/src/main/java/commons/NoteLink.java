@@ -0,0 +1,81 @@
+package commons;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.util.Locale;
+
+/**
+ * Records that a note links to a title through [[Title]].
+ * The server keeps one link per (note, title) pair, so the notes referencing
+ * a title can be found without reading the content of every note.
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_note_link_target", columnList = "targetTitle"),
+        @Index(name = "idx_note_link_source", columnList = "sourceId")
+})
+public class NoteLink {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private long id;
+
+    @Column
+    private long sourceId;
+
+    @Column(length = Note.MAX_TITLE_LENGTH)
+    private String targetTitle;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    @SuppressWarnings("unused")
+    public NoteLink() {
+        // for object mappers
+    }
+
+    /**
+     * Constructs a link from a note to a title
+     *
+     * @param sourceId    The id of the note containing the link
+     * @param targetTitle The linked title, in any case
+     */
+    public NoteLink(long sourceId, String targetTitle) {
+        this.sourceId = sourceId;
+        this.targetTitle = normalize(targetTitle);
+    }
+
+    /**
+     * Normalizes a title the way links are matched, since links are case-insensitive
+     *
+     * @param title The title
+     * @return The lowercase title
+     */
+    public static String normalize(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Getter for the id of the note containing the link
+     *
+     * @return The id of the source note
+     */
+    public long getSourceId() {
+        return sourceId;
+    }
+
+    /**
+     * Getter for the linked title
+     *
+     * @return The normalized linked title
+     */
+    public String getTargetTitle() {
+        return targetTitle;
+    }
+}
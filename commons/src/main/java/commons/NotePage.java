@@ -0,0 +1,77 @@
+package commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of notes returned by the cursor-paginated note listing.
+ * The cursor is the id of the last note in the page; passing it back as
+ * "after" returns the next page. A null cursor means there are no more notes.
+ */
+public class NotePage {
+    private List<Note> notes;
+    private Long nextCursor;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    public NotePage() {
+        notes = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a page with the given notes and cursor
+     *
+     * @param notes      The notes in this page, ordered by id
+     * @param nextCursor The cursor of the next page, or null if this is the last page
+     */
+    public NotePage(List<Note> notes, Long nextCursor) {
+        this.notes = notes;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Getter for the notes in this page
+     *
+     * @return The notes, ordered by id
+     */
+    public List<Note> getNotes() {
+        return notes;
+    }
+
+    /**
+     * Setter for the notes in this page
+     *
+     * @param notes The notes, ordered by id
+     */
+    public void setNotes(List<Note> notes) {
+        this.notes = notes;
+    }
+
+    /**
+     * Getter for the cursor of the next page
+     *
+     * @return The id to pass as "after" for the next page, or null if this is the last page
+     */
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Setter for the cursor of the next page
+     *
+     * @param nextCursor The id to pass as "after" for the next page, or null if this is the last page
+     */
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Checks whether there is a page after this one
+     *
+     * @return True if another page can be requested, false otherwise
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
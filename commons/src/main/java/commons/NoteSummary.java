@@ -0,0 +1,183 @@
+package commons;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Lightweight view of a note used for listing.
+ * It carries everything the note list needs, but not the content or the rendered HTML.
+ */
+public class NoteSummary {
+    private long id;
+    private String title;
+    private String collectionTitle;
+    private Set<String> tags;
+    private Long lastModified;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    public NoteSummary() {
+        tags = new HashSet<>();
+    }
+
+    /**
+     * Constructs a summary with the given values
+     *
+     * @param id              The id of the note
+     * @param title           The title of the note
+     * @param collectionTitle The title of the collection the note belongs to
+     * @param tags            The tags of the note
+     * @param lastModified    The last modification time in epoch milliseconds
+     */
+    public NoteSummary(long id, String title, String collectionTitle, Set<String> tags, Long lastModified) {
+        this.id = id;
+        this.title = title;
+        this.collectionTitle = collectionTitle;
+        this.tags = tags;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Getter for the id of the note
+     *
+     * @return The id of the note
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Setter for the id of the note
+     *
+     * @param id The id of the note
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Getter for the title of the note
+     *
+     * @return The title of the note
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Setter for the title of the note
+     *
+     * @param title The title of the note
+     */
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Getter for the collection title of the note
+     *
+     * @return The title of the collection the note belongs to
+     */
+    public String getCollectionTitle() {
+        return collectionTitle;
+    }
+
+    /**
+     * Setter for the collection title of the note
+     *
+     * @param collectionTitle The title of the collection the note belongs to
+     */
+    public void setCollectionTitle(String collectionTitle) {
+        this.collectionTitle = collectionTitle;
+    }
+
+    /**
+     * Getter for the tags of the note
+     *
+     * @return The tags of the note
+     */
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    /**
+     * Setter for the tags of the note
+     *
+     * @param tags The tags of the note
+     */
+    public void setTags(Set<String> tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * Getter for the last modification time of the note
+     *
+     * @return The last modification time in epoch milliseconds, or null if unknown
+     */
+    public Long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Setter for the last modification time of the note
+     *
+     * @param lastModified The last modification time in epoch milliseconds
+     */
+    public void setLastModified(Long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Checks whether this summary still describes the given note,
+     * meaning the note has not been modified since the summary was made.
+     *
+     * @param note The note to compare against
+     * @return True if the ids and modification times match
+     */
+    public boolean matches(Note note) {
+        return note != null && note.getId() == id && Objects.equals(note.getLastModified(), lastModified);
+    }
+
+    /**
+     * Checks if this summary is equal to another object
+     *
+     * @param o The object to compare to
+     * @return True if the two objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        NoteSummary that = (NoteSummary) o;
+        return id == that.id && Objects.equals(title, that.title)
+                && Objects.equals(collectionTitle, that.collectionTitle)
+                && Objects.equals(tags, that.tags)
+                && Objects.equals(lastModified, that.lastModified);
+    }
+
+    /**
+     * Generates a hash code for this summary
+     *
+     * @return The hash code of this summary
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, collectionTitle, tags, lastModified);
+    }
+
+    /**
+     * Returns a string representation of the summary
+     *
+     * @return The title of the note
+     */
+    @Override
+    public String toString() {
+        return title;
+    }
+}
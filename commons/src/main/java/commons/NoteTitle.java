@@ -0,0 +1,114 @@
+package commons;
+
+import java.util.Objects;
+
+/**
+ * The id, title and collection of a note, as returned by title lookups
+ */
+public class NoteTitle {
+    private long id;
+    private String title;
+    private String collectionTitle;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    public NoteTitle() {
+    }
+
+    /**
+     * Constructs a note title with the given values
+     *
+     * @param id              The id of the note
+     * @param title           The title of the note
+     * @param collectionTitle The title of the collection of the note
+     */
+    public NoteTitle(long id, String title, String collectionTitle) {
+        this.id = id;
+        this.title = title;
+        this.collectionTitle = collectionTitle;
+    }
+
+    /**
+     * Getter for the id of the note
+     *
+     * @return The id of the note
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Setter for the id of the note
+     *
+     * @param id The id of the note
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Getter for the title of the note
+     *
+     * @return The title of the note
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Setter for the title of the note
+     *
+     * @param title The title of the note
+     */
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Getter for the title of the collection of the note
+     *
+     * @return The title of the collection
+     */
+    public String getCollectionTitle() {
+        return collectionTitle;
+    }
+
+    /**
+     * Setter for the title of the collection of the note
+     *
+     * @param collectionTitle The title of the collection
+     */
+    public void setCollectionTitle(String collectionTitle) {
+        this.collectionTitle = collectionTitle;
+    }
+
+    /**
+     * Checks if this note title is equal to another object
+     *
+     * @param o The object to compare to
+     * @return True if the two objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        NoteTitle that = (NoteTitle) o;
+        return id == that.id && Objects.equals(title, that.title)
+                && Objects.equals(collectionTitle, that.collectionTitle);
+    }
+
+    /**
+     * Generates a hash code for this note title
+     *
+     * @return The hash code of this note title
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, collectionTitle);
+    }
+}
@@ -0,0 +1,59 @@
+package commons;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Records that a note was deleted, and at which revision.
+ * Tombstones let clients that sync through the change feed learn about deletions.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_note_tombstone_revision", columnList = "revision"))
+public class NoteTombstone {
+
+    @Id
+    private long noteId;
+
+    @Column
+    private long revision;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    @SuppressWarnings("unused")
+    public NoteTombstone() {
+        // for object mappers
+    }
+
+    /**
+     * Constructs a tombstone for a deleted note
+     *
+     * @param noteId   The id of the deleted note
+     * @param revision The revision at which the note was deleted
+     */
+    public NoteTombstone(long noteId, long revision) {
+        this.noteId = noteId;
+        this.revision = revision;
+    }
+
+    /**
+     * Getter for the id of the deleted note
+     *
+     * @return The id of the deleted note
+     */
+    public long getNoteId() {
+        return noteId;
+    }
+
+    /**
+     * Getter for the revision of the deletion
+     *
+     * @return The revision at which the note was deleted
+     */
+    public long getRevision() {
+        return revision;
+    }
+}
@@ -0,0 +1,19 @@
+package commons;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+
+/**
+ * Jackson mix-in for {@link Note} that reads the content of a note with {@link Note#setRawContent(String)},
+ * so deserializing a note does not render its markdown. Used where the HTML is rendered later,
+ * such as on the server, which renders notes after they are saved.
+ */
+public abstract class RawNoteContent {
+
+    /**
+     * Maps the content of a note to {@link Note#setRawContent(String)}
+     *
+     * @param content The raw content
+     */
+    @JsonSetter("content")
+    abstract void setRawContent(String content);
+}
@@ -0,0 +1,139 @@
+package commons;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A size-bounded, least recently used cache of rendered HTML.
+ * Entries are keyed by the SHA-256 hash of the raw content together with the id of the note,
+ * since the id ends up in the links to embedded files.
+ * Only the hash is kept, so large notes do not stay in memory twice.
+ */
+public class RenderCache {
+    private final int capacity;
+    private final Map<String, String> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs an empty cache
+     *
+     * @param capacity The maximum number of rendered notes to keep
+     */
+    public RenderCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > RenderCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached HTML for the given content, rendering and storing it on a miss.
+     * The renderer runs outside the lock, so two threads missing on the same content
+     * may both render it; the result is the same either way.
+     *
+     * @param raw      The raw content
+     * @param noteId   The id of the note the content belongs to
+     * @param renderer Renders the content when it is not cached
+     * @return The rendered HTML
+     */
+    public String get(String raw, long noteId, Supplier<String> renderer) {
+        String key = keyOf(raw, noteId);
+        String html;
+        synchronized (entries) {
+            html = entries.get(key);
+        }
+        if (html != null) {
+            hits.incrementAndGet();
+            return html;
+        }
+        misses.incrementAndGet();
+        html = renderer.get();
+        synchronized (entries) {
+            entries.put(key, html);
+        }
+        return html;
+    }
+
+    /**
+     * Returns the number of lookups that were answered from the cache
+     *
+     * @return The number of hits
+     */
+    public long hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that had to render the content
+     *
+     * @return The number of misses
+     */
+    public long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the fraction of lookups that were answered from the cache
+     *
+     * @return The hit rate between 0 and 1, or 0 if nothing was looked up yet
+     */
+    public double hitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Returns the number of rendered notes currently cached
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the maximum number of rendered notes this cache keeps
+     *
+     * @return The capacity
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes all entries and resets the statistics
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private static String keyOf(String raw, long noteId) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(raw.getBytes(StandardCharsets.UTF_8));
+            return noteId + ":" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
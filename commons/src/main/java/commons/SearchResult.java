@@ -0,0 +1,155 @@
+package commons;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A note matching a search query, with the score it was ranked by.
+ * Results of content searches also carry a snippet of the content around the matches,
+ * with the offsets of the matched words in it.
+ */
+public class SearchResult {
+    private long id;
+    private String title;
+    private double score;
+    private String snippet;
+    private int[] highlights;
+
+    /**
+     * Default constructor required for object mappers
+     */
+    public SearchResult() {
+    }
+
+    /**
+     * Constructs a search result with the given values
+     *
+     * @param id    The id of the note
+     * @param title The title of the note
+     * @param score The relevance of the note to the query, higher is better
+     */
+    public SearchResult(long id, String title, double score) {
+        this.id = id;
+        this.title = title;
+        this.score = score;
+    }
+
+    /**
+     * Getter for the id of the note
+     *
+     * @return The id of the note
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Setter for the id of the note
+     *
+     * @param id The id of the note
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Getter for the title of the note
+     *
+     * @return The title of the note
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Setter for the title of the note
+     *
+     * @param title The title of the note
+     */
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Getter for the relevance of the note to the query
+     *
+     * @return The score, higher is better
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Setter for the relevance of the note to the query
+     *
+     * @param score The score, higher is better
+     */
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    /**
+     * Getter for the part of the content around the matches
+     *
+     * @return The snippet, or null if the result has none
+     */
+    public String getSnippet() {
+        return snippet;
+    }
+
+    /**
+     * Setter for the part of the content around the matches
+     *
+     * @param snippet The snippet, or null if the result has none
+     */
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    /**
+     * Getter for the positions of the matched words in the snippet
+     *
+     * @return The start and end offsets of every match, one after the other, or null if the result has no snippet
+     */
+    public int[] getHighlights() {
+        return highlights;
+    }
+
+    /**
+     * Setter for the positions of the matched words in the snippet
+     *
+     * @param highlights The start and end offsets of every match, one after the other
+     */
+    public void setHighlights(int[] highlights) {
+        this.highlights = highlights;
+    }
+
+    /**
+     * Checks if this search result is equal to another object
+     *
+     * @param o The object to compare to
+     * @return True if the two objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        SearchResult that = (SearchResult) o;
+        return id == that.id && Double.compare(score, that.score) == 0 && Objects.equals(title, that.title)
+                && Objects.equals(snippet, that.snippet) && Arrays.equals(highlights, that.highlights);
+    }
+
+    /**
+     * Generates a hash code for this search result
+     *
+     * @return The hash code of this search result
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, score, snippet) * 31 + Arrays.hashCode(highlights);
+    }
+}
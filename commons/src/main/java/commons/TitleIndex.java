@@ -0,0 +1,129 @@
+package commons;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * An index of note titles, ignoring case, for resolving [[links]] and completing titles.
+ * The titles are kept sorted, so finding a title or the titles starting with a prefix
+ * takes a logarithmic search followed by a walk over the matches only.
+ * <p>
+ * Not safe for use by multiple threads.
+ *
+ * @param <T> The type of the values stored with the titles
+ */
+public class TitleIndex<T> {
+
+    private final NavigableMap<Key, T> entries = new TreeMap<>();
+    private final Map<Long, Key> keys = new HashMap<>();
+
+    /**
+     * Returns the form titles are compared in
+     *
+     * @param title The title
+     * @return The title in lower case
+     */
+    public static String fold(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds a note to the index, replacing the title it had before
+     *
+     * @param id    The id of the note
+     * @param title The title of the note
+     * @param value The value to return for the note
+     */
+    public void put(long id, String title, T value) {
+        remove(id);
+        if (title == null) {
+            return;
+        }
+        Key key = new Key(fold(title), id);
+        keys.put(id, key);
+        entries.put(key, value);
+    }
+
+    /**
+     * Removes a note from the index
+     *
+     * @param id The id of the note
+     */
+    public void remove(long id) {
+        Key key = keys.remove(id);
+        if (key != null) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes every note from the index
+     */
+    public void clear() {
+        keys.clear();
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of notes in the index
+     *
+     * @return The number of notes
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Finds the notes with the given title, ignoring case
+     *
+     * @param title The title to look for
+     * @return The values of the matching notes, in increasing order of id
+     */
+    public List<T> find(String title) {
+        String folded = fold(title);
+        return new ArrayList<>(entries.subMap(new Key(folded, Long.MIN_VALUE), true,
+                new Key(folded, Long.MAX_VALUE), true).values());
+    }
+
+    /**
+     * Finds the notes whose title starts with the given prefix, ignoring case
+     *
+     * @param prefix The start of the titles to look for
+     * @param limit  The maximum number of notes to return
+     * @param filter The condition the returned values have to meet
+     * @return The values of the matching notes, in alphabetical order of title
+     */
+    public List<T> startingWith(String prefix, int limit, Predicate<T> filter) {
+        String folded = fold(prefix);
+        List<T> matches = new ArrayList<>(Math.min(limit, 16));
+        for (Map.Entry<Key, T> entry : entries.tailMap(new Key(folded, Long.MIN_VALUE), true).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().title().startsWith(folded)) {
+                break;
+            }
+            if (filter.test(entry.getValue())) {
+                matches.add(entry.getValue());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * The position of a note in the index: its folded title, then its id
+     *
+     * @param title The folded title
+     * @param id    The id of the note
+     */
+    private record Key(String title, long id) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int comparison = title.compareTo(other.title);
+            return comparison != 0 ? comparison : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileBlobTest {
+
+    @Test
+    void constructor_initializesFieldsCorrectly() {
+        FileBlob blob = new FileBlob("ab12", 3, "ab/12/ab12", 2);
+
+        assertEquals("ab12", blob.getHash());
+        assertEquals(3, blob.getSize());
+        assertEquals("ab/12/ab12", blob.getStoragePath());
+        assertEquals(2, blob.getReferenceCount());
+    }
+}
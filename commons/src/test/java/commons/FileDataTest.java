@@ -5,47 +5,54 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class FileDataTest {
 
+    private static FileData fileData() {
+        return new FileData("file.txt", 1L, "ab12", 3, "text/plain", "ab/12/ab12");
+    }
+
     @Test
     void constructor_initializesFieldsCorrectly() {
-        byte[] data = {1, 2, 3};
-        FileData fileData = new FileData("file.txt", data, 1L);
+        FileData fileData = fileData();
 
         assertEquals("file.txt", fileData.getFileName());
-        assertArrayEquals(data, fileData.getData());
         assertEquals(1L, fileData.getRelatedNoteId());
+        assertEquals("ab12", fileData.getHash());
+        assertEquals(3, fileData.getSize());
+        assertEquals("text/plain", fileData.getContentType());
+        assertEquals("ab/12/ab12", fileData.getStoragePath());
     }
 
     @Test
     void getFileName_returnsCorrectFilename() {
-        FileData fileData = new FileData("file.txt", new byte[]{}, 1L);
-        assertEquals("file.txt", fileData.getFileName());
+        assertEquals("file.txt", fileData().getFileName());
     }
 
     @Test
     void getRelatedNoteId_returnsCorrectId() {
-        FileData fileData = new FileData("file.txt", new byte[]{}, 1L);
-        assertEquals(1L, fileData.getRelatedNoteId());
-    }
-
-    @Test
-    void getData_returnsCorrectData() {
-        byte[] data = {1, 2, 3};
-        FileData fileData = new FileData("file.txt", data, 1L);
-        assertArrayEquals(data, fileData.getData());
+        assertEquals(1L, fileData().getRelatedNoteId());
     }
 
     @Test
     void setFileName_updatesFilename() {
-        FileData fileData = new FileData("file.txt", new byte[]{}, 1L);
+        FileData fileData = fileData();
         fileData.setFileName("newfile.txt");
         assertEquals("newfile.txt", fileData.getFileName());
     }
 
+    @Test
+    void stampUpload_keepsAnExistingUploadTime() {
+        FileData fileData = fileData();
+        fileData.stampUpload();
+        assertNotNull(fileData.getUploadedAt());
+
+        fileData.setUploadedAt(100L);
+        fileData.stampUpload();
+        assertEquals(100L, fileData.getUploadedAt());
+    }
+
     @Test
     void getId_returnsCorrectId() {
-        FileData fileData = new FileData("file.txt", new byte[]{}, 1L);
-        FileCompositeKey id = fileData.getId();
+        FileCompositeKey id = fileData().getId();
         assertEquals("file.txt", id.getFilename());
         assertEquals(1L, id.getRelatedNoteId());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileSummaryTest {
+
+    @Test
+    void constructor_initializesFields() {
+        FileSummary summary = new FileSummary(1L, "file.txt", 3, "text/plain", "ab12", 10L);
+        assertEquals(1L, summary.getRelatedNoteId());
+        assertEquals("file.txt", summary.getFileName());
+        assertEquals(3, summary.getSize());
+        assertEquals("text/plain", summary.getContentType());
+        assertEquals("ab12", summary.getHash());
+        assertEquals(10L, summary.getUploadedAt());
+    }
+
+    @Test
+    void setFileName_updatesFileName() {
+        FileSummary summary = new FileSummary(1L, "file.txt", 3, "text/plain", "ab12", 10L);
+        summary.setFileName("renamed.txt");
+        assertEquals("renamed.txt", summary.getFileName());
+        assertEquals("renamed.txt", summary.toString());
+    }
+
+    @Test
+    void equalsAndHashCode_useAllFields() {
+        FileSummary a = new FileSummary(1L, "file.txt", 3, "text/plain", "ab12", 10L);
+        FileSummary b = new FileSummary(1L, "file.txt", 3, "text/plain", "ab12", 10L);
+        FileSummary c = new FileSummary(1L, "file.txt", 3, "text/plain", "cd34", 10L);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, c);
+    }
+}
@@ -19,6 +19,18 @@ public class MarkDownTest {
         assertEquals(processedText, MarkDownMethods.renderRawTextToText(rawText, 0));
     }
 
+    /**
+     * Tests that embedded images are rendered as thumbnails linking to the full-size image,
+     * and other embedded files as links.
+     */
+    @Test
+    public void embeddedFilesRenderAsThumbnailsAndLinks() {
+        String html = MarkDownMethods.renderRawTextToText("[[embedded]](cat.png) [[embedded]](notes.pdf)", 3);
+        assertEquals("<p><a href=\"http://localhost:8080/api/files/3/cat.png\">"
+                + "<img src=\"http://localhost:8080/api/files/3/cat.png/thumb\" alt=\"cat.png\" /></a> "
+                + "<a href=\"http://localhost:8080/api/files/3/notes.pdf\">notes.pdf</a></p>\n", html);
+    }
+
     /**
      * Tests the conversion of raw markdown text to a node and back to text.
      * This method ensures that the text remains consistent after being processed
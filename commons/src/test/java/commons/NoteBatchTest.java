@@ -0,0 +1,40 @@
+package commons;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteBatchTest {
+
+    @Test
+    void size_countsAllWrites() {
+        NoteBatch batch = new NoteBatch(List.of(new Note("A", "a")), List.of(), List.of(1L, 2L));
+        assertEquals(3, batch.size());
+    }
+
+    @Test
+    void deserialization_doesNotRenderNotes() throws Exception {
+        NoteBatch batch = new ObjectMapper().readValue("{\"creates\":[{\"title\":\"A\",\"content\":\"# New\"}],"
+                + "\"updates\":[{\"id\":3,\"content\":\"# Changed\",\"html\":\"<p>sent</p>\",\"unknown\":1}],"
+                + "\"deletes\":[4]}", NoteBatch.class);
+
+        Note create = batch.getCreates().getFirst();
+        assertEquals("# New", create.getContent());
+        assertNull(create.getHTML());
+        Note update = batch.getUpdates().getFirst();
+        assertEquals(3L, update.getId());
+        assertEquals("# Changed", update.getContent());
+        assertEquals("<p>sent</p>", update.getHTML());
+        assertEquals(List.of(4L), batch.getDeletes());
+    }
+
+    @Test
+    void deserialization_ofNoteStillRenders() throws Exception {
+        Note note = new ObjectMapper().readValue("{\"content\":\"# New\"}", Note.class);
+        assertEquals("# New", note.getContent());
+        assertNotNull(note.getHTML());
+    }
+}
@@ -0,0 +1,48 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteChangesTest {
+
+    @Test
+    void defaultConstructor_hasNoChanges() {
+        NoteChanges changes = new NoteChanges();
+        assertFalse(changes.hasChanges());
+        assertFalse(changes.getHasMore());
+        assertEquals(0L, changes.getRevision());
+    }
+
+    @Test
+    void constructor_initializesFields() {
+        Note note = new Note("Title", "Content");
+        NoteChanges changes = new NoteChanges(5L, List.of(note), List.of(2L), true);
+        assertEquals(5L, changes.getRevision());
+        assertEquals(List.of(note), changes.getNotes());
+        assertEquals(List.of(2L), changes.getDeletedIds());
+        assertTrue(changes.getHasMore());
+        assertTrue(changes.hasChanges());
+    }
+
+    @Test
+    void hasChanges_isTrueForDeletionsOnly() {
+        NoteChanges changes = new NoteChanges(5L, List.of(), List.of(2L), false);
+        assertTrue(changes.hasChanges());
+    }
+
+    @Test
+    void setters_updateFields() {
+        NoteChanges changes = new NoteChanges();
+        changes.setRevision(3L);
+        changes.setNotes(List.of(new Note()));
+        changes.setDeletedIds(List.of(1L));
+        changes.setHasMore(true);
+        assertEquals(3L, changes.getRevision());
+        assertEquals(1, changes.getNotes().size());
+        assertEquals(List.of(1L), changes.getDeletedIds());
+        assertTrue(changes.getHasMore());
+    }
+}
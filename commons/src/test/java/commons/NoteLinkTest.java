@@ -0,0 +1,20 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NoteLinkTest {
+
+    @Test
+    void constructor_normalizesTitle() {
+        NoteLink link = new NoteLink(3L, "My Note");
+        assertEquals(3L, link.getSourceId());
+        assertEquals("my note", link.getTargetTitle());
+    }
+
+    @Test
+    void normalize_lowercasesTitle() {
+        assertEquals("title", NoteLink.normalize("TiTlE"));
+    }
+}
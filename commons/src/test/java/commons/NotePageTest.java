@@ -0,0 +1,36 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NotePageTest {
+
+    @Test
+    void defaultConstructor_createsEmptyLastPage() {
+        NotePage page = new NotePage();
+        assertTrue(page.getNotes().isEmpty());
+        assertNull(page.getNextCursor());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void constructor_setsNotesAndCursor() {
+        Note note = new Note("Title", "Content");
+        NotePage page = new NotePage(List.of(note), 4L);
+        assertEquals(List.of(note), page.getNotes());
+        assertEquals(4L, page.getNextCursor());
+        assertTrue(page.hasNext());
+    }
+
+    @Test
+    void setters_updateFields() {
+        NotePage page = new NotePage();
+        page.setNotes(List.of(new Note()));
+        page.setNextCursor(2L);
+        assertEquals(1, page.getNotes().size());
+        assertEquals(2L, page.getNextCursor());
+    }
+}
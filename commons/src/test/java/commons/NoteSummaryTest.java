@@ -0,0 +1,54 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteSummaryTest {
+
+    @Test
+    void constructor_initializesFields() {
+        NoteSummary summary = new NoteSummary(1L, "Title", "Collection", Set.of("tag"), 10L);
+        assertEquals(1L, summary.getId());
+        assertEquals("Title", summary.getTitle());
+        assertEquals("Collection", summary.getCollectionTitle());
+        assertEquals(Set.of("tag"), summary.getTags());
+        assertEquals(10L, summary.getLastModified());
+    }
+
+    @Test
+    void defaultConstructor_hasNoTags() {
+        NoteSummary summary = new NoteSummary();
+        assertTrue(summary.getTags().isEmpty());
+        assertNull(summary.getLastModified());
+    }
+
+    @Test
+    void matches_comparesIdAndLastModified() {
+        Note note = new Note("Title", "Content");
+        note.setId(3L);
+        note.setLastModified(7L);
+
+        assertTrue(new NoteSummary(3L, "Other title", null, Set.of(), 7L).matches(note));
+        assertFalse(new NoteSummary(3L, "Title", null, Set.of(), 8L).matches(note));
+        assertFalse(new NoteSummary(4L, "Title", null, Set.of(), 7L).matches(note));
+        assertFalse(new NoteSummary(3L, "Title", null, Set.of(), 7L).matches(null));
+    }
+
+    @Test
+    void equalsAndHashCode_useAllFields() {
+        NoteSummary a = new NoteSummary(1L, "Title", "C", Set.of("x"), 1L);
+        NoteSummary b = new NoteSummary(1L, "Title", "C", Set.of("x"), 1L);
+        NoteSummary c = new NoteSummary(1L, "Title", "C", Set.of("y"), 1L);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, c);
+    }
+
+    @Test
+    void toString_returnsTitle() {
+        assertEquals("Title", new NoteSummary(1L, "Title", null, Set.of(), null).toString());
+    }
+}
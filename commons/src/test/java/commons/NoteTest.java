@@ -196,6 +196,58 @@ public class NoteTest {
         assertEquals("a", note.getCollectionTitle());
     }
 
+    @Test
+    public void touch_setsLastModified() {
+        Note note = new Note();
+        assertNull(note.getLastModified());
+        long before = System.currentTimeMillis();
+        note.touch();
+        assertTrue(note.getLastModified() >= before);
+    }
+
+    @Test
+    public void setLastModified_updatesLastModified() {
+        Note note = new Note();
+        note.setLastModified(5L);
+        assertEquals(5L, note.getLastModified());
+    }
+
+    @Test
+    public void setRawContent_doesNotRender() {
+        Note note = new Note("Title", "Old");
+        String html = note.getHTML();
+        note.setRawContent("# New");
+        assertEquals("# New", note.getContent());
+        assertEquals(html, note.getHTML());
+    }
+
+    @Test
+    public void extractLinkedTitles_findsAllLinks() {
+        Note note = new Note("Title", "See [[First]], [[Second note]] and [[First]] again");
+        assertEquals(Set.of("First", "Second note"), note.extractLinkedTitles());
+    }
+
+    @Test
+    public void extractLinkedTitles_emptyWithoutContent() {
+        assertTrue(new Note().extractLinkedTitles().isEmpty());
+    }
+
+    @Test
+    public void setVersion_updatesVersion() {
+        Note note = new Note();
+        assertEquals(0L, note.getVersion());
+        note.setVersion(2L);
+        assertEquals(2L, note.getVersion());
+    }
+
+    @Test
+    public void setRevision_updatesRevision() {
+        Note note = new Note();
+        assertNull(note.getRevision());
+        note.setRevision(3L);
+        assertEquals(3L, note.getRevision());
+    }
+
     @Test
     public void setIdTest() {
         Note note = new Note();
@@ -0,0 +1,15 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NoteTombstoneTest {
+
+    @Test
+    void constructor_initializesFields() {
+        NoteTombstone tombstone = new NoteTombstone(4L, 10L);
+        assertEquals(4L, tombstone.getNoteId());
+        assertEquals(10L, tombstone.getRevision());
+    }
+}
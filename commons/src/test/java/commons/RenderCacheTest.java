@@ -0,0 +1,83 @@
+package commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenderCacheTest {
+
+    @Test
+    void get_rendersOnceForSameContent() {
+        RenderCache cache = new RenderCache(4);
+        AtomicInteger renders = new AtomicInteger();
+
+        assertEquals("a", cache.get("x", 1, () -> {
+            renders.incrementAndGet();
+            return "a";
+        }));
+        assertEquals("a", cache.get("x", 1, () -> {
+            renders.incrementAndGet();
+            return "b";
+        }));
+
+        assertEquals(1, renders.get());
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(0.5, cache.hitRate());
+    }
+
+    @Test
+    void get_keysOnNoteId() {
+        RenderCache cache = new RenderCache(4);
+        cache.get("x", 1, () -> "one");
+
+        assertEquals("two", cache.get("x", 2, () -> "two"));
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void get_evictsLeastRecentlyUsed() {
+        RenderCache cache = new RenderCache(2);
+        cache.get("a", 0, () -> "A");
+        cache.get("b", 0, () -> "B");
+        cache.get("a", 0, () -> "A");
+        cache.get("c", 0, () -> "C");
+
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.get("a", 0, () -> "miss"));
+        assertEquals("miss", cache.get("b", 0, () -> "miss"));
+    }
+
+    @Test
+    void clear_resetsEntriesAndStatistics() {
+        RenderCache cache = new RenderCache(2);
+        cache.get("a", 0, () -> "A");
+        cache.get("a", 0, () -> "A");
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hitCount());
+        assertEquals(0, cache.missCount());
+        assertEquals(0, cache.hitRate());
+    }
+
+    @Test
+    void constructor_rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new RenderCache(0));
+    }
+
+    @Test
+    void renderRawTextToText_usesCache() {
+        RenderCache cache = MarkDownMethods.getRenderCache();
+        String raw = "cached *markdown* " + System.nanoTime();
+        long hits = cache.hitCount();
+
+        String first = MarkDownMethods.renderRawTextToText(raw, 7);
+        String second = MarkDownMethods.renderRawTextToText(raw, 7);
+
+        assertEquals(first, second);
+        assertEquals(hits + 1, cache.hitCount());
+    }
+}
@@ -0,0 +1,67 @@
+package commons;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TitleIndexTest {
+
+    private TitleIndex<String> index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TitleIndex<>();
+        index.put(1, "Groceries", "groceries");
+        index.put(2, "Group meeting", "meeting");
+        index.put(3, "grocery list", "list");
+        index.put(4, "Recipes", "recipes");
+    }
+
+    @Test
+    void find_ignoresCase() {
+        assertEquals(List.of("groceries"), index.find("GROCERIES"));
+        assertEquals(List.of(), index.find("Grocer"));
+    }
+
+    @Test
+    void find_returnsDuplicateTitlesById() {
+        index.put(0, "groceries", "other");
+
+        assertEquals(List.of("other", "groceries"), index.find("Groceries"));
+    }
+
+    @Test
+    void startingWith_returnsMatchesInOrder() {
+        assertEquals(List.of("groceries", "list", "meeting"), index.startingWith("gro", 10, _ -> true));
+        assertEquals(List.of("groceries", "list"), index.startingWith("GROC", 10, _ -> true));
+        assertEquals(List.of(), index.startingWith("x", 10, _ -> true));
+    }
+
+    @Test
+    void startingWith_appliesLimitAndFilter() {
+        assertEquals(List.of("groceries"), index.startingWith("gro", 1, _ -> true));
+        assertEquals(List.of("list", "meeting"), index.startingWith("gro", 10, value -> !value.equals("groceries")));
+        assertEquals(4, index.startingWith("", 10, _ -> true).size());
+    }
+
+    @Test
+    void put_replacesTitle() {
+        index.put(1, "Shopping", "shopping");
+
+        assertEquals(List.of(), index.find("Groceries"));
+        assertEquals(List.of("shopping"), index.find("shopping"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void remove_dropsNote() {
+        index.remove(3);
+        index.remove(42);
+
+        assertEquals(List.of("groceries", "meeting"), index.startingWith("gro", 10, _ -> true));
+        assertEquals(3, index.size());
+    }
+}
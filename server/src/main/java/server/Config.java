@@ -17,6 +17,9 @@ package server;
 
 import java.util.Random;
 
+import commons.Note;
+import commons.RawNoteContent;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -31,4 +34,15 @@ public class Config {
     public Random getRandom() {
         return new Random();
     }
-}
\ No newline at end of file
+
+    /**
+     * Reads the notes sent to the server without rendering their markdown on the request thread,
+     * as they are rendered by the RenderService once they are saved
+     *
+     * @return The customizer adding the mix-in to the ObjectMapper of the server
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer rawNoteContent() {
+        return builder -> builder.mixIn(Note.class, RawNoteContent.class);
+    }
+}
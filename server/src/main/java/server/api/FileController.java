@@ -1,61 +1,331 @@
 package server.api;
 
+import commons.FileBlob;
 import commons.FileCompositeKey;
 import commons.FileData;
-import org.springframework.core.io.ByteArrayResource;
+import commons.FileSummary;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
+import server.database.FileBlobRepository;
 import server.database.FileRepository;
+import server.files.BlobRegion;
+import server.files.BlobStore;
+import server.files.ContentTypes;
+import server.files.ThumbnailGenerator;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/api/files")
 public class FileController {
 
+    /**
+     * The smallest response sent with sendfile by default. Smaller files are cheaper to copy than
+     * to hand over to the connector, the same threshold Tomcat uses for static files
+     */
+    static final long DEFAULT_SENDFILE_THRESHOLD = 48 * 1024;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * How long a request waits for a thumbnail to be created before it is sent the original image
+     */
+    private static final long THUMBNAIL_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Files are revalidated on every use, as a name may be given to other contents.
+     * Unchanged files are answered with 304 Not Modified, without their bytes
+     */
+    private static final CacheControl REVALIDATE = CacheControl.noCache();
+
     private final FileRepository repo;
+    private final FileBlobRepository blobRepo;
+    private final BlobStore blobs;
+    private final ThumbnailGenerator thumbnails;
+    private final long sendfileThreshold;
+
+    /**
+     * Initializes the FileController with a file repo
+     * @param repo the repository that holds the metadata of the files
+     * @param blobRepo the repository that counts the references to the contents of the files
+     * @param blobs the store that holds the contents of the files
+     * @param thumbnails the generator of thumbnails of images
+     */
+    public FileController(FileRepository repo, FileBlobRepository blobRepo, BlobStore blobs,
+            ThumbnailGenerator thumbnails) {
+        this(repo, blobRepo, blobs, thumbnails, DEFAULT_SENDFILE_THRESHOLD);
+    }
 
     /**
      * Initializes the FileController with a file repo
-     * @param repo the repository that holds the files
+     * @param repo the repository that holds the metadata of the files
+     * @param blobRepo the repository that counts the references to the contents of the files
+     * @param blobs the store that holds the contents of the files
+     * @param thumbnails the generator of thumbnails of images
+     * @param sendfileThreshold the smallest response sent with sendfile, or a negative number to never use it
      */
-    public FileController(FileRepository repo) {
+    @Autowired
+    public FileController(FileRepository repo, FileBlobRepository blobRepo, BlobStore blobs,
+            ThumbnailGenerator thumbnails,
+            @Value("${notes.files.sendfile-threshold:" + DEFAULT_SENDFILE_THRESHOLD + "}") long sendfileThreshold) {
         this.repo = repo;
+        this.blobRepo = blobRepo;
+        this.blobs = blobs;
+        this.thumbnails = thumbnails;
+        this.sendfileThreshold = sendfileThreshold;
     }
 
     /**
-     * This is intended to be used in raw html to access the binary data of the files
+     * This is intended to be used in raw html to access the binary data of the files.
+     * The file is streamed from the blob store, never loaded into memory as a whole.
+     * A single byte range may be requested, which is answered with 206 Partial Content.
+     * The response carries the hash of the contents as its ETag, so a client that has the file already
+     * is answered with 304 Not Modified.
      * @param noteid The files primary key is a composite key consisting of both noteid and filename, this represents the noteid
      * @param filename This represents the filename
-     * @return returns the binary data of a file related to a key
+     * @param range The Range header of the request, if any
+     * @param request The request, used for conditional requests and to hand the file over to the connector
+     * @return returns the binary data of a file related to a key, or null if the client has it already
      */
     @GetMapping("/{noteid}/{filename}")
-    public ResponseEntity<byte[]> getFile(@PathVariable("noteid") long noteid,
-            @PathVariable("filename") String filename) {
+    public ResponseEntity<Resource> getFile(@PathVariable("noteid") long noteid,
+            @PathVariable("filename") String filename,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            ServletWebRequest request) {
         FileCompositeKey fck = new FileCompositeKey(filename, noteid);
         FileData fd = repo.findById(fck).orElse(null);
         if (fd != null) {
-            return ResponseEntity.ok(fd.getData());
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(mediaType(fd));
+            return serve(fd, range, headers, request);
         }
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
     }
 
+    /**
+     * Returns a downscaled copy of an image, as shown in rendered notes. Thumbnails are created when images
+     * are uploaded, or on the first request for a width. Files that are no images, images no wider than the
+     * thumbnail and images that cannot be decoded are redirected to the original file.
+     * @param noteid the id of the note related to the file
+     * @param filename the name of the file
+     * @param width the requested width in pixels, rounded up to one of the thumbnail widths
+     * @param request the request, used for conditional requests
+     * @return the thumbnail, a redirect to the original, null if the client has the thumbnail already,
+     *         or 404 if there is no such file
+     */
+    @GetMapping("/{noteid}/{filename}/thumb")
+    public ResponseEntity<Resource> getThumbnail(@PathVariable("noteid") long noteid,
+            @PathVariable("filename") String filename,
+            @RequestParam(value = "w", defaultValue = "" + ThumbnailGenerator.DEFAULT_WIDTH) int width,
+            ServletWebRequest request) {
+        FileData fd = repo.findById(new FileCompositeKey(filename, noteid)).orElse(null);
+        if (fd == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        ResponseEntity<Resource> original = ResponseEntity.status(HttpStatus.FOUND)
+                .location(UriComponentsBuilder.fromPath("/api/files/{noteid}/{filename}")
+                        .buildAndExpand(noteid, filename).encode().toUri())
+                .build();
+        if (!ThumbnailGenerator.isImage(filename)) {
+            return original;
+        }
+        int snapped = ThumbnailGenerator.snapWidth(width);
+        String etag = "\"" + fd.getHash() + "-w" + snapped + "\"";
+        if (notModified(request, etag, REVALIDATE)) {
+            return null;
+        }
+        ThumbnailGenerator.Thumbnail thumbnail;
+        try {
+            thumbnail = thumbnails.thumbnail(fd, snapped)
+                    .get(THUMBNAIL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return original;
+        } catch (ExecutionException | TimeoutException e) {
+            return original;
+        }
+        if (thumbnail == null) {
+            return original;
+        }
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(thumbnail.mediaType()))
+                .eTag(etag).cacheControl(REVALIDATE)
+                .body(new FileSystemResource(thumbnail.file()));
+    }
+
+    /**
+     * Answers a request for the contents of a file, or for one range of bytes of it.
+     * Large responses are sent with sendfile where the connector supports it: the connector copies the
+     * bytes from the blob to the socket with {@link java.nio.channels.FileChannel#transferTo}, so they never
+     * pass through the heap. Other responses stream a {@link BlobRegion}, read with positional reads so a range
+     * near the end of a large file reads nothing before it. Requests for several ranges are left to the
+     * multipart/byteranges support of Spring MVC.
+     * <p>
+     * The hash of the contents is their strong ETag. Conditional requests are answered before any body is
+     * chosen, so a 304 Not Modified never hands a file to the connector, and a range is only served if the
+     * contents still have the ETag given in If-Range. Otherwise the whole file is sent in a resource Spring MVC
+     * does not split into the ranges of the request.
+     * @param fd the metadata of the file
+     * @param range the Range header of the request, or null
+     * @param headers the headers to send along with the contents
+     * @param request the request
+     * @return the response with the requested bytes, or null if it has been answered with 304 Not Modified
+     */
+    private ResponseEntity<Resource> serve(FileData fd, String range, HttpHeaders headers,
+            ServletWebRequest request) {
+        String etag = "\"" + fd.getHash() + "\"";
+        if (notModified(request, etag, REVALIDATE)) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        boolean rangeIgnored = range != null && ifRange != null && !ifRange.equals(etag);
+        if (rangeIgnored) {
+            range = null;
+        }
+        Path file = blobs.resolve(fd.getStoragePath());
+        long size = fd.getSize();
+        headers.setETag(etag);
+        headers.setCacheControl(REVALIDATE);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // attachments are shown as what they are, and documents among them run nothing
+        headers.set("X-Content-Type-Options", "nosniff");
+        headers.set("Content-Security-Policy", "sandbox");
+        List<HttpRange> ranges;
+        try {
+            ranges = range == null ? List.of() : HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            ranges = null;
+        }
+        if (ranges == null || ranges.size() > 1) {
+            // the length is set by the message converter, which splits the body into ranges
+            return ResponseEntity.ok().headers(headers).body(new BlobRegion(file, 0, size));
+        }
+
+        HttpStatus status = HttpStatus.OK;
+        long start = 0;
+        long end = size - 1;
+        if (!ranges.isEmpty()) {
+            start = ranges.getFirst().getRangeStart(size);
+            end = ranges.getFirst().getRangeEnd(size);
+            if (start >= size || start > end) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size).body(null);
+            }
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        }
+        long length = end - start + 1;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status).headers(headers).contentLength(length);
+        if (sendfile(request.getRequest(), file, start, length)) {
+            // the body is written by the connector once the response is committed
+            return response.build();
+        }
+        BlobRegion region = new BlobRegion(file, start, length);
+        if (rangeIgnored) {
+            // Spring MVC answers the Range header of the request itself for any other kind of resource
+            return response.body(new InputStreamResource(region, region.getDescription()));
+        }
+        return response.body(region);
+    }
+
+    /**
+     * Answers a request with 304 Not Modified if it asks for contents the client has already,
+     * or with 412 Precondition Failed if it asks for other contents than the server has
+     * @param request the request
+     * @param etag the ETag of the current contents
+     * @param cacheControl the Cache-Control header to send along with the answer
+     * @return true if the request has been answered
+     */
+    private static boolean notModified(ServletWebRequest request, String etag, CacheControl cacheControl) {
+        if (!request.checkNotModified(etag)) {
+            return false;
+        }
+        HttpServletResponse response = request.getResponse();
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the media type to serve a file with. Files uploaded before their type was detected
+     * are typed by the extension of their name
+     * @param fd the metadata of the file
+     * @return the media type
+     */
+    private static MediaType mediaType(FileData fd) {
+        String contentType = fd.getContentType();
+        if (contentType == null || MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(contentType)) {
+            contentType = ContentTypes.fromName(fd.getFileName());
+        }
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    /**
+     * Asks the connector to send a region of a file as the body of the response, if it supports sendfile
+     * @param request the request
+     * @param file the file
+     * @param start the offset of the first byte to send
+     * @param length the number of bytes to send
+     * @return true if the connector sends the body
+     */
+    private boolean sendfile(HttpServletRequest request, Path file, long start, long length) {
+        if (sendfileThreshold < 0 || length < sendfileThreshold || HttpMethod.HEAD.matches(request.getMethod())
+                || !Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, start);
+        request.setAttribute(SENDFILE_END, start + length);
+        return true;
+    }
+
     /**
      *
      * @param noteid the id of the note related to the file
      * @param filename the name of the file
-     * @return a byteArray resource with the binary data of the selected file
+     * @param range the Range header of the request, if any, used to resume interrupted downloads
+     * @param request the request, used for conditional requests and to hand the file over to the connector
+     * @return a resource with the binary data of the selected file, or of the requested range of it,
+     *         or null if the client has it already
      */
     @GetMapping("/{noteid}/{filename}/download")
     public ResponseEntity<Resource> downloadFile(@PathVariable("noteid") long noteid,
-                                                 @PathVariable("filename") String filename){
+                                                 @PathVariable("filename") String filename,
+                                                 @RequestHeader(value = HttpHeaders.RANGE, required = false)
+                                                 String range,
+                                                 ServletWebRequest request){
         try{
             FileCompositeKey fck = new FileCompositeKey(filename, noteid);
             FileData fd = repo.findById(fck).orElse(null);
@@ -63,10 +333,10 @@ public class FileController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
             }
 
-            ByteArrayResource resource = new ByteArrayResource(fd.getData());
-            return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .body(resource);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+            return serve(fd, range, headers, request);
         }
         catch (Exception e){
             e.printStackTrace();
@@ -75,17 +345,67 @@ public class FileController {
     }
 
     /**
-     *
-     * @param noteid
-     * @return All the names of the files related with the note id provided
+     * Lists the files of a note. Only the metadata columns are read, in one query
+     * @param noteid the id of the note
+     * @return The name, size, content type, hash and upload time of the files related with the note id provided
      */
     @GetMapping("/{noteid}")
-    public ResponseEntity<List<FileData>> fetchFileName(@PathVariable("noteid") long noteid){
-        return ResponseEntity.ok(repo.fetchAllFileNamesById(noteid));
+    public ResponseEntity<List<FileSummary>> fetchFileName(@PathVariable("noteid") long noteid){
+        return ResponseEntity.ok(repo.findSummariesByNoteId(noteid).stream()
+                .map(row -> new FileSummary(row.getRelatedNoteId(), row.getFileName(), row.getSize(),
+                        row.getContentType(), row.getHash(), row.getUploadedAt()))
+                .toList());
+    }
+
+    /**
+     * Checks whether the server already stores contents with a given hash, so that a client can attach them
+     * to a note with {@link #linkFile} instead of uploading the bytes again
+     * @param hash the SHA-256 hash of the contents, in hexadecimal
+     * @return 200 if the contents are stored, 404 otherwise
+     */
+    @RequestMapping(value = "/blobs/{hash}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> hasBlob(@PathVariable("hash") String hash) {
+        return blobRepo.existsById(hash) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Attaches contents the server already stores to a note, without transferring them.
+     * Linking a file under a name the note already uses replaces it.
+     * @param noteid the id of the related note
+     * @param filename the name of the file
+     * @param hash the SHA-256 hash of the contents, in hexadecimal
+     * @return A success message, or 404 if the contents are not stored
+     */
+    @PostMapping("/{noteid}/link")
+    public ResponseEntity<String> linkFile(@PathVariable("noteid") long noteid,
+            @RequestParam("filename") String filename,
+            @RequestParam("hash") String hash) {
+        FileBlob blob = blobRepo.findById(hash).orElse(null);
+        if (blob == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown file contents\n");
+        }
+        FileData old = repo.findById(new FileCompositeKey(filename, noteid)).orElse(null);
+        if (old == null || !hash.equals(old.getHash())) {
+            if (blobRepo.addReference(hash) == 0) {
+                // the last reference was removed after the lookup
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown file contents\n");
+            }
+        }
+        String contentType = ContentTypes.detect(filename, null, blobs.resolve(blob.getStoragePath()));
+        FileData fd = new FileData(filename, noteid, hash, blob.getSize(), contentType, blob.getStoragePath());
+        repo.save(fd);
+        if (old != null && !hash.equals(old.getHash())) {
+            releaseBlobs(List.of(old));
+        }
+        thumbnails.submit(fd);
+        return ResponseEntity.ok("File linked successfully\n");
     }
 
     /**
-     * Uploads a file to the repo
+     * Uploads a file to the repo. The upload is streamed into the blob store with a fixed-size buffer,
+     * so the memory used does not depend on the size of the file. Contents already stored for another
+     * file are only referenced again. Uploading a file under a name the note already uses replaces it.
+     * The media type of the file is detected once here and stored along with it.
      * @param noteid the id of the related note
      * @param file the file to be uploaded
      * @param filename the name of the file
@@ -97,8 +417,30 @@ public class FileController {
             @RequestParam("file") MultipartFile file,
             @RequestParam("filename") String filename) throws IOException {
         try {
-            FileData fd = new FileData(filename, file.getBytes(), noteid);
-            repo.save(fd);
+            FileData old = repo.findById(new FileCompositeKey(filename, noteid)).orElse(null);
+            BlobStore.StoredBlob blob;
+            try (InputStream input = file.getInputStream()) {
+                blob = blobs.store(input, stored -> {
+                    if (old == null || !Objects.equals(old.getHash(), stored.hash())) {
+                        addReference(stored);
+                    }
+                });
+            }
+            boolean replacesContents = old == null || !Objects.equals(old.getHash(), blob.hash());
+            String contentType = ContentTypes.detect(filename, file.getContentType(), blobs.resolve(blob.storagePath()));
+            FileData fd = new FileData(filename, noteid, blob.hash(), blob.size(), contentType, blob.storagePath());
+            try {
+                repo.save(fd);
+            } catch (RuntimeException e) {
+                if (replacesContents) {
+                    releaseBlobs(List.of(fd));
+                }
+                throw e;
+            }
+            if (old != null && replacesContents) {
+                releaseBlobs(List.of(old));
+            }
+            thumbnails.submit(fd);
             return ResponseEntity.ok("File uploaded successfully\n");
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("File upload failed\n");
@@ -106,23 +448,66 @@ public class FileController {
     }
 
     /**
-     * Changes the name of the file indicated
+     * Counts a new reference to stored contents, recording the blob if it is the first.
+     * Called under the lock of the hash, so the blob is not deleted before its record is inserted
+     * @param blob the stored contents
+     */
+    private void addReference(BlobStore.StoredBlob blob) {
+        if (blobRepo.addReference(blob.hash()) > 0) {
+            return;
+        }
+        try {
+            blobRepo.insertReferenced(blob.hash(), blob.size(), blob.storagePath());
+        } catch (DataIntegrityViolationException e) {
+            // recorded by a concurrent upload of the same bytes
+            blobRepo.addReference(blob.hash());
+        }
+    }
+
+    /**
+     * Removes the references of removed files, deleting the blobs no file references anymore
+     * @param removed the metadata of the removed files
+     */
+    private void releaseBlobs(List<FileData> removed) {
+        for (FileData fd : removed) {
+            if (fd.getHash() == null) {
+                continue;
+            }
+            blobRepo.removeReference(fd.getHash());
+            try {
+                blobs.deleteIf(fd.getHash(), fd.getStoragePath(), () -> blobRepo.deleteIfUnreferenced(fd.getHash()) > 0);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Changes the name of the file indicated. Only the key of its row is updated, in one statement,
+     * so renaming takes the same time for any size of file and either fully happens or not at all
      * @param noteid the id of the note
      * @param oldFileName the filename to be replaced
      * @param newFileName the new filename
-     * @return a response entity indicating if the change was successful or not
+     * @return a response entity indicating if the change was successful or not,
+     *         409 Conflict if the note already has a file with the new name
      */
     @PostMapping("/{noteid}/{Oldfilename}/change")
     public ResponseEntity<String> changeName(@PathVariable("noteid") long noteid,
                                              @PathVariable("Oldfilename") String oldFileName,
                                              @RequestBody String newFileName){
         try{
-            FileCompositeKey key = new FileCompositeKey(oldFileName, noteid);
-            byte[] binaryD = Objects.requireNonNull(repo.findById(key).orElse(null)).getData();
-            repo.deleteById(new FileCompositeKey(oldFileName, noteid));
-            repo.save(new FileData(newFileName, binaryD, noteid));
+            if (!newFileName.equals(oldFileName) && repo.existsById(new FileCompositeKey(newFileName, noteid))) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("A file with this name already exists\n");
+            }
+            if (repo.rename(noteid, oldFileName, newFileName) == 0) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("File name change failed\n");
+            }
             return ResponseEntity.ok("File name changed successfully\n");
         }
+        catch (DataIntegrityViolationException e) {
+            // the name was taken by a concurrent upload or rename
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("A file with this name already exists\n");
+        }
         catch (Exception e){
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("File name change failed\n");
@@ -140,7 +525,9 @@ public class FileController {
             @PathVariable("filename") String filename) {
         FileCompositeKey fck = new FileCompositeKey(filename, noteid);
         try {
+            List<FileData> removed = repo.findById(fck).stream().toList();
             repo.deleteById(fck);
+            releaseBlobs(removed);
             return ResponseEntity.ok("File deleted successfully\n");
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error deleting file: " + e.getMessage());
@@ -155,7 +542,9 @@ public class FileController {
     @DeleteMapping("/{noteid}/all")
     public ResponseEntity<String> deleteAllRelated(@PathVariable long noteid) {
         try {
+            List<FileData> removed = repo.fetchAllFileNamesById(noteid);
             repo.deleteByNoteId(noteid);
+            releaseBlobs(removed);
             return ResponseEntity.ok("Files successfully deleted\n");
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Error deleting files: " + e.getMessage());
@@ -170,6 +559,8 @@ public class FileController {
     public ResponseEntity<String> deleteAll(){
         try{
             repo.deleteAll();
+            blobRepo.deleteAll();
+            blobs.deleteAll();
             return ResponseEntity.ok("Files Deleted success\n");
         } catch (Exception e){
             e.printStackTrace();
@@ -1,35 +1,188 @@
 package server.api;
 
 import commons.Note;
+import commons.NoteBatch;
+import commons.NoteChanges;
+import commons.NotePage;
+import commons.NoteSummary;
+import commons.NoteTitle;
+import commons.SearchResult;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import server.service.NoteService;
+import server.service.SearchService;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/notes")
 public class NoteController {
 
+    public static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
     private final NoteService noteService;
+    private final SearchService searchService;
 
     /**
-     * Initializes the controller with the provided NoteService
+     * Initializes the controller with the provided services
      *
-     * @param noteService The NoteService used for handling note-related operations
+     * @param noteService   The NoteService used for handling note-related operations
+     * @param searchService The SearchService used for full-text search
      */
-    public NoteController(NoteService noteService) {
+    public NoteController(NoteService noteService, SearchService searchService) {
         this.noteService = noteService;
+        this.searchService = searchService;
     }
 
     /**
-     * Getter for all the notes in the database
+     * Getter for one page of the notes in the database, ordered by id.
+     * Clients walk the whole table by passing the returned cursor back as "after".
      *
-     * @return A list of all notes
+     * @param collection The title of the collection to list, or null for the notes of every collection
+     * @param after      The id of the last note of the previous page, or null for the first page
+     * @param limit      The requested page size, capped by the server
+     * @return A page of notes together with the cursor of the next page
      */
     @GetMapping
-    public List<Note> getAllNotes() {
-        return noteService.getAllNotes();
+    public NotePage getNotes(@RequestParam(name = "collection", required = false) String collection,
+                             @RequestParam(name = "after", required = false) Long after,
+                             @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        return noteService.getNotePage(collection, after, limit);
+    }
+
+    /**
+     * Getter for one page of the notes carrying the given tags, ordered by id.
+     * Clients walk all matching notes by passing the returned cursor back as "after".
+     *
+     * @param tags       The tags to filter on
+     * @param mode       "all" for the notes carrying all of the tags, "any" for the notes carrying at least one
+     * @param collection The title of the collection to list, or null for the notes of every collection
+     * @param after      The id of the last note of the previous page, or null for the first page
+     * @param limit      The requested page size, capped by the server
+     * @return A page of notes together with the cursor of the next page, or bad request for an unknown mode
+     */
+    @GetMapping(params = "tag")
+    public ResponseEntity<NotePage> getNotesByTags(@RequestParam("tag") List<String> tags,
+                                                   @RequestParam(name = "mode", defaultValue = "any") String mode,
+                                                   @RequestParam(name = "collection", required = false) String collection,
+                                                   @RequestParam(name = "after", required = false) Long after,
+                                                   @RequestParam(name = "limit", defaultValue = "100") int limit) {
+        if (!mode.equals("any") && !mode.equals("all")) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(noteService.getNotePageByTags(tags, mode.equals("all"), collection, after, limit));
+    }
+
+    /**
+     * Getter for one page of note summaries, ordered by id.
+     * Summaries hold everything the note list shows, without the content and the HTML,
+     * so clients can refresh their list cheaply and load full notes only when needed.
+     *
+     * @param after The id of the last summary of the previous page, or null for the first page
+     * @param limit The requested page size, capped by the server
+     * @return The summaries, a page shorter than the limit is the last one
+     */
+    @GetMapping("/summaries")
+    public List<NoteSummary> getNoteSummaries(@RequestParam(name = "after", required = false) Long after,
+                                              @RequestParam(name = "limit", defaultValue = "1000") int limit) {
+        return noteService.getSummaryPage(after, limit);
+    }
+
+    /**
+     * Getter for the changes made to the notes since the given revision.
+     * Clients that are up to date receive an empty result, so polling this is cheap.
+     *
+     * @param since The revision the client is up to date with
+     * @param limit The maximum number of changed notes to return, capped by the server
+     * @return The created, updated and deleted notes, and the revision to pass on the next call
+     */
+    @GetMapping("/changes")
+    public NoteChanges getChanges(@RequestParam("since") long since,
+                                  @RequestParam(name = "limit", defaultValue = "500") int limit) {
+        return noteService.getChangesSince(since, limit);
+    }
+
+    /**
+     * Searches the titles and contents of the notes.
+     * A note matches if it contains every word of the query; matches are ranked by relevance.
+     *
+     * @param query      The words to search for
+     * @param collection The title of the collection to search in, or null to search every collection
+     * @param limit      The maximum number of results, capped by the server
+     * @return The ids and titles of the matching notes, best match first, with a snippet of their
+     *         content and the positions of the words in it
+     */
+    @GetMapping("/search")
+    public List<SearchResult> search(@RequestParam("q") String query,
+                                     @RequestParam(name = "collection", required = false) String collection,
+                                     @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return searchService.search(query, collection, limit);
+    }
+
+    /**
+     * Searches the titles and contents of the notes, tolerating typos.
+     * Every word of the query matches the indexed words sharing enough of its trigrams,
+     * and matches are ranked by relevance weighted by how closely the words match.
+     *
+     * @param query      The words to search for
+     * @param collection The title of the collection to search in, or null to search every collection
+     * @param threshold  The minimum similarity of a word to a word of the query, between 0 and 1
+     * @param limit      The maximum number of results, capped by the server
+     * @return The ids and titles of the matching notes, best match first
+     */
+    @GetMapping("/search/fuzzy")
+    public List<SearchResult> fuzzySearch(@RequestParam("q") String query,
+                                          @RequestParam(name = "collection", required = false) String collection,
+                                          @RequestParam(name = "threshold", defaultValue = "0.3") double threshold,
+                                          @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return searchService.fuzzySearch(query, collection, threshold, limit);
+    }
+
+    /**
+     * Completes a note title. Titles are compared ignoring case, and found in a sorted index,
+     * so the cost does not depend on the number of notes.
+     *
+     * @param prefix     The start of the title
+     * @param collection The title of the collection to look in, or null to look in every collection
+     * @param limit      The maximum number of titles, capped by the server
+     * @return The ids, titles and collections of the matching notes, in alphabetical order of title
+     */
+    @GetMapping("/titles")
+    public List<NoteTitle> getTitles(@RequestParam(name = "prefix", defaultValue = "") String prefix,
+                                     @RequestParam(name = "collection", required = false) String collection,
+                                     @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return searchService.titlesStartingWith(prefix, collection, limit);
+    }
+
+    /**
+     * Resolves a note title, as written in a [[link]], ignoring case
+     *
+     * @param title      The title to look for
+     * @param collection The title of the collection to look in, or null to look in every collection
+     * @return The ids, titles and collections of the notes with that title, in increasing order of id
+     */
+    @GetMapping(path = "/titles", params = "title")
+    public List<NoteTitle> findTitle(@RequestParam("title") String title,
+                                     @RequestParam(name = "collection", required = false) String collection) {
+        return searchService.findTitle(title, collection);
+    }
+
+    /**
+     * Getter for the latest revision of the notes on the server.
+     * Clients read this before fetching all notes, and then sync from it with the change feed.
+     *
+     * @return The current revision
+     */
+    @GetMapping("/revision")
+    public long getRevision() {
+        return noteService.currentRevision();
     }
 
     /**
@@ -48,34 +201,206 @@ public class NoteController {
     }
 
     /**
-     * Getter for a specific note given the ID
+     * Applies many creates, updates and deletes in one request and one transaction.
+     * If any of them is invalid, none of them are applied.
      *
-     * @param id The ID of the note
-     * @return A ResponseEntity containing the note if successful, bad request otherwise
+     * @param batch The writes to apply
+     * @return A ResponseEntity containing the created and updated notes if successful, bad request otherwise
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<Note>> applyBatch(@RequestBody NoteBatch batch) {
+        List<Note> saved = noteService.applyBatch(batch);
+        if (saved == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(saved);
+    }
+
+    /**
+     * Getter for a specific note given the ID.
+     * The response carries the version and revision of the note as its ETag; a client sending that ETag
+     * back in If-None-Match gets an empty 304 response while the note is unchanged. Storing the rendered
+     * HTML only changes the revision, so it changes the ETag as well.
+     *
+     * @param id          The ID of the note
+     * @param ifNoneMatch The ETags the client already has, if any
+     * @return A ResponseEntity containing the note if successful, not modified if the client has
+     *         the current version, bad request otherwise
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Note> getNoteById(@PathVariable("id") long id) {
+    public ResponseEntity<Note> getNoteById(@PathVariable("id") long id,
+                                            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                            String ifNoneMatch) {
         Note note = noteService.getNoteById(id);
         if (note == null) {
             return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok(note);
+        if (ifNoneMatch != null && matchesETag(ifNoneMatch, eTagOf(note))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTagOf(note)).build();
+        }
+        return ResponseEntity.ok().eTag(eTagOf(note)).body(note);
     }
 
     /**
-     * Updates an existing note
+     * Updates an existing note.
+     * If the client sends the ETag of the version it edited in If-Match, the update is only
+     * applied if nobody else updated the note in the meantime.
      *
      * @param id          The ID of the note
+     * @param ifMatch     The ETag of the version the client edited, or * to overwrite any version
      * @param updatedNote The Note containing the new information
-     * @return A ResponseEntity containing the updated note if successful, bad request otherwise
+     * @return A ResponseEntity containing the updated note if successful, precondition failed if the note
+     *         was updated by someone else, bad request otherwise
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Note> updateNote(@PathVariable("id") long id, @RequestBody Note updatedNote) {
-        Note updated = noteService.updateNote(id, updatedNote);
+    public ResponseEntity<Note> updateNote(@PathVariable("id") long id,
+                                           @RequestHeader(name = HttpHeaders.IF_MATCH, required = false)
+                                           String ifMatch,
+                                           @RequestBody Note updatedNote) {
+        return conditionalUpdate(ifMatch, expectedVersion -> noteService.updateNote(id, updatedNote, expectedVersion));
+    }
+
+    /**
+     * Partially updates an existing note with a JSON merge patch (RFC 7396).
+     * The title, content and collectionTitle can be patched; fields missing from the patch are kept.
+     * The markdown is only rendered again if the content actually changed.
+     *
+     * @param id      The ID of the note
+     * @param ifMatch The ETag of the version the client edited, or * to patch any version
+     * @param patch   The fields to change
+     * @return A ResponseEntity containing the patched note if successful, precondition failed if the note
+     *         was updated by someone else, bad request if the note does not exist or the patch is invalid
+     */
+    @PatchMapping(path = "/{id}", consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Note> patchNote(@PathVariable("id") long id,
+                                          @RequestHeader(name = HttpHeaders.IF_MATCH, required = false)
+                                          String ifMatch,
+                                          @RequestBody Map<String, Object> patch) {
+        return conditionalUpdate(ifMatch, expectedVersion -> noteService.patchNote(id, patch, expectedVersion));
+    }
+
+    /**
+     * Runs an update that is conditional on the If-Match header, and builds the response
+     *
+     * @param ifMatch The ETag of the version the client edited, * or null to update any version
+     * @param update  The update, given the version the note must still have (or null for any version)
+     * @return The updated note with its new ETag, precondition failed if the version did not match,
+     *         bad request if the update returned null
+     */
+    private ResponseEntity<Note> conditionalUpdate(String ifMatch, Function<Long, Note> update) {
+        return conditionalUpdate(ifMatch, update, Function.identity());
+    }
+
+    /**
+     * Runs an update that is conditional on the If-Match header, and builds the response
+     *
+     * @param ifMatch     The ETag of the version the client edited, * or null to update any version
+     * @param update      The update, given the version the note must still have (or null for any version)
+     * @param updatedNote Picks the note whose ETag is sent from the result of the update
+     * @param <T>         The type of the result of the update
+     * @return The result of the update with the new ETag of the note, precondition failed if the version
+     *         did not match, bad request if the update returned null
+     */
+    private <T> ResponseEntity<T> conditionalUpdate(String ifMatch, Function<Long, T> update, Function<T, Note> updatedNote) {
+        Long expectedVersion = null;
+        if (ifMatch != null && !"*".equals(ifMatch.trim())) {
+            expectedVersion = parseVersion(ifMatch);
+            if (expectedVersion == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+        }
+
+        T updated;
+        try {
+            updated = update.apply(expectedVersion);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
         if (updated == null) {
             return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok(updated);
+        return ResponseEntity.ok().eTag(eTagOf(updatedNote.apply(updated))).body(updated);
+    }
+
+    /**
+     * Renames a note and rewrites the [[links]] to it in the other notes of its collection,
+     * in a single transaction.
+     *
+     * If the client sends the ETag of the version it edited in If-Match, the note is only
+     * renamed if it still has that version.
+     *
+     * @param id      The ID of the note
+     * @param ifMatch The ETag of the version the client edited, or null to rename any version
+     * @param title   The new title, sent as plain text
+     * @return A ResponseEntity containing the renamed note followed by the rewritten notes if successful,
+     *         precondition failed if the note was updated by someone else, bad request otherwise
+     */
+    @PutMapping(path = "/{id}/title", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<List<Note>> renameNote(@PathVariable("id") long id,
+                                                 @RequestHeader(name = HttpHeaders.IF_MATCH, required = false)
+                                                 String ifMatch,
+                                                 @RequestBody String title) {
+        if (title == null || title.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return conditionalUpdate(ifMatch, expectedVersion -> noteService.renameNote(id, title.trim(), expectedVersion),
+                List::getFirst);
+    }
+
+    /**
+     * Builds the ETag of a note from its version and its revision.
+     * The version changes when the note is edited, the revision also when its HTML is stored.
+     *
+     * @param note The note
+     * @return The quoted ETag
+     */
+    private static String eTagOf(Note note) {
+        return "\"" + note.getVersion() + "." + Objects.requireNonNullElse(note.getRevision(), 0L) + "\"";
+    }
+
+    /**
+     * Checks whether a list of ETags, as sent in If-None-Match, contains the given ETag
+     *
+     * @param eTags   The comma separated ETags, or *
+     * @param current The current ETag of the note
+     * @return True if one of the ETags matches, ignoring whether it is weak
+     */
+    private static boolean matchesETag(String eTags, String current) {
+        for (String eTag : eTags.split(",")) {
+            String value = eTag.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || current.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses the version out of a single ETag, as sent in If-Match.
+     * Only the version is compared, so an ETag from before the HTML of the note was stored still matches,
+     * as does the bare version the client sends.
+     *
+     * @param eTag The ETag, optionally weak
+     * @return The version, or null if the ETag was not made by this controller
+     */
+    private static Long parseVersion(String eTag) {
+        String value = eTag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return null;
+        }
+        value = value.substring(1, value.length() - 1);
+        int dot = value.indexOf('.');
+        try {
+            return Long.parseLong(dot < 0 ? value : value.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
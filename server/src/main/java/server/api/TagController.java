@@ -0,0 +1,35 @@
+package server.api;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import server.service.SearchService;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/tags")
+public class TagController {
+
+    private final SearchService searchService;
+
+    /**
+     * Initializes the TagController with the service holding the tag index
+     *
+     * @param searchService The SearchService used for looking up tags
+     */
+    public TagController(SearchService searchService) {
+        this.searchService = searchService;
+    }
+
+    /**
+     * Getter for every tag in use, with the number of notes carrying it.
+     * Read from the tag index, so the cost does not depend on the number of notes.
+     *
+     * @return The tags in alphabetical order, with their note counts
+     */
+    @GetMapping
+    public Map<String, Integer> getTags() {
+        return searchService.tagCounts();
+    }
+}
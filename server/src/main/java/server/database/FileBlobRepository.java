@@ -0,0 +1,51 @@
+package server.database;
+
+import commons.FileBlob;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface FileBlobRepository extends JpaRepository<FileBlob, String> {
+    /**
+     * Adds a reference to a blob, in a single statement so concurrent uploads do not lose counts
+     * @param hash the SHA-256 hash of the blob
+     * @return the number of blobs updated, 0 if the blob is not stored yet
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FileBlob b SET b.referenceCount = b.referenceCount + 1 WHERE b.hash = :hash")
+    int addReference(String hash);
+
+    /**
+     * Removes a reference to a blob
+     * @param hash the SHA-256 hash of the blob
+     * @return the number of blobs updated
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FileBlob b SET b.referenceCount = b.referenceCount - 1 WHERE b.hash = :hash")
+    int removeReference(String hash);
+
+    /**
+     * Inserts a blob with one reference. Fails if another upload inserted the blob first
+     * @param hash the SHA-256 hash of the blob
+     * @param size the size of the blob in bytes
+     * @param storagePath the path of the blob in the blob store
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO file_blob (hash, file_size, storage_path, reference_count) "
+            + "VALUES (:hash, :size, :storagePath, 1)", nativeQuery = true)
+    void insertReferenced(String hash, long size, String storagePath);
+
+    /**
+     * Deletes a blob if nothing references it anymore
+     * @param hash the SHA-256 hash of the blob
+     * @return the number of blobs deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM FileBlob b WHERE b.hash = :hash AND b.referenceCount <= 0")
+    int deleteIfUnreferenced(String hash);
+}
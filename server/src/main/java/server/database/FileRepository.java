@@ -19,6 +19,19 @@ public interface FileRepository extends JpaRepository<FileData, FileCompositeKey
     @Query("DELETE FROM FileData f WHERE f.id.relatedNoteId = :noteid")
     void deleteByNoteId(long noteid);
 
+    /**
+     * Renames a file, updating the key of its row in place. Fails if the note already has a file with the new name
+     * @param noteid the id of the note
+     * @param oldName the current name of the file
+     * @param newName the new name of the file
+     * @return the number of files renamed, 0 if the note has no file with the old name
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FileData f SET f.id.filename = :newName "
+            + "WHERE f.id.relatedNoteId = :noteid AND f.id.filename = :oldName")
+    int rename(long noteid, String oldName, String newName);
+
     /**
      * Performs a query to the server
      * @param noteid
@@ -27,4 +40,14 @@ public interface FileRepository extends JpaRepository<FileData, FileCompositeKey
     @Transactional
     @Query("SELECT f FROM FileData f WHERE f.id.relatedNoteId = :noteid")
     List<FileData> fetchAllFileNamesById(long noteid);
+
+    /**
+     * Performs a query for the metadata of the files of a note, selecting only the listed columns
+     * @param noteid the id of the note
+     * @return The metadata of the files with a given noteid, ordered by name
+     */
+    @Query("SELECT f.id.relatedNoteId AS relatedNoteId, f.id.filename AS fileName, f.size AS size, "
+            + "f.contentType AS contentType, f.hash AS hash, f.uploadedAt AS uploadedAt "
+            + "FROM FileData f WHERE f.id.relatedNoteId = :noteid ORDER BY f.id.filename")
+    List<FileSummaryProjection> findSummariesByNoteId(long noteid);
 }
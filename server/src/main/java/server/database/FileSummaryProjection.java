@@ -0,0 +1,37 @@
+package server.database;
+
+/**
+ * Projection over the metadata columns of attached files used by the attachment list.
+ * Only these columns are selected, so listing the files of a note is one query over small rows.
+ */
+public interface FileSummaryProjection {
+    /**
+     * @return The id of the note the file is attached to
+     */
+    long getRelatedNoteId();
+
+    /**
+     * @return The name of the file
+     */
+    String getFileName();
+
+    /**
+     * @return The size of the file in bytes
+     */
+    long getSize();
+
+    /**
+     * @return The media type of the file
+     */
+    String getContentType();
+
+    /**
+     * @return The SHA-256 hash of the contents
+     */
+    String getHash();
+
+    /**
+     * @return The upload time in epoch milliseconds, or null for files uploaded before it was recorded
+     */
+    Long getUploadedAt();
+}
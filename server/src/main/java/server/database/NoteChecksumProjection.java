@@ -0,0 +1,22 @@
+package server.database;
+
+/**
+ * JPA projection of the number of notes and the sums of their ids and revisions,
+ * which the search index is compared with.
+ */
+public interface NoteChecksumProjection {
+    /**
+     * @return The number of notes
+     */
+    long getNotes();
+
+    /**
+     * @return The sum of the ids of the notes, or null if there are none
+     */
+    Long getIdSum();
+
+    /**
+     * @return The sum of the revisions of the notes, counting a missing revision as 0, or null if there are none
+     */
+    Long getRevisionSum();
+}
@@ -0,0 +1,31 @@
+package server.database;
+
+import commons.NoteLink;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface NoteLinkRepository extends JpaRepository<NoteLink, Long> {
+    /**
+     * Performs a query for the notes linking to a title
+     *
+     * @param targetTitle The normalized title
+     * @return The ids of the notes containing a link to the title
+     */
+    @Query("SELECT DISTINCT l.sourceId FROM NoteLink l WHERE l.targetTitle = :targetTitle")
+    List<Long> findSourceIdsByTargetTitle(String targetTitle);
+
+    /**
+     * Perform a query that deletes all links of the given notes
+     *
+     * @param sourceIds The ids of the notes
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM NoteLink l WHERE l.sourceId IN :sourceIds")
+    void deleteBySourceIds(Collection<Long> sourceIds);
+}
@@ -1,7 +1,162 @@
 package server.database;
 
+import org.springframework.data.domain.Limit;
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import commons.Note;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface NoteRepository extends JpaRepository<Note, Long> {
+    /**
+     * Fetches the next page of notes after the given id, ordered by id.
+     * Used for keyset pagination, so the database can seek on the primary key
+     * instead of skipping over an offset.
+     *
+     * @param afterId The id of the last note of the previous page
+     * @param limit   The maximum number of notes to return
+     * @return The notes with an id greater than afterId
+     */
+    List<Note> findByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
+
+    /**
+     * Fetches the next page of notes of one collection after the given id, ordered by id.
+     * Backed by the (collection_Title, id) index, so only the rows of that collection are read.
+     *
+     * @param collectionTitle The title of the collection
+     * @param afterId         The id of the last note of the previous page
+     * @param limit           The maximum number of notes to return
+     * @return The notes of the collection with an id greater than afterId
+     */
+    List<Note> findByCollectionTitleAndIdGreaterThanOrderByIdAsc(String collectionTitle, long afterId, Limit limit);
+
+    /**
+     * Fetches the next page of note summaries after the given id, ordered by id.
+     * Only the columns of the projection are selected.
+     *
+     * @param afterId The id of the last note of the previous page
+     * @param limit   The maximum number of summaries to return
+     * @return The summaries of the notes with an id greater than afterId
+     */
+    List<NoteSummaryProjection> findSummariesByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
+
+    /**
+     * Fetches the notes saved after the given revision, ordered by revision
+     *
+     * @param since The revision the caller is up to date with
+     * @param limit The maximum number of notes to return
+     * @return The notes with a revision greater than since
+     */
+    List<Note> findByRevisionGreaterThanOrderByRevisionAsc(long since, Limit limit);
+
+    /**
+     * Fetches the notes saved in the given revision range, ordered by revision
+     *
+     * @param since The exclusive lower bound of the range
+     * @param upTo  The inclusive upper bound of the range
+     * @param limit The maximum number of notes to return
+     * @return The notes with a revision in the range
+     */
+    List<Note> findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(long since, long upTo, Limit limit);
+
+    /**
+     * Performs a query for the highest revision of any note
+     *
+     * @return The highest revision, or null if no note has a revision
+     */
+    @Query("SELECT MAX(n.revision) FROM Note n")
+    Long findMaxRevision();
+
+    /**
+     * Performs a query for the number of notes and the sums of their ids and revisions
+     *
+     * @return The checksum of the notes
+     */
+    @Query("SELECT COUNT(n) AS notes, SUM(n.id) AS idSum, SUM(COALESCE(n.revision, 0)) AS revisionSum FROM Note n")
+    NoteChecksumProjection findChecksum();
+
+    /**
+     * Perform a query that stores the rendered HTML of a note under a new revision,
+     * if the content of the note is still the content the HTML was rendered from.
+     * The version is left as it is, so a client editing the note can still save it.
+     *
+     * @param id       The id of the note
+     * @param content  The content the HTML was rendered from
+     * @param html     The rendered HTML
+     * @param revision The new revision of the note
+     * @return The number of updated notes, 0 if the note was deleted or its content changed
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Note n SET n.html = :html, n.revision = :revision WHERE n.id = :id AND n.content = :content")
+    int updateHtml(long id, String content, String html, long revision);
+
+    /**
+     * Fetches the next page of notes with content but without HTML after the given id, ordered by id
+     *
+     * @param afterId The id of the last note of the previous page
+     * @param limit   The maximum number of notes to return
+     * @return The notes without HTML with an id greater than afterId
+     */
+    List<Note> findByHtmlIsNullAndContentIsNotNullAndIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
+
+    /**
+     * Fetches the given notes together with their tags in a single query,
+     * so changing or deleting their tags does not load each collection separately.
+     *
+     * @param ids The ids of the notes
+     * @return The notes that exist, with their tags initialized
+     */
+    @Query("SELECT DISTINCT n FROM Note n LEFT JOIN FETCH n.tags WHERE n.id IN :ids")
+    List<Note> findAllWithTagsByIdIn(Collection<Long> ids);
+
+    /**
+     * Fetches the tags of the given notes in a single query
+     *
+     * @param noteIds The ids of the notes
+     * @return One row per (note, tag) pair
+     */
+    @Query("SELECT n.id AS noteId, t AS tag FROM Note n JOIN n.tags t WHERE n.id IN :noteIds")
+    List<NoteTagProjection> findTagsByNoteIds(Collection<Long> noteIds);
+
+    /**
+     * Fetches the rows of the note_tags table for a range of note ids, ordered by note id.
+     * Only the tags table is read, not the notes. The rows are not mapped to a projection,
+     * since this reads every tag when the tag index is loaded and the proxies cost more than the query.
+     *
+     * @param afterId The id to start after
+     * @param lastId  The last id of the range
+     * @return One row per (note, tag) pair in the range, holding the note id and the tag
+     */
+    @Query(value = "SELECT note_id AS noteId, tag FROM note_tags WHERE note_id > :afterId AND note_id <= :lastId "
+            + "ORDER BY note_id", nativeQuery = true)
+    List<Object[]> findTagsByNoteIdBetween(long afterId, long lastId);
+
+    /**
+     * Fetches the contents of the given notes, without the rest of the notes
+     *
+     * @param ids The ids of the notes
+     * @return One row per existing note, holding its id and content
+     */
+    @Query("SELECT n.id, n.content FROM Note n WHERE n.id IN :ids")
+    List<Object[]> findContentsByIdIn(Collection<Long> ids);
+
+    /**
+     * Performs a query for the highest id of any note
+     *
+     * @return The highest id, or null if there are no notes
+     */
+    @Query("SELECT MAX(n.id) FROM Note n")
+    Long findMaxId();
+
+    /**
+     * Fetches the notes with the given ids, ordered by id
+     *
+     * @param ids The ids of the notes
+     * @return The notes that exist
+     */
+    List<Note> findByIdInOrderByIdAsc(Collection<Long> ids);
 }
@@ -0,0 +1,27 @@
+package server.database;
+
+/**
+ * Closed JPA projection over the scalar note columns used by the note list.
+ * Spring Data only selects these columns, so content and html are never read.
+ */
+public interface NoteSummaryProjection {
+    /**
+     * @return The id of the note
+     */
+    long getId();
+
+    /**
+     * @return The title of the note
+     */
+    String getTitle();
+
+    /**
+     * @return The title of the collection the note belongs to
+     */
+    String getCollectionTitle();
+
+    /**
+     * @return The last modification time in epoch milliseconds
+     */
+    Long getLastModified();
+}
@@ -0,0 +1,16 @@
+package server.database;
+
+/**
+ * JPA projection of a single row of the note_tags table.
+ */
+public interface NoteTagProjection {
+    /**
+     * @return The id of the note the tag belongs to
+     */
+    long getNoteId();
+
+    /**
+     * @return The tag
+     */
+    String getTag();
+}
@@ -0,0 +1,29 @@
+package server.database;
+
+import commons.NoteTombstone;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface NoteTombstoneRepository extends JpaRepository<NoteTombstone, Long> {
+    /**
+     * Fetches the tombstones of the notes deleted in the given revision range
+     *
+     * @param since The exclusive lower bound of the range
+     * @param upTo  The inclusive upper bound of the range
+     * @param limit The maximum number of tombstones to return
+     * @return The tombstones, ordered by revision
+     */
+    List<NoteTombstone> findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(long since, long upTo,
+                                                                                          Limit limit);
+
+    /**
+     * Performs a query for the highest revision of any tombstone
+     *
+     * @return The highest revision, or null if there are no tombstones
+     */
+    @Query("SELECT MAX(t.revision) FROM NoteTombstone t")
+    Long findMaxRevision();
+}
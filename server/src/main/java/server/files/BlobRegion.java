@@ -0,0 +1,116 @@
+package server.files;
+
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A range of bytes of a blob, served as a resource.
+ * The bytes are read with positional reads on a {@link FileChannel}, so a range at the end of a large blob
+ * costs no more than one at the start, and nothing outside the range is read.
+ */
+public class BlobRegion extends AbstractResource {
+
+    private final Path file;
+    private final long position;
+    private final long length;
+
+    /**
+     * Constructs a region of a blob
+     *
+     * @param file     The file of the blob
+     * @param position The offset of the first byte of the region
+     * @param length   The number of bytes in the region
+     */
+    public BlobRegion(Path file, long position, long length) {
+        this.file = file;
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * Getter for the offset of the first byte of the region
+     *
+     * @return The offset in the blob
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.isRegularFile(file);
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public String getDescription() {
+        return "bytes " + position + "-" + (position + length - 1) + " of " + file;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new RegionInputStream(FileChannel.open(file, StandardOpenOption.READ), position, position + length);
+    }
+
+    /**
+     * Reads the bytes between two offsets of a channel, without moving the position of the channel
+     */
+    private static final class RegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long next;
+
+        private RegionInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            if (next >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(count, end - next)), next);
+            if (read < 0) {
+                return -1;
+            }
+            next += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long count) {
+            long skipped = Math.max(0, Math.min(count, end - next));
+            next += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - next);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
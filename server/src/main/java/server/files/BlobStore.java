@@ -0,0 +1,248 @@
+package server.files;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Stores the contents of attachments as files on disk, named after the SHA-256 hash of their bytes.
+ * A blob lives at {@code ab/cd/abcd...} under the directory of the store, so equal contents are stored once
+ * and no directory grows too large.
+ * <p>
+ * Uploads are streamed to a temporary file while they are hashed, and then moved to their final path,
+ * so only a fixed-size buffer is held in memory and readers never see a partly written blob.
+ * <p>
+ * Moving a blob into place and deleting it happen under a lock of its hash, together with the changes to
+ * its reference count, so an upload never counts a reference to a blob a concurrent delete is removing.
+ */
+@Component
+public class BlobStore {
+
+    private static final String TEMP_DIRECTORY = "tmp";
+
+    /**
+     * The number of locks the hashes of blobs are spread over
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path directory;
+    private final Path temp;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    /**
+     * Creates the blob store in the configured directory
+     *
+     * @param directory The directory to store blobs in
+     */
+    @Autowired
+    public BlobStore(@Value("${notes.files.directory:attachments}") String directory) {
+        this(Path.of(directory));
+    }
+
+    /**
+     * Creates a blob store in the given directory, removing uploads left unfinished by a crash
+     *
+     * @param directory The directory to store blobs in
+     */
+    public BlobStore(Path directory) {
+        this.directory = directory;
+        this.temp = directory.resolve(TEMP_DIRECTORY);
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        try {
+            Files.createDirectories(temp);
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(temp)) {
+                for (Path leftover : leftovers) {
+                    Files.deleteIfExists(leftover);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open the blob store in " + directory, e);
+        }
+    }
+
+    /**
+     * Writes the bytes of a stream to the store
+     *
+     * @param input The stream to read, not closed
+     * @return The hash, size and path of the stored blob
+     * @throws IOException If the stream cannot be read or the blob cannot be written
+     */
+    public StoredBlob store(InputStream input) throws IOException {
+        return store(input, blob -> {
+        });
+    }
+
+    /**
+     * Writes the bytes of a stream to the store and records a reference to them. The reference is recorded
+     * under the lock of the hash, right after the blob is moved into place, so a blob deleted in between
+     * by {@link #deleteIf} is written again
+     *
+     * @param input     The stream to read, not closed
+     * @param reference Records a reference to the stored blob
+     * @return The hash, size and path of the stored blob
+     * @throws IOException If the stream cannot be read or the blob cannot be written
+     */
+    public StoredBlob store(InputStream input, Consumer<StoredBlob> reference) throws IOException {
+        Path upload = Files.createTempFile(temp, "upload-", null);
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream output = Files.newOutputStream(upload)) {
+                size = new DigestInputStream(input, digest).transferTo(output);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            StoredBlob blob = new StoredBlob(hash, size, storagePath(hash));
+            Path target = directory.resolve(blob.storagePath());
+            ReentrantLock lock = lock(hash);
+            lock.lock();
+            try {
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    try {
+                        Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (FileAlreadyExistsException e) {
+                        // stored by a concurrent upload of the same bytes
+                    }
+                }
+                reference.accept(blob);
+            } finally {
+                lock.unlock();
+            }
+            return blob;
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    /**
+     * Returns the file holding a blob
+     *
+     * @param storagePath The path of the blob, as returned by {@link #store}
+     * @return The file
+     */
+    public Path resolve(String storagePath) {
+        return directory.resolve(storagePath);
+    }
+
+    /**
+     * Creates an empty file in the temporary directory of the store, to be moved into place once written
+     *
+     * @return The file
+     * @throws IOException If the file cannot be created
+     */
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(temp, "derived-", null);
+    }
+
+    /**
+     * Deletes a blob, if it exists, along with the files derived from it, such as thumbnails,
+     * which are stored next to it under its name followed by a dot
+     *
+     * @param storagePath The path of the blob, as returned by {@link #store}
+     * @throws IOException If the blob cannot be deleted
+     */
+    public void delete(String storagePath) throws IOException {
+        Path blob = resolve(storagePath);
+        Files.deleteIfExists(blob);
+        if (!Files.isDirectory(blob.getParent())) {
+            return;
+        }
+        try (DirectoryStream<Path> derived = Files.newDirectoryStream(blob.getParent(), blob.getFileName() + ".*")) {
+            for (Path file : derived) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Deletes a blob if nothing references it anymore. The references are checked under the lock of
+     * the hash, so no upload of the same contents counts a reference to the blob while it is deleted
+     *
+     * @param hash         The SHA-256 hash of the blob, in hexadecimal
+     * @param storagePath  The path of the blob, as returned by {@link #store}
+     * @param unreferenced Removes the record of the blob if nothing references it, returning whether it did
+     * @return True if the blob was deleted
+     * @throws IOException If the blob cannot be deleted
+     */
+    public boolean deleteIf(String hash, String storagePath, BooleanSupplier unreferenced) throws IOException {
+        ReentrantLock lock = lock(hash);
+        lock.lock();
+        try {
+            if (!unreferenced.getAsBoolean()) {
+                return false;
+            }
+            delete(storagePath);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deletes every blob in the store
+     *
+     * @throws IOException If a blob cannot be deleted
+     */
+    public void deleteAll() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                // uploads still being written are left alone
+                if (!file.equals(directory) && !file.startsWith(temp)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the path a blob with the given hash is stored at, relative to the directory of the store
+     *
+     * @param hash The SHA-256 hash of the blob, in hexadecimal
+     * @return The path, using forward slashes
+     */
+    static String storagePath(String hash) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    private ReentrantLock lock(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), locks.length)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A blob written to the store
+     *
+     * @param hash        The SHA-256 hash of the bytes, in hexadecimal
+     * @param size        The number of bytes
+     * @param storagePath The path of the blob, relative to the directory of the store
+     */
+    public record StoredBlob(String hash, long size, String storagePath) {
+    }
+}
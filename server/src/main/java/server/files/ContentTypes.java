@@ -0,0 +1,69 @@
+package server.files;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Determines the media type of attachments, so they are served with the type a browser or web view
+ * needs to show them. Clients often upload everything as {@code application/octet-stream}, so a type they
+ * declare is only kept when it says more than that.
+ */
+public final class ContentTypes {
+
+    private ContentTypes() {
+    }
+
+    /**
+     * Determines the media type of an uploaded file, from the type declared by the client, then from the
+     * extension of its name, and last from the first bytes of its contents
+     *
+     * @param filename The name of the file
+     * @param declared The type declared by the client, or null
+     * @param contents The file holding the contents
+     * @return The media type, {@code application/octet-stream} if it cannot be determined
+     */
+    public static String detect(String filename, String declared, Path contents) {
+        if (declared != null) {
+            try {
+                MediaType type = MediaType.parseMediaType(declared);
+                if (!type.isWildcardType() && !type.isWildcardSubtype()
+                        && !MediaType.APPLICATION_OCTET_STREAM.equalsTypeAndSubtype(type)) {
+                    return type.toString();
+                }
+            } catch (InvalidMediaTypeException e) {
+                // a malformed type says nothing about the file
+            }
+        }
+        String byName = fromName(filename);
+        if (!MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(byName)) {
+            return byName;
+        }
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(contents))) {
+            String sniffed = URLConnection.guessContentTypeFromStream(input);
+            if (sniffed != null) {
+                return sniffed;
+            }
+        } catch (IOException e) {
+            // the contents are served as plain bytes
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+
+    /**
+     * Determines the media type of a file from the extension of its name
+     *
+     * @param filename The name of the file
+     * @return The media type, {@code application/octet-stream} for unknown extensions
+     */
+    public static String fromName(String filename) {
+        return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+}
@@ -0,0 +1,93 @@
+package server.files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Moves the attachments stored in the database by older versions into the {@link BlobStore}.
+ * Those versions kept the bytes of every file in a {@code data} column of the {@code file_data} table.
+ * Each file is streamed from the database to disk, and its column cleared once its metadata is written;
+ * the column is dropped when every file has been moved. A migration interrupted by a crash resumes
+ * with the files that still have data on the next start.
+ * <p>
+ * Files stored before contents were reference counted get their {@code file_blob} rows, counting the files
+ * that share each hash.
+ */
+@Component
+public class LegacyFileMigration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LegacyFileMigration.class);
+
+    private final JdbcTemplate jdbc;
+    private final BlobStore blobs;
+
+    /**
+     * Creates the migration
+     *
+     * @param jdbc  The template used to read the legacy column
+     * @param blobs The blob store the files are moved to
+     */
+    public LegacyFileMigration(JdbcTemplate jdbc, BlobStore blobs) {
+        this.jdbc = jdbc;
+        this.blobs = blobs;
+    }
+
+    /**
+     * Moves the files if the database still has the legacy column, and records the blobs of files
+     * stored without one
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        moveLegacyData();
+        int recorded = jdbc.update("INSERT INTO file_blob (hash, file_size, storage_path, reference_count) "
+                + "SELECT hash, MAX(file_size), MAX(storage_path), COUNT(*) FROM file_data f "
+                + "WHERE hash IS NOT NULL AND NOT EXISTS (SELECT 1 FROM file_blob b WHERE b.hash = f.hash) "
+                + "GROUP BY hash");
+        if (recorded > 0) {
+            LOGGER.info("Counted the references to {} stored attachments", recorded);
+        }
+    }
+
+    /**
+     * Moves the bytes out of the legacy column into the blob store
+     */
+    private void moveLegacyData() {
+        Integer columns = jdbc.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE UPPER(TABLE_NAME) = 'FILE_DATA' AND UPPER(COLUMN_NAME) = 'DATA'", Integer.class);
+        if (columns == null || columns == 0) {
+            return;
+        }
+
+        List<Object[]> keys = jdbc.query("SELECT filename, related_note_id FROM file_data WHERE data IS NOT NULL",
+                (row, _) -> new Object[]{row.getString(1), row.getLong(2)});
+        for (Object[] key : keys) {
+            BlobStore.StoredBlob blob = jdbc.query(
+                    "SELECT data FROM file_data WHERE filename = ? AND related_note_id = ?", rows -> {
+                        if (!rows.next()) {
+                            return null;
+                        }
+                        try (InputStream data = rows.getBinaryStream(1)) {
+                            return blobs.store(data);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }, key);
+            if (blob != null) {
+                jdbc.update("UPDATE file_data SET hash = ?, file_size = ?, content_type = ?, storage_path = ?, "
+                                + "data = NULL WHERE filename = ? AND related_note_id = ?",
+                        blob.hash(), blob.size(), "application/octet-stream", blob.storagePath(), key[0], key[1]);
+            }
+        }
+        jdbc.execute("ALTER TABLE file_data DROP COLUMN data");
+        LOGGER.info("Moved {} attachments from the database to the blob store", keys.size());
+    }
+}
@@ -0,0 +1,281 @@
+package server.files;
+
+import commons.FileData;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates downscaled copies of attached images, so notes can show a preview without
+ * downloading and decoding the full image.
+ * A thumbnail is stored next to its blob, named after the hash and the width, so every file with the same
+ * contents shares it and it is deleted along with the blob. Images are decoded with subsampling, so a
+ * large photo is never held in memory at full resolution. Images with more pixels than a limit are not
+ * decoded at all, and very tall images are scaled to fit a bounded height, so neither the decoded image
+ * nor the thumbnail can grow with a size declared in the header of a file.
+ * <p>
+ * Thumbnails are created on a pool of worker threads. Requests for a thumbnail that is being created
+ * wait for that work instead of repeating it.
+ */
+@Component
+public class ThumbnailGenerator {
+
+    /**
+     * The width of the thumbnails shown in rendered notes
+     */
+    public static final int DEFAULT_WIDTH = 640;
+
+    /**
+     * The widths thumbnails are created in. Requested widths are rounded up to one of them,
+     * so the number of thumbnails of an image is bounded
+     */
+    static final int[] WIDTHS = {160, 320, 640, 1280};
+
+    /**
+     * The largest number of pixels of an image thumbnails are created of by default
+     */
+    static final long DEFAULT_MAX_PIXELS = 100_000_000;
+
+    /**
+     * How many times its width a thumbnail may be high. Taller images are scaled down further
+     */
+    static final int MAX_ASPECT_RATIO = 4;
+
+    private final BlobStore blobs;
+    private final Executor executor;
+    private final long maxPixels;
+
+    /**
+     * The thumbnails being created, by the path they are stored at
+     */
+    private final Map<Path, CompletableFuture<Thumbnail>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Autowired constructor for ThumbnailGenerator.
+     * When all threads are busy and the queue is full, the requesting thread creates the thumbnail itself.
+     *
+     * @param blobs     The blob store holding the images and their thumbnails
+     * @param threads   The number of thumbnail threads
+     * @param queueSize The number of thumbnails that can wait for a thread
+     * @param maxPixels The largest number of pixels of an image thumbnails are created of
+     */
+    @Autowired
+    public ThumbnailGenerator(BlobStore blobs,
+                              @Value("${notes.files.thumbnail-threads:2}") int threads,
+                              @Value("${notes.files.thumbnail-queue-size:100}") int queueSize,
+                              @Value("${notes.files.thumbnail-max-pixels:" + DEFAULT_MAX_PIXELS + "}") long maxPixels) {
+        this(blobs, new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), new ThreadPoolExecutor.CallerRunsPolicy()), maxPixels);
+    }
+
+    /**
+     * Constructor for ThumbnailGenerator with a given executor
+     *
+     * @param blobs    The blob store holding the images and their thumbnails
+     * @param executor The executor thumbnails are created on
+     */
+    public ThumbnailGenerator(BlobStore blobs, Executor executor) {
+        this(blobs, executor, DEFAULT_MAX_PIXELS);
+    }
+
+    /**
+     * Constructor for ThumbnailGenerator with a given executor and pixel limit
+     *
+     * @param blobs     The blob store holding the images and their thumbnails
+     * @param executor  The executor thumbnails are created on
+     * @param maxPixels The largest number of pixels of an image thumbnails are created of
+     */
+    ThumbnailGenerator(BlobStore blobs, Executor executor, long maxPixels) {
+        this.blobs = blobs;
+        this.executor = executor;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Checks whether a file is an image thumbnails can be created of, by its name
+     *
+     * @param filename The name of the file
+     * @return True for PNG, JPEG, GIF and BMP files
+     */
+    public static boolean isImage(String filename) {
+        return filename.toLowerCase(Locale.ROOT).matches(".*\\.(png|jpg|jpeg|gif|bmp)");
+    }
+
+    /**
+     * Rounds a requested width up to the width of a thumbnail
+     *
+     * @param requested The requested width in pixels
+     * @return The smallest thumbnail width at least as large, or the largest thumbnail width
+     */
+    public static int snapWidth(int requested) {
+        for (int width : WIDTHS) {
+            if (width >= requested) {
+                return width;
+            }
+        }
+        return WIDTHS[WIDTHS.length - 1];
+    }
+
+    /**
+     * Creates the thumbnail shown in rendered notes of an uploaded file in the background, if it is an image
+     *
+     * @param fd The metadata of the file
+     */
+    public void submit(FileData fd) {
+        if (isImage(fd.getFileName())) {
+            thumbnail(fd, DEFAULT_WIDTH);
+        }
+    }
+
+    /**
+     * Returns a thumbnail of an image, creating it if it does not exist yet
+     *
+     * @param fd    The metadata of the image
+     * @param width The width of the thumbnail, one of the thumbnail widths
+     * @return The thumbnail, completed with null if the image is no larger than the thumbnail,
+     *         has more pixels than the limit or cannot be decoded, in which case the image itself should be shown
+     */
+    public CompletableFuture<Thumbnail> thumbnail(FileData fd, int width) {
+        boolean png = keepsTransparency(fd.getFileName());
+        Thumbnail thumbnail = new Thumbnail(blobs.resolve(fd.getStoragePath() + ".w" + width + (png ? ".png" : ".jpg")),
+                png ? "image/png" : "image/jpeg");
+        if (Files.exists(thumbnail.file())) {
+            return CompletableFuture.completedFuture(thumbnail);
+        }
+        CompletableFuture<Thumbnail> created = new CompletableFuture<>();
+        CompletableFuture<Thumbnail> running = pending.putIfAbsent(thumbnail.file(), created);
+        if (running != null) {
+            return running;
+        }
+        Path source = blobs.resolve(fd.getStoragePath());
+        executor.execute(() -> {
+            try {
+                created.complete(create(source, thumbnail, width, png) ? thumbnail : null);
+            } catch (Exception e) {
+                created.completeExceptionally(e);
+            } finally {
+                pending.remove(thumbnail.file(), created);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Decodes an image at no more than twice the size of the thumbnail in either dimension,
+     * scales it down and stores it. The thumbnail is at most {@code width} wide and
+     * {@link #MAX_ASPECT_RATIO} times that high
+     *
+     * @return True if the thumbnail was stored
+     */
+    private boolean create(Path source, Thumbnail thumbnail, int maxWidth, boolean png) throws IOException {
+        BufferedImage image;
+        int width;
+        int height;
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxPixels) {
+                    return false;
+                }
+                double scale = Math.min((double) maxWidth / sourceWidth,
+                        (double) maxWidth * MAX_ASPECT_RATIO / sourceHeight);
+                if (scale >= 1) {
+                    return false;
+                }
+                width = Math.max(1, (int) Math.round(sourceWidth * scale));
+                height = Math.max(1, (int) Math.round(sourceHeight * scale));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = (int) (1 / (2 * scale));
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        BufferedImage scaled = new BufferedImage(width, height, png ? BufferedImage.TYPE_INT_ARGB
+                : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            if (!png) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Path temp = blobs.createTempFile();
+        try {
+            if (!ImageIO.write(scaled, png ? "png" : "jpg", temp.toFile())) {
+                return false;
+            }
+            Files.move(temp, thumbnail.file(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Thumbnails of formats that may be transparent are stored as PNG, others as the smaller JPEG
+     */
+    private static boolean keepsTransparency(String filename) {
+        return filename.toLowerCase(Locale.ROOT).matches(".*\\.(png|gif)");
+    }
+
+    /**
+     * Stops the thumbnail threads when the server shuts down
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * A stored thumbnail
+     *
+     * @param file      The file holding the thumbnail
+     * @param mediaType The media type of the thumbnail
+     */
+    public record Thumbnail(Path file, String mediaType) {
+    }
+}
@@ -0,0 +1,105 @@
+package server.search;
+
+import java.util.BitSet;
+
+/**
+ * A part of the search index holding a set of documents, each being the indexed version of a note.
+ * A note has at most one live document across all segments of an index;
+ * older versions are marked as deleted until the segment is compacted or merged.
+ */
+abstract class IndexSegment {
+
+    private final BitSet deleted;
+    private int deletedCount;
+
+    /**
+     * Constructs a segment with the given deleted documents
+     *
+     * @param deleted The deleted documents
+     */
+    IndexSegment(BitSet deleted) {
+        this.deleted = deleted;
+        this.deletedCount = deleted.cardinality();
+    }
+
+    /**
+     * Returns the number of documents in the segment, including deleted ones
+     *
+     * @return The number of documents
+     */
+    abstract int documentCount();
+
+    /**
+     * Returns the documents containing a term
+     *
+     * @param term The term
+     * @return The postings list, or null if no document contains the term
+     */
+    abstract PostingsList postings(String term);
+
+    /**
+     * Finds the live document of a note
+     *
+     * @param noteId The id of the note
+     * @return The document number, or -1 if the segment holds no live document of the note
+     */
+    abstract int find(long noteId);
+
+    abstract long noteId(int doc);
+
+    abstract long revision(int doc);
+
+    abstract int length(int doc);
+
+    abstract String title(int doc);
+
+    abstract String collectionTitle(int doc);
+
+    /**
+     * Returns whether a document is deleted
+     *
+     * @param doc The document number
+     * @return True if the document is deleted
+     */
+    boolean isDeleted(int doc) {
+        return deleted.get(doc);
+    }
+
+    /**
+     * Marks a document as deleted
+     *
+     * @param doc The document number
+     */
+    void delete(int doc) {
+        if (!deleted.get(doc)) {
+            deleted.set(doc);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * Forgets all deleted documents, once they have been dropped from the segment
+     */
+    void clearDeleted() {
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    /**
+     * Returns the number of deleted documents
+     *
+     * @return The number of deleted documents
+     */
+    int deletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Returns the deleted documents
+     *
+     * @return The deleted documents, not to be modified
+     */
+    BitSet deleted() {
+        return deleted;
+    }
+}
@@ -0,0 +1,245 @@
+package server.search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The in-memory segment that newly indexed notes are added to.
+ * Documents are numbered in the order they are added; the segment is written to disk
+ * as a {@link MappedSegment} at a checkpoint, leaving out its deleted documents.
+ */
+final class LiveSegment extends IndexSegment {
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<Long, Integer> documentsByNoteId = new HashMap<>();
+
+    /**
+     * Constructs an empty segment
+     */
+    LiveSegment() {
+        super(new BitSet());
+    }
+
+    /**
+     * Adds a document to the segment. Any older document of the note must be deleted first.
+     *
+     * @param noteId          The id of the note
+     * @param revision        The revision of the note
+     * @param title           The title of the note
+     * @param collectionTitle The collection of the note
+     * @param frequencies     The weighted frequency of every term of the note
+     * @param length          The weighted number of terms of the note
+     */
+    void add(long noteId, long revision, String title, String collectionTitle,
+             Map<String, Integer> frequencies, int length) {
+        int doc = documents.size();
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(doc, entry.getValue());
+        }
+        documents.add(new Document(noteId, revision, title, collectionTitle, length));
+        documentsByNoteId.put(noteId, doc);
+    }
+
+    /**
+     * Returns the distinct terms of the documents in the segment, including deleted ones until it is compacted
+     *
+     * @return The terms
+     */
+    Set<String> terms() {
+        return postings.keySet();
+    }
+
+    @Override
+    void delete(int doc) {
+        super.delete(doc);
+        documentsByNoteId.remove(noteId(doc), doc);
+    }
+
+    /**
+     * Drops the deleted documents from the postings and renumbers the others
+     */
+    void compact() {
+        int[] renumbered = new int[documents.size()];
+        List<Document> live = new ArrayList<>(documents.size() - deletedCount());
+        for (int doc = 0; doc < documents.size(); doc++) {
+            if (isDeleted(doc)) {
+                renumbered[doc] = -1;
+            } else {
+                renumbered[doc] = live.size();
+                documentsByNoteId.put(noteId(doc), live.size());
+                live.add(documents.get(doc));
+            }
+        }
+        Iterator<Postings> lists = postings.values().iterator();
+        while (lists.hasNext()) {
+            Postings list = lists.next();
+            list.renumber(renumbered);
+            if (list.size == 0) {
+                lists.remove();
+            }
+        }
+        documents.clear();
+        documents.addAll(live);
+        clearDeleted();
+    }
+
+    /**
+     * Writes the live documents of this segment to a segment file, ordered by note id
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written
+     */
+    void writeTo(Path file) throws IOException {
+        Integer[] order = new Integer[documents.size()];
+        int count = 0;
+        for (int doc = 0; doc < documents.size(); doc++) {
+            if (!isDeleted(doc)) {
+                order[count++] = doc;
+            }
+        }
+        Arrays.sort(order, 0, count, Comparator.comparingLong(this::noteId));
+        int[] renumbered = new int[documents.size()];
+        Arrays.fill(renumbered, -1);
+
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (int i = 0; i < count; i++) {
+                Document document = documents.get(order[i]);
+                renumbered[order[i]] = i;
+                writer.addDocument(document.noteId(), document.revision(), document.length(),
+                        document.title(), document.collectionTitle());
+            }
+            List<String> terms = new ArrayList<>(postings.keySet());
+            terms.sort(null);
+            long[] packed = new long[0];
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (packed.length < list.size) {
+                    packed = new long[Math.max(list.size, packed.length * 2)];
+                }
+                int size = 0;
+                for (int i = 0; i < list.size; i++) {
+                    int doc = renumbered[list.docs[i]];
+                    if (doc >= 0) {
+                        packed[size++] = SegmentWriter.pack(doc, list.frequencies[i]);
+                    }
+                }
+                writer.addTerm(term, packed, size);
+            }
+            writer.finish();
+        }
+    }
+
+    @Override
+    int documentCount() {
+        return documents.size();
+    }
+
+    @Override
+    PostingsList postings(String term) {
+        return postings.get(term);
+    }
+
+    @Override
+    int find(long noteId) {
+        Integer doc = documentsByNoteId.get(noteId);
+        return doc == null ? -1 : doc;
+    }
+
+    @Override
+    long noteId(int doc) {
+        return documents.get(doc).noteId();
+    }
+
+    @Override
+    long revision(int doc) {
+        return documents.get(doc).revision();
+    }
+
+    @Override
+    int length(int doc) {
+        return documents.get(doc).length();
+    }
+
+    @Override
+    String title(int doc) {
+        return documents.get(doc).title();
+    }
+
+    @Override
+    String collectionTitle(int doc) {
+        return documents.get(doc).collectionTitle();
+    }
+
+    /**
+     * An indexed version of a note
+     *
+     * @param noteId          The id of the note
+     * @param revision        The revision of the note that was indexed
+     * @param title           The title of the note
+     * @param collectionTitle The collection of the note
+     * @param length          The weighted number of terms in the note
+     */
+    private record Document(long noteId, long revision, String title, String collectionTitle, int length) {
+    }
+
+    /**
+     * A growable postings list
+     */
+    private static final class Postings implements PostingsList {
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        private void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        private void renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = renumbered[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            if (kept < docs.length / 4) {
+                docs = Arrays.copyOf(docs, Math.max(4, kept));
+                frequencies = Arrays.copyOf(frequencies, Math.max(4, kept));
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int doc(int position) {
+            return docs[position];
+        }
+
+        @Override
+        public int frequency(int position) {
+            return frequencies[position];
+        }
+    }
+}
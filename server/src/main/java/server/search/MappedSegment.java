@@ -0,0 +1,292 @@
+package server.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * A segment written by {@link SegmentWriter} and memory-mapped read-only.
+ * Opening a segment only reads its header; documents and terms are found by binary search
+ * in the mapped file, so the cost of opening does not depend on its size.
+ * The documents deleted since the segment was written are kept in memory and saved in a separate file.
+ */
+final class MappedSegment extends IndexSegment {
+
+    private final String name;
+    private final ByteBuffer buffer;
+    private final int documentCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int documentsOffset;
+    private final int dictionaryOffset;
+    private final int stringsOffset;
+    private String deletesFile;
+    private boolean deletesChanged;
+
+    private MappedSegment(String name, ByteBuffer buffer, BitSet deleted, String deletesFile) throws IOException {
+        super(deleted);
+        this.name = name;
+        this.buffer = buffer;
+        this.deletesFile = deletesFile;
+        if (buffer.capacity() < SegmentWriter.HEADER_SIZE || buffer.getInt(0) != SegmentWriter.MAGIC) {
+            throw new IOException("Not a search index segment: " + name);
+        }
+        if (buffer.getInt(4) != SegmentWriter.VERSION) {
+            throw new IOException("Unsupported search index segment version: " + name);
+        }
+        documentCount = buffer.getInt(8);
+        termCount = buffer.getInt(12);
+        totalLength = buffer.getLong(16);
+        documentsOffset = (int) buffer.getLong(24);
+        dictionaryOffset = (int) buffer.getLong(32);
+        stringsOffset = (int) buffer.getLong(40);
+        if (documentsOffset + (long) documentCount * SegmentWriter.DOCUMENT_SIZE != dictionaryOffset
+                || dictionaryOffset + (long) termCount * SegmentWriter.TERM_SIZE != stringsOffset
+                || stringsOffset > buffer.capacity()) {
+            throw new IOException("Truncated search index segment: " + name);
+        }
+    }
+
+    /**
+     * Maps a segment file
+     *
+     * @param name    The name of the segment
+     * @param file    The segment file
+     * @param deletes The file holding the deleted documents of the segment, or null if none were deleted
+     * @return The segment
+     * @throws IOException If a file cannot be read or is not a valid segment
+     */
+    static MappedSegment open(String name, Path file, Path deletes) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Search index segment too large: " + name);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        BitSet deleted = new BitSet();
+        if (deletes != null) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(deletes))) {
+                long[] words = new long[in.readInt()];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readLong();
+                }
+                deleted = BitSet.valueOf(words);
+            }
+        }
+        return new MappedSegment(name, buffer, deleted,
+                deletes == null ? null : deletes.getFileName().toString());
+    }
+
+    /**
+     * Saves the deleted documents of this segment
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be written
+     */
+    void writeDeletes(Path file) throws IOException {
+        long[] words = deleted().toLongArray();
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        deletesFile = file.getFileName().toString();
+        deletesChanged = false;
+    }
+
+    /**
+     * Returns the name of the file the deleted documents were last saved to
+     *
+     * @return The file name, or null if no documents were deleted when the segment was last saved
+     */
+    String deletesFile() {
+        return deletesFile;
+    }
+
+    @Override
+    void delete(int doc) {
+        super.delete(doc);
+        deletesChanged = true;
+    }
+
+    /**
+     * Returns whether documents were deleted since the deletes were last saved
+     *
+     * @return True if the deletes have to be saved
+     */
+    boolean deletesChanged() {
+        return deletesChanged;
+    }
+
+    /**
+     * Returns the name of the segment, which its files are named after
+     *
+     * @return The name
+     */
+    String name() {
+        return name;
+    }
+
+    /**
+     * Returns the weighted number of terms of all documents, including deleted ones
+     *
+     * @return The total length
+     */
+    long totalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Returns the number of distinct terms in the segment
+     *
+     * @return The number of terms
+     */
+    int termCount() {
+        return termCount;
+    }
+
+    /**
+     * Returns a term of the dictionary
+     *
+     * @param index The position of the term in the dictionary
+     * @return The term
+     */
+    String term(int index) {
+        int entry = dictionaryOffset + index * SegmentWriter.TERM_SIZE;
+        return readString(entry);
+    }
+
+    /**
+     * Returns the postings of a term of the dictionary
+     *
+     * @param index The position of the term in the dictionary
+     * @return The postings list
+     */
+    PostingsList postingsAt(int index) {
+        int entry = dictionaryOffset + index * SegmentWriter.TERM_SIZE;
+        return new Postings((int) buffer.getLong(entry + 8), buffer.getInt(entry + 16));
+    }
+
+    @Override
+    int documentCount() {
+        return documentCount;
+    }
+
+    @Override
+    PostingsList postings(String term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = term(middle).compareTo(term);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return postingsAt(middle);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    int find(long noteId) {
+        int low = 0;
+        int high = documentCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = noteId(middle);
+            if (id < noteId) {
+                low = middle + 1;
+            } else if (id > noteId) {
+                high = middle - 1;
+            } else {
+                return isDeleted(middle) ? -1 : middle;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    long noteId(int doc) {
+        return buffer.getLong(documentsOffset + doc * SegmentWriter.DOCUMENT_SIZE);
+    }
+
+    @Override
+    long revision(int doc) {
+        return buffer.getLong(documentsOffset + doc * SegmentWriter.DOCUMENT_SIZE + 8);
+    }
+
+    @Override
+    int length(int doc) {
+        return buffer.getInt(documentsOffset + doc * SegmentWriter.DOCUMENT_SIZE + 16);
+    }
+
+    @Override
+    String title(int doc) {
+        return readString(documentsOffset + doc * SegmentWriter.DOCUMENT_SIZE + 20);
+    }
+
+    @Override
+    String collectionTitle(int doc) {
+        return readString(documentsOffset + doc * SegmentWriter.DOCUMENT_SIZE + 28);
+    }
+
+    /**
+     * Reads a string stored as an offset into the strings area and a length, -1 for null
+     */
+    private String readString(int position) {
+        int offset = buffer.getInt(position);
+        int length = buffer.getInt(position + 4);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(stringsOffset + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A postings list read from the mapped file
+     */
+    private final class Postings implements PostingsList {
+        private final int offset;
+        private final int size;
+
+        private Postings(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public int doc(int position) {
+            return buffer.getInt(offset + position * SegmentWriter.POSTING_SIZE);
+        }
+
+        @Override
+        public int frequency(int position) {
+            return buffer.getInt(offset + position * SegmentWriter.POSTING_SIZE + 4);
+        }
+    }
+}
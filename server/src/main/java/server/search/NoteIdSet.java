@@ -0,0 +1,386 @@
+package server.search;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A compressed set of note ids.
+ * Ids are split into chunks of {@value #CHUNK_SIZE} consecutive values. Each chunk holds its values
+ * as a sorted array while it is sparse, and as a bitmap of {@value #CHUNK_SIZE} bits once the array
+ * would be larger than the bitmap. Note ids are handed out in sequence, so a set of ids costs
+ * at most two bytes per id, and at most one bit per id of its range.
+ * Intersections and unions work chunk by chunk, without expanding the sets.
+ * <p>
+ * Not safe for use by multiple threads.
+ */
+final class NoteIdSet {
+
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * The largest number of values a chunk holds as an array; beyond it, the bitmap is smaller
+     */
+    static final int MAX_ARRAY_SIZE = 4096;
+
+    private static final int WORDS = CHUNK_SIZE / Long.SIZE;
+
+    private final TreeMap<Long, Chunk> chunks;
+    private int size;
+
+    /**
+     * Constructor for an empty NoteIdSet
+     */
+    NoteIdSet() {
+        this(new TreeMap<>());
+    }
+
+    private NoteIdSet(TreeMap<Long, Chunk> chunks) {
+        this.chunks = chunks;
+        for (Chunk chunk : chunks.values()) {
+            size += chunk.size;
+        }
+    }
+
+    /**
+     * Adds an id to the set
+     *
+     * @param id The id to add
+     * @return True if the id was not in the set yet
+     */
+    boolean add(long id) {
+        Chunk chunk = chunks.computeIfAbsent(id >>> 16, _ -> new Chunk());
+        if (!chunk.add((char) id)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an id from the set
+     *
+     * @param id The id to remove
+     * @return True if the id was in the set
+     */
+    boolean remove(long id) {
+        Chunk chunk = chunks.get(id >>> 16);
+        if (chunk == null || !chunk.remove((char) id)) {
+            return false;
+        }
+        if (chunk.size == 0) {
+            chunks.remove(id >>> 16);
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks whether an id is in the set
+     *
+     * @param id The id to look for
+     * @return True if the set contains the id
+     */
+    boolean contains(long id) {
+        Chunk chunk = chunks.get(id >>> 16);
+        return chunk != null && chunk.contains((char) id);
+    }
+
+    /**
+     * Returns the number of ids in the set
+     *
+     * @return The size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the set is empty
+     *
+     * @return True if the set holds no ids
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the ids in both this set and the other one
+     *
+     * @param other The other set
+     * @return A new set with the intersection
+     */
+    NoteIdSet and(NoteIdSet other) {
+        TreeMap<Long, Chunk> result = new TreeMap<>();
+        for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+            Chunk match = other.chunks.get(entry.getKey());
+            if (match != null) {
+                Chunk chunk = entry.getValue().and(match);
+                if (chunk.size > 0) {
+                    result.put(entry.getKey(), chunk);
+                }
+            }
+        }
+        return new NoteIdSet(result);
+    }
+
+    /**
+     * Returns the ids in this set, the other one, or both
+     *
+     * @param other The other set
+     * @return A new set with the union
+     */
+    NoteIdSet or(NoteIdSet other) {
+        TreeMap<Long, Chunk> result = new TreeMap<>();
+        for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+            Chunk match = other.chunks.get(entry.getKey());
+            result.put(entry.getKey(), match == null ? entry.getValue().copy() : entry.getValue().or(match));
+        }
+        for (Map.Entry<Long, Chunk> entry : other.chunks.entrySet()) {
+            result.putIfAbsent(entry.getKey(), entry.getValue().copy());
+        }
+        return new NoteIdSet(result);
+    }
+
+    /**
+     * Passes the ids greater than the given one to the consumer in increasing order,
+     * stopping after the given number of ids
+     *
+     * @param after  The id to start after
+     * @param limit  The maximum number of ids to pass
+     * @param action The consumer of the ids
+     * @return The number of ids passed
+     */
+    int forEachAfter(long after, int limit, LongConsumer action) {
+        int count = 0;
+        Iterator<Map.Entry<Long, Chunk>> iterator = chunks.tailMap(Math.max(after, 0) >>> 16, true).entrySet().iterator();
+        while (count < limit && iterator.hasNext()) {
+            Map.Entry<Long, Chunk> entry = iterator.next();
+            long high = entry.getKey() << 16;
+            int from = high > after ? 0 : (int) (after - high) + 1;
+            count += entry.getValue().forEachFrom(from, limit - count, low -> action.accept(high | low));
+        }
+        return count;
+    }
+
+    /**
+     * The values of one chunk of ids, held either as a sorted array or as a bitmap
+     */
+    private static final class Chunk {
+        private char[] values;
+        private long[] words;
+        private int size;
+
+        private Chunk() {
+            values = new char[4];
+        }
+
+        private Chunk(char[] values, long[] words, int size) {
+            this.values = values;
+            this.words = words;
+            this.size = size;
+        }
+
+        private boolean contains(char value) {
+            if (words != null) {
+                return (words[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        private boolean add(char value) {
+            if (words != null) {
+                long word = words[value >>> 6];
+                words[value >>> 6] = word | (1L << value);
+                if (word == words[value >>> 6]) {
+                    return false;
+                }
+                size++;
+                return true;
+            }
+            int position = Arrays.binarySearch(values, 0, size, value);
+            if (position >= 0) {
+                return false;
+            }
+            if (size == MAX_ARRAY_SIZE) {
+                toBitmap();
+                return add(value);
+            }
+            position = -position - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(size * 2, MAX_ARRAY_SIZE));
+            }
+            System.arraycopy(values, position, values, position + 1, size - position);
+            values[position] = value;
+            size++;
+            return true;
+        }
+
+        private boolean remove(char value) {
+            if (words != null) {
+                long word = words[value >>> 6];
+                words[value >>> 6] = word & ~(1L << value);
+                if (word == words[value >>> 6]) {
+                    return false;
+                }
+                size--;
+                if (size <= MAX_ARRAY_SIZE / 2) {
+                    toArray();
+                }
+                return true;
+            }
+            int position = Arrays.binarySearch(values, 0, size, value);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(values, position + 1, values, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        private Chunk copy() {
+            return words != null
+                    ? new Chunk(null, words.clone(), size)
+                    : new Chunk(Arrays.copyOf(values, Math.max(size, 1)), null, size);
+        }
+
+        private Chunk and(Chunk other) {
+            if (words != null && other.words != null) {
+                long[] result = new long[WORDS];
+                int count = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    result[i] = words[i] & other.words[i];
+                    count += Long.bitCount(result[i]);
+                }
+                Chunk chunk = new Chunk(null, result, count);
+                if (count <= MAX_ARRAY_SIZE) {
+                    chunk.toArray();
+                }
+                return chunk;
+            }
+            Chunk sparse = words == null ? this : other;
+            Chunk dense = sparse == this ? other : this;
+            char[] result = new char[Math.max(1, Math.min(sparse.size, dense.size))];
+            int count = 0;
+            if (dense.words != null) {
+                for (int i = 0; i < sparse.size; i++) {
+                    if (dense.contains(sparse.values[i])) {
+                        result[count++] = sparse.values[i];
+                    }
+                }
+            } else {
+                int i = 0;
+                int j = 0;
+                while (i < size && j < other.size) {
+                    if (values[i] < other.values[j]) {
+                        i++;
+                    } else if (values[i] > other.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return new Chunk(result, null, count);
+        }
+
+        private Chunk or(Chunk other) {
+            if (words == null && other.words == null && size + other.size <= MAX_ARRAY_SIZE) {
+                char[] result = new char[Math.max(1, size + other.size)];
+                int count = 0;
+                int i = 0;
+                int j = 0;
+                while (i < size || j < other.size) {
+                    if (j == other.size || (i < size && values[i] < other.values[j])) {
+                        result[count++] = values[i++];
+                    } else if (i == size || values[i] > other.values[j]) {
+                        result[count++] = other.values[j++];
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return new Chunk(result, null, count);
+            }
+            Chunk chunk = copy();
+            if (chunk.words == null) {
+                chunk.toBitmap();
+            }
+            if (other.words != null) {
+                int count = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    chunk.words[i] |= other.words[i];
+                    count += Long.bitCount(chunk.words[i]);
+                }
+                chunk.size = count;
+            } else {
+                for (int i = 0; i < other.size; i++) {
+                    chunk.add(other.values[i]);
+                }
+            }
+            return chunk;
+        }
+
+        private int forEachFrom(int from, int limit, IntConsumer action) {
+            int count = 0;
+            if (words != null) {
+                for (int value = from < CHUNK_SIZE ? nextSetBit(from) : -1; value >= 0 && count < limit;
+                     value = value + 1 < CHUNK_SIZE ? nextSetBit(value + 1) : -1) {
+                    action.accept(value);
+                    count++;
+                }
+                return count;
+            }
+            int position = Arrays.binarySearch(values, 0, size, (char) Math.min(from, CHUNK_SIZE - 1));
+            if (position < 0) {
+                position = -position - 1;
+            } else if (from >= CHUNK_SIZE) {
+                position++;
+            }
+            for (int i = position; i < size && count < limit; i++) {
+                action.accept(values[i]);
+                count++;
+            }
+            return count;
+        }
+
+        private int nextSetBit(int from) {
+            int index = from >>> 6;
+            long word = words[index] & (-1L << from);
+            while (word == 0) {
+                if (++index == WORDS) {
+                    return -1;
+                }
+                word = words[index];
+            }
+            return index * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+
+        private void toBitmap() {
+            words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        private void toArray() {
+            values = new char[Math.max(size, 1)];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            words = null;
+        }
+    }
+}
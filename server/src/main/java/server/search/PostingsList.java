@@ -0,0 +1,60 @@
+package server.search;
+
+/**
+ * The documents of a segment containing a term, in increasing order, with the frequency of the term in each
+ */
+interface PostingsList {
+
+    /**
+     * Returns the number of documents in the list
+     *
+     * @return The number of documents
+     */
+    int size();
+
+    /**
+     * Returns the document at a position
+     *
+     * @param position The position in the list
+     * @return The document number
+     */
+    int doc(int position);
+
+    /**
+     * Returns the frequency of the term in the document at a position
+     *
+     * @param position The position in the list
+     * @return The weighted term frequency
+     */
+    int frequency(int position);
+
+    /**
+     * Finds the first position at or after the given one holding a document at or after the target,
+     * doubling the step until the target is passed and then searching the last step
+     *
+     * @param from   The position to start from
+     * @param target The document to skip to
+     * @return The position, or the size of the list if every document is before the target
+     */
+    default int advance(int from, int target) {
+        int size = size();
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < size && doc(high) < target) {
+            low = high + 1;
+            high += step;
+            step *= 2;
+        }
+        high = Math.min(high, size);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (doc(middle) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
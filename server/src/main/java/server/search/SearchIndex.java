@@ -0,0 +1,827 @@
+package server.search;
+
+import commons.NoteTitle;
+import commons.SearchResult;
+import commons.TitleIndex;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index over the titles and contents of notes.
+ * Every indexed version of a note is a document, and every term maps to a postings list
+ * of the documents containing it, in increasing order, with the frequency of the term.
+ * Queries match the notes containing all of their terms and rank them with BM25,
+ * counting a term in the title as {@value #TITLE_WEIGHT} occurrences in the content.
+ * <p>
+ * New documents go to an in-memory {@link LiveSegment}. An index opened on a directory writes
+ * the live segment to a memory-mapped {@link MappedSegment} at every {@link #checkpoint()},
+ * and merges small segments once there are more than {@value #MAX_SEGMENTS}.
+ * Updating or removing a note only marks its old document as deleted; deleted documents are
+ * skipped by queries and dropped when their segment is compacted or merged.
+ * Until then they still count towards the document frequencies used for ranking.
+ * <p>
+ * The titles of the indexed notes are also kept in a {@link TitleIndex}, for exact and prefix lookups,
+ * and the distinct terms in a {@link TrigramIndex}, for fuzzy queries. Both are held in memory only.
+ * For an opened index they are filled from the documents and dictionaries of the segments the first time
+ * they are needed, so opening an index only reads its manifest and maps its segments.
+ * <p>
+ * The number of indexed notes, their total length, and the sums of their ids and revisions are saved
+ * in the manifest. The sums let a caller compare the notes in the index with the notes in a database
+ * without walking either of them.
+ * <p>
+ * The index is safe to search from any thread, but must only be modified from one thread at a time.
+ */
+public class SearchIndex {
+
+    static final int TITLE_WEIGHT = 3;
+    static final int MAX_SEGMENTS = 8;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MIN_DELETED_TO_COMPACT = 1024;
+
+    /**
+     * The maximum number of similar terms a word of a fuzzy query is expanded to
+     */
+    static final int MAX_EXPANSIONS = 32;
+
+    private static final String MANIFEST = "manifest";
+    private static final String MANIFEST_HEADER = "netnote-search-index 2";
+
+    private static final Comparator<SearchResult> RANKING = Comparator
+            .comparingDouble(SearchResult::getScore).reversed()
+            .thenComparingLong(SearchResult::getId);
+
+    private final Path directory;
+    private List<MappedSegment> segments = List.of();
+    private LiveSegment live = new LiveSegment();
+    private int size;
+    private long totalLength;
+    private long idSum;
+    private long revisionSum;
+    private long watermark;
+    private long generation;
+    private boolean persisted;
+
+    /**
+     * The titles of the indexed notes, or null until they are first needed after opening the index
+     */
+    private volatile TitleIndex<NoteTitle> titles = new TitleIndex<>();
+
+    /**
+     * The distinct terms of the indexed notes, or null until they are first needed after opening the index
+     */
+    private volatile TrigramIndex trigrams = new TrigramIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructs an empty index that is only kept in memory
+     */
+    public SearchIndex() {
+        this(null, 0);
+    }
+
+    private SearchIndex(Path directory, long generation) {
+        this.directory = directory;
+        this.generation = generation;
+    }
+
+    /**
+     * Opens the index saved in a directory by its last checkpoint, or an empty index if there is none.
+     * Files left behind by an interrupted checkpoint are removed.
+     *
+     * @param directory The directory the index is saved in, created if it does not exist
+     * @return The index
+     * @throws IOException If the saved index cannot be read
+     */
+    public static SearchIndex open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SearchIndex index = new SearchIndex(directory, 0);
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            index.readManifest(Files.readAllLines(manifest, StandardCharsets.UTF_8));
+            index.persisted = true;
+        }
+        index.deleteUnreferencedFiles();
+        if (!index.segments.isEmpty()) {
+            index.titles = null;
+            index.trigrams = null;
+        }
+        return index;
+    }
+
+    /**
+     * Creates an empty index in a directory, deleting any index saved there
+     *
+     * @param directory The directory to save the index in, created if it does not exist
+     * @return The index
+     * @throws IOException If the directory cannot be cleared
+     */
+    public static SearchIndex create(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SearchIndex index = new SearchIndex(directory, 0);
+        index.deleteUnreferencedFiles();
+        return index;
+    }
+
+    /**
+     * Returns an empty index saved in the same directory as this one.
+     * Its first checkpoint replaces the files of this index.
+     *
+     * @return The empty index
+     */
+    public SearchIndex emptyCopy() {
+        return new SearchIndex(directory, generation);
+    }
+
+    /**
+     * Returns whether this index was read from, or has been saved to, its directory
+     *
+     * @return True if the index has been saved
+     */
+    public boolean isPersisted() {
+        return persisted;
+    }
+
+    /**
+     * Adds a note to the index, replacing the version of it that was indexed before.
+     * Nothing happens if a later revision of the note is already indexed.
+     *
+     * @param id              The id of the note
+     * @param revision        The revision of the note
+     * @param title           The title of the note
+     * @param collectionTitle The collection of the note
+     * @param content         The content of the note
+     */
+    public void add(long id, long revision, String title, String collectionTitle, String content) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : Tokenizer.tokenize(title)) {
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : Tokenizer.tokenize(content)) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        int length = 0;
+        for (int frequency : frequencies.values()) {
+            length += frequency;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!removeLocked(id, revision)) {
+                return;
+            }
+            live.add(id, revision, title, collectionTitle, frequencies, length);
+            if (titles != null) {
+                putTitle(id, title, collectionTitle);
+            }
+            if (trigrams != null) {
+                frequencies.keySet().forEach(trigrams::add);
+            }
+            size++;
+            totalLength += length;
+            idSum += id;
+            revisionSum += revision;
+            if (directory == null && live.deletedCount() >= MIN_DELETED_TO_COMPACT
+                    && live.deletedCount() * 3 >= live.documentCount()) {
+                live.compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted note from the index
+     *
+     * @param id       The id of the note
+     * @param revision The revision at which the note was deleted
+     */
+    public void remove(long id, long revision) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id, revision);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the document of a note, unless it is newer than the given revision
+     *
+     * @return False if a newer document of the note is indexed
+     */
+    private boolean removeLocked(long id, long revision) {
+        IndexSegment segment = live;
+        int doc = live.find(id);
+        for (int i = segments.size() - 1; doc < 0 && i >= 0; i--) {
+            segment = segments.get(i);
+            doc = segment.find(id);
+        }
+        if (doc < 0) {
+            return true;
+        }
+        if (segment.revision(doc) > revision) {
+            return false;
+        }
+        segment.delete(doc);
+        if (titles != null) {
+            titles.remove(id);
+        }
+        size--;
+        totalLength -= segment.length(doc);
+        idSum -= id;
+        revisionSum -= segment.revision(doc);
+        return true;
+    }
+
+    private void putTitle(long id, String title, String collectionTitle) {
+        titles.put(id, title, new NoteTitle(id, title, collectionTitle));
+    }
+
+    /**
+     * Fills the title index from the documents of the segments, if it was not filled yet
+     *
+     * @return The title index
+     */
+    private TitleIndex<NoteTitle> titles() {
+        TitleIndex<NoteTitle> filled = titles;
+        if (filled != null) {
+            return filled;
+        }
+        lock.writeLock().lock();
+        try {
+            if (titles == null) {
+                titles = new TitleIndex<>();
+                List<IndexSegment> all = new ArrayList<>(segments);
+                all.add(live);
+                for (IndexSegment segment : all) {
+                    for (int doc = 0; doc < segment.documentCount(); doc++) {
+                        if (!segment.isDeleted(doc)) {
+                            putTitle(segment.noteId(doc), segment.title(doc), segment.collectionTitle(doc));
+                        }
+                    }
+                }
+            }
+            return titles;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Fills the trigram index from the dictionaries of the segments, if it was not filled yet
+     *
+     * @return The trigram index
+     */
+    private TrigramIndex trigrams() {
+        TrigramIndex filled = trigrams;
+        if (filled != null) {
+            return filled;
+        }
+        lock.writeLock().lock();
+        try {
+            if (trigrams == null) {
+                trigrams = new TrigramIndex();
+                for (MappedSegment segment : segments) {
+                    for (int term = 0; term < segment.termCount(); term++) {
+                        trigrams.add(segment.term(term));
+                    }
+                }
+                live.terms().forEach(trigrams::add);
+            }
+            return trigrams;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the notes with the given title, ignoring case
+     *
+     * @param title      The title to look for
+     * @param collection The collection to look in, or null to look in every collection
+     * @return The matching notes, in increasing order of id
+     */
+    public List<NoteTitle> findTitle(String title, String collection) {
+        TitleIndex<NoteTitle> titleIndex = titles();
+        lock.readLock().lock();
+        try {
+            return titleIndex.find(title).stream()
+                    .filter(note -> collection == null || collection.equals(note.getCollectionTitle()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the notes whose title starts with the given prefix, ignoring case
+     *
+     * @param prefix     The start of the titles to look for
+     * @param collection The collection to look in, or null to look in every collection
+     * @param limit      The maximum number of notes to return
+     * @return The matching notes, in alphabetical order of title
+     */
+    public List<NoteTitle> titlesStartingWith(String prefix, String collection, int limit) {
+        TitleIndex<NoteTitle> titleIndex = titles();
+        lock.readLock().lock();
+        try {
+            return titleIndex.startingWith(prefix, limit,
+                    note -> collection == null || collection.equals(note.getCollectionTitle()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the notes containing every term of the query, best match first.
+     * In every segment, the shortest postings list is walked and the others are skipped forward
+     * to each of its documents, so the cost depends on the rarest term rather than on the number of notes.
+     *
+     * @param query      The text to search for
+     * @param collection The collection to search in, or null to search every collection
+     * @param limit      The maximum number of results
+     * @return The matching notes ordered by descending score
+     */
+    public List<SearchResult> search(String query, String collection, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<IndexSegment> all = new ArrayList<>(segments);
+            all.add(live);
+            PostingsList[][] lists = new PostingsList[all.size()][terms.size()];
+            int[] frequencies = new int[terms.size()];
+            long count = 0;
+            for (int s = 0; s < all.size(); s++) {
+                count += all.get(s).documentCount();
+                for (int t = 0; t < terms.size(); t++) {
+                    lists[s][t] = all.get(s).postings(terms.get(t));
+                    if (lists[s][t] != null) {
+                        frequencies[t] += lists[s][t].size();
+                    }
+                }
+            }
+            double[] idf = new double[terms.size()];
+            for (int t = 0; t < terms.size(); t++) {
+                if (frequencies[t] == 0) {
+                    return List.of();
+                }
+                idf[t] = idf(count, frequencies[t]);
+            }
+
+            double averageLength = (double) totalLength / size;
+            PriorityQueue<SearchResult> top = new PriorityQueue<>(RANKING.reversed());
+            for (int s = 0; s < all.size(); s++) {
+                search(all.get(s), lists[s], idf, averageLength, collection, limit, top);
+            }
+            List<SearchResult> results = new ArrayList<>(top);
+            results.sort(RANKING);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the notes containing, for every word of the query, a term that looks like it.
+     * Each word is looked up in the trigram index of the distinct terms, and stands for
+     * the {@value #MAX_EXPANSIONS} most similar terms at most. The BM25 weight of each term
+     * is scaled by its similarity to the word, and a note is scored by its best term for every word.
+     *
+     * @param query      The text to search for, possibly misspelled
+     * @param collection The collection to search in, or null to search every collection
+     * @param threshold  The minimum similarity of a term to a word, between 0 and 1
+     * @param limit      The maximum number of results
+     * @return The matching notes ordered by descending score
+     */
+    public List<SearchResult> fuzzySearch(String query, String collection, double threshold, int limit) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        TrigramIndex terms = trigrams();
+        lock.readLock().lock();
+        try {
+            List<IndexSegment> all = new ArrayList<>(segments);
+            all.add(live);
+            long count = 0;
+            for (IndexSegment segment : all) {
+                count += segment.documentCount();
+            }
+            List<List<Expansion>> expansions = new ArrayList<>(words.size());
+            for (String word : words) {
+                List<Expansion> expanded = new ArrayList<>();
+                for (TrigramIndex.Match match : terms.similar(word, threshold, MAX_EXPANSIONS)) {
+                    PostingsList[] lists = new PostingsList[all.size()];
+                    int frequency = 0;
+                    for (int s = 0; s < all.size(); s++) {
+                        lists[s] = all.get(s).postings(match.term());
+                        if (lists[s] != null) {
+                            frequency += lists[s].size();
+                        }
+                    }
+                    if (frequency > 0) {
+                        expanded.add(new Expansion(lists, match.similarity() * idf(count, frequency)));
+                    }
+                }
+                if (expanded.isEmpty()) {
+                    return List.of();
+                }
+                expansions.add(expanded);
+            }
+
+            double averageLength = (double) totalLength / size;
+            PriorityQueue<SearchResult> top = new PriorityQueue<>(RANKING.reversed());
+            for (int s = 0; s < all.size(); s++) {
+                fuzzySearch(all.get(s), s, expansions, averageLength, collection, limit, top);
+            }
+            List<SearchResult> results = new ArrayList<>(top);
+            results.sort(RANKING);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the best fuzzy matches of one segment to the results.
+     * The words are matched one after the other, and only the documents matching all previous words are kept.
+     */
+    private static void fuzzySearch(IndexSegment segment, int position, List<List<Expansion>> expansions,
+                                    double averageLength, String collection, int limit,
+                                    PriorityQueue<SearchResult> top) {
+        Map<Integer, Double> scores = null;
+        for (List<Expansion> word : expansions) {
+            Map<Integer, Double> previous = scores;
+            Map<Integer, Double> wordScores = new HashMap<>();
+            for (Expansion expansion : word) {
+                PostingsList list = expansion.lists()[position];
+                if (list == null) {
+                    continue;
+                }
+                for (int p = 0; p < list.size(); p++) {
+                    int doc = list.doc(p);
+                    if (previous != null && !previous.containsKey(doc)) {
+                        continue;
+                    }
+                    int tf = list.frequency(p);
+                    double norm = K1 * (1 - B + B * segment.length(doc) / averageLength);
+                    wordScores.merge(doc, expansion.weight() * tf * (K1 + 1) / (tf + norm), Math::max);
+                }
+            }
+            if (previous != null) {
+                wordScores.replaceAll((doc, score) -> score + previous.get(doc));
+            }
+            if (wordScores.isEmpty()) {
+                return;
+            }
+            scores = wordScores;
+        }
+
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            int doc = entry.getKey();
+            double score = entry.getValue();
+            if (segment.isDeleted(doc)
+                    || collection != null && !collection.equals(segment.collectionTitle(doc))
+                    || top.size() == limit && score <= top.peek().getScore()) {
+                continue;
+            }
+            top.add(new SearchResult(segment.noteId(doc), segment.title(doc), score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+    }
+
+    /**
+     * Returns the BM25 inverse document frequency of a term
+     *
+     * @param count     The number of documents
+     * @param frequency The number of documents containing the term
+     * @return The weight of the term
+     */
+    private static double idf(long count, int frequency) {
+        return Math.log(1 + (count - frequency + 0.5) / (frequency + 0.5));
+    }
+
+    /**
+     * A term standing for a word of a fuzzy query
+     *
+     * @param lists  The postings of the term in every segment, null where the term does not occur
+     * @param weight The inverse document frequency of the term, scaled by its similarity to the word
+     */
+    private record Expansion(PostingsList[] lists, double weight) {
+    }
+
+    /**
+     * Adds the best matches of one segment to the results
+     */
+    private static void search(IndexSegment segment, PostingsList[] lists, double[] idf, double averageLength,
+                               String collection, int limit, PriorityQueue<SearchResult> top) {
+        Integer[] order = new Integer[lists.length];
+        for (int t = 0; t < lists.length; t++) {
+            if (lists[t] == null) {
+                return;
+            }
+            order[t] = t;
+        }
+        Arrays.sort(order, Comparator.comparingInt(t -> lists[t].size()));
+
+        PostingsList rarest = lists[order[0]];
+        int[] cursors = new int[lists.length];
+        candidates:
+        for (int p = 0; p < rarest.size(); p++) {
+            int doc = rarest.doc(p);
+            cursors[order[0]] = p;
+            for (int i = 1; i < order.length; i++) {
+                int t = order[i];
+                cursors[t] = lists[t].advance(cursors[t], doc);
+                if (cursors[t] == lists[t].size()) {
+                    return;
+                }
+                if (lists[t].doc(cursors[t]) != doc) {
+                    continue candidates;
+                }
+            }
+            if (segment.isDeleted(doc)
+                    || collection != null && !collection.equals(segment.collectionTitle(doc))) {
+                continue;
+            }
+            double norm = K1 * (1 - B + B * segment.length(doc) / averageLength);
+            double score = 0;
+            for (int t = 0; t < lists.length; t++) {
+                int tf = lists[t].frequency(cursors[t]);
+                score += idf[t] * tf * (K1 + 1) / (tf + norm);
+            }
+            if (top.size() == limit && score <= top.peek().getScore()) {
+                continue;
+            }
+            top.add(new SearchResult(segment.noteId(doc), segment.title(doc), score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of indexed notes
+     *
+     * @return The number of notes
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the sum of the ids of the indexed notes
+     *
+     * @return The sum of the ids, wrapping around on overflow
+     */
+    public long idSum() {
+        lock.readLock().lock();
+        try {
+            return idSum;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the sum of the revisions of the indexed notes.
+     * A note is only ever indexed at a revision it had in the database, so if the index holds the same notes
+     * as the database, every one of them is up to date exactly when the sums of their revisions are equal.
+     *
+     * @return The sum of the revisions, wrapping around on overflow
+     */
+    public long revisionSum() {
+        lock.readLock().lock();
+        try {
+            return revisionSum;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the revision up to which every change is in the index, as saved by the last checkpoint.
+     * Changes after it may be in the index as well.
+     *
+     * @return The watermark, 0 for an index that was never saved
+     */
+    public long watermark() {
+        lock.readLock().lock();
+        try {
+            return watermark;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of documents held in memory, which the next checkpoint writes to disk
+     *
+     * @return The number of documents in the live segment, including deleted ones
+     */
+    public int pendingDocuments() {
+        lock.readLock().lock();
+        try {
+            return live.documentCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns whether anything changed since the last checkpoint
+     *
+     * @return True if a checkpoint would write anything
+     */
+    public boolean hasChanges() {
+        lock.readLock().lock();
+        try {
+            return live.documentCount() > 0 || segments.stream().anyMatch(MappedSegment::deletesChanged);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the index to its directory, keeping the watermark of the last checkpoint
+     *
+     * @throws IOException If the index cannot be written
+     * @see #checkpoint(long)
+     */
+    public void checkpoint() throws IOException {
+        checkpoint(watermark);
+    }
+
+    /**
+     * Saves the index to its directory. Does nothing for an index kept in memory.
+     * The live segment is written to a new segment file, small segments are merged, the deleted documents
+     * of every segment are saved, and finally a new manifest listing these files replaces the old one.
+     * Every file is forced to disk before the manifest refers to it, so a crash at any point
+     * leaves either the previous or the new checkpoint intact.
+     *
+     * @param watermark The revision up to which every change is in the index
+     * @throws IOException If the index cannot be written
+     */
+    public void checkpoint(long watermark) throws IOException {
+        this.watermark = watermark;
+        if (directory == null) {
+            return;
+        }
+        if (live.documentCount() > 0) {
+            String name = "seg-" + ++generation;
+            Path file = directory.resolve(name + ".seg");
+            live.writeTo(file);
+            MappedSegment segment = MappedSegment.open(name, file, null);
+            List<MappedSegment> next = new ArrayList<>(segments);
+            next.add(segment);
+            lock.writeLock().lock();
+            try {
+                segments = List.copyOf(next);
+                live = new LiveSegment();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        mergeSegments();
+
+        List<String> lines = new ArrayList<>();
+        lines.add(MANIFEST_HEADER);
+        lines.add("watermark " + watermark);
+        lines.add("size " + size);
+        lines.add("length " + totalLength);
+        lines.add("ids " + idSum);
+        lines.add("revisions " + revisionSum);
+        for (MappedSegment segment : segments) {
+            if (segment.deletesChanged()) {
+                segment.writeDeletes(directory.resolve(segment.name() + "." + ++generation + ".del"));
+            }
+            lines.add("segment " + segment.name() + " "
+                    + (segment.deletesFile() == null ? "-" : segment.deletesFile()));
+        }
+        lines.add(1, "generation " + generation);
+
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temporary, lines, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(MANIFEST),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        persisted = true;
+        deleteUnreferencedFiles();
+    }
+
+    /**
+     * Merges the smallest segments once there are too many, together with every segment
+     * of which more than half of the documents are deleted
+     */
+    private void mergeSegments() throws IOException {
+        List<MappedSegment> bySize = new ArrayList<>(segments);
+        bySize.sort(Comparator.comparingInt(segment -> segment.documentCount() - segment.deletedCount()));
+        int smallest = segments.size() > MAX_SEGMENTS ? segments.size() - MAX_SEGMENTS / 2 + 1 : 0;
+        List<MappedSegment> merged = new ArrayList<>();
+        for (int i = 0; i < bySize.size(); i++) {
+            MappedSegment segment = bySize.get(i);
+            if (i < smallest || segment.deletedCount() * 2 > segment.documentCount()) {
+                merged.add(segment);
+            }
+        }
+        if (merged.isEmpty()) {
+            return;
+        }
+
+        String name = "seg-" + ++generation;
+        Path file = directory.resolve(name + ".seg");
+        List<MappedSegment> next = new ArrayList<>(segments);
+        next.removeAll(merged);
+        if (SegmentMerger.merge(merged, file) > 0) {
+            next.add(MappedSegment.open(name, file, null));
+        } else {
+            Files.delete(file);
+        }
+        lock.writeLock().lock();
+        try {
+            segments = List.copyOf(next);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void readManifest(List<String> lines) throws IOException {
+        if (lines.isEmpty() || !lines.getFirst().equals(MANIFEST_HEADER)) {
+            throw new IOException("Not a search index manifest");
+        }
+        List<MappedSegment> opened = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.split(" ");
+            switch (parts[0]) {
+                case "watermark" -> watermark = Long.parseLong(parts[1]);
+                case "size" -> size = Integer.parseInt(parts[1]);
+                case "length" -> totalLength = Long.parseLong(parts[1]);
+                case "ids" -> idSum = Long.parseLong(parts[1]);
+                case "revisions" -> revisionSum = Long.parseLong(parts[1]);
+                case "generation" -> generation = Long.parseLong(parts[1]);
+                case "segment" -> opened.add(MappedSegment.open(parts[1], directory.resolve(parts[1] + ".seg"),
+                        parts[2].equals("-") ? null : directory.resolve(parts[2])));
+                default -> throw new IOException("Unexpected line in search index manifest: " + line);
+            }
+        }
+        segments = List.copyOf(opened);
+    }
+
+    /**
+     * Deletes the files of segments and deletes that the manifest does not refer to.
+     * Files that cannot be deleted yet, for instance because they are still mapped, are left for the next time.
+     */
+    private void deleteUnreferencedFiles() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(MANIFEST);
+        for (MappedSegment segment : segments) {
+            referenced.add(segment.name() + ".seg");
+            referenced.add(segment.deletesFile());
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // still in use, deleted by a later checkpoint
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package server.search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges segments into a single segment without their deleted documents.
+ * The term dictionaries are read in sorted order side by side, so the terms are never all in memory at once.
+ */
+final class SegmentMerger {
+
+    private SegmentMerger() {
+    }
+
+    /**
+     * Writes the live documents of the given segments to a new segment file
+     *
+     * @param sources The segments to merge
+     * @param file    The file to write
+     * @return The number of documents in the merged segment
+     * @throws IOException If the file cannot be written
+     */
+    static int merge(List<MappedSegment> sources, Path file) throws IOException {
+        int count = 0;
+        for (MappedSegment source : sources) {
+            count += source.documentCount() - source.deletedCount();
+        }
+        long[] noteIds = new long[count];
+        int[] sourceOf = new int[count];
+        int[] docOf = new int[count];
+        int[][] renumbered = new int[sources.size()][];
+        int next = 0;
+        for (int s = 0; s < sources.size(); s++) {
+            MappedSegment source = sources.get(s);
+            renumbered[s] = new int[source.documentCount()];
+            Arrays.fill(renumbered[s], -1);
+            for (int doc = 0; doc < source.documentCount(); doc++) {
+                if (!source.isDeleted(doc)) {
+                    noteIds[next] = source.noteId(doc);
+                    sourceOf[next] = s;
+                    docOf[next] = doc;
+                    next++;
+                }
+            }
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(noteIds[a], noteIds[b]));
+
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            for (int i = 0; i < count; i++) {
+                MappedSegment source = sources.get(sourceOf[order[i]]);
+                int doc = docOf[order[i]];
+                renumbered[sourceOf[order[i]]][doc] = i;
+                writer.addDocument(source.noteId(doc), source.revision(doc), source.length(doc),
+                        source.title(doc), source.collectionTitle(doc));
+            }
+
+            PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+            for (int s = 0; s < sources.size(); s++) {
+                if (sources.get(s).termCount() > 0) {
+                    cursors.add(new Cursor(sources.get(s), s, 0));
+                }
+            }
+            long[] packed = new long[16];
+            while (!cursors.isEmpty()) {
+                String term = cursors.peek().term;
+                int size = 0;
+                while (!cursors.isEmpty() && cursors.peek().term.equals(term)) {
+                    Cursor cursor = cursors.poll();
+                    PostingsList list = cursor.source.postingsAt(cursor.index);
+                    if (packed.length < size + list.size()) {
+                        packed = Arrays.copyOf(packed, Math.max(size + list.size(), packed.length * 2));
+                    }
+                    for (int p = 0; p < list.size(); p++) {
+                        int doc = renumbered[cursor.position][list.doc(p)];
+                        if (doc >= 0) {
+                            packed[size++] = SegmentWriter.pack(doc, list.frequency(p));
+                        }
+                    }
+                    if (cursor.index + 1 < cursor.source.termCount()) {
+                        cursors.add(new Cursor(cursor.source, cursor.position, cursor.index + 1));
+                    }
+                }
+                writer.addTerm(term, packed, size);
+            }
+            writer.finish();
+        }
+        return count;
+    }
+
+    /**
+     * The position of a merge in the dictionary of one of the segments
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final MappedSegment source;
+        private final int position;
+        private final int index;
+        private final String term;
+
+        private Cursor(MappedSegment source, int position, int index) {
+            this.source = source;
+            this.position = position;
+            this.index = index;
+            this.term = source.term(index);
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return term.compareTo(other.term);
+        }
+    }
+}
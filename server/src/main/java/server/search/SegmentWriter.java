@@ -0,0 +1,191 @@
+package server.search;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a segment file, streaming the postings to disk as the terms are added.
+ * <p>
+ * A segment file consists of a header, the postings of every term, a table of documents ordered by note id,
+ * a dictionary of terms in sorted order and the UTF-8 bytes of all titles, collections and terms.
+ * The tables have fixed size entries, so {@link MappedSegment} can binary search them in place.
+ */
+final class SegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x4E4E5358;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    static final int DOCUMENT_SIZE = 36;
+    static final int TERM_SIZE = 20;
+    static final int POSTING_SIZE = 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+    private long position = HEADER_SIZE;
+
+    private final ByteArrayOutputStream documentBytes = new ByteArrayOutputStream();
+    private final DataOutputStream documents = new DataOutputStream(documentBytes);
+    private final ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+    private final DataOutputStream dictionary = new DataOutputStream(dictionaryBytes);
+    private final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+
+    private int documentCount;
+    private int termCount;
+    private long totalLength;
+    private long lastNoteId = Long.MIN_VALUE;
+    private String lastTerm;
+
+    /**
+     * Creates a segment file, replacing any existing file
+     *
+     * @param file The file to write
+     * @throws IOException If the file cannot be created
+     */
+    SegmentWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Packs a document and a term frequency into a long that sorts by document
+     *
+     * @param doc       The document number
+     * @param frequency The term frequency
+     * @return The packed posting
+     */
+    static long pack(int doc, int frequency) {
+        return (long) doc << 32 | frequency & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Adds the next document. Documents must be added in increasing note id order
+     * and are numbered from 0 in that order.
+     *
+     * @param noteId          The id of the note
+     * @param revision        The revision of the note
+     * @param length          The weighted number of terms of the note
+     * @param title           The title of the note
+     * @param collectionTitle The collection of the note
+     * @throws IOException If the document cannot be buffered
+     */
+    void addDocument(long noteId, long revision, int length, String title, String collectionTitle)
+            throws IOException {
+        if (noteId <= lastNoteId) {
+            throw new IllegalArgumentException("Documents must be added in increasing note id order");
+        }
+        lastNoteId = noteId;
+        documents.writeLong(noteId);
+        documents.writeLong(revision);
+        documents.writeInt(length);
+        writeString(documents, title);
+        writeString(documents, collectionTitle);
+        documentCount++;
+        totalLength += length;
+    }
+
+    /**
+     * Adds the postings of the next term. Terms must be added in increasing order;
+     * a term without postings is left out.
+     *
+     * @param term   The term
+     * @param packed The postings packed with {@link #pack(int, int)}, in any order; sorted in place
+     * @param count  The number of postings in the array
+     * @throws IOException If the postings cannot be written
+     */
+    void addTerm(String term, long[] packed, int count) throws IOException {
+        if (lastTerm != null && term.compareTo(lastTerm) <= 0) {
+            throw new IllegalArgumentException("Terms must be added in increasing order");
+        }
+        lastTerm = term;
+        if (count == 0) {
+            return;
+        }
+        Arrays.sort(packed, 0, count);
+        writeString(dictionary, term);
+        dictionary.writeLong(position);
+        dictionary.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < POSTING_SIZE) {
+                flushBuffer();
+            }
+            buffer.putInt((int) (packed[i] >>> 32));
+            buffer.putInt((int) packed[i]);
+        }
+        position += (long) count * POSTING_SIZE;
+        termCount++;
+    }
+
+    /**
+     * Writes the tables and the header and forces the file to disk
+     *
+     * @throws IOException If the file cannot be written
+     */
+    void finish() throws IOException {
+        long documentsOffset = position;
+        write(documentBytes.toByteArray());
+        long dictionaryOffset = position;
+        write(dictionaryBytes.toByteArray());
+        long stringsOffset = position;
+        write(strings.toByteArray());
+        flushBuffer();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(documentCount).putInt(termCount)
+                .putLong(totalLength).putLong(documentsOffset).putLong(dictionaryOffset).putLong(stringsOffset);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, HEADER_SIZE - header.remaining());
+        }
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Stores a string in the strings area and writes its offset and length, -1 for null
+     */
+    private void writeString(DataOutputStream table, String value) throws IOException {
+        if (value == null) {
+            table.writeInt(0);
+            table.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        table.writeInt(strings.size());
+        table.writeInt(bytes.length);
+        strings.write(bytes);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        position += bytes.length;
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
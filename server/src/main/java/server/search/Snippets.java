@@ -0,0 +1,163 @@
+package server.search;
+
+import commons.SearchResult;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cuts the snippets shown with search results out of the content of the notes.
+ * The content is split into terms in one pass, the same way the {@link Tokenizer} does, recording
+ * where the searched terms occur. The snippet is the window of at most {@value #MAX_LENGTH} characters
+ * holding the most distinct searched terms, and then the most matches.
+ */
+public final class Snippets {
+
+    /**
+     * The maximum length of a snippet, not counting the ellipses marking cut text
+     */
+    public static final int MAX_LENGTH = 160;
+
+    static final String ELLIPSIS = "…";
+
+    private Snippets() {
+    }
+
+    /**
+     * Sets the snippet of a search result and the positions of the matched terms in it
+     *
+     * @param result  The search result
+     * @param content The content of the note
+     * @param terms   The searched terms, as produced by the {@link Tokenizer}
+     */
+    public static void attach(SearchResult result, String content, Set<String> terms) {
+        if (content == null) {
+            return;
+        }
+        Map<String, Integer> termIds = new HashMap<>();
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] ids = new int[16];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= content.length(); ) {
+            int codePoint = i < content.length() ? content.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                String term = content.substring(start, i).toLowerCase(Locale.ROOT);
+                if (terms.contains(term)) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    starts[count] = start;
+                    ends[count] = i;
+                    ids[count] = termIds.computeIfAbsent(term, _ -> termIds.size());
+                    count++;
+                }
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+
+        int[] window = bestWindow(starts, ends, ids, count, termIds.size());
+        int from = count == 0 ? 0 : starts[window[0]];
+        int to = count == 0 ? 0 : ends[window[1]];
+        int extra = Math.max(0, MAX_LENGTH - (to - from));
+        int snippetEnd = Math.min(content.length(), to + extra - extra / 2);
+        int snippetStart = Math.max(0, Math.min(from - extra / 2, snippetEnd - MAX_LENGTH));
+        snippetEnd = Math.min(content.length(), Math.max(snippetEnd, snippetStart + MAX_LENGTH));
+        snippetStart = wordStart(content, snippetStart, from);
+        snippetEnd = wordEnd(content, snippetEnd, to);
+
+        String prefix = snippetStart > 0 ? ELLIPSIS : "";
+        StringBuilder snippet = new StringBuilder(prefix);
+        for (int i = snippetStart; i < snippetEnd; i++) {
+            char c = content.charAt(i);
+            snippet.append(Character.isWhitespace(c) ? ' ' : c);
+        }
+        if (snippetEnd < content.length()) {
+            snippet.append(ELLIPSIS);
+        }
+
+        int[] highlights = new int[count * 2];
+        int highlightCount = 0;
+        for (int m = 0; m < count; m++) {
+            if (starts[m] >= snippetStart && ends[m] <= snippetEnd) {
+                highlights[highlightCount++] = starts[m] - snippetStart + prefix.length();
+                highlights[highlightCount++] = ends[m] - snippetStart + prefix.length();
+            }
+        }
+        result.setSnippet(snippet.toString());
+        result.setHighlights(Arrays.copyOf(highlights, highlightCount));
+    }
+
+    /**
+     * Finds the run of matches fitting in a snippet with the most distinct terms, and then the most matches
+     *
+     * @return The first and last match of the run
+     */
+    private static int[] bestWindow(int[] starts, int[] ends, int[] ids, int count, int termCount) {
+        int[] occurrences = new int[termCount];
+        int distinct = 0;
+        int[] best = {0, 0};
+        int bestDistinct = 0;
+        int bestMatches = 0;
+        int first = 0;
+        for (int last = 0; last < count; last++) {
+            if (occurrences[ids[last]]++ == 0) {
+                distinct++;
+            }
+            while (first < last && ends[last] - starts[first] > MAX_LENGTH) {
+                if (--occurrences[ids[first]] == 0) {
+                    distinct--;
+                }
+                first++;
+            }
+            int matches = last - first + 1;
+            if (distinct > bestDistinct || distinct == bestDistinct && matches > bestMatches) {
+                best = new int[]{first, last};
+                bestDistinct = distinct;
+                bestMatches = matches;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Moves the start of a snippet forward to the start of a word, without passing the first match
+     */
+    private static int wordStart(String content, int start, int firstMatch) {
+        if (start == 0 || Character.isWhitespace(content.charAt(start - 1))) {
+            return start;
+        }
+        for (int i = start; i < firstMatch; i++) {
+            if (Character.isWhitespace(content.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Moves the end of a snippet back to the end of a word, without passing the last match
+     */
+    private static int wordEnd(String content, int end, int lastMatch) {
+        if (end == content.length() || Character.isWhitespace(content.charAt(end))) {
+            return end;
+        }
+        for (int i = end - 1; i > lastMatch; i--) {
+            if (Character.isWhitespace(content.charAt(i))) {
+                return i;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,286 @@
+package server.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An index from the tags of notes to the notes carrying them.
+ * Every tag is given an integer id the first time it is seen, and keeps the ids of its notes
+ * in a compressed {@link NoteIdSet}. Filters on several tags are answered by intersecting or
+ * merging those sets, so they never look at the notes without any of the tags.
+ * <p>
+ * The index remembers the revision of every tagged note, and ignores changes older than it.
+ * It can be saved to a file together with the revision up to which it holds every change,
+ * so it only has to be brought up to date from that revision when it is read back.
+ * It is safe to query from any thread, but must only be modified from one thread at a time.
+ */
+public class TagIndex {
+
+    private static final int FILE_HEADER = 0x4e4e5401;
+
+    private final Map<String, Integer> tagIds = new HashMap<>();
+    private final List<String> tags = new ArrayList<>();
+    private final List<NoteIdSet> notes = new ArrayList<>();
+    private final Map<Long, TaggedNote> taggedNotes = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Sets the tags of a note, replacing the ones it had
+     *
+     * @param noteId   The id of the note
+     * @param revision The revision of the note
+     * @param noteTags The tags of the note, empty if it has none
+     */
+    public void set(long noteId, long revision, Collection<String> noteTags) {
+        lock.writeLock().lock();
+        try {
+            if (!removeLocked(noteId, revision)) {
+                return;
+            }
+            if (noteTags.isEmpty()) {
+                return;
+            }
+            int[] ids = new int[noteTags.size()];
+            int count = 0;
+            for (String tag : new LinkedHashSet<>(noteTags)) {
+                int id = tagIds.computeIfAbsent(tag, _ -> {
+                    tags.add(tag);
+                    notes.add(new NoteIdSet());
+                    return tags.size() - 1;
+                });
+                notes.get(id).add(noteId);
+                ids[count++] = id;
+            }
+            taggedNotes.put(noteId, new TaggedNote(revision, Arrays.copyOf(ids, count)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted note from the index
+     *
+     * @param noteId   The id of the note
+     * @param revision The revision the note was deleted at
+     */
+    public void remove(long noteId, long revision) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(noteId, revision);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the tags of a note, unless the index already holds a newer revision of it
+     *
+     * @return False if the index holds a newer revision
+     */
+    private boolean removeLocked(long noteId, long revision) {
+        TaggedNote old = taggedNotes.get(noteId);
+        if (old == null) {
+            return true;
+        }
+        if (old.revision() > revision) {
+            return false;
+        }
+        for (int id : old.tagIds()) {
+            notes.get(id).remove(noteId);
+        }
+        taggedNotes.remove(noteId);
+        return true;
+    }
+
+    /**
+     * Returns every tag in use with the number of notes carrying it
+     *
+     * @return The tags in alphabetical order, with their note counts
+     */
+    public Map<String, Integer> counts() {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = new TreeMap<>();
+            for (int id = 0; id < tags.size(); id++) {
+                if (!notes.get(id).isEmpty()) {
+                    counts.put(tags.get(id), notes.get(id).size());
+                }
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the notes carrying the given tags, in increasing order of id
+     *
+     * @param filter The tags to filter on
+     * @param all    True to find the notes carrying all of the tags, false for any of them
+     * @param after  The id to start after, for paging
+     * @param limit  The maximum number of ids to return
+     * @return The ids of the matching notes
+     */
+    public List<Long> find(Collection<String> filter, boolean all, long after, int limit) {
+        lock.readLock().lock();
+        try {
+            List<NoteIdSet> sets = new ArrayList<>(filter.size());
+            for (String tag : new LinkedHashSet<>(filter)) {
+                Integer id = tagIds.get(tag);
+                if (id != null) {
+                    sets.add(notes.get(id));
+                } else if (all) {
+                    return List.of();
+                }
+            }
+            if (sets.isEmpty()) {
+                return List.of();
+            }
+            NoteIdSet matches = sets.getFirst();
+            if (all) {
+                sets.sort(Comparator.comparingInt(NoteIdSet::size));
+                matches = sets.getFirst();
+                for (int i = 1; i < sets.size() && !matches.isEmpty(); i++) {
+                    matches = matches.and(sets.get(i));
+                }
+            } else {
+                for (int i = 1; i < sets.size(); i++) {
+                    matches = matches.or(sets.get(i));
+                }
+            }
+            List<Long> ids = new ArrayList<>(Math.min(limit, matches.size()));
+            matches.forEachAfter(after, limit, ids::add);
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of notes with at least one tag
+     *
+     * @return The number of tagged notes
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return taggedNotes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the index to a file, replacing it only once the new contents are on disk
+     *
+     * @param file      The file to save the index in
+     * @param watermark The revision up to which every change is in the index
+     * @throws IOException If the file cannot be written
+     */
+    public void write(Path file, long watermark) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(FILE_HEADER);
+            output.writeLong(watermark);
+            output.writeInt(tags.size());
+            for (String tag : tags) {
+                output.writeUTF(tag);
+            }
+            output.writeInt(taggedNotes.size());
+            // in increasing order of id, so reading the file appends to the id sets
+            for (long noteId : new TreeSet<>(taggedNotes.keySet())) {
+                TaggedNote note = taggedNotes.get(noteId);
+                output.writeLong(noteId);
+                output.writeLong(note.revision());
+                output.writeInt(note.tagIds().length);
+                for (int id : note.tagIds()) {
+                    output.writeInt(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads an index saved by {@link #write(Path, long)}
+     *
+     * @param file The file the index was saved in
+     * @return The index, with the watermark it was saved with
+     * @throws IOException If the file cannot be read or was not written by this class
+     */
+    public static Saved read(Path file) throws IOException {
+        TagIndex index = new TagIndex();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != FILE_HEADER) {
+                throw new IOException("Not a tag index: " + file);
+            }
+            long watermark = input.readLong();
+            int tagCount = input.readInt();
+            for (int id = 0; id < tagCount; id++) {
+                String tag = input.readUTF();
+                index.tagIds.put(tag, id);
+                index.tags.add(tag);
+                index.notes.add(new NoteIdSet());
+            }
+            int noteCount = input.readInt();
+            for (int i = 0; i < noteCount; i++) {
+                long noteId = input.readLong();
+                long revision = input.readLong();
+                int[] ids = new int[input.readInt()];
+                for (int t = 0; t < ids.length; t++) {
+                    ids[t] = input.readInt();
+                    if (ids[t] < 0 || ids[t] >= tagCount) {
+                        throw new IOException("Unknown tag id in " + file);
+                    }
+                    index.notes.get(ids[t]).add(noteId);
+                }
+                index.taggedNotes.put(noteId, new TaggedNote(revision, ids));
+            }
+            return new Saved(index, watermark);
+        }
+    }
+
+    /**
+     * A tag index read from a file
+     *
+     * @param index     The index
+     * @param watermark The revision up to which every change was in the index when it was saved
+     */
+    public record Saved(TagIndex index, long watermark) {
+    }
+
+    /**
+     * The revision and tag ids of a tagged note
+     *
+     * @param revision The revision the tags were set at
+     * @param tagIds   The ids of the tags of the note
+     */
+    private record TaggedNote(long revision, int[] tagIds) {
+    }
+}
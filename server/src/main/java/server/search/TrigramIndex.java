@@ -0,0 +1,145 @@
+package server.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index from the trigrams of terms to the terms containing them, for finding the terms
+ * that look like a misspelled word.
+ * Terms are padded with two spaces in front and one behind, so that their first letters
+ * weigh more than the middle ones. The similarity of two terms is the number of trigrams
+ * they share divided by the number of distinct trigrams of both.
+ * <p>
+ * Only the distinct terms of the index are kept here, not the notes, so the cost of a lookup
+ * depends on the vocabulary rather than on the number of notes.
+ * Not safe for use by multiple threads.
+ */
+final class TrigramIndex {
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<String> terms = new ArrayList<>();
+    private int[] trigramCounts = new int[1024];
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * Adds a term to the index, if it is not in it yet
+     *
+     * @param term The term
+     */
+    void add(String term) {
+        if (termIds.containsKey(term)) {
+            return;
+        }
+        int id = terms.size();
+        termIds.put(term, id);
+        terms.add(term);
+        long[] trigrams = trigrams(term);
+        if (id == trigramCounts.length) {
+            trigramCounts = Arrays.copyOf(trigramCounts, id * 2);
+        }
+        trigramCounts[id] = trigrams.length;
+        for (long trigram : trigrams) {
+            postings.computeIfAbsent(trigram, _ -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * Returns the number of terms in the index
+     *
+     * @return The number of terms
+     */
+    int size() {
+        return terms.size();
+    }
+
+    /**
+     * Finds the terms similar to a word
+     *
+     * @param word      The word, as produced by the {@link Tokenizer}
+     * @param threshold The minimum similarity, between 0 and 1
+     * @param limit     The maximum number of terms to return
+     * @return The most similar terms, most similar first
+     */
+    List<Match> similar(String word, double threshold, int limit) {
+        long[] trigrams = trigrams(word);
+        int[] shared = new int[terms.size()];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        for (long trigram : trigrams) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                if (shared[id]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            double similarity = (double) shared[id] / (trigrams.length + trigramCounts[id] - shared[id]);
+            if (similarity >= threshold) {
+                matches.add(new Match(terms.get(id), similarity));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Match::similarity).reversed().thenComparing(Match::term));
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    /**
+     * Returns the distinct trigrams of a padded term, each packed into a long
+     *
+     * @param term The term
+     * @return The trigrams, sorted
+     */
+    static long[] trigrams(String term) {
+        String padded = "  " + term + " ";
+        long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * A term similar to a looked up word
+     *
+     * @param term       The term
+     * @param similarity The similarity of the term to the word, between 0 and 1
+     */
+    record Match(String term, double similarity) {
+    }
+
+    /**
+     * The ids of the terms containing a trigram, in increasing order
+     */
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
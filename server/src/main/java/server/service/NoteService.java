@@ -1,47 +1,175 @@
 package server.service;
 
 import commons.Note;
+import commons.NoteBatch;
+import commons.NoteChanges;
+import commons.NoteLink;
+import commons.NotePage;
+import commons.NoteSummary;
+import commons.NoteTombstone;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import server.database.NoteLinkRepository;
 import server.database.NoteRepository;
+import server.database.NoteSummaryProjection;
+import server.database.NoteTagProjection;
+import server.database.NoteTombstoneRepository;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class NoteService {
 
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int MAX_SUMMARY_PAGE_SIZE = 5000;
+
+    private static final Set<String> PATCHABLE_FIELDS = Set.of("title", "content", "collectionTitle");
+
     private final NoteRepository noteRepository;
+    private final NoteTombstoneRepository tombstoneRepository;
+    private final NoteLinkRepository linkRepository;
+    private final RenderService renderService;
+    private final SearchService searchService;
+    private final RevisionClock revisions;
 
     /**
      * Autowired constructor for NoteService
      *
-     * @param noteRepository The repository for notes
+     * @param noteRepository      The repository for notes
+     * @param tombstoneRepository The repository for the tombstones of deleted notes
+     * @param linkRepository      The repository for the links between notes
+     * @param renderService       The service rendering the HTML of saved notes
+     * @param searchService       The service keeping the search index up to date
+     * @param revisions           The clock handing out the revisions of saved notes and tombstones
      */
     @Autowired
-    public NoteService(NoteRepository noteRepository) {
+    public NoteService(NoteRepository noteRepository, NoteTombstoneRepository tombstoneRepository,
+                       NoteLinkRepository linkRepository, RenderService renderService,
+                       SearchService searchService, RevisionClock revisions) {
         this.noteRepository = noteRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.linkRepository = linkRepository;
+        this.renderService = renderService;
+        this.searchService = searchService;
+        this.revisions = revisions;
     }
 
     /**
      * Saves the note, ensuring it has a valid collection.
      * If no collection is set, the default collection is used.
+     * The HTML is null until the render service has rendered the content.
      *
      * @param note The note to be saved
      * @return The saved note
      */
+    @Transactional
     public Note saveNote(Note note) {
-        return noteRepository.save(note);
+        note.setHtml(null);
+        note.setRevision(nextRevision());
+        Note saved = noteRepository.save(note);
+        indexLinks(List.of(saved));
+        searchService.indexNotes(List.of(saved));
+        if (saved.getContent() != null) {
+            renderService.submit(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Fetches one page of notes ordered by id, starting after the given cursor.
+     * The page size is capped at MAX_PAGE_SIZE so a single request can never
+     * pull the whole table into memory.
+     *
+     * @param collection The title of the collection to list, or null for the notes of every collection
+     * @param after      The cursor (id of the last note already seen), or null to start from the beginning
+     * @param limit      The requested page size
+     * @return The page of notes and the cursor for the next page
+     */
+    public NotePage getNotePage(String collection, Long after, int limit) {
+        int size = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        long cursor = after == null ? 0 : after;
+        List<Note> notes = collection == null
+                ? noteRepository.findByIdGreaterThanOrderByIdAsc(cursor, Limit.of(size))
+                : noteRepository.findByCollectionTitleAndIdGreaterThanOrderByIdAsc(collection, cursor, Limit.of(size));
+        Long nextCursor = notes.size() < size ? null : notes.getLast().getId();
+        return new NotePage(notes, nextCursor);
+    }
+
+    /**
+     * Fetches one page of the notes carrying the given tags, ordered by id, starting after the given cursor.
+     * The ids are found in the tag index, so only the matching notes are read from the database.
+     *
+     * @param tags       The tags to filter on
+     * @param all        True for the notes carrying all of the tags, false for any of them
+     * @param collection The title of the collection to list, or null for the notes of every collection
+     * @param after      The cursor (id of the last note already seen), or null to start from the beginning
+     * @param limit      The requested page size
+     * @return The page of notes and the cursor for the next page
+     */
+    public NotePage getNotePageByTags(List<String> tags, boolean all, String collection, Long after, int limit) {
+        int size = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        long cursor = after == null ? 0 : after;
+        List<Note> notes = new ArrayList<>(size);
+        boolean more = true;
+        while (more && notes.size() < size) {
+            int wanted = size - notes.size();
+            List<Long> ids = searchService.findByTags(tags, all, cursor, wanted);
+            more = ids.size() == wanted;
+            if (ids.isEmpty()) {
+                break;
+            }
+            cursor = ids.getLast();
+            for (Note note : noteRepository.findByIdInOrderByIdAsc(ids)) {
+                if (collection == null || collection.equals(note.getCollectionTitle())) {
+                    notes.add(note);
+                }
+            }
+        }
+        return new NotePage(notes, more ? cursor : null);
     }
 
     /**
-     * Fetches all notes from the repository.
+     * Fetches one page of note summaries ordered by id, starting after the given cursor.
+     * Only the list columns and the tags are read, never the content or the HTML.
      *
-     * @return A list of all notes
+     * @param after The id of the last summary already seen, or null to start from the beginning
+     * @param limit The requested page size, capped at MAX_SUMMARY_PAGE_SIZE
+     * @return The summaries, a page shorter than the limit is the last one
      */
-    public List<Note> getAllNotes() {
-        return noteRepository.findAll();
+    public List<NoteSummary> getSummaryPage(Long after, int limit) {
+        int size = Math.clamp(limit, 1, MAX_SUMMARY_PAGE_SIZE);
+        List<NoteSummaryProjection> rows = noteRepository
+                .findSummariesByIdGreaterThanOrderByIdAsc(after == null ? 0 : after, Limit.of(size));
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Set<String>> tags = new HashMap<>();
+        List<Long> ids = rows.stream().map(NoteSummaryProjection::getId).toList();
+        for (NoteTagProjection row : noteRepository.findTagsByNoteIds(ids)) {
+            tags.computeIfAbsent(row.getNoteId(), _ -> new HashSet<>()).add(row.getTag());
+        }
+
+        return rows.stream()
+                .map(row -> new NoteSummary(row.getId(), row.getTitle(), row.getCollectionTitle(),
+                        tags.getOrDefault(row.getId(), new HashSet<>()), row.getLastModified()))
+                .toList();
     }
 
     /**
@@ -57,24 +185,283 @@ public class NoteService {
     /**
      * Updates an existing note with the provided updated note.
      *
-     * @param id          The ID of the note to update
-     * @param updatedNote The updated note
+     * @param id              The ID of the note to update
+     * @param updatedNote     The updated note
+     * @param expectedVersion The version the caller last saw, or null to overwrite any version
      * @return The updated note
+     * @throws OptimisticLockingFailureException If the note was updated since the expected version
      */
-    public Note updateNote(long id, Note updatedNote) {
+    @Transactional
+    public Note updateNote(long id, Note updatedNote, Long expectedVersion) {
         if (!noteRepository.existsById(id)) {
             return null;
         }
         Note existingNote = noteRepository.findById(id).get();
+        if (expectedVersion != null && existingNote.getVersion() != expectedVersion) {
+            throw new OptimisticLockingFailureException("Note " + id + " was updated since version " + expectedVersion);
+        }
+        boolean needsRender = copyChanges(existingNote, updatedNote);
+        Note saved = noteRepository.save(existingNote);
+        indexLinks(List.of(saved));
+        searchService.indexNotes(List.of(saved));
+        if (needsRender) {
+            renderService.submit(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Applies a JSON merge patch to a note with a single lookup.
+     * The markdown is only rendered and the tags and links only extracted again if the content changed;
+     * a patch that changes nothing does not write to the database at all.
+     * The HTML of changed content is null until the render service has rendered it.
+     *
+     * @param id              The ID of the note to patch
+     * @param patch           The new values of title, content and/or collectionTitle
+     * @param expectedVersion The version the caller last saw, or null to patch any version
+     * @return The patched note, or null if the note does not exist or the patch is invalid
+     * @throws OptimisticLockingFailureException If the note was updated since the expected version
+     */
+    @Transactional
+    public Note patchNote(long id, Map<String, Object> patch, Long expectedVersion) {
+        if (!PATCHABLE_FIELDS.containsAll(patch.keySet())) {
+            return null;
+        }
+        Object title = patch.get("title");
+        Object content = patch.get("content");
+        Object collectionTitle = patch.get("collectionTitle");
+        if (patch.containsKey("title") && !(title instanceof String t && !t.isBlank())
+                || patch.containsKey("content") && !(content instanceof String)
+                || collectionTitle != null && !(collectionTitle instanceof String)) {
+            return null;
+        }
+
+        Note note = noteRepository.findById(id).orElse(null);
+        if (note == null) {
+            return null;
+        }
+        if (expectedVersion != null && note.getVersion() != expectedVersion) {
+            throw new OptimisticLockingFailureException("Note " + id + " was updated since version " + expectedVersion);
+        }
+
+        boolean changed = false;
+        if (patch.containsKey("title") && !title.equals(note.getTitle())) {
+            note.setTitle((String) title);
+            changed = true;
+        }
+        if (patch.containsKey("collectionTitle") && !Objects.equals(collectionTitle, note.getCollectionTitle())) {
+            note.setCollectionTitle((String) collectionTitle);
+            changed = true;
+        }
+        boolean contentChanged = patch.containsKey("content") && !content.equals(note.getContent());
+        if (contentChanged) {
+            note.setRawContent((String) content);
+            note.setHtml(null);
+            if (note.getTags() == null) {
+                note.setTags(new HashSet<>());
+            }
+            note.getTags().clear();
+            note.extractTagsFromContent();
+            changed = true;
+        }
+        if (!changed) {
+            return note;
+        }
+
+        note.setRevision(nextRevision());
+        Note saved = noteRepository.save(note);
+        searchService.indexNotes(List.of(saved));
+        if (contentChanged) {
+            indexLinks(List.of(saved));
+            renderService.submit(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Renames a note and rewrites the [[links]] to it in the other notes of its collection.
+     * The referencing notes are found through the link index, so only they are read and written.
+     *
+     * @param id              The ID of the note to rename
+     * @param newTitle        The new title of the note
+     * @param expectedVersion The version the caller last saw, or null to rename any version
+     * @return The renamed note followed by the rewritten notes, or null if the note does not exist
+     * @throws OptimisticLockingFailureException if the note is no longer at the expected version
+     */
+    @Transactional
+    public List<Note> renameNote(long id, String newTitle, Long expectedVersion) {
+        Note note = noteRepository.findById(id).orElse(null);
+        if (note == null) {
+            return null;
+        }
+        if (expectedVersion != null && note.getVersion() != expectedVersion) {
+            throw new OptimisticLockingFailureException("Note " + id + " was updated since version " + expectedVersion);
+        }
+        String oldTitle = note.getTitle();
+        note.setTitle(newTitle);
+        note.setRevision(nextRevision());
+
+        List<Note> rewritten = new ArrayList<>();
+        if (!newTitle.equals(oldTitle)) {
+            Pattern link = Pattern.compile("\\[\\[" + Pattern.quote(oldTitle) + "]]",
+                    Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            String replacement = Matcher.quoteReplacement("[[" + newTitle + "]]");
+            List<Long> sourceIds = linkRepository.findSourceIdsByTargetTitle(NoteLink.normalize(oldTitle));
+            for (Note source : noteRepository.findAllById(sourceIds)) {
+                if (source.getId() == id || !Objects.equals(source.getCollectionTitle(), note.getCollectionTitle())) {
+                    continue;
+                }
+                String content = link.matcher(source.getContent()).replaceAll(replacement);
+                if (!content.equals(source.getContent())) {
+                    source.setRawContent(content);
+                    source.setHtml(null);
+                    source.setRevision(nextRevision());
+                    rewritten.add(source);
+                }
+            }
+        }
+
+        List<Note> changed = new ArrayList<>(rewritten.size() + 1);
+        changed.add(note);
+        changed.addAll(rewritten);
+        List<Note> saved = noteRepository.saveAll(changed);
+        indexLinks(rewritten);
+        searchService.indexNotes(saved);
+        rewritten.forEach(renderService::submit);
+        return saved;
+    }
+
+    /**
+     * Applies a batch of creates, updates and deletes in a single transaction.
+     * All notes are validated before anything is written, so an invalid batch changes nothing.
+     * A batch that both updates and deletes the same note is invalid.
+     * The notes are written with JDBC batching and rendered by the render service once the batch commits.
+     *
+     * @param batch The writes to apply
+     * @return The created and updated notes, or null if the batch is invalid
+     */
+    @Transactional
+    public List<Note> applyBatch(NoteBatch batch) {
+        for (Note note : batch.getCreates()) {
+            if (note.getTitle() == null || note.getTitle().isEmpty() || note.getContent() == null) {
+                return null;
+            }
+        }
+
+        Map<Long, Note> updates = new LinkedHashMap<>();
+        for (Note note : batch.getUpdates()) {
+            if (note.getContent() == null) {
+                return null;
+            }
+            updates.put(note.getId(), note);
+        }
+        List<Note> existing = noteRepository.findAllWithTagsByIdIn(updates.keySet());
+        if (existing.size() != updates.size()) {
+            return null;
+        }
+
+        Set<Long> deleteIds = new HashSet<>(batch.getDeletes());
+        if (!Collections.disjoint(updates.keySet(), deleteIds)) {
+            return null;
+        }
+        List<Note> deleted = noteRepository.findAllWithTagsByIdIn(deleteIds);
+        if (deleted.size() != deleteIds.size()) {
+            return null;
+        }
+
+        List<Note> toRender = new ArrayList<>(batch.getCreates());
+        for (Note note : existing) {
+            if (copyChanges(note, updates.get(note.getId()))) {
+                toRender.add(note);
+            }
+        }
+        for (Note note : batch.getCreates()) {
+            note.setHtml(null);
+            note.setRevision(nextRevision());
+        }
+
+        List<Note> changed = new ArrayList<>(batch.getCreates().size() + existing.size());
+        changed.addAll(batch.getCreates());
+        changed.addAll(existing);
+
+        List<Note> saved = noteRepository.saveAll(changed);
+        indexLinks(saved);
+        searchService.indexNotes(saved);
+        toRender.forEach(renderService::submit);
+        if (!deleted.isEmpty()) {
+            linkRepository.deleteBySourceIds(deleteIds);
+            noteRepository.deleteAll(deleted);
+            List<NoteTombstone> tombstones = deleted.stream()
+                    .map(note -> new NoteTombstone(note.getId(), nextRevision()))
+                    .toList();
+            tombstoneRepository.saveAll(tombstones);
+            searchService.removeNotes(tombstones);
+        }
+        return saved;
+    }
+
+    /**
+     * Replaces the links recorded for the given notes with the links currently in their content.
+     * Links longer than any title cannot point to a note and are not recorded
+     *
+     * @param notes The saved notes
+     */
+    private void indexLinks(List<Note> notes) {
+        if (notes.isEmpty()) {
+            return;
+        }
+        linkRepository.deleteBySourceIds(notes.stream().map(Note::getId).toList());
+        List<NoteLink> links = new ArrayList<>();
+        for (Note note : notes) {
+            for (String title : note.extractLinkedTitles()) {
+                if (title.length() <= Note.MAX_TITLE_LENGTH) {
+                    links.add(new NoteLink(note.getId(), title));
+                }
+            }
+        }
+        linkRepository.saveAll(links);
+    }
+
+    /**
+     * Builds the link index from the stored notes if it is empty,
+     * for databases created before the index existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexLinksIfMissing() {
+        if (linkRepository.count() > 0) {
+            return;
+        }
+        List<Note> page = noteRepository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(MAX_PAGE_SIZE));
+        while (!page.isEmpty()) {
+            indexLinks(page);
+            page = noteRepository.findByIdGreaterThanOrderByIdAsc(page.getLast().getId(), Limit.of(MAX_PAGE_SIZE));
+        }
+    }
+
+    /**
+     * Copies the title and content of an updated note onto the stored one,
+     * re-extracts its tags and stamps it with a new revision.
+     * Does not render the HTML; if the content changed, the HTML is cleared until it is rendered.
+     *
+     * @param existingNote The stored note
+     * @param updatedNote  The note containing the new information
+     * @return True if the HTML of the note has to be rendered
+     */
+    private boolean copyChanges(Note existingNote, Note updatedNote) {
+        boolean needsRender = existingNote.getHTML() == null
+                || !Objects.equals(existingNote.getContent(), updatedNote.getContent());
         existingNote.setTitle(updatedNote.getTitle());
-        existingNote.setContent(updatedNote.getContent());
-        existingNote.renderRawText(existingNote.getId());
+        if (needsRender) {
+            existingNote.setRawContent(updatedNote.getContent());
+            existingNote.setHtml(null);
+        }
         if (existingNote.getTags() == null) {
             existingNote.setTags(new HashSet<>());
         }
         existingNote.getTags().clear();
         existingNote.extractTagsFromContent();
-        return noteRepository.save(existingNote);
+        existingNote.setRevision(nextRevision());
+        return needsRender;
     }
 
     /**
@@ -83,11 +470,69 @@ public class NoteService {
      * @param id The id of the note
      * @return A response entity
      */
+    @Transactional
     public ResponseEntity<Void> deleteNoteById(long id) {
         if (!noteRepository.existsById(id)) {
             return ResponseEntity.badRequest().build();
         }
         noteRepository.deleteById(id);
+        linkRepository.deleteBySourceIds(List.of(id));
+        NoteTombstone tombstone = new NoteTombstone(id, nextRevision());
+        tombstoneRepository.save(tombstone);
+        searchService.removeNotes(List.of(tombstone));
         return ResponseEntity.ok().build();
     }
+
+    /**
+     * Returns the revision up to which every change is committed.
+     * A client that has fetched all notes is up to date with (at least) this revision.
+     *
+     * @return The current revision
+     */
+    public long currentRevision() {
+        return revisions.committed();
+    }
+
+    /**
+     * Fetches the notes created, updated or deleted after the given revision.
+     * Only committed revisions are returned, so a change that commits late is never skipped.
+     * At most a page of notes and a page of deletions are returned at once; if there are more,
+     * the result is marked as having more and its revision is the last one of the shorter page.
+     *
+     * @param since The revision the caller is up to date with
+     * @param limit The maximum number of notes, and of deletions, to return
+     * @return The changes, and the revision the caller is up to date with after applying them
+     */
+    public NoteChanges getChangesSince(long since, int limit) {
+        int size = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        long committed = revisions.committed();
+        List<Note> notes = noteRepository
+                .findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(since, committed, Limit.of(size));
+        List<NoteTombstone> tombstones = tombstoneRepository
+                .findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(since, committed, Limit.of(size));
+
+        long upTo = committed;
+        if (notes.size() == size) {
+            upTo = Math.min(upTo, notes.getLast().getRevision());
+        }
+        if (tombstones.size() == size) {
+            upTo = Math.min(upTo, tombstones.getLast().getRevision());
+        }
+        long reached = Math.max(since, upTo);
+        List<Note> changed = notes.stream().filter(note -> note.getRevision() <= reached).toList();
+        List<Long> deletedIds = tombstones.stream()
+                .filter(tombstone -> tombstone.getRevision() <= reached)
+                .map(NoteTombstone::getNoteId)
+                .toList();
+        return new NoteChanges(reached, changed, deletedIds, upTo < committed);
+    }
+
+    /**
+     * Hands out the next revision, to be stamped on a saved note or a tombstone
+     *
+     * @return A revision greater than all the revisions handed out before
+     */
+    private long nextRevision() {
+        return revisions.next();
+    }
 }
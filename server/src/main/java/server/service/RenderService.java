@@ -0,0 +1,201 @@
+package server.service;
+
+import commons.MarkDownMethods;
+import commons.Note;
+import commons.NoteHtml;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionTemplate;
+import server.database.NoteRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the markdown of saved notes to HTML in the background, so saving a note
+ * does not wait for commonmark.
+ * Renders of the same note are coalesced: while a render is queued, later saves only replace
+ * the content it will render, so a burst of autosaves renders the note once.
+ * <p>
+ * Storing the HTML stamps the note with a new revision, so the HTML reaches clients through the
+ * change feed and the ETag of the note, like any other change. Renders still queued when the server
+ * stops are not lost: the notes keep a null HTML, and are rendered again when the server starts.
+ */
+@Service
+public class RenderService {
+
+    public static final String HTML_TOPIC = "/topic/note-html";
+
+    private final NoteRepository noteRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RevisionClock revisions;
+    private final SearchService searchService;
+    private final TransactionOperations transactions;
+    private final Executor executor;
+
+    /**
+     * The latest content to render for every note with a queued render
+     */
+    private final Map<Long, RenderJob> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Autowired constructor for RenderService.
+     * When all threads are busy and the queue is full, the saving thread renders the note itself.
+     *
+     * The HTML is stored in a transaction of its own, since a note can be rendered by the saving thread
+     * after the transaction of the save has committed.
+     *
+     * @param noteRepository     The repository the rendered HTML is stored in
+     * @param messagingTemplate  The template used to publish the rendered HTML
+     * @param revisions          The clock handing out the revision stamped on a note with its HTML
+     * @param searchService      The service indexing the notes under their new revision
+     * @param transactionManager The transaction manager the HTML is stored with
+     * @param threads            The number of render threads
+     * @param queueSize          The number of notes that can wait for a render thread
+     */
+    @Autowired
+    public RenderService(NoteRepository noteRepository, SimpMessagingTemplate messagingTemplate,
+                         RevisionClock revisions, SearchService searchService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${notes.render.threads:2}") int threads,
+                         @Value("${notes.render.queue-size:1000}") int queueSize) {
+        this(noteRepository, messagingTemplate, revisions, searchService, requiresNew(transactionManager),
+                new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueSize), new ThreadPoolExecutor.CallerRunsPolicy()));
+    }
+
+    /**
+     * Constructor for RenderService with a given executor
+     *
+     * @param noteRepository    The repository the rendered HTML is stored in
+     * @param messagingTemplate The template used to publish the rendered HTML
+     * @param revisions         The clock handing out the revision stamped on a note with its HTML
+     * @param searchService     The service indexing the notes under their new revision
+     * @param transactions      The transactions the HTML is stored in
+     * @param executor          The executor the renders run on
+     */
+    RenderService(NoteRepository noteRepository, SimpMessagingTemplate messagingTemplate, RevisionClock revisions,
+                  SearchService searchService, TransactionOperations transactions, Executor executor) {
+        this.noteRepository = noteRepository;
+        this.messagingTemplate = messagingTemplate;
+        this.revisions = revisions;
+        this.searchService = searchService;
+        this.transactions = transactions;
+        this.executor = executor;
+    }
+
+    private static TransactionTemplate requiresNew(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    /**
+     * Renders the notes without HTML once the server has started, one page of notes at a time.
+     * These are the notes whose render was still queued when the server stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void renderMissing() {
+        List<Note> page = noteRepository.findByHtmlIsNullAndContentIsNotNullAndIdGreaterThanOrderByIdAsc(0,
+                Limit.of(NoteService.MAX_PAGE_SIZE));
+        while (!page.isEmpty()) {
+            page.forEach(note -> enqueue(new RenderJob(note.getId(), note.getContent())));
+            page = noteRepository.findByHtmlIsNullAndContentIsNotNullAndIdGreaterThanOrderByIdAsc(
+                    page.getLast().getId(), Limit.of(NoteService.MAX_PAGE_SIZE));
+        }
+    }
+
+    /**
+     * Schedules the HTML of a saved note to be rendered.
+     * If a transaction is active, the render is only scheduled once it commits,
+     * so the render never runs before the content it renders is visible.
+     *
+     * @param note The saved note, with its id and revision set
+     */
+    public void submit(Note note) {
+        RenderJob job = new RenderJob(note.getId(), note.getContent());
+        AfterCommit.run(() -> enqueue(job));
+    }
+
+    /**
+     * Queues a render, unless one is already queued for the note
+     *
+     * @param job The note content to render
+     */
+    private void enqueue(RenderJob job) {
+        if (pending.put(job.noteId(), job) == null) {
+            executor.execute(() -> render(job.noteId()));
+        }
+    }
+
+    /**
+     * Renders the latest queued content of a note, stores it under a new revision and publishes it.
+     * The HTML is only stored if the content did not change in the meantime;
+     * the render of that newer content will store its own HTML.
+     *
+     * @param noteId The id of the note
+     */
+    private void render(long noteId) {
+        RenderJob job = pending.remove(noteId);
+        if (job == null) {
+            return;
+        }
+        String html = MarkDownMethods.renderRawTextToText(job.content(), noteId);
+        Long revision = transactions.execute(status -> store(noteId, job.content(), html));
+        if (revision != null) {
+            messagingTemplate.convertAndSend(HTML_TOPIC, new NoteHtml(noteId, revision, html));
+        }
+    }
+
+    /**
+     * Stores the HTML of a note under a new revision, and indexes the note under that revision
+     * once the transaction commits
+     *
+     * @param noteId  The id of the note
+     * @param content The content the HTML was rendered from
+     * @param html    The rendered HTML
+     * @return The new revision of the note, or null if the note was deleted or its content changed
+     */
+    private Long store(long noteId, String content, String html) {
+        long revision = revisions.next();
+        if (noteRepository.updateHtml(noteId, content, html, revision) == 0) {
+            return null;
+        }
+        noteRepository.findById(noteId).ifPresent(note -> searchService.indexNotes(List.of(note)));
+        return revision;
+    }
+
+    /**
+     * Stops the render threads when the server shuts down
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * The content of a note to render
+     *
+     * @param noteId  The id of the note
+     * @param content The markdown content
+     */
+    private record RenderJob(long noteId, String content) {
+    }
+}
@@ -0,0 +1,96 @@
+package server.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import server.database.NoteRepository;
+import server.database.NoteTombstoneRepository;
+
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Hands out the revisions stamped on saved notes and tombstones, and tells up to which revision
+ * every change is committed.
+ * <p>
+ * A revision is handed out before the transaction using it commits, so transactions can commit
+ * out of order: a change with revision 7 may become visible after one with revision 8.
+ * A reader that moved past 8 would then never see 7. Revisions are therefore tracked until their
+ * transaction completes, and readers only go up to {@link #committed()}, below the oldest revision
+ * still in flight.
+ */
+@Component
+public class RevisionClock {
+
+    private final NoteRepository noteRepository;
+    private final NoteTombstoneRepository tombstoneRepository;
+
+    /**
+     * The latest revision handed out, or -1 until it is loaded from the database
+     */
+    private long latest = -1;
+
+    /**
+     * The revisions handed out to transactions that have not completed yet
+     */
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+
+    /**
+     * Constructor for RevisionClock
+     *
+     * @param noteRepository      The repository of the notes, read for the latest revision on first use
+     * @param tombstoneRepository The repository of the tombstones, read for the latest revision on first use
+     */
+    public RevisionClock(NoteRepository noteRepository, NoteTombstoneRepository tombstoneRepository) {
+        this.noteRepository = noteRepository;
+        this.tombstoneRepository = tombstoneRepository;
+    }
+
+    /**
+     * Hands out the next revision. If a transaction is active, the revision counts as in flight
+     * until the transaction commits or rolls back.
+     *
+     * @return A revision greater than all the revisions handed out before
+     */
+    public synchronized long next() {
+        load();
+        long revision = ++latest;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            inFlight.add(revision);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    release(revision);
+                }
+            });
+        }
+        return revision;
+    }
+
+    /**
+     * Returns the revision up to which every change is committed or rolled back,
+     * so no change with this revision or a lower one can still appear
+     *
+     * @return The committed revision
+     */
+    public synchronized long committed() {
+        load();
+        return inFlight.isEmpty() ? latest : inFlight.first() - 1;
+    }
+
+    private synchronized void release(long revision) {
+        inFlight.remove(revision);
+    }
+
+    /**
+     * Loads the latest revision from the database the first time it is needed,
+     * so revisions keep increasing across restarts.
+     */
+    private void load() {
+        if (latest >= 0) {
+            return;
+        }
+        latest = Math.max(Objects.requireNonNullElse(noteRepository.findMaxRevision(), 0L),
+                Objects.requireNonNullElse(tombstoneRepository.findMaxRevision(), 0L));
+    }
+}
@@ -0,0 +1,518 @@
+package server.service;
+
+import commons.Note;
+import commons.NoteTitle;
+import commons.NoteTombstone;
+import commons.SearchResult;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import server.database.NoteChecksumProjection;
+import server.database.NoteRepository;
+import server.database.NoteTagProjection;
+import server.database.NoteTombstoneRepository;
+import server.search.SearchIndex;
+import server.search.Snippets;
+import server.search.TagIndex;
+import server.search.Tokenizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the full-text search index and the tag index in step with the stored notes, and answers queries on them.
+ * <p>
+ * All changes to the index are applied in order on a single background thread, once the transaction
+ * that made them commits. The index and the tag index are saved next to the database at regular checkpoints,
+ * together with the revision up to which every change was committed and applied.
+ * On startup the saved indexes are opened and only the changes committed after that revision are replayed
+ * from the database, so restarting does not reindex every note. The index is then checked against
+ * the database by the number of notes and the sums of their ids and revisions, and rebuilt in the background
+ * if it does not match.
+ */
+@Service
+public class SearchService {
+
+    public static final int MAX_RESULTS = 100;
+
+    /**
+     * The lowest similarity accepted for fuzzy searches; below it, almost every word matches
+     */
+    public static final double MIN_SIMILARITY = 0.1;
+
+    /**
+     * The number of documents held in memory before they are written to disk
+     */
+    static final int FLUSH_DOCUMENTS = 10_000;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SearchService.class);
+
+    private final NoteRepository noteRepository;
+    private final NoteTombstoneRepository tombstoneRepository;
+    private final RevisionClock revisions;
+    private final Path directory;
+    private final Path tagsFile;
+    private final ScheduledExecutorService indexer;
+    private final long checkpointSeconds;
+    private volatile SearchIndex index = new SearchIndex();
+    private volatile TagIndex tags = new TagIndex();
+
+    /**
+     * Autowired constructor for SearchService
+     *
+     * @param noteRepository      The repository the index is built from
+     * @param tombstoneRepository The repository of the tombstones of deleted notes
+     * @param revisions           The clock telling up to which revision every change is committed
+     * @param directory           The directory the index is saved in
+     * @param checkpointSeconds   The number of seconds between checkpoints of a changed index
+     */
+    @Autowired
+    public SearchService(NoteRepository noteRepository, NoteTombstoneRepository tombstoneRepository,
+                         RevisionClock revisions,
+                         @Value("${notes.search.directory:search-index}") String directory,
+                         @Value("${notes.search.checkpoint-seconds:30}") long checkpointSeconds) {
+        this(noteRepository, tombstoneRepository, revisions, Path.of(directory), Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-indexer");
+                    thread.setDaemon(true);
+                    return thread;
+                }), checkpointSeconds);
+    }
+
+    /**
+     * Constructor for SearchService with a given indexing thread
+     *
+     * @param noteRepository      The repository the index is built from
+     * @param tombstoneRepository The repository of the tombstones of deleted notes
+     * @param revisions           The clock telling up to which revision every change is committed
+     * @param directory           The directory the index is saved in, next to the file the tags are saved in
+     * @param indexer             The single thread that changes to the index are applied on
+     * @param checkpointSeconds   The number of seconds between checkpoints of a changed index
+     */
+    SearchService(NoteRepository noteRepository, NoteTombstoneRepository tombstoneRepository, RevisionClock revisions,
+                  Path directory, ScheduledExecutorService indexer, long checkpointSeconds) {
+        this.noteRepository = noteRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.revisions = revisions;
+        this.directory = directory;
+        this.tagsFile = directory.resolveSibling(directory.getFileName() + ".tags");
+        this.indexer = indexer;
+        this.checkpointSeconds = checkpointSeconds;
+    }
+
+    /**
+     * Loads the indexes in the background once the server has started, and schedules the checkpoints
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        indexer.execute(this::load);
+        indexer.scheduleWithFixedDelay(this::scheduleCheckpoint, checkpointSeconds, checkpointSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reads the tags of all notes from the database, one range of note ids at a time.
+     * The tags are given revision 0: every change queued behind the load is newer, and replaces them.
+     */
+    private void loadTags() {
+        try {
+            tags = readTags();
+        } catch (RuntimeException e) {
+            LOGGER.error("Tags cannot be read, filtering by tag is unavailable until restart", e);
+        }
+    }
+
+    private TagIndex readTags() {
+        TagIndex loaded = new TagIndex();
+        long maxId = Objects.requireNonNullElse(noteRepository.findMaxId(), 0L);
+        for (long after = 0; after < maxId; after += NoteService.MAX_SUMMARY_PAGE_SIZE) {
+            long noteId = 0;
+            List<String> noteTags = new ArrayList<>();
+            for (Object[] row : noteRepository.findTagsByNoteIdBetween(after,
+                    after + NoteService.MAX_SUMMARY_PAGE_SIZE)) {
+                long id = ((Number) row[0]).longValue();
+                if (id != noteId) {
+                    loaded.set(noteId, 0, noteTags);
+                    noteId = id;
+                    noteTags.clear();
+                }
+                noteTags.add((String) row[1]);
+            }
+            loaded.set(noteId, 0, noteTags);
+        }
+        return loaded;
+    }
+
+    /**
+     * Opens the saved indexes and brings them up to date, or rebuilds them if they cannot be trusted.
+     * The tags are read from the database if they were not saved.
+     */
+    private void load() {
+        long committed = revisions.committed();
+        TagIndex.Saved savedTags = readSavedTags();
+        SearchIndex opened;
+        try {
+            opened = SearchIndex.open(directory);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Search index in {} cannot be read and is rebuilt", directory, e);
+            try {
+                opened = SearchIndex.create(directory);
+            } catch (IOException e2) {
+                LOGGER.error("Search index in {} cannot be created, search is kept in memory", directory, e2);
+                loadTags();
+                rebuild(new SearchIndex());
+                return;
+            }
+        }
+        if (opened.isPersisted()) {
+            index = opened;
+            long from = opened.watermark();
+            if (savedTags != null) {
+                tags = savedTags.index();
+                from = Math.min(from, savedTags.watermark());
+            } else {
+                loadTags();
+            }
+            replay(from);
+            if (!isConsistent()) {
+                // a change may have committed while the replay read the database
+                replay(committed);
+            }
+            if (isConsistent()) {
+                checkpointIfChanged(committed);
+                return;
+            }
+            LOGGER.warn("Search index in {} does not match the database and is rebuilt", directory);
+        }
+        loadTags();
+        rebuild(opened);
+    }
+
+    /**
+     * Reads the tags saved by the last checkpoint
+     *
+     * @return The saved tags, or null if there are none or they cannot be read
+     */
+    private TagIndex.Saved readSavedTags() {
+        if (!Files.exists(tagsFile)) {
+            return null;
+        }
+        try {
+            return TagIndex.read(tagsFile);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Tags in {} cannot be read and are loaded from the database", tagsFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Applies the notes saved and deleted after the given revision, one page at a time
+     *
+     * @param since The revision to replay from
+     */
+    private void replay(long since) {
+        long from = since;
+        List<Note> page = noteRepository.findByRevisionGreaterThanOrderByRevisionAsc(from,
+                Limit.of(NoteService.MAX_PAGE_SIZE));
+        while (!page.isEmpty()) {
+            Map<Long, List<String>> pageTags = new HashMap<>();
+            for (NoteTagProjection row : noteRepository.findTagsByNoteIds(page.stream().map(Note::getId).toList())) {
+                pageTags.computeIfAbsent(row.getNoteId(), _ -> new ArrayList<>()).add(row.getTag());
+            }
+            for (Note note : page) {
+                Snapshot snapshot = Snapshot.of(note);
+                snapshot.addTo(index);
+                tags.set(snapshot.id(), snapshot.revision(), pageTags.getOrDefault(snapshot.id(), List.of()));
+            }
+            from = page.getLast().getRevision();
+            page = noteRepository.findByRevisionGreaterThanOrderByRevisionAsc(from,
+                    Limit.of(NoteService.MAX_PAGE_SIZE));
+        }
+
+        from = since;
+        List<NoteTombstone> tombstones = tombstoneRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(
+                from, Long.MAX_VALUE, Limit.of(NoteService.MAX_PAGE_SIZE));
+        while (!tombstones.isEmpty()) {
+            for (NoteTombstone tombstone : tombstones) {
+                index.remove(tombstone.getNoteId(), tombstone.getRevision());
+                tags.remove(tombstone.getNoteId(), tombstone.getRevision());
+            }
+            from = tombstones.getLast().getRevision();
+            tombstones = tombstoneRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(
+                    from, Long.MAX_VALUE, Limit.of(NoteService.MAX_PAGE_SIZE));
+        }
+    }
+
+    /**
+     * Checks that the index holds the same notes at the same revisions as the database,
+     * by comparing their number and the sums of their ids and revisions
+     *
+     * @return True if the index matches the database
+     */
+    private boolean isConsistent() {
+        NoteChecksumProjection checksum = noteRepository.findChecksum();
+        return index.size() == checksum.getNotes()
+                && index.idSum() == Objects.requireNonNullElse(checksum.getIdSum(), 0L)
+                && index.revisionSum() == Objects.requireNonNullElse(checksum.getRevisionSum(), 0L);
+    }
+
+    /**
+     * Builds a new index from all stored notes, one page at a time.
+     * The current index keeps answering queries until the new one is complete.
+     *
+     * @param current The current index, whose directory the new index is saved in
+     */
+    private void rebuild(SearchIndex current) {
+        long committed = revisions.committed();
+        SearchIndex rebuilt = current.emptyCopy();
+        List<Note> page = noteRepository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(NoteService.MAX_PAGE_SIZE));
+        while (!page.isEmpty()) {
+            page.stream().map(Snapshot::of).forEach(note -> note.addTo(rebuilt));
+            if (rebuilt.pendingDocuments() >= FLUSH_DOCUMENTS) {
+                flush(rebuilt);
+            }
+            page = noteRepository.findByIdGreaterThanOrderByIdAsc(page.getLast().getId(),
+                    Limit.of(NoteService.MAX_PAGE_SIZE));
+        }
+        index = rebuilt;
+        checkpoint(rebuilt, committed);
+    }
+
+    /**
+     * Indexes saved notes once the current transaction commits.
+     * The fields are read now, so later changes to the entities are not indexed.
+     *
+     * @param notes The saved notes, with their id and revision set
+     */
+    public void indexNotes(List<Note> notes) {
+        List<Snapshot> snapshots = notes.stream().map(Snapshot::withTags).toList();
+        AfterCommit.run(() -> submit(() -> {
+            snapshots.forEach(note -> {
+                note.addTo(index);
+                tags.set(note.id(), note.revision(), note.tags());
+            });
+            if (index.pendingDocuments() >= FLUSH_DOCUMENTS) {
+                flush(index);
+            }
+        }));
+    }
+
+    /**
+     * Removes deleted notes from the index once the current transaction commits
+     *
+     * @param tombstones The tombstones of the deleted notes
+     */
+    public void removeNotes(List<NoteTombstone> tombstones) {
+        List<NoteTombstone> copy = List.copyOf(tombstones);
+        AfterCommit.run(() -> submit(() ->
+                copy.forEach(tombstone -> {
+                    index.remove(tombstone.getNoteId(), tombstone.getRevision());
+                    tags.remove(tombstone.getNoteId(), tombstone.getRevision());
+                })));
+    }
+
+    /**
+     * Finds the notes containing every word of the query, best match first.
+     * Every result carries a snippet of its content showing where the words occur.
+     *
+     * @param query      The text to search for
+     * @param collection The collection to search in, or null to search every collection
+     * @param limit      The requested number of results, capped at {@value #MAX_RESULTS}
+     * @return The matching notes, ordered by descending score
+     */
+    public List<SearchResult> search(String query, String collection, int limit) {
+        List<SearchResult> results = index.search(query, collection, Math.min(limit, MAX_RESULTS));
+        if (!results.isEmpty()) {
+            addSnippets(results, new HashSet<>(Tokenizer.tokenize(query)));
+        }
+        return results;
+    }
+
+    /**
+     * Adds snippets to search results, reading the contents of all of them in a single query.
+     * The index only tells which notes match, so the words are located in the contents here;
+     * only the returned notes are read, never the other candidates.
+     *
+     * @param results The search results
+     * @param terms   The searched terms
+     */
+    private void addSnippets(List<SearchResult> results, Set<String> terms) {
+        Map<Long, String> contents = new HashMap<>();
+        for (Object[] row : noteRepository.findContentsByIdIn(results.stream().map(SearchResult::getId).toList())) {
+            contents.put((Long) row[0], (String) row[1]);
+        }
+        for (SearchResult result : results) {
+            Snippets.attach(result, contents.get(result.getId()), terms);
+        }
+    }
+
+    /**
+     * Searches the notes for words that look like the ones of the query, to tolerate typos
+     *
+     * @param query      The text to search for
+     * @param collection The collection to search in, or null to search every collection
+     * @param threshold  The minimum similarity of a word to the query, raised to at least {@value #MIN_SIMILARITY}
+     * @param limit      The requested number of results, capped at {@value #MAX_RESULTS}
+     * @return The matching notes, ordered by descending score
+     */
+    public List<SearchResult> fuzzySearch(String query, String collection, double threshold, int limit) {
+        double similarity = Math.min(Math.max(threshold, MIN_SIMILARITY), 1);
+        return index.fuzzySearch(query, collection, similarity, Math.min(limit, MAX_RESULTS));
+    }
+
+    /**
+     * Finds the notes with the given title, ignoring case
+     *
+     * @param title      The title to look for
+     * @param collection The collection to look in, or null to look in every collection
+     * @return The matching notes, in increasing order of id
+     */
+    public List<NoteTitle> findTitle(String title, String collection) {
+        return index.findTitle(title, collection);
+    }
+
+    /**
+     * Finds the notes whose title starts with the given prefix, ignoring case
+     *
+     * @param prefix     The start of the titles to look for
+     * @param collection The collection to look in, or null to look in every collection
+     * @param limit      The requested number of notes, capped at {@value #MAX_RESULTS}
+     * @return The matching notes, in alphabetical order of title
+     */
+    public List<NoteTitle> titlesStartingWith(String prefix, String collection, int limit) {
+        return index.titlesStartingWith(prefix, collection, Math.min(limit, MAX_RESULTS));
+    }
+
+    /**
+     * Returns every tag in use with the number of notes carrying it
+     *
+     * @return The tags in alphabetical order, with their note counts
+     */
+    public Map<String, Integer> tagCounts() {
+        return tags.counts();
+    }
+
+    /**
+     * Finds the notes carrying the given tags
+     *
+     * @param filter The tags to filter on
+     * @param all    True to find the notes carrying all of the tags, false for any of them
+     * @param after  The id to start after, for paging
+     * @param limit  The maximum number of ids to return
+     * @return The ids of the matching notes, in increasing order
+     */
+    public List<Long> findByTags(Collection<String> filter, boolean all, long after, int limit) {
+        return tags.find(filter, all, after, limit);
+    }
+
+    /**
+     * Saves the index one last time and stops the indexing thread when the server shuts down
+     *
+     * @throws InterruptedException If interrupted while waiting for the indexing thread
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduleCheckpoint();
+        indexer.shutdown();
+        indexer.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queues a change to the index. Changes arriving after shutdown are dropped;
+     * they are replayed from the database on the next start.
+     */
+    private void submit(Runnable change) {
+        try {
+            indexer.execute(change);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Search indexer is stopped, change is left to the replay on startup");
+        }
+    }
+
+    /**
+     * Queues a checkpoint up to the revision committed now. The changes of every transaction committed
+     * up to that revision were queued when it committed, so they are applied before the checkpoint runs.
+     */
+    private void scheduleCheckpoint() {
+        long committed = revisions.committed();
+        submit(() -> checkpointIfChanged(committed));
+    }
+
+    private void checkpointIfChanged(long watermark) {
+        if (index.hasChanges()) {
+            checkpoint(index, watermark);
+        }
+    }
+
+    /**
+     * Saves an index and the tags, recording that every change up to the watermark is in them
+     */
+    private void checkpoint(SearchIndex target, long watermark) {
+        try {
+            target.checkpoint(watermark);
+            if (target.isPersisted()) {
+                tags.write(tagsFile, watermark);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Search index checkpoint in {} failed", directory, e);
+        }
+    }
+
+    /**
+     * Writes the documents held in memory to disk, without moving the watermark of the index
+     */
+    private void flush(SearchIndex target) {
+        try {
+            target.checkpoint();
+        } catch (IOException e) {
+            LOGGER.warn("Search index checkpoint in {} failed", directory, e);
+        }
+    }
+
+    /**
+     * The indexed fields of a note at the time it was saved
+     *
+     * @param id              The id of the note
+     * @param revision        The revision of the note, 0 for notes saved before revisions existed
+     * @param title           The title of the note
+     * @param collectionTitle The collection of the note
+     * @param content         The content of the note
+     * @param tags            The tags of the note, or null if they were not read
+     */
+    private record Snapshot(long id, long revision, String title, String collectionTitle, String content,
+                            Set<String> tags) {
+        static Snapshot of(Note note) {
+            return new Snapshot(note.getId(), note.getRevision() == null ? 0 : note.getRevision(),
+                    note.getTitle(), note.getCollectionTitle(), note.getContent(), null);
+        }
+
+        static Snapshot withTags(Note note) {
+            return new Snapshot(note.getId(), note.getRevision() == null ? 0 : note.getRevision(),
+                    note.getTitle(), note.getCollectionTitle(), note.getContent(),
+                    note.getTags() == null ? Set.of() : Set.copyOf(note.getTags()));
+        }
+
+        void addTo(SearchIndex index) {
+            index.add(id, revision, title, collectionTitle, content);
+        }
+    }
+}
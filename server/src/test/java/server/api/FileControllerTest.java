@@ -1,32 +1,73 @@
 package server.api;
 
+import commons.FileBlob;
 import commons.FileCompositeKey;
 import commons.FileData;
+import commons.FileSummary;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.ServletWebRequest;
+import server.database.FileBlobRepository;
 import server.database.FileRepository;
-
+import server.database.FileSummaryProjection;
+import server.files.BlobStore;
+import server.files.ThumbnailGenerator;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class FileControllerTest {
 
     @Mock
     private FileRepository repo;
 
-    @InjectMocks
+    @Mock
+    private FileBlobRepository blobRepo;
+
+    @TempDir
+    private Path directory;
+
+    private BlobStore blobs;
+
     private FileController fileController;
 
-    public FileControllerTest() {
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/files");
+
+    private final MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+
+    private final ServletWebRequest webRequest = new ServletWebRequest(request, servletResponse);
+
+    @BeforeEach
+    void setUp() {
         MockitoAnnotations.openMocks(this);
+        blobs = new BlobStore(directory);
+        fileController = new FileController(repo, blobRepo, blobs, new ThumbnailGenerator(blobs, Runnable::run));
     }
 
     // Utility method for generating a MockMultipartFile
@@ -34,19 +75,310 @@ class FileControllerTest {
         return new MockMultipartFile(name, content.getBytes());
     }
 
+    // Utility method for encoding an image of the given size
+    private static byte[] image(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", output);
+        return output.toByteArray();
+    }
+
+    // Utility method for storing a file in the blob store
+    private FileData storedFile(String filename, byte[] data) throws IOException {
+        BlobStore.StoredBlob blob = blobs.store(new ByteArrayInputStream(data));
+        return new FileData(filename, 1L, blob.hash(), blob.size(), "text/plain", blob.storagePath());
+    }
+
     /**
      * Tests the successful retrieval of a file.
      */
     @Test
-    void testGetFile_Success() {
+    void testGetFile_Success() throws IOException {
         FileCompositeKey key = new FileCompositeKey("test.txt", 1L);
         byte[] fileData = "Hello, World!".getBytes();
-        when(repo.findById(key)).thenReturn(Optional.of(new FileData("test.txt", fileData, 1L)));
+        when(repo.findById(key)).thenReturn(Optional.of(storedFile("test.txt", fileData)));
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", null, webRequest);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals("bytes", response.getHeaders().getFirst("Accept-Ranges"));
+        assertEquals(fileData.length, response.getBody().contentLength());
+        assertArrayEquals(fileData, response.getBody().getContentAsByteArray());
+    }
+
+    /**
+     * Tests that files are served with their type and validated with the hash of their contents.
+     */
+    @Test
+    void testGetFile_CacheHeaders() throws IOException {
+        FileData file = storedFile("test.txt", "Hello, World!".getBytes());
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", null, webRequest);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals("text/plain", response.getHeaders().getContentType().toString());
+        assertEquals("\"" + file.getHash() + "\"", response.getHeaders().getETag());
+        assertEquals("no-cache", response.getHeaders().getCacheControl());
+        assertEquals("nosniff", response.getHeaders().getFirst("X-Content-Type-Options"));
+    }
+
+    /**
+     * Tests that a client holding the current contents is answered with 304 Not Modified, without a body.
+     */
+    @Test
+    void testGetFile_NotModified() throws IOException {
+        FileData file = storedFile("test.txt", "Hello, World!".getBytes());
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+        request.addHeader("If-None-Match", "\"" + file.getHash() + "\"");
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", null, webRequest);
+
+        assertNull(response);
+        assertEquals(304, servletResponse.getStatus());
+        assertEquals("\"" + file.getHash() + "\"", servletResponse.getHeader("ETag"));
+        assertEquals("no-cache", servletResponse.getHeader("Cache-Control"));
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    /**
+     * Tests that a client holding other contents is sent the current ones.
+     */
+    @Test
+    void testGetFile_Modified() throws IOException {
+        FileData file = storedFile("test.txt", "Hello, World!".getBytes());
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+        request.addHeader("If-None-Match", "\"0123\"");
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", null, webRequest);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertArrayEquals("Hello, World!".getBytes(), response.getBody().getContentAsByteArray());
+    }
+
+    /**
+     * Tests that a range is not served if the contents changed since the client read the start of them.
+     */
+    @Test
+    void testGetFile_IfRangeChanged() throws IOException {
+        FileData file = storedFile("test.txt", "Hello, World!".getBytes());
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+        request.addHeader("If-Range", "\"0123\"");
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", "bytes=7-", webRequest);
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertArrayEquals("Hello, World!".getBytes(), response.getBody().getContentAsByteArray());
+    }
+
+    /**
+     * Tests through Spring MVC that a stale If-Range is answered with the whole file, not the requested range.
+     */
+    @Test
+    void testGetFile_IfRangeChangedMvc() throws Exception {
+        FileData file = storedFile("test.txt", "Hello, World!".getBytes());
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(fileController).build();
+
+        mvc.perform(get("/api/files/1/test.txt").header("Range", "bytes=7-").header("If-Range", "\"0123\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Range"))
+                .andExpect(content().string("Hello, World!"));
+    }
+
+    /**
+     * Tests through Spring MVC that a current If-Range is answered with the requested range.
+     */
+    @Test
+    void testGetFile_IfRangeCurrentMvc() throws Exception {
+        FileData file = storedFile("test.txt", "Hello, World!".getBytes());
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(fileController).build();
+
+        mvc.perform(get("/api/files/1/test.txt/download").header("Range", "bytes=7-")
+                        .header("If-Range", "\"" + file.getHash() + "\""))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 7-12/13"))
+                .andExpect(content().string("World!"));
+    }
+
+    /**
+     * Tests that files uploaded before their type was detected are typed by their name.
+     */
+    @Test
+    void testGetFile_UntypedFile() throws IOException {
+        BlobStore.StoredBlob blob = blobs.store(new ByteArrayInputStream(image(8, 8)));
+        FileData file = new FileData("icon.png", 1L, blob.hash(), blob.size(), "application/octet-stream",
+                blob.storagePath());
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "icon.png", null, webRequest);
+
+        assertEquals("image/png", response.getHeaders().getContentType().toString());
+    }
+
+    /**
+     * Tests the retrieval of a range of bytes of a file.
+     */
+    @Test
+    void testGetFile_Range() throws IOException {
+        FileCompositeKey key = new FileCompositeKey("test.txt", 1L);
+        when(repo.findById(key)).thenReturn(Optional.of(storedFile("test.txt", "Hello, World!".getBytes())));
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", "bytes=7-11", webRequest);
+
+        assertEquals(206, response.getStatusCodeValue());
+        assertEquals("bytes 7-11/13", response.getHeaders().getFirst("Content-Range"));
+        assertEquals(5, response.getHeaders().getContentLength());
+        assertArrayEquals("World".getBytes(), response.getBody().getContentAsByteArray());
+    }
+
+    /**
+     * Tests the retrieval of the rest of a file from an offset, as used to resume downloads.
+     */
+    @Test
+    void testGetFile_OpenEndedRange() throws IOException {
+        FileCompositeKey key = new FileCompositeKey("test.txt", 1L);
+        when(repo.findById(key)).thenReturn(Optional.of(storedFile("test.txt", "Hello, World!".getBytes())));
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", "bytes=7-", webRequest);
+
+        assertEquals(206, response.getStatusCodeValue());
+        assertEquals("bytes 7-12/13", response.getHeaders().getFirst("Content-Range"));
+        assertArrayEquals("World!".getBytes(), response.getBody().getContentAsByteArray());
+    }
+
+    /**
+     * Tests a range starting past the end of a file.
+     */
+    @Test
+    void testGetFile_UnsatisfiableRange() throws IOException {
+        FileCompositeKey key = new FileCompositeKey("test.txt", 1L);
+        when(repo.findById(key)).thenReturn(Optional.of(storedFile("test.txt", "Hello, World!".getBytes())));
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", "bytes=13-", webRequest);
+
+        assertEquals(416, response.getStatusCodeValue());
+        assertEquals("bytes */13", response.getHeaders().getFirst("Content-Range"));
+        assertNull(response.getBody());
+    }
+
+    /**
+     * Tests that large files are handed over to a connector supporting sendfile.
+     */
+    @Test
+    void testGetFile_Sendfile() throws IOException {
+        FileCompositeKey key = new FileCompositeKey("test.txt", 1L);
+        FileData file = storedFile("test.txt", new byte[(int) FileController.DEFAULT_SENDFILE_THRESHOLD + 10]);
+        when(repo.findById(key)).thenReturn(Optional.of(file));
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", "bytes=10-", webRequest);
+
+        assertEquals(206, response.getStatusCodeValue());
+        assertEquals(FileController.DEFAULT_SENDFILE_THRESHOLD, response.getHeaders().getContentLength());
+        assertNull(response.getBody());
+        assertEquals(blobs.resolve(file.getStoragePath()).toAbsolutePath().toString(),
+                request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(file.getSize(), request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    /**
+     * Tests that small files are streamed even if the connector supports sendfile.
+     */
+    @Test
+    void testGetFile_SmallFileWithoutSendfile() throws IOException {
+        FileCompositeKey key = new FileCompositeKey("test.txt", 1L);
+        when(repo.findById(key)).thenReturn(Optional.of(storedFile("test.txt", "Hello, World!".getBytes())));
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", null, webRequest);
 
-        ResponseEntity<byte[]> response = fileController.getFile(1L, "test.txt");
+        assertArrayEquals("Hello, World!".getBytes(), response.getBody().getContentAsByteArray());
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+
+    /**
+     * Tests that a thumbnail of the requested width is served for images.
+     */
+    @Test
+    void testGetThumbnail_Image() throws IOException {
+        FileData file = storedFile("photo.png", image(1000, 500));
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+
+        ResponseEntity<Resource> response = fileController.getThumbnail(1L, "photo.png", 300, webRequest);
 
         assertEquals(200, response.getStatusCodeValue());
-        assertArrayEquals(fileData, response.getBody());
+        assertEquals("image/png", response.getHeaders().getContentType().toString());
+        BufferedImage thumbnail = ImageIO.read(response.getBody().getInputStream());
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(160, thumbnail.getHeight());
+    }
+
+    /**
+     * Tests that files without a smaller preview are redirected to the original.
+     */
+    @Test
+    void testGetThumbnail_RedirectsToOriginal() throws IOException {
+        FileData text = storedFile("my notes.txt", "text".getBytes());
+        FileData icon = storedFile("icon.png", image(64, 64));
+        when(repo.findById(text.getId())).thenReturn(Optional.of(text));
+        when(repo.findById(icon.getId())).thenReturn(Optional.of(icon));
+
+        ResponseEntity<Resource> response = fileController.getThumbnail(1L, "my notes.txt", 640, webRequest);
+        assertEquals(302, response.getStatusCodeValue());
+        assertEquals("/api/files/1/my%20notes.txt", response.getHeaders().getLocation().toString());
+
+        response = fileController.getThumbnail(1L, "icon.png", 640, webRequest);
+        assertEquals(302, response.getStatusCodeValue());
+        assertEquals("/api/files/1/icon.png", response.getHeaders().getLocation().toString());
+    }
+
+    /**
+     * Tests that a thumbnail the client holds already is not sent again.
+     */
+    @Test
+    void testGetThumbnail_NotModified() throws IOException {
+        FileData file = storedFile("photo.png", image(1000, 500));
+        when(repo.findById(file.getId())).thenReturn(Optional.of(file));
+
+        ResponseEntity<Resource> response = fileController.getThumbnail(1L, "photo.png", 640, webRequest);
+        String etag = response.getHeaders().getETag();
+        assertEquals("\"" + file.getHash() + "-w640\"", etag);
+
+        request.addHeader("If-None-Match", etag);
+        assertNull(fileController.getThumbnail(1L, "photo.png", 640, webRequest));
+        assertEquals(304, servletResponse.getStatus());
+    }
+
+    /**
+     * Tests that the type of an uploaded file is detected when the client does not declare it.
+     */
+    @Test
+    void testPostFile_DetectsContentType() throws Exception {
+        when(repo.findById(any(FileCompositeKey.class))).thenReturn(Optional.empty());
+        MockMultipartFile upload = new MockMultipartFile("file", "photo.png", "application/octet-stream", image(8, 8));
+
+        fileController.postFile(1L, upload, "photo.png");
+
+        ArgumentCaptor<FileData> saved = ArgumentCaptor.forClass(FileData.class);
+        verify(repo).save(saved.capture());
+        assertEquals("image/png", saved.getValue().getContentType());
+    }
+
+    /**
+     * Tests that uploading an image creates the thumbnail shown in rendered notes.
+     */
+    @Test
+    void testPostFile_CreatesThumbnail() throws Exception {
+        when(repo.findById(any(FileCompositeKey.class))).thenReturn(Optional.empty());
+
+        fileController.postFile(1L, new MockMultipartFile("photo.jpg", image(2000, 1000)), "photo.jpg");
+
+        ArgumentCaptor<FileData> saved = ArgumentCaptor.forClass(FileData.class);
+        verify(repo).save(saved.capture());
+        assertTrue(Files.exists(blobs.resolve(saved.getValue().getStoragePath() + ".w640.jpg")));
     }
 
     /**
@@ -57,7 +389,7 @@ class FileControllerTest {
         FileCompositeKey key = new FileCompositeKey("test.txt", 1L);
         when(repo.findById(key)).thenReturn(Optional.empty());
 
-        ResponseEntity<byte[]> response = fileController.getFile(1L, "test.txt");
+        ResponseEntity<Resource> response = fileController.getFile(1L, "test.txt", null, webRequest);
 
         assertEquals(404, response.getStatusCodeValue());
         assertNull(response.getBody());
@@ -69,15 +401,107 @@ class FileControllerTest {
     @Test
     void testPostFile_Success() throws Exception {
         String filename = "test.txt";
-        byte[] data = "File content".getBytes();
-        FileData fileData = new FileData(filename, data, 1L);
-
-        when(repo.save(fileData)).thenReturn(fileData);
+        when(repo.findById(any(FileCompositeKey.class))).thenReturn(Optional.empty());
 
         ResponseEntity<String> response = fileController.postFile(1L, createMockFile(filename, "File content"), filename);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals("File uploaded successfully\n", response.getBody());
+        ArgumentCaptor<FileData> saved = ArgumentCaptor.forClass(FileData.class);
+        verify(repo).save(saved.capture());
+        assertEquals(filename, saved.getValue().getFileName());
+        assertEquals(12, saved.getValue().getSize());
+        assertEquals("File content", Files.readString(blobs.resolve(saved.getValue().getStoragePath())));
+        verify(blobRepo).insertReferenced(saved.getValue().getHash(), 12, saved.getValue().getStoragePath());
+    }
+
+    /**
+     * Tests that uploading contents stored for another file only adds a reference to them.
+     */
+    @Test
+    void testPostFile_ReferencesStoredContents() throws Exception {
+        FileData other = storedFile("other.txt", "File content".getBytes());
+        when(repo.findById(any(FileCompositeKey.class))).thenReturn(Optional.empty());
+        when(blobRepo.addReference(other.getHash())).thenReturn(1);
+
+        fileController.postFile(1L, createMockFile("test.txt", "File content"), "test.txt");
+
+        verify(blobRepo).addReference(other.getHash());
+        verify(blobRepo, never()).insertReferenced(anyString(), anyLong(), anyString());
+    }
+
+    /**
+     * Tests that replacing a file deletes the contents no other file uses.
+     */
+    @Test
+    void testPostFile_ReplacesOldContents() throws Exception {
+        FileData old = storedFile("test.txt", "Old content".getBytes());
+        when(repo.findById(old.getId())).thenReturn(Optional.of(old));
+        when(blobRepo.deleteIfUnreferenced(old.getHash())).thenReturn(1);
+
+        fileController.postFile(1L, createMockFile("test.txt", "New content"), "test.txt");
+
+        verify(blobRepo).removeReference(old.getHash());
+        assertFalse(Files.exists(blobs.resolve(old.getStoragePath())));
+    }
+
+    /**
+     * Tests that uploading the same contents under the same name keeps the reference count.
+     */
+    @Test
+    void testPostFile_SameContents() throws Exception {
+        FileData old = storedFile("test.txt", "Same content".getBytes());
+        when(repo.findById(old.getId())).thenReturn(Optional.of(old));
+
+        fileController.postFile(1L, createMockFile("test.txt", "Same content"), "test.txt");
+
+        verify(blobRepo, never()).addReference(anyString());
+        verify(blobRepo, never()).removeReference(anyString());
+        assertTrue(Files.exists(blobs.resolve(old.getStoragePath())));
+    }
+
+    /**
+     * Tests checking for stored contents by their hash.
+     */
+    @Test
+    void testHasBlob() {
+        when(blobRepo.existsById("ab12")).thenReturn(true);
+
+        assertEquals(200, fileController.hasBlob("ab12").getStatusCodeValue());
+        assertEquals(404, fileController.hasBlob("cd34").getStatusCodeValue());
+    }
+
+    /**
+     * Tests attaching stored contents to a note without uploading them.
+     */
+    @Test
+    void testLinkFile_Success() {
+        when(blobRepo.findById("ab12")).thenReturn(Optional.of(new FileBlob("ab12", 3, "ab/12/ab12", 1)));
+        when(repo.findById(any(FileCompositeKey.class))).thenReturn(Optional.empty());
+        when(blobRepo.addReference("ab12")).thenReturn(1);
+
+        ResponseEntity<String> response = fileController.linkFile(2L, "copy.txt", "ab12");
+
+        assertEquals(200, response.getStatusCodeValue());
+        ArgumentCaptor<FileData> saved = ArgumentCaptor.forClass(FileData.class);
+        verify(repo).save(saved.capture());
+        assertEquals(2L, saved.getValue().getRelatedNoteId());
+        assertEquals("copy.txt", saved.getValue().getFileName());
+        assertEquals(3, saved.getValue().getSize());
+        assertEquals("ab/12/ab12", saved.getValue().getStoragePath());
+    }
+
+    /**
+     * Tests attaching contents the server does not store.
+     */
+    @Test
+    void testLinkFile_UnknownContents() {
+        when(blobRepo.findById("ab12")).thenReturn(Optional.empty());
+
+        ResponseEntity<String> response = fileController.linkFile(2L, "copy.txt", "ab12");
+
+        assertEquals(404, response.getStatusCodeValue());
+        verify(repo, never()).save(any(FileData.class));
     }
 
     /**
@@ -86,12 +510,14 @@ class FileControllerTest {
     @Test
     void testPostFile_Failure() throws Exception {
         String filename = "test.txt";
+        when(repo.findById(any(FileCompositeKey.class))).thenReturn(Optional.empty());
         doThrow(new RuntimeException("Error saving file")).when(repo).save(any(FileData.class));
 
         ResponseEntity<String> response = fileController.postFile(1L, createMockFile(filename, "Invalid content"), filename);
 
         assertEquals(500, response.getStatusCodeValue());
         assertEquals("File upload failed\n", response.getBody());
+        verify(blobRepo).removeReference(anyString());
     }
 
     /**
@@ -126,15 +552,15 @@ class FileControllerTest {
      * Tests the successful download of a file.
      */
     @Test
-    void testDownloadFile_Success() {
+    void testDownloadFile_Success() throws IOException {
         FileCompositeKey fck = new FileCompositeKey("example.txt", 1L);
         byte[] fileData = "Test file content".getBytes();
-        FileData file = new FileData("example.txt", fileData, 1L);
+        FileData file = storedFile("example.txt", fileData);
 
         when(repo.findById(fck)).thenReturn(Optional.of(file));
 
         // Expecting ResponseEntity<Resource>
-        ResponseEntity<Resource> response = fileController.downloadFile(1L, "example.txt");
+        ResponseEntity<Resource> response = fileController.downloadFile(1L, "example.txt", null, webRequest);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals("attachment; filename=\"example.txt\"", response.getHeaders().get("Content-Disposition").get(0));
@@ -142,25 +568,45 @@ class FileControllerTest {
         // Validate resource content
         Resource resource = response.getBody();
         assertNotNull(resource);
-        assertTrue(resource instanceof ByteArrayResource);
-        assertArrayEquals(fileData, ((ByteArrayResource) resource).getByteArray());
+        assertArrayEquals(fileData, resource.getContentAsByteArray());
     }
 
     /**
-     * Tests fetching file names by ID.
+     * Tests resuming the download of a file.
      */
     @Test
-    void testFetchFileName_Success() {
+    void testDownloadFile_Range() throws IOException {
         FileCompositeKey fck = new FileCompositeKey("example.txt", 1L);
-        FileData file = new FileData("example.txt", "Sample content".getBytes(), 1L);
+        when(repo.findById(fck)).thenReturn(Optional.of(storedFile("example.txt", "Test file content".getBytes())));
 
-        when(repo.fetchAllFileNamesById(1L)).thenReturn(java.util.Collections.singletonList(file));
+        ResponseEntity<Resource> response = fileController.downloadFile(1L, "example.txt", "bytes=10-", webRequest);
 
-        ResponseEntity<java.util.List<FileData>> response = fileController.fetchFileName(1L);
+        assertEquals(206, response.getStatusCodeValue());
+        assertEquals("attachment; filename=\"example.txt\"", response.getHeaders().getFirst("Content-Disposition"));
+        assertEquals("bytes 10-16/17", response.getHeaders().getFirst("Content-Range"));
+        assertArrayEquals("content".getBytes(), response.getBody().getContentAsByteArray());
+    }
+
+    /**
+     * Tests fetching file names by ID.
+     */
+    @Test
+    void testFetchFileName_Success() {
+        FileSummaryProjection row = mock(FileSummaryProjection.class);
+        when(row.getRelatedNoteId()).thenReturn(1L);
+        when(row.getFileName()).thenReturn("example.txt");
+        when(row.getSize()).thenReturn(14L);
+        when(row.getContentType()).thenReturn("text/plain");
+        when(row.getHash()).thenReturn("ab12");
+        when(row.getUploadedAt()).thenReturn(100L);
+        when(repo.findSummariesByNoteId(1L)).thenReturn(List.of(row));
+
+        ResponseEntity<List<FileSummary>> response = fileController.fetchFileName(1L);
 
         assertEquals(200, response.getStatusCodeValue());
-        assertFalse(response.getBody().isEmpty());
-        assertEquals("example.txt", response.getBody().get(0).getFileName());
+        assertEquals(List.of(new FileSummary(1L, "example.txt", 14, "text/plain", "ab12", 100L)),
+                response.getBody());
+        verify(repo, never()).fetchAllFileNamesById(anyLong());
     }
 
     /**
@@ -168,18 +614,14 @@ class FileControllerTest {
      */
     @Test
     void testChangeName_Success() {
-        FileCompositeKey key = new FileCompositeKey("oldName.txt", 1L);
-        byte[] fileData = "Some file data".getBytes();
-        FileData file = new FileData("oldName.txt", fileData, 1L);
-
-        when(repo.findById(key)).thenReturn(Optional.of(file));
-        doNothing().when(repo).deleteById(any(FileCompositeKey.class));
-        when(repo.save(any(FileData.class))).thenReturn(new FileData("newName.txt", fileData, 1L));
+        when(repo.rename(1L, "oldName.txt", "newName.txt")).thenReturn(1);
 
         ResponseEntity<String> response = fileController.changeName(1L, "oldName.txt", "newName.txt");
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals("File name changed successfully\n", response.getBody());
+        verify(repo, never()).deleteById(any(FileCompositeKey.class));
+        verify(repo, never()).save(any(FileData.class));
     }
 
     /**
@@ -187,8 +629,7 @@ class FileControllerTest {
      */
     @Test
     void testChangeName_Failure() {
-        FileCompositeKey key = new FileCompositeKey("oldName.txt", 1L);
-        when(repo.findById(key)).thenReturn(Optional.empty());
+        when(repo.rename(1L, "oldName.txt", "newName.txt")).thenReturn(0);
 
         ResponseEntity<String> response = fileController.changeName(1L, "oldName.txt", "newName.txt");
 
@@ -196,17 +637,49 @@ class FileControllerTest {
         assertEquals("File name change failed\n", response.getBody());
     }
 
+    /**
+     * Tests renaming a file to a name the note already uses.
+     */
+    @Test
+    void testChangeName_ExistingName() {
+        when(repo.existsById(new FileCompositeKey("taken.txt", 1L))).thenReturn(true);
+
+        ResponseEntity<String> response = fileController.changeName(1L, "oldName.txt", "taken.txt");
+
+        assertEquals(409, response.getStatusCodeValue());
+        verify(repo, never()).rename(anyLong(), anyString(), anyString());
+        verify(repo, never()).deleteById(any(FileCompositeKey.class));
+    }
+
+    /**
+     * Tests renaming a file to a name another request took in the meantime.
+     */
+    @Test
+    void testChangeName_NameTakenConcurrently() {
+        when(repo.rename(1L, "oldName.txt", "taken.txt")).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        ResponseEntity<String> response = fileController.changeName(1L, "oldName.txt", "taken.txt");
+
+        assertEquals(409, response.getStatusCodeValue());
+    }
+
     /**
      * Tests the successful deletion of all related files by note ID.
      */
     @Test
-    void testDeleteAllRelated_Success() {
+    void testDeleteAllRelated_Success() throws IOException {
+        FileData shared = storedFile("a.txt", "shared".getBytes());
+        FileData unique = storedFile("b.txt", "unique".getBytes());
+        when(repo.fetchAllFileNamesById(1L)).thenReturn(List.of(shared, unique));
+        when(blobRepo.deleteIfUnreferenced(unique.getHash())).thenReturn(1);
         doNothing().when(repo).deleteByNoteId(1L);
 
         ResponseEntity<String> response = fileController.deleteAllRelated(1L);
 
         assertEquals(200, response.getStatusCodeValue());
         assertEquals("Files successfully deleted\n", response.getBody());
+        assertTrue(Files.exists(blobs.resolve(shared.getStoragePath())));
+        assertFalse(Files.exists(blobs.resolve(unique.getStoragePath())));
     }
 
     /**
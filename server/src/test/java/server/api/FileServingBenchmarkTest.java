@@ -0,0 +1,158 @@
+package server.api;
+
+import commons.FileCompositeKey;
+import commons.FileData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import server.database.FileRepository;
+import server.files.BlobStore;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the throughput and allocation rate of serving a 64 MiB attachment
+ * by loading it into a {@code byte[]}, as attachments were served before the blob store,
+ * by streaming it with positional reads, and with sendfile. Larger files make the {@code byte[]} path fail:
+ * the socket write copies the array into a direct buffer of the same size, which each worker thread keeps.
+ * Skipped unless run with {@code mvn test -Dtest=FileServingBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.datasource.url=jdbc:h2:mem:file-serving-benchmark",
+    "notes.files.directory=target/benchmark-attachments"})
+@Import(FileServingBenchmarkTest.ByteArrayController.class)
+public class FileServingBenchmarkTest {
+
+    private static final int SIZE = 64 * 1024 * 1024;
+    private static final int ROUNDS = 10;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BlobStore blobs;
+
+    @Autowired
+    private FileRepository repo;
+
+    @Autowired
+    private FileController controller;
+
+    /**
+     * Serves attachments the way they were served from database columns, as one array
+     */
+    @RestController
+    static class ByteArrayController {
+        private final FileRepository repo;
+        private final BlobStore blobs;
+
+        ByteArrayController(FileRepository repo, BlobStore blobs) {
+            this.repo = repo;
+            this.blobs = blobs;
+        }
+
+        @GetMapping("/benchmark/bytes/{noteid}/{filename}")
+        ResponseEntity<Resource> getFile(@PathVariable("noteid") long noteid,
+                @PathVariable("filename") String filename) throws IOException {
+            FileData fd = repo.findById(new FileCompositeKey(filename, noteid)).orElseThrow();
+            return ResponseEntity.ok(new ByteArrayResource(Files.readAllBytes(blobs.resolve(fd.getStoragePath()))));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repo.deleteAll();
+        blobs.deleteAll();
+    }
+
+    @Test
+    void serveLargeAttachment() throws IOException {
+        byte[] block = new byte[1024 * 1024];
+        new Random(42).nextBytes(block);
+        Path source = Files.createTempFile("benchmark-", ".bin");
+        try (OutputStream output = Files.newOutputStream(source)) {
+            for (int i = 0; i < SIZE / block.length; i++) {
+                output.write(block);
+            }
+        }
+        BlobStore.StoredBlob blob;
+        try (InputStream input = Files.newInputStream(source)) {
+            blob = blobs.store(input);
+        } finally {
+            Files.delete(source);
+        }
+        repo.save(new FileData("big.bin", 1L, blob.hash(), blob.size(), "application/octet-stream",
+                blob.storagePath()));
+
+        measure("byte[] resource", "/benchmark/bytes/1/big.bin");
+        ReflectionTestUtils.setField(controller, "sendfileThreshold", -1L);
+        measure("positional reads", "/api/files/1/big.bin");
+        ReflectionTestUtils.setField(controller, "sendfileThreshold", FileController.DEFAULT_SENDFILE_THRESHOLD);
+        measure("sendfile", "/api/files/1/big.bin");
+    }
+
+    private void measure(String name, String path) throws IOException {
+        assertEquals(SIZE, download(path));
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            assertEquals(SIZE, download(path));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double mebibytes = (double) SIZE * ROUNDS / (1024 * 1024);
+        System.out.printf("%-16s %7.0f MiB/s, %9.1f KiB allocated per MiB served%n",
+                name, mebibytes / seconds, (allocatedBytes() - allocatedBefore) / 1024.0 / mebibytes);
+    }
+
+    /**
+     * Downloads a file over a plain socket, so the client allocates nothing per byte
+     *
+     * @return The length of the body
+     */
+    private long download(String path) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            InputStream input = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            int matched = 0;
+            while (matched < 4) {
+                int b = input.read();
+                assertNotEquals(-1, b);
+                matched = b == "\r\n\r\n".charAt(matched) ? matched + 1 : b == '\r' ? 1 : 0;
+            }
+            byte[] buffer = new byte[64 * 1024];
+            long length = 0;
+            for (int read; (read = input.read(buffer)) >= 0; ) {
+                length += read;
+            }
+            return length;
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+}
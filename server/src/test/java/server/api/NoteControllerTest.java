@@ -2,20 +2,42 @@ package server.api;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.MockedStatic;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import server.Config;
 import server.database.NoteRepository;
+import commons.MarkDownMethods;
 import commons.Note;
+import commons.NoteBatch;
+import commons.NoteChanges;
+import commons.NotePage;
+import commons.NoteSummary;
+import commons.NoteTitle;
+import commons.SearchResult;
+import server.service.SearchService;
 import server.service.NoteService;  // Assuming this is where NoteService is located
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
  * Tests for the NoteController class.
@@ -28,6 +50,9 @@ public class NoteControllerTest {
     @Mock
     private NoteService noteService;
 
+    @Mock
+    private SearchService searchService;
+
     @InjectMocks
     private NoteController controller;
 
@@ -40,11 +65,11 @@ public class NoteControllerTest {
     }
 
     /**
-     * Tests the getAllNotes method of the NoteController.
-     * Verifies that the method returns the correct list of notes.
+     * Tests the getNotes method of the NoteController.
+     * Verifies that the method returns the page produced by the service.
      */
     @Test
-    public void testGetAllNotes() {
+    public void testGetNotes() {
         Note note1 = new Note();
         note1.setTitle("Note 1");
         note1.setContent("Content 1");
@@ -53,14 +78,192 @@ public class NoteControllerTest {
         note2.setTitle("Note 2");
         note2.setContent("Content 2");
 
-        when(noteService.getAllNotes()).thenReturn(Arrays.asList(note1, note2));
+        when(noteService.getNotePage(null, null, 100)).thenReturn(new NotePage(Arrays.asList(note1, note2), null));
+
+        NotePage page = controller.getNotes(null, null, 100);
+        assertEquals(2, page.getNotes().size());
+        assertEquals("Note 1", page.getNotes().get(0).getTitle());
+        assertEquals("Note 2", page.getNotes().get(1).getTitle());
+        assertFalse(page.hasNext());
+    }
+
+    /**
+     * Tests that the cursor and limit are passed on to the service.
+     */
+    @Test
+    public void testGetNotesWithCursor() {
+        when(noteService.getNotePage(null, 5L, 2)).thenReturn(new NotePage(List.of(new Note()), 6L));
+
+        NotePage page = controller.getNotes(null, 5L, 2);
+        assertEquals(6L, page.getNextCursor());
+        verify(noteService, times(1)).getNotePage(null, 5L, 2);
+    }
+
+    /**
+     * Tests that the collection filter is passed on to the service.
+     */
+    @Test
+    public void testGetNotesOfCollection() {
+        Note note = new Note("Title", "Content", "Work");
+        when(noteService.getNotePage("Work", null, 100)).thenReturn(new NotePage(List.of(note), null));
+
+        NotePage page = controller.getNotes("Work", null, 100);
+        assertEquals(List.of(note), page.getNotes());
+        verify(noteService, times(1)).getNotePage("Work", null, 100);
+    }
+
+
+    /**
+     * Tests that title completion and title lookups are answered by the search service.
+     */
+    @Test
+    public void testGetTitles() {
+        List<NoteTitle> titles = List.of(new NoteTitle(1L, "Groceries", "Default"));
+        when(searchService.titlesStartingWith("gro", "Default", 20)).thenReturn(titles);
+        when(searchService.findTitle("groceries", null)).thenReturn(titles);
 
-        List<Note> notes = controller.getAllNotes();
-        assertEquals(2, notes.size());
-        assertEquals("Note 1", notes.get(0).getTitle());
-        assertEquals("Note 2", notes.get(1).getTitle());
+        assertEquals(titles, controller.getTitles("gro", "Default", 20));
+        assertEquals(titles, controller.findTitle("groceries", null));
     }
 
+    /**
+     * Tests that tag filters are passed on to the service, and that unknown modes are rejected.
+     */
+    @Test
+    public void testGetNotesByTags() {
+        Note note = new Note("Title", "#a #b", "Default");
+        when(noteService.getNotePageByTags(List.of("a", "b"), true, null, null, 100))
+                .thenReturn(new NotePage(List.of(note), null));
+
+        ResponseEntity<NotePage> response = controller.getNotesByTags(List.of("a", "b"), "all", null, null, 100);
+        assertEquals(List.of(note), response.getBody().getNotes());
+
+        assertEquals(400, controller.getNotesByTags(List.of("a"), "some", null, null, 100).getStatusCode().value());
+    }
+
+    /**
+     * Tests the getNoteSummaries method of the NoteController.
+     * Verifies that the summaries produced by the service are returned.
+     */
+    @Test
+    public void testGetNoteSummaries() {
+        NoteSummary summary = new NoteSummary(1L, "Note 1", "Default", Set.of("tag"), 42L);
+        when(noteService.getSummaryPage(null, 1000)).thenReturn(List.of(summary));
+
+        List<NoteSummary> summaries = controller.getNoteSummaries(null, 1000);
+        assertEquals(List.of(summary), summaries);
+    }
+
+    /**
+     * Tests the getChanges method of the NoteController.
+     * Verifies that the changes produced by the service are returned.
+     */
+    @Test
+    public void testGetChanges() {
+        NoteChanges changes = new NoteChanges(8L, List.of(new Note()), List.of(3L), false);
+        when(noteService.getChangesSince(5L, 500)).thenReturn(changes);
+
+        assertEquals(changes, controller.getChanges(5L, 500));
+    }
+
+    /**
+     * Tests the search method of the NoteController.
+     * Verifies that the ranked results of the search service are returned.
+     */
+    @Test
+    public void testSearch() {
+        List<SearchResult> results = List.of(new SearchResult(2L, "Groceries", 1.5));
+        when(searchService.search("milk", "Default", 20)).thenReturn(results);
+
+        assertEquals(results, controller.search("milk", "Default", 20));
+    }
+
+    /**
+     * Tests that fuzzy searches are passed on to the service.
+     */
+    @Test
+    public void testFuzzySearch() {
+        List<SearchResult> results = List.of(new SearchResult(2L, "Groceries", 0.8));
+        when(searchService.fuzzySearch("grocries", null, 0.3, 20)).thenReturn(results);
+
+        assertEquals(results, controller.fuzzySearch("grocries", null, 0.3, 20));
+    }
+
+    /**
+     * Tests the applyBatch method of the NoteController.
+     * Verifies that the saved notes are returned.
+     */
+    @Test
+    public void testApplyBatch() {
+        NoteBatch batch = new NoteBatch(List.of(new Note("Title", "Content")), List.of(), List.of(4L));
+        List<Note> saved = List.of(new Note("Title", "Content"));
+        when(noteService.applyBatch(batch)).thenReturn(saved);
+
+        ResponseEntity<List<Note>> response = controller.applyBatch(batch);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(saved, response.getBody());
+    }
+
+    /**
+     * Tests the applyBatch method of the NoteController with an invalid batch.
+     */
+    @Test
+    public void testApplyBatchInvalid() {
+        NoteBatch batch = new NoteBatch();
+        when(noteService.applyBatch(batch)).thenReturn(null);
+
+        ResponseEntity<List<Note>> response = controller.applyBatch(batch);
+
+        assertEquals(400, response.getStatusCode().value());
+    }
+
+    /**
+     * Tests the renameNote method of the NoteController.
+     * Verifies that the renamed and rewritten notes are returned.
+     */
+    @Test
+    public void testRenameNote() {
+        List<Note> changed = List.of(new Note("New", "Content"));
+        when(noteService.renameNote(1L, "New", 2L)).thenReturn(changed);
+
+        ResponseEntity<List<Note>> response = controller.renameNote(1L, "\"2\"", " New ");
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(changed, response.getBody());
+        assertEquals("\"0.0\"", response.getHeaders().getETag());
+    }
+
+    /**
+     * Tests the renameNote method of the NoteController with a stale If-Match version.
+     */
+    @Test
+    public void testRenameNoteStaleVersion() {
+        when(noteService.renameNote(1L, "New", 3L)).thenThrow(new OptimisticLockingFailureException("conflict"));
+
+        assertEquals(412, controller.renameNote(1L, "\"3\"", "New").getStatusCode().value());
+    }
+
+    /**
+     * Tests the renameNote method of the NoteController with a blank title or a missing note.
+     */
+    @Test
+    public void testRenameNoteInvalid() {
+        when(noteService.renameNote(2L, "New", null)).thenReturn(null);
+
+        assertEquals(400, controller.renameNote(1L, null, " ").getStatusCode().value());
+        assertEquals(400, controller.renameNote(2L, null, "New").getStatusCode().value());
+    }
+
+    /**
+     * Tests the getRevision method of the NoteController.
+     */
+    @Test
+    public void testGetRevision() {
+        when(noteService.currentRevision()).thenReturn(12L);
+
+        assertEquals(12L, controller.getRevision());
+    }
 
     /**
      * Tests the addNote method of the NoteController.
@@ -81,6 +284,35 @@ public class NoteControllerTest {
         assertEquals("New Note", response.getBody().getTitle());
     }
 
+    /**
+     * Tests that notes sent to the server are read without rendering their markdown,
+     * since the server renders them once they are saved.
+     */
+    @Test
+    public void testNoteBodiesAreNotRendered() throws Exception {
+        Jackson2ObjectMapperBuilder mapper = new Jackson2ObjectMapperBuilder();
+        new Config().rawNoteContent().customize(mapper);
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(mapper.build()))
+                .build();
+        when(noteService.saveNote(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        String body = "{\"title\":\"New Note\",\"content\":\"# New\"}";
+
+        try (MockedStatic<MarkDownMethods> markdown = mockStatic(MarkDownMethods.class)) {
+            mvc.perform(post("/api/notes").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isOk());
+            mvc.perform(put("/api/notes/1").contentType(MediaType.APPLICATION_JSON).content(body));
+            markdown.verifyNoInteractions();
+        }
+
+        ArgumentCaptor<Note> created = ArgumentCaptor.forClass(Note.class);
+        ArgumentCaptor<Note> updated = ArgumentCaptor.forClass(Note.class);
+        verify(noteService).saveNote(created.capture());
+        verify(noteService).updateNote(eq(1L), updated.capture(), isNull());
+        assertEquals("# New", created.getValue().getContent());
+        assertEquals("# New", updated.getValue().getContent());
+    }
+
     /**
      * Tests the addNote method of the NoteController with invalid input.
      * Verifies that the method returns a bad request response when the note title
@@ -108,7 +340,7 @@ public class NoteControllerTest {
 
         when(noteService.getNoteById(1L)).thenReturn(note);
 
-        ResponseEntity<Note> response = controller.getNoteById(1L);
+        ResponseEntity<Note> response = controller.getNoteById(1L, null);
         assertEquals(200, response.getStatusCode().value());
         assertNotNull(response.getBody());
         assertEquals("Note", response.getBody().getTitle());
@@ -123,7 +355,7 @@ public class NoteControllerTest {
     public void testGetNoteByIdNotFound() {
         when(repo.existsById(1L)).thenReturn(false);
 
-        ResponseEntity<Note> response = controller.getNoteById(1L);
+        ResponseEntity<Note> response = controller.getNoteById(1L, null);
         assertEquals(400, response.getStatusCode().value());
     }
 
@@ -142,15 +374,84 @@ public class NoteControllerTest {
         updatedNote.setTitle("Updated Note");
         updatedNote.setContent("Updated Content");
 
-        when(noteService.updateNote(1L, updatedNote)).thenReturn(updatedNote);
+        when(noteService.updateNote(1L, updatedNote, null)).thenReturn(updatedNote);
 
-        ResponseEntity<Note> response = controller.updateNote(1L, updatedNote);
+        ResponseEntity<Note> response = controller.updateNote(1L, null, updatedNote);
         assertEquals(200, response.getStatusCode().value());
         assertNotNull(response.getBody());
         assertEquals("Updated Note", response.getBody().getTitle());
     }
 
 
+    /**
+     * Tests that getNoteById returns the version and revision of the note as ETag,
+     * and an empty not modified response when the client already has that state.
+     */
+    @Test
+    public void testGetNoteByIdConditional() {
+        Note note = new Note("Note", "Content");
+        note.setVersion(3L);
+        note.setRevision(7L);
+        when(noteService.getNoteById(1L)).thenReturn(note);
+
+        assertEquals("\"3.7\"", controller.getNoteById(1L, null).getHeaders().getETag());
+        ResponseEntity<Note> notModified = controller.getNoteById(1L, "\"2.5\", W/\"3.7\"");
+        assertEquals(304, notModified.getStatusCode().value());
+        assertNull(notModified.getBody());
+        assertEquals(200, controller.getNoteById(1L, "\"2.5\"").getStatusCode().value());
+        // the HTML was stored since revision 6, which did not change the version
+        assertEquals(200, controller.getNoteById(1L, "\"3.6\"").getStatusCode().value());
+    }
+
+    /**
+     * Tests that updateNote passes the version from If-Match on to the service
+     * and fails the precondition when the note was updated in the meantime.
+     */
+    @Test
+    public void testUpdateNoteConditional() {
+        Note updatedNote = new Note("Updated Note", "Updated Content");
+        updatedNote.setVersion(5L);
+        when(noteService.updateNote(1L, updatedNote, 4L)).thenReturn(updatedNote);
+        when(noteService.updateNote(1L, updatedNote, 3L))
+                .thenThrow(new OptimisticLockingFailureException("conflict"));
+
+        ResponseEntity<Note> response = controller.updateNote(1L, "\"4\"", updatedNote);
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals("\"5.0\"", response.getHeaders().getETag());
+        assertEquals(200, controller.updateNote(1L, "\"4.9\"", updatedNote).getStatusCode().value());
+        assertEquals(412, controller.updateNote(1L, "\"3\"", updatedNote).getStatusCode().value());
+        assertEquals(412, controller.updateNote(1L, "garbage", updatedNote).getStatusCode().value());
+        verify(noteService, never()).updateNote(1L, updatedNote, null);
+    }
+
+    /**
+     * Tests the patchNote method of the NoteController.
+     * Verifies that the patch and the version from If-Match are passed on to the service.
+     */
+    @Test
+    public void testPatchNote() {
+        Note patched = new Note("New", "Content");
+        patched.setVersion(3L);
+        Map<String, Object> patch = Map.of("title", "New");
+        when(noteService.patchNote(1L, patch, 2L)).thenReturn(patched);
+
+        ResponseEntity<Note> response = controller.patchNote(1L, "\"2\"", patch);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(patched, response.getBody());
+        assertEquals("\"3.0\"", response.getHeaders().getETag());
+    }
+
+    /**
+     * Tests the patchNote method of the NoteController with an invalid patch or a missing note.
+     */
+    @Test
+    public void testPatchNoteInvalid() {
+        when(noteService.patchNote(1L, Map.of("html", "x"), null)).thenReturn(null);
+
+        assertEquals(400, controller.patchNote(1L, null, Map.of("html", "x")).getStatusCode().value());
+    }
+
     /**
      * Tests the updateNote method of the NoteController when the note does not
      * exist.
@@ -164,7 +465,7 @@ public class NoteControllerTest {
 
         when(repo.existsById(1L)).thenReturn(false);
 
-        ResponseEntity<Note> response = controller.updateNote(1L, updatedNote);
+        ResponseEntity<Note> response = controller.updateNote(1L, null, updatedNote);
         assertEquals(400, response.getStatusCode().value());
     }
 
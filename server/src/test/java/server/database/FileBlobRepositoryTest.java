@@ -0,0 +1,69 @@
+package server.database;
+
+import commons.FileBlob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the reference counting queries of the blobs against the database
+ */
+@DataJpaTest
+public class FileBlobRepositoryTest {
+
+    private static final String HASH = "ab".repeat(32);
+
+    @Autowired
+    private FileBlobRepository blobs;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private long referenceCount() {
+        entityManager.clear();
+        return blobs.findById(HASH).map(FileBlob::getReferenceCount).orElse(-1L);
+    }
+
+    @Test
+    void addReference_insertsOrIncrements() {
+        assertEquals(0, blobs.addReference(HASH));
+        blobs.insertReferenced(HASH, 12, "ab/ab/" + HASH);
+
+        FileBlob blob = blobs.findById(HASH).orElseThrow();
+        assertEquals(12, blob.getSize());
+        assertEquals("ab/ab/" + HASH, blob.getStoragePath());
+        assertEquals(1, referenceCount());
+
+        assertEquals(1, blobs.addReference(HASH));
+        assertEquals(2, referenceCount());
+    }
+
+    @Test
+    void insertReferenced_failsIfTheBlobIsRecorded() {
+        blobs.insertReferenced(HASH, 12, "ab/ab/" + HASH);
+
+        assertThrows(DataIntegrityViolationException.class, () -> blobs.insertReferenced(HASH, 12, "ab/ab/" + HASH));
+    }
+
+    @Test
+    void deleteIfUnreferenced_onlyDeletesAtZero() {
+        blobs.insertReferenced(HASH, 12, "ab/ab/" + HASH);
+        blobs.addReference(HASH);
+
+        assertEquals(1, blobs.removeReference(HASH));
+        assertEquals(1, referenceCount());
+        assertEquals(0, blobs.deleteIfUnreferenced(HASH));
+        assertTrue(blobs.existsById(HASH));
+
+        assertEquals(1, blobs.removeReference(HASH));
+        assertEquals(0, referenceCount());
+        assertEquals(1, blobs.deleteIfUnreferenced(HASH));
+        entityManager.clear();
+        assertFalse(blobs.existsById(HASH));
+        assertEquals(0, blobs.removeReference(HASH));
+    }
+}
@@ -0,0 +1,59 @@
+package server.database;
+
+import commons.FileCompositeKey;
+import commons.FileData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the queries on the metadata of the files against the database
+ */
+@DataJpaTest
+public class FileRepositoryTest {
+
+    @Autowired
+    private FileRepository files;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private void store(String filename) {
+        entityManager.persist(new FileData(filename, 1L, "ab12", 4, "text/plain", "ab/12/ab12"));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void rename_movesTheFileToTheNewKey() {
+        store("old.txt");
+
+        assertEquals(1, files.rename(1L, "old.txt", "new.txt"));
+        entityManager.clear();
+
+        assertFalse(files.existsById(new FileCompositeKey("old.txt", 1L)));
+        FileData renamed = files.findById(new FileCompositeKey("new.txt", 1L)).orElseThrow();
+        assertEquals("ab12", renamed.getHash());
+        assertEquals("ab/12/ab12", renamed.getStoragePath());
+    }
+
+    @Test
+    void rename_missingFile() {
+        store("old.txt");
+
+        assertEquals(0, files.rename(1L, "other.txt", "new.txt"));
+        assertEquals(0, files.rename(2L, "old.txt", "new.txt"));
+    }
+
+    @Test
+    void rename_failsIfTheNameIsTaken() {
+        store("old.txt");
+        store("taken.txt");
+
+        assertThrows(DataIntegrityViolationException.class, () -> files.rename(1L, "old.txt", "taken.txt"));
+    }
+}
@@ -0,0 +1,86 @@
+package server.database;
+
+import commons.Note;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the queries on the notes that depend on the database, such as updates comparing
+ * the TEXT content column and native queries, against the database
+ */
+@DataJpaTest
+public class NoteRepositoryTest {
+
+    /**
+     * Longer than a VARCHAR, so the comparison runs on the TEXT column
+     */
+    private static final String CONTENT = "# Groceries\n" + "milk and eggs ".repeat(100);
+
+    @Autowired
+    private NoteRepository notes;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Note store(String title, String content, Set<String> tags) {
+        Note note = new Note();
+        note.setTitle(title);
+        note.setRawContent(content);
+        note.setTags(tags);
+        note.setRevision(1L);
+        Note saved = entityManager.persistFlushFind(note);
+        entityManager.clear();
+        return saved;
+    }
+
+    @Test
+    void updateHtml_storesHtmlOfCurrentContent() {
+        Note note = store("Groceries", CONTENT, Set.of());
+
+        assertEquals(1, notes.updateHtml(note.getId(), CONTENT, "<h1>Groceries</h1>", 7));
+        entityManager.clear();
+
+        Note updated = notes.findById(note.getId()).orElseThrow();
+        assertEquals("<h1>Groceries</h1>", updated.getHTML());
+        assertEquals(7L, updated.getRevision());
+        assertEquals(note.getVersion(), updated.getVersion());
+    }
+
+    @Test
+    void updateHtml_skipsChangedContent() {
+        Note note = store("Groceries", CONTENT, Set.of());
+
+        assertEquals(0, notes.updateHtml(note.getId(), CONTENT + "bread", "<h1>Old</h1>", 7));
+        entityManager.clear();
+
+        Note unchanged = notes.findById(note.getId()).orElseThrow();
+        assertNull(unchanged.getHTML());
+        assertEquals(1L, unchanged.getRevision());
+        assertEquals(List.of(note.getId()), notes.findByHtmlIsNullAndContentIsNotNullAndIdGreaterThanOrderByIdAsc(0,
+                Limit.of(10)).stream().map(Note::getId).toList());
+    }
+
+    @Test
+    void findTagsByNoteIdBetween_readsTagRowsOfTheRange() {
+        Note first = store("Work", "#work #urgent", Set.of("work", "urgent"));
+        Note second = store("Home", "#home", Set.of("home"));
+        Note third = store("Later", "#later", Set.of("later"));
+
+        List<Object[]> rows = notes.findTagsByNoteIdBetween(first.getId(), third.getId());
+
+        assertEquals(2, rows.size());
+        assertEquals(second.getId(), ((Number) rows.get(0)[0]).longValue());
+        assertEquals("home", rows.get(0)[1]);
+        assertEquals(third.getId(), ((Number) rows.get(1)[0]).longValue());
+        assertEquals("later", rows.get(1)[1]);
+        assertEquals(3, notes.findTagsByNoteIdBetween(0, second.getId()).size());
+    }
+}
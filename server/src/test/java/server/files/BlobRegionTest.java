@@ -0,0 +1,45 @@
+package server.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlobRegionTest {
+
+    @TempDir
+    private Path directory;
+
+    private Path blob() throws IOException {
+        return Files.writeString(directory.resolve("blob"), "0123456789");
+    }
+
+    @Test
+    void getInputStream_readsOnlyTheRegion() throws IOException {
+        BlobRegion region = new BlobRegion(blob(), 3, 4);
+
+        assertEquals(4, region.contentLength());
+        assertEquals("3456", new String(region.getContentAsByteArray()));
+    }
+
+    @Test
+    void getInputStream_skipsWithinTheRegion() throws IOException {
+        try (InputStream input = new BlobRegion(blob(), 2, 6).getInputStream()) {
+            assertEquals(3, input.skip(3));
+            assertEquals('5', input.read());
+            assertEquals(2, input.skip(10));
+            assertEquals(-1, input.read());
+        }
+    }
+
+    @Test
+    void exists_checksTheBlob() throws IOException {
+        assertTrue(new BlobRegion(blob(), 0, 10).exists());
+        assertFalse(new BlobRegion(directory.resolve("missing"), 0, 10).exists());
+    }
+}
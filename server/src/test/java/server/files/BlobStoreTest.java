@@ -0,0 +1,121 @@
+package server.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlobStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes());
+    }
+
+    @Test
+    void store_writesContentsUnderTheirHash() throws IOException {
+        BlobStore store = new BlobStore(directory);
+
+        BlobStore.StoredBlob blob = store.store(stream("abc"));
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", blob.hash());
+        assertEquals(3, blob.size());
+        assertEquals("ba/78/" + blob.hash(), blob.storagePath());
+        assertEquals("abc", Files.readString(store.resolve(blob.storagePath())));
+    }
+
+    @Test
+    void store_keepsOneCopyOfEqualContents() throws IOException {
+        BlobStore store = new BlobStore(directory);
+
+        BlobStore.StoredBlob first = store.store(stream("same"));
+        BlobStore.StoredBlob second = store.store(stream("same"));
+
+        assertEquals(first, second);
+        try (var files = Files.walk(directory)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void open_removesUnfinishedUploads() throws IOException {
+        new BlobStore(directory);
+        Files.writeString(directory.resolve("tmp").resolve("upload-1"), "partial");
+
+        new BlobStore(directory);
+
+        try (var files = Files.list(directory.resolve("tmp"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void delete_removesBlobs() throws IOException {
+        BlobStore store = new BlobStore(directory);
+        BlobStore.StoredBlob first = store.store(stream("one"));
+        BlobStore.StoredBlob second = store.store(stream("two"));
+
+        store.delete(first.storagePath());
+        assertFalse(Files.exists(store.resolve(first.storagePath())));
+        store.deleteAll();
+
+        assertFalse(Files.exists(store.resolve(second.storagePath())));
+        assertEquals("three", Files.readString(store.resolve(store.store(stream("three")).storagePath())));
+    }
+
+    @Test
+    void delete_removesDerivedFiles() throws IOException {
+        BlobStore store = new BlobStore(directory);
+        BlobStore.StoredBlob blob = store.store(stream("image"));
+        BlobStore.StoredBlob other = store.store(stream("other"));
+        Path thumbnail = Files.writeString(store.resolve(blob.storagePath() + ".w640.png"), "thumbnail");
+
+        store.delete(blob.storagePath());
+
+        assertFalse(Files.exists(thumbnail));
+        assertTrue(Files.exists(store.resolve(other.storagePath())));
+    }
+
+    @Test
+    void deleteIf_keepsReferencedBlobs() throws IOException {
+        BlobStore store = new BlobStore(directory);
+        BlobStore.StoredBlob blob = store.store(stream("kept"));
+
+        assertFalse(store.deleteIf(blob.hash(), blob.storagePath(), () -> false));
+        assertTrue(Files.exists(store.resolve(blob.storagePath())));
+        assertTrue(store.deleteIf(blob.hash(), blob.storagePath(), () -> true));
+        assertFalse(Files.exists(store.resolve(blob.storagePath())));
+    }
+
+    @Test
+    void store_locksBlobWhileReferencing() throws Exception {
+        BlobStore store = new BlobStore(directory);
+        BlobStore.StoredBlob old = store.store(stream("shared"));
+        CompletableFuture<Boolean> delete = new CompletableFuture<>();
+
+        BlobStore.StoredBlob blob = store.store(stream("shared"), stored -> {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    delete.complete(store.deleteIf(old.hash(), old.storagePath(), () -> true));
+                } catch (IOException e) {
+                    delete.completeExceptionally(e);
+                }
+            });
+            // the delete waits until the reference is recorded
+            assertThrows(TimeoutException.class, () -> delete.get(200, TimeUnit.MILLISECONDS));
+        });
+
+        assertEquals(old.hash(), blob.hash());
+        assertTrue(delete.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,52 @@
+package server.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentTypesTest {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    @TempDir
+    private Path directory;
+
+    private Path blob(byte[] contents) throws IOException {
+        return Files.write(directory.resolve("blob"), contents);
+    }
+
+    @Test
+    void detect_keepsSpecificDeclaredType() throws IOException {
+        assertEquals("text/markdown", ContentTypes.detect("notes.txt", "text/markdown", blob(new byte[0])));
+    }
+
+    @Test
+    void detect_usesNameForGenericDeclaredType() throws IOException {
+        Path blob = blob(new byte[0]);
+
+        assertEquals("application/pdf", ContentTypes.detect("paper.pdf", "application/octet-stream", blob));
+        assertEquals("image/jpeg", ContentTypes.detect("photo.JPG", null, blob));
+        assertEquals("image/png", ContentTypes.detect("icon.png", "not a type", blob));
+    }
+
+    @Test
+    void detect_sniffsContentsWithoutKnownName() throws IOException {
+        assertEquals("image/png", ContentTypes.detect("scan", null, blob(PNG_SIGNATURE)));
+    }
+
+    @Test
+    void detect_fallsBackToBytes() throws IOException {
+        assertEquals("application/octet-stream", ContentTypes.detect("data", null, blob(new byte[] {1, 2, 3})));
+    }
+
+    @Test
+    void fromName_unknownExtension() {
+        assertEquals("application/octet-stream", ContentTypes.fromName("archive.unknownext"));
+        assertEquals("text/plain", ContentTypes.fromName("readme.txt"));
+    }
+}
@@ -0,0 +1,128 @@
+package server.files;
+
+import commons.FileData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailGeneratorTest {
+
+    @TempDir
+    private Path directory;
+
+    private BlobStore blobs;
+
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private ThumbnailGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        blobs = new BlobStore(directory);
+        generator = new ThumbnailGenerator(blobs, queued::add);
+    }
+
+    private FileData image(String filename, int width, int height, String format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, output);
+        BlobStore.StoredBlob blob = blobs.store(new ByteArrayInputStream(output.toByteArray()));
+        return new FileData(filename, 1L, blob.hash(), blob.size(), "image/" + format, blob.storagePath());
+    }
+
+    @Test
+    void snapWidth_roundsUpToAThumbnailWidth() {
+        assertEquals(160, ThumbnailGenerator.snapWidth(1));
+        assertEquals(320, ThumbnailGenerator.snapWidth(161));
+        assertEquals(640, ThumbnailGenerator.snapWidth(640));
+        assertEquals(1280, ThumbnailGenerator.snapWidth(5000));
+    }
+
+    @Test
+    void isImage_checksTheExtension() {
+        assertTrue(ThumbnailGenerator.isImage("photo.JPG"));
+        assertTrue(ThumbnailGenerator.isImage("icon.png"));
+        assertFalse(ThumbnailGenerator.isImage("notes.pdf"));
+        assertFalse(ThumbnailGenerator.isImage("png"));
+    }
+
+    @Test
+    void thumbnail_scalesDownNextToTheBlob() throws Exception {
+        FileData photo = image("photo.jpg", 3000, 2000, "jpg");
+
+        CompletableFuture<ThumbnailGenerator.Thumbnail> future = generator.thumbnail(photo, 320);
+        queued.forEach(Runnable::run);
+        ThumbnailGenerator.Thumbnail thumbnail = future.get();
+
+        assertEquals(blobs.resolve(photo.getStoragePath() + ".w320.jpg"), thumbnail.file());
+        assertEquals("image/jpeg", thumbnail.mediaType());
+        BufferedImage scaled = ImageIO.read(thumbnail.file().toFile());
+        assertEquals(320, scaled.getWidth());
+        assertEquals(213, scaled.getHeight());
+    }
+
+    @Test
+    void thumbnail_createsEachThumbnailOnce() throws Exception {
+        FileData photo = image("photo.png", 1000, 1000, "png");
+
+        CompletableFuture<ThumbnailGenerator.Thumbnail> first = generator.thumbnail(photo, 160);
+        CompletableFuture<ThumbnailGenerator.Thumbnail> second = generator.thumbnail(photo, 160);
+        assertSame(first, second);
+        assertEquals(1, queued.size());
+        queued.removeFirst().run();
+
+        assertEquals(first.get(), generator.thumbnail(photo, 160).get());
+        assertTrue(queued.isEmpty());
+    }
+
+    @Test
+    void thumbnail_isNullForSmallImagesAndOtherFiles() throws Exception {
+        FileData icon = image("icon.png", 100, 100, "png");
+        BlobStore.StoredBlob text = blobs.store(new ByteArrayInputStream("not an image".getBytes()));
+        FileData broken = new FileData("broken.png", 1L, text.hash(), text.size(), "image/png", text.storagePath());
+
+        CompletableFuture<ThumbnailGenerator.Thumbnail> small = generator.thumbnail(icon, 160);
+        CompletableFuture<ThumbnailGenerator.Thumbnail> undecodable = generator.thumbnail(broken, 160);
+        queued.forEach(Runnable::run);
+
+        assertNull(small.get());
+        assertNull(undecodable.get());
+        assertFalse(Files.exists(blobs.resolve(icon.getStoragePath() + ".w160.png")));
+    }
+
+    @Test
+    void thumbnail_fitsTallImagesInBoundedHeight() throws Exception {
+        FileData strip = image("strip.png", 200, 8000, "png");
+
+        CompletableFuture<ThumbnailGenerator.Thumbnail> future = generator.thumbnail(strip, 320);
+        queued.forEach(Runnable::run);
+
+        BufferedImage scaled = ImageIO.read(future.get().file().toFile());
+        assertEquals(32, scaled.getWidth());
+        assertEquals(1280, scaled.getHeight());
+    }
+
+    @Test
+    void thumbnail_isNullForImagesAboveThePixelLimit() throws Exception {
+        generator = new ThumbnailGenerator(blobs, queued::add, 1000 * 1000);
+        FileData photo = image("photo.jpg", 2000, 1000, "jpg");
+
+        CompletableFuture<ThumbnailGenerator.Thumbnail> future = generator.thumbnail(photo, 160);
+        queued.forEach(Runnable::run);
+
+        assertNull(future.get());
+        assertFalse(Files.exists(blobs.resolve(photo.getStoragePath() + ".w160.jpg")));
+    }
+}
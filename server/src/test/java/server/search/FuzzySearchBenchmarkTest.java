@@ -0,0 +1,112 @@
+package server.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the latency of exact and fuzzy searches over 10k and 100k generated notes.
+ * Skipped unless run with {@code mvn test -Dtest=FuzzySearchBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class FuzzySearchBenchmarkTest {
+
+    private static final int VOCABULARY = 20_000;
+    private static final int WORDS_PER_NOTE = 60;
+    private static final int QUERIES = 200;
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    @Test
+    void fuzzySearch_10k() {
+        run(10_000);
+    }
+
+    @Test
+    void fuzzySearch_100k() {
+        run(100_000);
+    }
+
+    private static void run(int notes) {
+        Random random = new Random(42);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = word(random);
+        }
+        SearchIndex index = new SearchIndex();
+        long start = System.nanoTime();
+        for (int id = 1; id <= notes; id++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < WORDS_PER_NOTE; i++) {
+                content.append(words[zipf(random)]).append(' ');
+            }
+            index.add(id, id, words[zipf(random)] + " " + words[zipf(random)], "Default", content.toString());
+        }
+        long indexed = System.nanoTime() - start;
+
+        String[] typos = new String[QUERIES];
+        String[] exact = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            exact[i] = words[random.nextInt(2_000)];
+            typos[i] = typo(exact[i], random);
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            index.search(exact[i], null, 20);
+            index.fuzzySearch(typos[i], null, 0.3, 20);
+        }
+
+        int found = 0;
+        long exactTime = 0;
+        long fuzzyTime = 0;
+        long worstFuzzy = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            long before = System.nanoTime();
+            index.search(exact[i], null, 20);
+            exactTime += System.nanoTime() - before;
+            before = System.nanoTime();
+            List<?> results = index.fuzzySearch(typos[i], null, 0.3, 20);
+            long took = System.nanoTime() - before;
+            fuzzyTime += took;
+            worstFuzzy = Math.max(worstFuzzy, took);
+            if (!results.isEmpty()) {
+                found++;
+            }
+        }
+        System.out.printf("%d notes: indexed in %d ms, exact %.2f ms/query, fuzzy %.2f ms/query"
+                        + " (worst %.2f ms), %d of %d misspelled queries found%n",
+                notes, indexed / 1_000_000, exactTime / 1e6 / QUERIES, fuzzyTime / 1e6 / QUERIES,
+                worstFuzzy / 1e6, found, QUERIES);
+        assertTrue(found > 0);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 4 + random.nextInt(7);
+        for (int i = 0; i < length; i++) {
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return word.toString();
+    }
+
+    /**
+     * Picks a word index so that a few words are very common and most are rare, as in real text
+     */
+    private static int zipf(Random random) {
+        return (int) Math.min(VOCABULARY - 1, Math.exp(random.nextDouble() * Math.log(VOCABULARY)) - 1);
+    }
+
+    /**
+     * Swaps two neighbouring letters, drops one, or doubles one
+     */
+    private static String typo(String word, Random random) {
+        int at = 1 + random.nextInt(word.length() - 2);
+        return switch (random.nextInt(3)) {
+            case 0 -> word.substring(0, at) + word.charAt(at + 1) + word.charAt(at) + word.substring(at + 2);
+            case 1 -> word.substring(0, at) + word.substring(at + 1);
+            default -> word.substring(0, at) + word.charAt(at) + word.substring(at);
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package server.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteIdSetTest {
+
+    private static NoteIdSet of(LongStream ids) {
+        NoteIdSet set = new NoteIdSet();
+        ids.forEach(set::add);
+        return set;
+    }
+
+    private static List<Long> all(NoteIdSet set) {
+        List<Long> ids = new ArrayList<>();
+        set.forEachAfter(-1, Integer.MAX_VALUE, ids::add);
+        return ids;
+    }
+
+    @Test
+    void addRemoveContains() {
+        NoteIdSet set = new NoteIdSet();
+
+        assertTrue(set.add(5));
+        assertFalse(set.add(5));
+        assertTrue(set.add(NoteIdSet.CHUNK_SIZE + 1));
+        assertTrue(set.contains(5));
+        assertFalse(set.contains(6));
+        assertEquals(2, set.size());
+
+        assertTrue(set.remove(5));
+        assertFalse(set.remove(5));
+        assertEquals(List.of(NoteIdSet.CHUNK_SIZE + 1L), all(set));
+    }
+
+    @Test
+    void denseChunk_switchesToBitmapAndBack() {
+        NoteIdSet set = of(LongStream.range(0, NoteIdSet.MAX_ARRAY_SIZE * 3));
+
+        assertEquals(NoteIdSet.MAX_ARRAY_SIZE * 3, set.size());
+        assertTrue(set.contains(NoteIdSet.MAX_ARRAY_SIZE * 2));
+        LongStream.range(100, NoteIdSet.MAX_ARRAY_SIZE * 3).forEach(set::remove);
+
+        assertEquals(LongStream.range(0, 100).boxed().toList(), all(set));
+    }
+
+    @Test
+    void and_intersectsArraysAndBitmaps() {
+        NoteIdSet even = of(LongStream.range(0, 20_000).map(i -> i * 2));
+        NoteIdSet threes = of(LongStream.range(0, 100).map(i -> i * 3));
+        NoteIdSet dense = of(LongStream.range(0, 30_000));
+
+        assertEquals(LongStream.range(0, 100).map(i -> i * 3).filter(i -> i % 2 == 0).boxed().toList(),
+                all(even.and(threes)));
+        assertEquals(LongStream.range(0, 15_000).map(i -> i * 2).boxed().toList(), all(dense.and(even)));
+        assertEquals(List.of(), all(threes.and(of(LongStream.of(1, NoteIdSet.CHUNK_SIZE)))));
+    }
+
+    @Test
+    void or_mergesArraysAndBitmaps() {
+        NoteIdSet even = of(LongStream.range(0, 10_000).map(i -> i * 2));
+        NoteIdSet odd = of(LongStream.range(0, 10).map(i -> i * 2 + 1));
+        NoteIdSet far = of(LongStream.of(NoteIdSet.CHUNK_SIZE * 5L));
+
+        TreeSet<Long> expected = new TreeSet<>(all(even));
+        expected.addAll(all(odd));
+        expected.addAll(all(far));
+        assertEquals(List.copyOf(expected), all(even.or(odd).or(far)));
+        assertEquals(List.of(1L, 3L, NoteIdSet.CHUNK_SIZE * 5L), all(odd.or(far).and(of(LongStream.of(1, 3,
+                NoteIdSet.CHUNK_SIZE * 5L)))));
+    }
+
+    @Test
+    void forEachAfter_pagesAcrossChunks() {
+        NoteIdSet set = of(LongStream.of(1, 2, NoteIdSet.CHUNK_SIZE - 1, NoteIdSet.CHUNK_SIZE, 3L * NoteIdSet.CHUNK_SIZE));
+        List<Long> page = new ArrayList<>();
+
+        assertEquals(2, set.forEachAfter(2, 2, page::add));
+        assertEquals(List.of(NoteIdSet.CHUNK_SIZE - 1L, (long) NoteIdSet.CHUNK_SIZE), page);
+
+        page.clear();
+        set.forEachAfter(NoteIdSet.CHUNK_SIZE, 10, page::add);
+        assertEquals(List.of(3L * NoteIdSet.CHUNK_SIZE), page);
+    }
+}
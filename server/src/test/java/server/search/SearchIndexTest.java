@@ -0,0 +1,237 @@
+package server.search;
+
+import commons.NoteTitle;
+import commons.SearchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchIndexTest {
+
+    private SearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new SearchIndex();
+        index.add(1, 1, "Groceries", "Default", "milk, eggs and bread");
+        index.add(2, 2, "Recipes", "Default", "Pancakes need milk and eggs. More milk for thinner pancakes.");
+        index.add(3, 3, "Milk", "Work", "Order milk for the office");
+    }
+
+    private static List<Long> ids(List<SearchResult> results) {
+        return results.stream().map(SearchResult::getId).toList();
+    }
+
+    @Test
+    void search_matchesAllTerms() {
+        assertEquals(List.of(1L, 2L), ids(index.search("eggs MILK", null, 10)).stream().sorted().toList());
+        assertEquals(List.of(), index.search("eggs office", null, 10));
+    }
+
+    @Test
+    void search_ranksTitleMatchesFirst() {
+        List<SearchResult> results = index.search("milk", null, 10);
+
+        assertEquals(3, results.size());
+        assertEquals(3L, results.getFirst().getId());
+        assertEquals("Milk", results.getFirst().getTitle());
+        assertTrue(results.get(0).getScore() >= results.get(1).getScore());
+        assertTrue(results.get(1).getScore() >= results.get(2).getScore());
+    }
+
+    @Test
+    void search_filtersByCollection() {
+        assertEquals(List.of(3L), ids(index.search("milk", "Work", 10)));
+    }
+
+    @Test
+    void search_respectsLimit() {
+        assertEquals(1, index.search("milk", null, 1).size());
+        assertEquals(List.of(), index.search("milk", null, 0));
+    }
+
+    @Test
+    void search_blankQueryMatchesNothing() {
+        assertEquals(List.of(), index.search("  !! ", null, 10));
+    }
+
+    @Test
+    void add_replacesPreviousVersion() {
+        index.add(1, 4, "Groceries", "Default", "apples");
+
+        assertEquals(List.of(), ids(index.search("bread", null, 10)));
+        assertEquals(List.of(1L), ids(index.search("apples", null, 10)));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void add_ignoresOlderRevision() {
+        index.add(1, 0, "Groceries", "Default", "apples");
+
+        assertEquals(List.of(1L), ids(index.search("bread", null, 10)));
+        assertEquals(List.of(), index.search("apples", null, 10));
+    }
+
+    @Test
+    void remove_dropsNote() {
+        index.remove(3, 10);
+
+        assertEquals(List.of(), index.search("office", null, 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void add_compactsReplacedVersions() {
+        for (int revision = 4; revision < 3000; revision++) {
+            index.add(1, revision, "Groceries", "Default", "apples " + revision);
+        }
+
+        assertEquals(3, index.size());
+        assertEquals(List.of(1L), ids(index.search("apples 2999", null, 10)));
+        assertEquals(List.of(), index.search("apples 2998", null, 10));
+        assertEquals(List.of(2L, 3L), ids(index.search("milk", null, 10)).stream().sorted().toList());
+    }
+
+    @Test
+    void search_skipsThroughLongPostings() {
+        for (int id = 10; id < 2000; id++) {
+            index.add(id, id, "Note " + id, "Default", id % 7 == 0 ? "common rare" : "common");
+        }
+
+        assertEquals(284, index.search("rare common", null, 1000).size());
+        assertEquals(List.of(1001L), ids(index.search("common rare 1001", null, 10)));
+    }
+
+    @Test
+    void checkpoint_persistsSegmentsAndDeletes(@TempDir Path directory) throws IOException {
+        SearchIndex saved = SearchIndex.open(directory);
+        saved.add(1, 1, "Groceries", "Default", "milk, eggs and bread");
+        saved.add(2, 2, "Recipes", "Default", "Pancakes need milk");
+        saved.checkpoint();
+        saved.add(1, 3, "Groceries", "Default", "apples");
+        saved.remove(2, 4);
+        saved.add(3, 5, "Milk", "Work", "Order milk for the office");
+        saved.checkpoint(5);
+
+        SearchIndex opened = SearchIndex.open(directory);
+
+        assertTrue(opened.isPersisted());
+        assertEquals(2, opened.size());
+        assertEquals(5, opened.watermark());
+        assertEquals(4, opened.idSum());
+        assertEquals(8, opened.revisionSum());
+        assertEquals(List.of(1L), ids(opened.search("apples", null, 10)));
+        assertEquals(List.of(), opened.search("bread", null, 10));
+        assertEquals(List.of(3L), ids(opened.search("milk", null, 10)));
+        assertEquals(saved.search("milk groceries", null, 10), opened.search("milk groceries", null, 10));
+    }
+
+    @Test
+    void titles_followAddsAndRemoves() {
+        index.add(1, 4, "Shopping", "Default", "milk");
+        index.remove(2, 5);
+
+        assertEquals(List.of(new NoteTitle(3, "Milk", "Work")), index.findTitle("MILK", null));
+        assertEquals(List.of(), index.findTitle("milk", "Default"));
+        assertEquals(List.of(), index.findTitle("Groceries", null));
+        assertEquals(List.of(), index.titlesStartingWith("rec", null, 10));
+        assertEquals(List.of(new NoteTitle(1, "Shopping", "Default")), index.titlesStartingWith("sh", null, 10));
+    }
+
+    @Test
+    void fuzzySearch_toleratesTypos() {
+        assertEquals(List.of(1L, 2L), ids(index.fuzzySearch("egs mlk", null, 0.2, 10)).stream().sorted().toList());
+        assertEquals(List.of(1L), ids(index.fuzzySearch("grocries", null, 0.3, 10)));
+        assertEquals(List.of(3L), ids(index.fuzzySearch("mlk", "Work", 0.2, 10)));
+        assertEquals(List.of(), index.fuzzySearch("grocries office", null, 0.3, 10));
+    }
+
+    @Test
+    void fuzzySearch_ranksCloserMatchesFirst() {
+        index.add(4, 4, "Notes", "Default", "pancake");
+
+        List<SearchResult> results = index.fuzzySearch("pancake", null, 0.3, 10);
+
+        assertEquals(List.of(4L, 2L), ids(results));
+    }
+
+    @Test
+    void fuzzySearch_skipsRemovedNotes() {
+        index.remove(1, 4);
+
+        assertEquals(List.of(), index.fuzzySearch("grocries", null, 0.3, 10));
+    }
+
+    @Test
+    void open_restoresTitles(@TempDir Path directory) throws IOException {
+        SearchIndex saved = SearchIndex.open(directory);
+        saved.add(1, 1, "Groceries", "Default", "milk");
+        saved.add(2, 2, "Group meeting", "Work", "agenda");
+        saved.checkpoint();
+        saved.remove(1, 3);
+        saved.checkpoint();
+
+        SearchIndex opened = SearchIndex.open(directory);
+
+        assertEquals(List.of(new NoteTitle(2, "Group meeting", "Work")), opened.titlesStartingWith("gro", null, 10));
+    }
+
+    @Test
+    void checkpoint_mergesSegments(@TempDir Path directory) throws IOException {
+        SearchIndex saved = SearchIndex.open(directory);
+        for (int id = 1; id <= SearchIndex.MAX_SEGMENTS * 2; id++) {
+            saved.add(id, id, "Note " + id, "Default", "shared words");
+            saved.checkpoint();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.filter(file -> file.toString().endsWith(".seg")).count() <= SearchIndex.MAX_SEGMENTS);
+        }
+        SearchIndex opened = SearchIndex.open(directory);
+        assertEquals(SearchIndex.MAX_SEGMENTS * 2, opened.search("shared", null, 100).size());
+        assertEquals(List.of(7L), ids(opened.search("note 7", null, 100)));
+    }
+
+    @Test
+    void open_removesFilesOfUnfinishedCheckpoint(@TempDir Path directory) throws IOException {
+        SearchIndex saved = SearchIndex.open(directory);
+        saved.add(1, 1, "Groceries", "Default", "milk");
+        saved.checkpoint();
+        Files.writeString(directory.resolve("seg-99.seg"), "partial");
+        Files.writeString(directory.resolve("manifest.tmp"), "partial");
+
+        SearchIndex opened = SearchIndex.open(directory);
+
+        assertFalse(Files.exists(directory.resolve("seg-99.seg")));
+        assertFalse(Files.exists(directory.resolve("manifest.tmp")));
+        assertEquals(List.of(1L), ids(opened.search("milk", null, 10)));
+    }
+
+    @Test
+    void open_rejectsCorruptSegment(@TempDir Path directory) throws IOException {
+        SearchIndex saved = SearchIndex.open(directory);
+        saved.add(1, 1, "Groceries", "Default", "milk");
+        saved.checkpoint();
+        try (Stream<Path> files = Files.list(directory)) {
+            Path segment = files.filter(file -> file.toString().endsWith(".seg")).findFirst().orElseThrow();
+            Files.writeString(segment, "garbage");
+        }
+
+        assertThrows(IOException.class, () -> SearchIndex.open(directory));
+    }
+
+    @Test
+    void tokenize_splitsOnNonAlphanumerics() {
+        assertEquals(List.of("see", "other", "note", "todo", "über", "2024"),
+                Tokenizer.tokenize("See [[Other Note]] #todo Über-2024"));
+        assertEquals(List.of(), Tokenizer.tokenize(null));
+    }
+}
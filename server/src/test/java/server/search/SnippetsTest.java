@@ -0,0 +1,63 @@
+package server.search;
+
+import commons.SearchResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnippetsTest {
+
+    private static SearchResult snippet(String content, String... terms) {
+        SearchResult result = new SearchResult(1, "Title", 1);
+        Snippets.attach(result, content, Set.of(terms));
+        return result;
+    }
+
+    private static String highlighted(SearchResult result, int match) {
+        int[] highlights = result.getHighlights();
+        return result.getSnippet().substring(highlights[2 * match], highlights[2 * match + 1]);
+    }
+
+    @Test
+    void attach_keepsShortContentWhole() {
+        SearchResult result = snippet("Buy Milk and\neggs", "milk", "eggs");
+
+        assertEquals("Buy Milk and eggs", result.getSnippet());
+        assertArrayEquals(new int[]{4, 8, 13, 17}, result.getHighlights());
+    }
+
+    @Test
+    void attach_cutsAroundMatchesAtWordBoundaries() {
+        String filler = "lorem ipsum dolor sit amet ".repeat(20);
+        String content = filler + "the pancakes need milk " + filler;
+        SearchResult result = snippet(content, "milk", "pancakes");
+
+        String snippet = result.getSnippet();
+        String inner = snippet.substring(1, snippet.length() - 1);
+        assertTrue(snippet.startsWith(Snippets.ELLIPSIS));
+        assertTrue(snippet.endsWith(Snippets.ELLIPSIS));
+        assertTrue(content.contains(" " + inner + " "));
+        assertTrue(result.getSnippet().length() <= Snippets.MAX_LENGTH + 2);
+        assertEquals("pancakes", highlighted(result, 0));
+        assertEquals("milk", highlighted(result, 1));
+    }
+
+    @Test
+    void attach_prefersWindowWithMostDistinctTerms() {
+        String content = "milk milk milk " + "x ".repeat(200) + "milk and eggs";
+        SearchResult result = snippet(content, "milk", "eggs");
+
+        assertTrue(result.getSnippet().endsWith("milk and eggs"));
+        assertEquals(2, result.getHighlights().length / 2);
+    }
+
+    @Test
+    void attach_withoutMatchesShowsStart() {
+        SearchResult result = snippet("word ".repeat(100), "milk");
+
+        assertTrue(result.getSnippet().startsWith("word"));
+        assertArrayEquals(new int[0], result.getHighlights());
+    }
+}
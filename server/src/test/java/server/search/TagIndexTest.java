@@ -0,0 +1,93 @@
+package server.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TagIndexTest {
+
+    @TempDir
+    private Path directory;
+
+    private TagIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new TagIndex();
+        index.set(1, 1, Set.of("work", "urgent"));
+        index.set(2, 2, Set.of("work"));
+        index.set(3, 3, Set.of("home", "urgent"));
+    }
+
+    @Test
+    void counts_listsTagsInUse() {
+        assertEquals(Map.of("home", 1, "urgent", 2, "work", 2), index.counts());
+        assertEquals(List.of("home", "urgent", "work"), List.copyOf(index.counts().keySet()));
+    }
+
+    @Test
+    void find_any() {
+        assertEquals(List.of(1L, 2L, 3L), index.find(List.of("work", "home"), false, 0, 10));
+        assertEquals(List.of(3L), index.find(List.of("home", "unknown"), false, 0, 10));
+        assertEquals(List.of(), index.find(List.of("unknown"), false, 0, 10));
+    }
+
+    @Test
+    void find_all() {
+        assertEquals(List.of(1L), index.find(List.of("work", "urgent"), true, 0, 10));
+        assertEquals(List.of(), index.find(List.of("work", "home"), true, 0, 10));
+        assertEquals(List.of(), index.find(List.of("work", "unknown"), true, 0, 10));
+    }
+
+    @Test
+    void find_pages() {
+        assertEquals(List.of(1L), index.find(List.of("work", "urgent"), false, 0, 1));
+        assertEquals(List.of(2L, 3L), index.find(List.of("work", "urgent"), false, 1, 10));
+    }
+
+    @Test
+    void set_replacesTags() {
+        index.set(1, 4, Set.of("home"));
+
+        assertEquals(List.of(1L, 3L), index.find(List.of("home"), false, 0, 10));
+        assertEquals(List.of(3L), index.find(List.of("urgent"), false, 0, 10));
+        assertEquals(2, index.counts().get("home"));
+    }
+
+    @Test
+    void set_ignoresOlderRevision() {
+        index.set(1, 0, Set.of("home"));
+
+        assertEquals(List.of(1L, 2L), index.find(List.of("work"), false, 0, 10));
+    }
+
+    @Test
+    void remove_dropsUnusedTags() {
+        index.remove(3, 5);
+        index.remove(2, 1);
+
+        assertEquals(Map.of("urgent", 1, "work", 2), index.counts());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void write_roundTripsTagsAndRevisions() throws IOException {
+        Path file = directory.resolve("tags");
+        index.write(file, 7);
+
+        TagIndex.Saved saved = TagIndex.read(file);
+        saved.index().set(2, 1, Set.of("home"));
+
+        assertEquals(7, saved.watermark());
+        assertEquals(Map.of("home", 1, "urgent", 2, "work", 2), saved.index().counts());
+        assertEquals(List.of(1L, 3L), saved.index().find(List.of("urgent"), true, 0, 10));
+    }
+}
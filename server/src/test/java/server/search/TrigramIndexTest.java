@@ -0,0 +1,61 @@
+package server.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new TrigramIndex();
+        for (String term : List.of("groceries", "grocery", "group", "recipes", "milk")) {
+            index.add(term);
+        }
+    }
+
+    private List<String> terms(List<TrigramIndex.Match> matches) {
+        return matches.stream().map(TrigramIndex.Match::term).toList();
+    }
+
+    @Test
+    void trigrams_padsAndDeduplicates() {
+        assertEquals(3, TrigramIndex.trigrams("ab").length);
+        assertEquals(4, TrigramIndex.trigrams("aaaa").length);
+    }
+
+    @Test
+    void similar_findsMisspelledTerms() {
+        List<TrigramIndex.Match> matches = index.similar("grocries", 0.3, 10);
+
+        assertEquals(List.of("groceries", "grocery"), terms(matches));
+        assertEquals(7.0 / 12, matches.getFirst().similarity(), 1e-9);
+    }
+
+    @Test
+    void similar_exactTermIsMostSimilar() {
+        List<TrigramIndex.Match> matches = index.similar("milk", 0.1, 10);
+
+        assertEquals("milk", matches.getFirst().term());
+        assertEquals(1.0, matches.getFirst().similarity());
+    }
+
+    @Test
+    void similar_respectsThresholdAndLimit() {
+        assertEquals(List.of("groceries"), terms(index.similar("grocries", 0.5, 10)));
+        assertEquals(List.of("groceries"), terms(index.similar("grocries", 0.3, 1)));
+        assertEquals(List.of(), index.similar("xyz", 0.1, 10));
+    }
+
+    @Test
+    void add_ignoresKnownTerms() {
+        index.add("milk");
+
+        assertEquals(5, index.size());
+    }
+}
@@ -1,18 +1,35 @@
 package server.service;
 
 import commons.Note;
+import commons.NoteBatch;
+import commons.NoteChanges;
+import commons.NoteLink;
+import commons.NotePage;
+import commons.NoteSummary;
+import commons.NoteTombstone;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import server.database.NoteLinkRepository;
 import server.database.NoteRepository;
+import server.database.NoteSummaryProjection;
+import server.database.NoteTagProjection;
+import server.database.NoteTombstoneRepository;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -22,12 +39,25 @@ public class NoteServiceTest {
     @Mock
     private NoteRepository noteRepository;
 
-    @InjectMocks
+    @Mock
+    private NoteTombstoneRepository tombstoneRepository;
+
+    @Mock
+    private NoteLinkRepository linkRepository;
+
+    @Mock
+    private RenderService renderService;
+
+    @Mock
+    private SearchService searchService;
+
     private NoteService noteService;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        noteService = new NoteService(noteRepository, tombstoneRepository, linkRepository, renderService,
+                searchService, new RevisionClock(noteRepository, tombstoneRepository));
     }
 
     @Test
@@ -42,14 +72,161 @@ public class NoteServiceTest {
     }
 
     @Test
-    void getAllNotes_returnsListOfAllNotes() {
-        List<Note> notes = new ArrayList<>();
-        when(noteRepository.findAll()).thenReturn(notes);
+    void saveNote_rendersInBackground() {
+        Note note = new Note("Title", "# Content");
+        when(noteRepository.save(note)).thenReturn(note);
+
+        noteService.saveNote(note);
+
+        assertNull(note.getHTML());
+        verify(renderService, times(1)).submit(note);
+    }
+
+    @Test
+    void saveNote_indexesForSearch() {
+        Note note = new Note("Title", "Content");
+        when(noteRepository.save(note)).thenReturn(note);
+
+        noteService.saveNote(note);
+
+        verify(searchService).indexNotes(List.of(note));
+    }
+
+    @Test
+    void getNotePage_returnsCursorWhenPageIsFull() {
+        Note note1 = new Note();
+        note1.setId(3L);
+        Note note2 = new Note();
+        note2.setId(7L);
+        when(noteRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2))).thenReturn(List.of(note1, note2));
+
+        NotePage page = noteService.getNotePage(null, null, 2);
+
+        assertEquals(List.of(note1, note2), page.getNotes());
+        assertEquals(7L, page.getNextCursor());
+    }
+
+    @Test
+    void getNotePage_returnsNoCursorOnLastPage() {
+        Note note = new Note();
+        note.setId(9L);
+        when(noteRepository.findByIdGreaterThanOrderByIdAsc(7L, Limit.of(2))).thenReturn(List.of(note));
+
+        NotePage page = noteService.getNotePage(null, 7L, 2);
+
+        assertEquals(1, page.getNotes().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getNotePage_capsPageSize() {
+        when(noteRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).thenReturn(List.of());
+
+        noteService.getNotePage(null, null, 100_000);
+
+        verify(noteRepository).findByIdGreaterThanOrderByIdAsc(0L, Limit.of(NoteService.MAX_PAGE_SIZE));
+    }
+
+    @Test
+    void getNotePageByTags_fillsPageFromCollection() {
+        Note home = new Note("Home", "#todo", "Home");
+        home.setId(2L);
+        Note work1 = new Note("Work 1", "#todo", "Work");
+        work1.setId(3L);
+        Note work2 = new Note("Work 2", "#todo", "Work");
+        work2.setId(5L);
+        when(searchService.findByTags(List.of("todo"), false, 0, 2)).thenReturn(List.of(2L, 3L));
+        when(searchService.findByTags(List.of("todo"), false, 3, 1)).thenReturn(List.of(5L));
+        when(noteRepository.findByIdInOrderByIdAsc(List.of(2L, 3L))).thenReturn(List.of(home, work1));
+        when(noteRepository.findByIdInOrderByIdAsc(List.of(5L))).thenReturn(List.of(work2));
+
+        NotePage page = noteService.getNotePageByTags(List.of("todo"), false, "Work", null, 2);
+
+        assertEquals(List.of(work1, work2), page.getNotes());
+        assertEquals(5L, page.getNextCursor());
+    }
+
+    @Test
+    void getNotePageByTags_returnsNoCursorOnLastPage() {
+        Note note = new Note("Title", "#a #b", "Default");
+        note.setId(4L);
+        when(searchService.findByTags(List.of("a", "b"), true, 0, 10)).thenReturn(List.of(4L));
+        when(noteRepository.findByIdInOrderByIdAsc(List.of(4L))).thenReturn(List.of(note));
+
+        NotePage page = noteService.getNotePageByTags(List.of("a", "b"), true, null, null, 10);
+
+        assertEquals(List.of(note), page.getNotes());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getNotePage_filtersByCollection() {
+        Note note = new Note("Title", "Content", "Work");
+        note.setId(4L);
+        when(noteRepository.findByCollectionTitleAndIdGreaterThanOrderByIdAsc("Work", 0L, Limit.of(10)))
+                .thenReturn(List.of(note));
+
+        NotePage page = noteService.getNotePage("Work", null, 10);
+
+        assertEquals(List.of(note), page.getNotes());
+        assertNull(page.getNextCursor());
+        verify(noteRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void getSummaryPage_attachesTagsToSummaries() {
+        NoteSummaryProjection row1 = summaryRow(1L, "First", "Default", 10L);
+        NoteSummaryProjection row2 = summaryRow(2L, "Second", "Work", 20L);
+        when(noteRepository.findSummariesByIdGreaterThanOrderByIdAsc(0L, Limit.of(10))).thenReturn(List.of(row1, row2));
+        when(noteRepository.findTagsByNoteIds(List.of(1L, 2L))).thenReturn(List.of(tagRow(1L, "a"), tagRow(1L, "b")));
+
+        List<NoteSummary> result = noteService.getSummaryPage(null, 10);
+
+        assertEquals(2, result.size());
+        assertEquals(new NoteSummary(1L, "First", "Default", Set.of("a", "b"), 10L), result.get(0));
+        assertEquals(new NoteSummary(2L, "Second", "Work", Set.of(), 20L), result.get(1));
+    }
+
+    @Test
+    void getSummaryPage_skipsTagQueryWhenEmpty() {
+        when(noteRepository.findSummariesByIdGreaterThanOrderByIdAsc(5L, Limit.of(10))).thenReturn(List.of());
+
+        List<NoteSummary> result = noteService.getSummaryPage(5L, 10);
+
+        assertTrue(result.isEmpty());
+        verify(noteRepository, never()).findTagsByNoteIds(any());
+    }
+
+    private static NoteSummaryProjection summaryRow(long id, String title, String collection, Long lastModified) {
+        return new NoteSummaryProjection() {
+            public long getId() {
+                return id;
+            }
+
+            public String getTitle() {
+                return title;
+            }
+
+            public String getCollectionTitle() {
+                return collection;
+            }
 
-        List<Note> result = noteService.getAllNotes();
+            public Long getLastModified() {
+                return lastModified;
+            }
+        };
+    }
+
+    private static NoteTagProjection tagRow(long noteId, String tag) {
+        return new NoteTagProjection() {
+            public long getNoteId() {
+                return noteId;
+            }
 
-        assertEquals(notes, result);
-        verify(noteRepository, times(1)).findAll();
+            public String getTag() {
+                return tag;
+            }
+        };
     }
 
     @Test
@@ -87,13 +264,129 @@ public class NoteServiceTest {
         updatedNote.setTitle("New Title");
         updatedNote.setContent("New Content");
 
-        Note result = noteService.updateNote(1L, updatedNote);
+        Note result = noteService.updateNote(1L, updatedNote, null);
 
         assertEquals("New Title", result.getTitle());
         assertEquals("New Content", result.getContent());
         verify(noteRepository, times(1)).existsById(1L);
         verify(noteRepository, times(1)).findById(1L);
         verify(noteRepository, times(1)).save(existingNote);
+        verify(renderService, times(1)).submit(existingNote);
+    }
+
+    @Test
+    void updateNote_titleOnlyKeepsHtml() {
+        Note existingNote = new Note("Title", "Content");
+        existingNote.setId(1L);
+        String html = existingNote.getHTML();
+        when(noteRepository.existsById(1L)).thenReturn(true);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(existingNote));
+        when(noteRepository.save(existingNote)).thenReturn(existingNote);
+
+        noteService.updateNote(1L, new Note("New title", "Content"), null);
+
+        assertEquals(html, existingNote.getHTML());
+        verify(renderService, never()).submit(any());
+    }
+
+    @Test
+    void updateNote_rejectsStaleVersion() {
+        Note existingNote = new Note("Title", "Content");
+        existingNote.setId(1L);
+        existingNote.setVersion(4L);
+        when(noteRepository.existsById(1L)).thenReturn(true);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(existingNote));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> noteService.updateNote(1L, new Note("New", "New"), 3L));
+        assertEquals("Title", existingNote.getTitle());
+        verify(noteRepository, never()).save(any(Note.class));
+    }
+
+    @Test
+    void updateNote_acceptsCurrentVersion() {
+        Note existingNote = new Note("Title", "Content");
+        existingNote.setId(1L);
+        existingNote.setVersion(4L);
+        when(noteRepository.existsById(1L)).thenReturn(true);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(existingNote));
+        when(noteRepository.save(existingNote)).thenReturn(existingNote);
+
+        Note result = noteService.updateNote(1L, new Note("New", "New"), 4L);
+
+        assertEquals("New", result.getTitle());
+    }
+
+    @Test
+    void patchNote_titleOnlyDoesNotRender() {
+        Note note = new Note("Old", "Content #tag");
+        note.setId(1L);
+        note.setHtml("<p>rendered</p>");
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+        when(noteRepository.save(note)).thenReturn(note);
+
+        Note result = noteService.patchNote(1L, Map.of("title", "New"), null);
+
+        assertEquals("New", result.getTitle());
+        assertEquals("<p>rendered</p>", result.getHTML());
+        assertNotNull(result.getRevision());
+        verify(renderService, never()).submit(any());
+        verify(noteRepository, never()).existsById(anyLong());
+        verify(linkRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void patchNote_contentChangeSubmitsRenderAndExtractsTags() {
+        Note note = new Note("Title", "Old");
+        note.setId(1L);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+        when(noteRepository.save(note)).thenReturn(note);
+
+        Note result = noteService.patchNote(1L, Map.of("content", "New #tag"), null);
+
+        assertEquals("New #tag", result.getContent());
+        assertNull(result.getHTML());
+        assertEquals(Set.of("tag"), result.getTags());
+        verify(renderService).submit(note);
+        verify(linkRepository).deleteBySourceIds(List.of(1L));
+    }
+
+    @Test
+    void patchNote_unchangedValuesDoNotWrite() {
+        Note note = new Note("Title", "Content");
+        note.setId(1L);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+
+        Note result = noteService.patchNote(1L, Map.of("title", "Title", "content", "Content"), null);
+
+        assertSame(note, result);
+        assertNull(note.getRevision());
+        verify(noteRepository, never()).save(any(Note.class));
+    }
+
+    @Test
+    void patchNote_rejectsInvalidPatch() {
+        Map<String, Object> nullTitle = new HashMap<>();
+        nullTitle.put("title", null);
+
+        assertNull(noteService.patchNote(1L, Map.of("html", "<p>x</p>"), null));
+        assertNull(noteService.patchNote(1L, Map.of("title", " "), null));
+        assertNull(noteService.patchNote(1L, Map.of("content", 5), null));
+        assertNull(noteService.patchNote(1L, nullTitle, null));
+        verify(noteRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void patchNote_rejectsStaleVersionAndMissingNote() {
+        Note note = new Note("Title", "Content");
+        note.setVersion(2L);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+        when(noteRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> noteService.patchNote(1L, Map.of("title", "New"), 1L));
+        assertNull(noteService.patchNote(2L, Map.of("title", "New"), null));
+        verify(noteRepository, never()).save(any(Note.class));
     }
 
     @Test
@@ -101,7 +394,7 @@ public class NoteServiceTest {
         when(noteRepository.existsById(1L)).thenReturn(false);
 
         Note updatedNote = new Note();
-        Note result = noteService.updateNote(1L, updatedNote);
+        Note result = noteService.updateNote(1L, updatedNote, null);
 
         assertNull(result);
         verify(noteRepository, times(1)).existsById(1L);
@@ -109,6 +402,141 @@ public class NoteServiceTest {
         verify(noteRepository, never()).save(any(Note.class));
     }
 
+    @Test
+    void applyBatch_appliesAllWrites() {
+        Note stored = new Note("Old", "Old content");
+        stored.setId(1L);
+        Note toDelete = new Note("Gone", "");
+        toDelete.setId(2L);
+        Note update = new Note("New", "See [[Other]] #tag");
+        update.setId(1L);
+        Note create = new Note("Created", "Text");
+        when(noteRepository.findAllWithTagsByIdIn(Set.of(1L))).thenReturn(List.of(stored));
+        when(noteRepository.findAllWithTagsByIdIn(Set.of(2L))).thenReturn(List.of(toDelete));
+        when(noteRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Note> saved = noteService.applyBatch(new NoteBatch(List.of(create), List.of(update), List.of(2L)));
+
+        assertEquals(List.of(create, stored), saved);
+        assertEquals("New", stored.getTitle());
+        assertEquals("See [[Other]] #tag", stored.getContent());
+        assertEquals(Set.of("tag"), stored.getTags());
+        assertNull(stored.getHTML());
+        assertNotNull(create.getRevision());
+        verify(renderService).submit(create);
+        verify(renderService).submit(stored);
+        verify(noteRepository, times(1)).saveAll(anyList());
+        verify(noteRepository, times(1)).deleteAll(List.of(toDelete));
+        verify(tombstoneRepository, times(1)).saveAll(anyList());
+        verify(noteRepository, never()).save(any(Note.class));
+    }
+
+    @Test
+    void saveNote_indexesLinks() {
+        Note note = new Note("Title", "See [[Other]] and [[other]] and [[Third]]");
+        note.setId(5L);
+        when(noteRepository.save(note)).thenReturn(note);
+
+        noteService.saveNote(note);
+
+        ArgumentCaptor<List<NoteLink>> captor = ArgumentCaptor.forClass(List.class);
+        verify(linkRepository).deleteBySourceIds(List.of(5L));
+        verify(linkRepository).saveAll(captor.capture());
+        assertEquals(Set.of("other", "third"),
+                captor.getValue().stream().map(NoteLink::getTargetTitle).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void saveNote_skipsLinksLongerThanTitles() {
+        Note note = new Note("Title", "See [[" + "x".repeat(Note.MAX_TITLE_LENGTH + 1) + "]] and [[Other]]");
+        note.setId(5L);
+        when(noteRepository.save(note)).thenReturn(note);
+
+        noteService.saveNote(note);
+
+        ArgumentCaptor<List<NoteLink>> captor = ArgumentCaptor.forClass(List.class);
+        verify(linkRepository).saveAll(captor.capture());
+        assertEquals(List.of("other"), captor.getValue().stream().map(NoteLink::getTargetTitle).toList());
+    }
+
+    @Test
+    void renameNote_rewritesOnlyReferencingNotes() {
+        Note renamed = new Note("Old", "content", "Work");
+        renamed.setId(1L);
+        Note referencing = new Note("Ref", "Go to [[old]] now", "Work");
+        referencing.setId(2L);
+        Note otherCollection = new Note("Elsewhere", "Go to [[Old]]", "Home");
+        otherCollection.setId(3L);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(renamed));
+        when(linkRepository.findSourceIdsByTargetTitle("old")).thenReturn(List.of(2L, 3L));
+        when(noteRepository.findAllById(List.of(2L, 3L))).thenReturn(List.of(referencing, otherCollection));
+        when(noteRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<Note> changed = noteService.renameNote(1L, "New $1", null);
+
+        assertEquals(List.of(renamed, referencing), changed);
+        assertEquals("New $1", renamed.getTitle());
+        assertEquals("Go to [[New $1]] now", referencing.getContent());
+        verify(renderService).submit(referencing);
+        verify(renderService, never()).submit(renamed);
+        assertEquals("Go to [[Old]]", otherCollection.getContent());
+        verify(noteRepository, never()).findAll();
+        verify(linkRepository).deleteBySourceIds(List.of(2L));
+    }
+
+    @Test
+    void renameNote_returnsNullIfNotExists() {
+        when(noteRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertNull(noteService.renameNote(1L, "New", null));
+        verify(noteRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void renameNote_rejectsStaleVersion() {
+        Note note = new Note("Old", "Content");
+        note.setId(1L);
+        note.setVersion(4L);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(note));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> noteService.renameNote(1L, "New", 3L));
+        assertEquals("Old", note.getTitle());
+        verify(noteRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void applyBatch_rejectsUnknownUpdate() {
+        Note update = new Note("New", "Content");
+        update.setId(3L);
+        when(noteRepository.findAllWithTagsByIdIn(anySet())).thenReturn(List.of());
+
+        List<Note> saved = noteService.applyBatch(new NoteBatch(List.of(), List.of(update), List.of()));
+
+        assertNull(saved);
+        verify(noteRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void applyBatch_rejectsUpdateOfDeletedNote() {
+        Note update = new Note("New", "Content");
+        update.setId(3L);
+
+        List<Note> saved = noteService.applyBatch(new NoteBatch(List.of(), List.of(update), List.of(3L)));
+
+        assertNull(saved);
+        verify(noteRepository, never()).saveAll(anyList());
+        verify(noteRepository, never()).deleteAll(anyList());
+    }
+
+    @Test
+    void applyBatch_rejectsCreateWithoutTitle() {
+        List<Note> saved = noteService.applyBatch(new NoteBatch(List.of(new Note("", "x")), List.of(), List.of()));
+
+        assertNull(saved);
+        verify(noteRepository, never()).saveAll(anyList());
+        verify(noteRepository, never()).deleteAll(anyList());
+    }
+
     @Test
     void deleteNoteById_deletesNoteIfExists() {
         when(noteRepository.existsById(1L)).thenReturn(true);
@@ -118,6 +546,136 @@ public class NoteServiceTest {
         assertEquals(ResponseEntity.ok().build(), response);
         verify(noteRepository, times(1)).existsById(1L);
         verify(noteRepository, times(1)).deleteById(1L);
+        verify(linkRepository, times(1)).deleteBySourceIds(List.of(1L));
+        verify(searchService).removeNotes(anyList());
+    }
+
+    @Test
+    void deleteNoteById_leavesTombstone() {
+        when(noteRepository.existsById(1L)).thenReturn(true);
+        when(noteRepository.findMaxRevision()).thenReturn(4L);
+
+        noteService.deleteNoteById(1L);
+
+        ArgumentCaptor<NoteTombstone> captor = ArgumentCaptor.forClass(NoteTombstone.class);
+        verify(tombstoneRepository).save(captor.capture());
+        assertEquals(1L, captor.getValue().getNoteId());
+        assertEquals(5L, captor.getValue().getRevision());
+    }
+
+    @Test
+    void saveNote_stampsIncreasingRevisions() {
+        when(noteRepository.findMaxRevision()).thenReturn(7L);
+        when(tombstoneRepository.findMaxRevision()).thenReturn(9L);
+        when(noteRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Note first = new Note();
+        Note second = new Note();
+
+        noteService.saveNote(first);
+        noteService.saveNote(second);
+
+        assertEquals(10L, first.getRevision());
+        assertEquals(11L, second.getRevision());
+        assertEquals(11L, noteService.currentRevision());
+        verify(noteRepository, times(1)).findMaxRevision();
+    }
+
+    @Test
+    void currentRevision_isZeroForEmptyDatabase() {
+        assertEquals(0L, noteService.currentRevision());
+    }
+
+    @Test
+    void getChangesSince_returnsNotesAndDeletions() {
+        Note note = new Note();
+        note.setId(2L);
+        note.setRevision(6L);
+        when(noteRepository.findMaxRevision()).thenReturn(6L);
+        when(tombstoneRepository.findMaxRevision()).thenReturn(8L);
+        when(noteRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(5L, 8L, Limit.of(10)))
+                .thenReturn(List.of(note));
+        when(tombstoneRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(5L, 8L, Limit.of(10)))
+                .thenReturn(List.of(new NoteTombstone(3L, 8L)));
+
+        NoteChanges changes = noteService.getChangesSince(5L, 10);
+
+        assertEquals(List.of(note), changes.getNotes());
+        assertEquals(List.of(3L), changes.getDeletedIds());
+        assertEquals(8L, changes.getRevision());
+        assertFalse(changes.getHasMore());
+    }
+
+    @Test
+    void getChangesSince_stopsAtLastNoteWhenPageIsFull() {
+        Note note1 = new Note();
+        note1.setRevision(6L);
+        Note note2 = new Note();
+        note2.setRevision(9L);
+        when(noteRepository.findMaxRevision()).thenReturn(12L);
+        when(noteRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(5L, 12L, Limit.of(2)))
+                .thenReturn(List.of(note1, note2));
+        when(tombstoneRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(5L, 12L, Limit.of(2)))
+                .thenReturn(List.of(new NoteTombstone(3L, 8L)));
+
+        NoteChanges changes = noteService.getChangesSince(5L, 2);
+
+        assertEquals(9L, changes.getRevision());
+        assertEquals(List.of(3L), changes.getDeletedIds());
+        assertTrue(changes.getHasMore());
+    }
+
+    @Test
+    void getChangesSince_pagesTombstones() {
+        Note note = new Note();
+        note.setRevision(9L);
+        when(noteRepository.findMaxRevision()).thenReturn(12L);
+        when(noteRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(5L, 12L, Limit.of(2)))
+                .thenReturn(List.of(note));
+        when(tombstoneRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(5L, 12L, Limit.of(2)))
+                .thenReturn(List.of(new NoteTombstone(3L, 6L), new NoteTombstone(4L, 7L)));
+
+        NoteChanges changes = noteService.getChangesSince(5L, 2);
+
+        assertEquals(7L, changes.getRevision());
+        assertEquals(List.of(3L, 4L), changes.getDeletedIds());
+        assertTrue(changes.getNotes().isEmpty());
+        assertTrue(changes.getHasMore());
+    }
+
+    @Test
+    void getChangesSince_stopsBeforeUncommittedRevision() {
+        when(noteRepository.findMaxRevision()).thenReturn(5L);
+        when(noteRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        List<TransactionSynchronization> first;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            noteService.saveNote(new Note());
+            first = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // the first transaction, holding revision 6, is still running while another one commits 7
+        noteService.saveNote(new Note());
+        assertEquals(5L, noteService.currentRevision());
+        assertEquals(5L, noteService.getChangesSince(5L, 10).getRevision());
+
+        first.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        assertEquals(7L, noteService.currentRevision());
+    }
+
+    @Test
+    void getChangesSince_keepsRevisionWhenNothingChanged() {
+        when(noteRepository.findMaxRevision()).thenReturn(12L);
+        when(noteRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(anyLong(), anyLong(),
+                any(Limit.class))).thenReturn(List.of());
+        when(tombstoneRepository.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(anyLong(), anyLong(),
+                any(Limit.class))).thenReturn(List.of());
+
+        NoteChanges changes = noteService.getChangesSince(12L, 100);
+
+        assertFalse(changes.hasChanges());
+        assertEquals(12L, changes.getRevision());
     }
 
     @Test
@@ -129,5 +687,6 @@ public class NoteServiceTest {
         assertEquals(ResponseEntity.badRequest().build(), response);
         verify(noteRepository, times(1)).existsById(1L);
         verify(noteRepository, never()).deleteById(1L);
+        verify(tombstoneRepository, never()).save(any());
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package server.service;
+
+import commons.Note;
+import commons.NoteHtml;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+import server.database.NoteRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RenderServiceTest {
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private RevisionClock revisions;
+
+    @Mock
+    private SearchService searchService;
+
+    private final List<Runnable> queued = new ArrayList<>();
+
+    private RenderService renderService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        renderService = new RenderService(noteRepository, messagingTemplate, revisions, searchService,
+                TransactionOperations.withoutTransaction(), queued::add);
+        when(revisions.next()).thenReturn(9L);
+    }
+
+    private static Note savedNote(long id, long revision, String content) {
+        Note note = new Note("Title", content);
+        note.setId(id);
+        note.setRevision(revision);
+        return note;
+    }
+
+    @Test
+    void submit_rendersStoresAndPublishes() {
+        Note stored = savedNote(1L, 9L, "# Hi");
+        when(noteRepository.updateHtml(eq(1L), eq("# Hi"), anyString(), eq(9L))).thenReturn(1);
+        when(noteRepository.findById(1L)).thenReturn(Optional.of(stored));
+
+        renderService.submit(savedNote(1L, 4L, "# Hi"));
+        queued.forEach(Runnable::run);
+
+        verify(noteRepository).updateHtml(1L, "# Hi", "<h1>Hi</h1>\n", 9L);
+        verify(searchService).indexNotes(List.of(stored));
+        ArgumentCaptor<NoteHtml> captor = ArgumentCaptor.forClass(NoteHtml.class);
+        verify(messagingTemplate).convertAndSend(eq(RenderService.HTML_TOPIC), captor.capture());
+        assertEquals(1L, captor.getValue().getNoteId());
+        assertEquals(9L, captor.getValue().getRevision());
+        assertEquals("<h1>Hi</h1>\n", captor.getValue().getHtml());
+    }
+
+    @Test
+    void submit_coalescesQueuedRendersOfTheSameNote() {
+        when(noteRepository.updateHtml(anyLong(), anyString(), anyString(), anyLong())).thenReturn(1);
+
+        renderService.submit(savedNote(1L, 1L, "first"));
+        renderService.submit(savedNote(1L, 2L, "second"));
+        renderService.submit(savedNote(2L, 3L, "other"));
+        renderService.submit(savedNote(1L, 4L, "last"));
+        assertEquals(2, queued.size());
+        queued.forEach(Runnable::run);
+
+        verify(noteRepository).updateHtml(1L, "last", "<p>last</p>\n", 9L);
+        verify(noteRepository).updateHtml(2L, "other", "<p>other</p>\n", 9L);
+        verify(noteRepository, times(2)).updateHtml(anyLong(), anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void submit_rendersAgainWhenSavedDuringRender() {
+        renderService.submit(savedNote(1L, 1L, "first"));
+        queued.getFirst().run();
+        renderService.submit(savedNote(1L, 2L, "second"));
+
+        assertEquals(2, queued.size());
+    }
+
+    @Test
+    void render_doesNotPublishOutdatedHtml() {
+        when(noteRepository.updateHtml(anyLong(), anyString(), anyString(), anyLong())).thenReturn(0);
+
+        renderService.submit(savedNote(1L, 1L, "changed since"));
+        queued.forEach(Runnable::run);
+
+        verifyNoInteractions(messagingTemplate, searchService);
+    }
+
+    @Test
+    void renderMissing_rendersNotesWithoutHtml() {
+        Note first = savedNote(1L, 1L, "first");
+        Note second = savedNote(5L, 2L, "second");
+        when(noteRepository.findByHtmlIsNullAndContentIsNotNullAndIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(first, second));
+        when(noteRepository.findByHtmlIsNullAndContentIsNotNullAndIdGreaterThanOrderByIdAsc(eq(5L), any(Limit.class)))
+                .thenReturn(List.of());
+        when(noteRepository.updateHtml(anyLong(), anyString(), anyString(), anyLong())).thenReturn(1);
+
+        renderService.renderMissing();
+        queued.forEach(Runnable::run);
+
+        verify(noteRepository).updateHtml(1L, "first", "<p>first</p>\n", 9L);
+        verify(noteRepository).updateHtml(5L, "second", "<p>second</p>\n", 9L);
+    }
+}
@@ -0,0 +1,245 @@
+package server.service;
+
+import commons.Note;
+import commons.NoteTombstone;
+import commons.SearchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import server.database.NoteChecksumProjection;
+import server.database.NoteRepository;
+import server.database.NoteTagProjection;
+import server.database.NoteTombstoneRepository;
+import server.search.SearchIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SearchServiceTest {
+
+    @Mock
+    private NoteRepository noteRepository;
+
+    @Mock
+    private NoteTombstoneRepository tombstoneRepository;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private static Note savedNote(long id, long revision, String title, String content) {
+        Note note = new Note(title, content, "Default");
+        note.setId(id);
+        note.setRevision(revision);
+        return note;
+    }
+
+    private static NoteChecksumProjection checksum(long notes, long idSum, long revisionSum) {
+        NoteChecksumProjection checksum = mock(NoteChecksumProjection.class);
+        when(checksum.getNotes()).thenReturn(notes);
+        when(checksum.getIdSum()).thenReturn(idSum);
+        when(checksum.getRevisionSum()).thenReturn(revisionSum);
+        return checksum;
+    }
+
+    private SearchService startedService(NoteRepository notes, NoteTombstoneRepository tombstones)
+            throws InterruptedException {
+        return startedService(notes, tombstones, new RevisionClock(notes, tombstones));
+    }
+
+    private SearchService startedService(NoteRepository notes, NoteTombstoneRepository tombstones,
+                                         RevisionClock revisions) throws InterruptedException {
+        SearchService service = new SearchService(notes, tombstones, revisions, directory,
+                Executors.newSingleThreadScheduledExecutor(), 3600);
+        service.start();
+        service.shutdown();
+        return service;
+    }
+
+    private void storeTwoNotes() throws InterruptedException {
+        when(noteRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(savedNote(1, 1, "Groceries", "milk and eggs"),
+                        savedNote(2, 2, "Recipes", "pancakes need milk")));
+        startedService(noteRepository, tombstoneRepository);
+    }
+
+    @Test
+    void start_buildsAndSavesIndexWhenNoneIsSaved() throws InterruptedException {
+        when(noteRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(savedNote(1, 1, "Groceries", "milk and eggs")));
+
+        SearchService service = startedService(noteRepository, tombstoneRepository);
+
+        List<SearchResult> results = service.search("milk", null, 10);
+        assertEquals(1, results.size());
+        assertEquals("Groceries", results.getFirst().getTitle());
+        assertTrue(Files.exists(directory.resolve("manifest")));
+    }
+
+    @Test
+    void search_addsSnippetsOfResults() throws InterruptedException {
+        storeTwoNotes();
+        NoteChecksumProjection checksum = checksum(2, 3, 3);
+        when(noteRepository.findChecksum()).thenReturn(checksum);
+        when(noteRepository.findContentsByIdIn(any())).thenReturn(List.<Object[]>of(
+                new Object[]{1L, "milk and eggs"}, new Object[]{2L, "pancakes need milk"}));
+
+        SearchService service = startedService(noteRepository, tombstoneRepository);
+        List<SearchResult> results = service.search("eggs", null, 10);
+
+        assertEquals(1, results.size());
+        assertEquals("milk and eggs", results.getFirst().getSnippet());
+        assertArrayEquals(new int[]{9, 13}, results.getFirst().getHighlights());
+        verify(noteRepository).findContentsByIdIn(List.of(1L));
+    }
+
+    @Test
+    void start_replaysChangesSinceCheckpoint() throws InterruptedException {
+        storeTwoNotes();
+
+        NoteRepository notes = mock(NoteRepository.class);
+        NoteTombstoneRepository tombstones = mock(NoteTombstoneRepository.class);
+        when(notes.findByRevisionGreaterThanOrderByRevisionAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(savedNote(1, 3, "Groceries", "apples")));
+        when(tombstones.findByRevisionGreaterThanAndRevisionLessThanEqualOrderByRevisionAsc(eq(0L), eq(Long.MAX_VALUE),
+                any(Limit.class))).thenReturn(List.of(new NoteTombstone(2, 4)));
+        NoteChecksumProjection checksum = checksum(1, 1, 3);
+        when(notes.findChecksum()).thenReturn(checksum);
+
+        SearchService service = startedService(notes, tombstones);
+
+        assertEquals(1, service.search("apples", null, 10).size());
+        assertEquals(List.of(), service.search("milk", null, 10));
+        verify(notes, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void start_rebuildsIndexThatDoesNotMatchDatabase() throws InterruptedException {
+        storeTwoNotes();
+
+        NoteRepository notes = mock(NoteRepository.class);
+        when(notes.findByRevisionGreaterThanOrderByRevisionAsc(anyLong(), any(Limit.class))).thenReturn(List.of());
+        NoteChecksumProjection checksum = checksum(1, 5, 9);
+        when(notes.findChecksum()).thenReturn(checksum);
+        when(notes.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(savedNote(5, 9, "Other", "milk")));
+
+        SearchService service = startedService(notes, tombstoneRepository);
+
+        assertEquals(5L, service.search("milk", null, 10).getFirst().getId());
+        assertEquals(1, service.search("milk", null, 10).size());
+    }
+
+    @Test
+    void start_rebuildsIndexWithOutdatedRevisions() throws InterruptedException {
+        storeTwoNotes();
+
+        NoteRepository notes = mock(NoteRepository.class);
+        // same notes, but note 2 was saved again at revision 3 without the index seeing it
+        NoteChecksumProjection checksum = checksum(2, 3, 4);
+        when(notes.findChecksum()).thenReturn(checksum);
+        when(notes.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(savedNote(1, 1, "Groceries", "milk and eggs"),
+                        savedNote(2, 3, "Recipes", "waffles")));
+
+        SearchService service = startedService(notes, tombstoneRepository);
+
+        assertEquals(List.of(), service.search("pancakes", null, 10));
+        assertEquals(1, service.search("waffles", null, 10).size());
+    }
+
+    @Test
+    void checkpoint_savesCommittedRevisionAsWatermark() throws InterruptedException, IOException {
+        RevisionClock revisions = mock(RevisionClock.class);
+        when(revisions.committed()).thenReturn(7L);
+        when(noteRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(savedNote(1, 9, "Groceries", "milk")));
+
+        SearchService service = new SearchService(noteRepository, tombstoneRepository, revisions, directory,
+                Executors.newSingleThreadScheduledExecutor(), 3600);
+        service.start();
+        when(revisions.committed()).thenReturn(8L);
+        service.indexNotes(List.of(savedNote(2, 10, "Recipes", "milk")));
+        service.shutdown();
+
+        assertEquals(8L, SearchIndex.open(directory).watermark());
+    }
+
+    @Test
+    void indexNotes_appliesChangesOnIndexer() throws InterruptedException {
+        SearchService service = new SearchService(noteRepository, tombstoneRepository,
+                new RevisionClock(noteRepository, tombstoneRepository), directory,
+                Executors.newSingleThreadScheduledExecutor(), 3600);
+        service.start();
+        service.indexNotes(List.of(savedNote(1, 1, "Groceries", "milk")));
+        service.removeNotes(List.of(new NoteTombstone(1, 2)));
+        service.indexNotes(List.of(savedNote(2, 3, "Recipes", "milk")));
+        service.shutdown();
+
+        assertEquals(2L, service.search("milk", null, 10).getFirst().getId());
+        assertEquals(1, service.search("milk", null, 10).size());
+    }
+
+    @Test
+    void start_loadsTagsAndAppliesChanges() throws InterruptedException {
+        when(noteRepository.findMaxId()).thenReturn(2L);
+        when(noteRepository.findTagsByNoteIdBetween(0, NoteService.MAX_SUMMARY_PAGE_SIZE)).thenReturn(List.of(
+                new Object[]{1L, "home"}, new Object[]{1L, "todo"}, new Object[]{2L, "todo"}));
+        SearchService service = new SearchService(noteRepository, tombstoneRepository,
+                new RevisionClock(noteRepository, tombstoneRepository), directory,
+                Executors.newSingleThreadScheduledExecutor(), 3600);
+        service.start();
+        Note note = savedNote(3, 5, "Work", "#todo");
+        note.setTags(Set.of("todo", "work"));
+        service.indexNotes(List.of(note));
+        service.removeNotes(List.of(new NoteTombstone(1, 6)));
+        service.shutdown();
+
+        assertEquals(Map.of("todo", 2, "work", 1), service.tagCounts());
+        assertEquals(List.of(2L, 3L), service.findByTags(List.of("todo"), true, 0, 10));
+    }
+
+    @Test
+    void start_readsSavedTagsAndReplaysTheirChanges() throws InterruptedException {
+        when(noteRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(savedNote(1, 1, "Groceries", "#home")));
+        when(noteRepository.findMaxId()).thenReturn(1L);
+        when(noteRepository.findTagsByNoteIdBetween(0, NoteService.MAX_SUMMARY_PAGE_SIZE))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "home"}));
+        startedService(noteRepository, tombstoneRepository);
+
+        NoteRepository notes = mock(NoteRepository.class);
+        NoteTombstoneRepository tombstones = mock(NoteTombstoneRepository.class);
+        when(notes.findByRevisionGreaterThanOrderByRevisionAsc(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(savedNote(2, 2, "Work", "#work")));
+        NoteTagProjection workTag = mock(NoteTagProjection.class);
+        when(workTag.getNoteId()).thenReturn(2L);
+        when(workTag.getTag()).thenReturn("work");
+        when(notes.findTagsByNoteIds(List.of(2L))).thenReturn(List.of(workTag));
+        NoteChecksumProjection checksum = checksum(2, 3, 3);
+        when(notes.findChecksum()).thenReturn(checksum);
+
+        SearchService service = startedService(notes, tombstones);
+
+        assertEquals(Map.of("home", 1, "work", 1), service.tagCounts());
+        verify(notes, never()).findTagsByNoteIdBetween(anyLong(), anyLong());
+    }
+}